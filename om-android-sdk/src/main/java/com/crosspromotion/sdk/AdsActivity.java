@@ -224,7 +224,7 @@ public class AdsActivity extends BaseActivity implements JsBridge.MessageListene
     private void loadAdUrl(String url) throws Exception {
         boolean existCache = Cache.existCache(this, url);
         if (existCache) {
-            File file = Cache.getCacheFile(this, url, null);
+            File file = Cache.getCacheFile(this, url);
             String data = IOUtil.toString(IOUtil.getFileInputStream(file), CommonConstants.CHARTSET_UTF8);
             mAdView.loadDataWithBaseURL(url, data, "text/html", CommonConstants.CHARTSET_UTF8, null);
         } else {
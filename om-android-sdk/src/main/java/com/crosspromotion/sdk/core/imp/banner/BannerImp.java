@@ -27,6 +27,7 @@ import com.crosspromotion.sdk.utils.webview.BaseWebView;
 import com.crosspromotion.sdk.utils.webview.BaseWebViewClient;
 import com.crosspromotion.sdk.utils.webview.JsBridge;
 import com.crosspromotion.sdk.utils.webview.JsBridgeConstants;
+import com.crosspromotion.sdk.utils.webview.WebViewPool;
 import com.openmediation.sdk.mediation.MediationUtil;
 import com.openmediation.sdk.utils.DensityUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
@@ -112,13 +113,7 @@ public final class BannerImp extends AbstractAdsManager implements JsBridge.Mess
                     }
                     mLytBanner.removeAllViews();
                     if (mBannerView != null) {
-                        mBannerView.removeJavascriptInterface("sdk");
-                        mBannerView.removeAllViews();
-                        mBannerView.setWebViewClient(null);
-                        mBannerView.stopLoading();
-                        mBannerView.clearHistory();
-                        mBannerView.freeMemory();
-                        mBannerView.destroy();
+                        WebViewPool.getInstance().recycle(mBannerView);
                         mBannerWebClient = null;
                         mBannerView = null;
                     }
@@ -186,7 +181,7 @@ public final class BannerImp extends AbstractAdsManager implements JsBridge.Mess
         String url = mAdBean.getResources().get(0);
         boolean existCache = Cache.existCache(mContext, url);
         if (existCache) {
-            File file = Cache.getCacheFile(mContext, url, null);
+            File file = Cache.getCacheFile(mContext, url);
             String data = IOUtil.toString(IOUtil.getFileInputStream(file), CommonConstants.CHARTSET_UTF8);
             mBannerView.loadDataWithBaseURL(url, data, "text/html",
                     CommonConstants.CHARTSET_UTF8, null);
@@ -220,7 +215,7 @@ public final class BannerImp extends AbstractAdsManager implements JsBridge.Mess
                 }
                 try {
                     if (mBannerView == null) {
-                        mBannerView = new BaseWebView(mContext);
+                        mBannerView = WebViewPool.getInstance().acquire();
                         int[] size = getSize(mContext);
                         FrameLayout.LayoutParams bannerViewParams = new FrameLayout.LayoutParams(
                                 DensityUtil.dip2px(mContext, size[0]), DensityUtil.dip2px(mContext, size[1]));
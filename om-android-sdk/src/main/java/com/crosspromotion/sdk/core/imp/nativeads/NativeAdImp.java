@@ -17,7 +17,7 @@ import com.crosspromotion.sdk.nativead.Ad;
 import com.crosspromotion.sdk.nativead.NativeAdListener;
 import com.crosspromotion.sdk.report.AdReport;
 import com.crosspromotion.sdk.utils.Cache;
-import com.crosspromotion.sdk.utils.ImageUtils;
+import com.crosspromotion.sdk.utils.ImageLoader;
 import com.crosspromotion.sdk.utils.PUtils;
 import com.crosspromotion.sdk.utils.ResDownloader;
 import com.crosspromotion.sdk.utils.error.ErrorBuilder;
@@ -26,9 +26,10 @@ import com.crosspromotion.sdk.view.AdMarketView;
 import com.openmediation.sdk.nativead.AdIconView;
 import com.openmediation.sdk.nativead.MediaView;
 import com.openmediation.sdk.nativead.NativeAdView;
+import com.openmediation.sdk.utils.DensityUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.IOUtil;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.HandlerUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 
@@ -36,8 +37,14 @@ import java.util.List;
 
 
 public final class NativeAdImp extends AbstractAdsManager implements View.OnClickListener, View.OnAttachStateChangeListener {
+    //icons are shown small, decoded no larger than this
+    private static final int ICON_SIZE_DP = 100;
+    //size AdMarketView shows the logo at
+    private static final int LOGO_SIZE_DP = 15;
+
     private boolean isImpReported;
     private Ad mAd;
+    private Bitmap mLogo;
 
     public NativeAdImp(String placementId) {
         super(placementId);
@@ -60,7 +67,7 @@ public final class NativeAdImp extends AbstractAdsManager implements View.OnClic
     @Override
     public void destroy() {
         super.destroy();
-        mAd = null;
+        releaseImages();
         mAdBean = null;
     }
 
@@ -76,7 +83,7 @@ public final class NativeAdImp extends AbstractAdsManager implements View.OnClic
         AdMark adMark = adBean.getAdMark();
         if (adMark != null && !TextUtils.isEmpty(adMark.getLogo())) {
             final String logo = adMark.getLogo();
-            WorkExecutor.execute(new Runnable() {
+            LaneExecutor.execute(LaneExecutor.Lane.DOWNLOAD, new Runnable() {
                 @Override
                 public void run() {
                     try {
@@ -91,29 +98,72 @@ public final class NativeAdImp extends AbstractAdsManager implements View.OnClic
     @Override
     protected void onAdsLoadSuccess(AdBean bean) {
         super.onAdsLoadSuccess(bean);
+        final AdBean adBean = mAdBean;
+        // decoding takes disk reads and tens of milliseconds, never on the thread load was called on
+        LaneExecutor.execute(LaneExecutor.Lane.DISK, new Runnable() {
+            @Override
+            public void run() {
+                decodeImages(adBean);
+            }
+        });
+    }
+
+    /**
+     * Decodes the images of adBean for the size they are shown at, then reports the ad ready
+     */
+    private void decodeImages(final AdBean adBean) {
         try {
-            List<String> imgUrls = mAdBean.getMainimgUrl();
+            if (adBean == null || adBean != mAdBean) {
+                return;
+            }
+            List<String> imgUrls = adBean.getMainimgUrl();
             if (imgUrls == null || imgUrls.isEmpty()) {
                 onAdsLoadFailed(ErrorBuilder.build(ErrorCode.CODE_LOAD_RESOURCE_ERROR));
                 return;
             }
-            Bitmap content = ImageUtils.getBitmap(IOUtil.getFileInputStream(Cache.getCacheFile(mContext,
-                    imgUrls.get(0), null)));
+            ImageLoader loader = ImageLoader.getInstance();
+            // the media view is at most as wide as the screen, the height follows the aspect ratio
+            Bitmap content = loader.load(Cache.getCacheFile(mContext, imgUrls.get(0)),
+                    DensityUtil.getPhoneWidth(mContext), 0);
             if (content == null) {
                 onAdsLoadFailed(ErrorBuilder.build(ErrorCode.CODE_LOAD_RESOURCE_ERROR));
                 return;
             }
-            Bitmap icon = ImageUtils.getBitmap(Cache.getCacheFile(mContext, mAdBean.getIconUrl(), null));
+            int iconSize = DensityUtil.dip2px(mContext, ICON_SIZE_DP);
+            Bitmap icon = loader.load(Cache.getCacheFile(mContext, adBean.getIconUrl()), iconSize, iconSize);
+            Bitmap logo = null;
+            AdMark adMark = adBean.getAdMark();
+            if (adMark != null && !TextUtils.isEmpty(adMark.getLogo()) && Cache.existCache(mContext, adMark.getLogo())) {
+                int logoSize = DensityUtil.dip2px(mContext, LOGO_SIZE_DP);
+                logo = loader.load(Cache.getCacheFile(mContext, adMark.getLogo()), logoSize, logoSize);
+            }
 
             Ad.Builder builder = new Ad.Builder();
-            builder.title(mAdBean.getTitle())
-                    .description(mAdBean.getDescription())
+            builder.title(adBean.getTitle())
+                    .description(adBean.getDescription())
                     .cta("install")
                     .content(content)
                     .icon(icon);
 
-            mAd = builder.build();
-            callbackAdsReady();
+            final Ad ad = builder.build();
+            final Bitmap adLogo = logo;
+            // mAd and mLogo are main thread only, destroy() may have run while decoding
+            HandlerUtil.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (adBean != mAdBean) {
+                        ImageLoader loader = ImageLoader.getInstance();
+                        loader.release(ad.getContent());
+                        loader.release(ad.getIcon());
+                        loader.release(adLogo);
+                        return;
+                    }
+                    releaseImages();
+                    mAd = ad;
+                    mLogo = adLogo;
+                    callbackAdsReady();
+                }
+            });
         } catch (Exception e) {
             onAdsLoadFailed(ErrorBuilder.build(ErrorCode.CODE_LOAD_UNKNOWN_EXCEPTION));
             CrashUtil.getSingleton().saveException(e);
@@ -121,6 +171,20 @@ public final class NativeAdImp extends AbstractAdsManager implements View.OnClic
         }
     }
 
+    /**
+     * Hands the bitmaps of the current ad back to ImageLoader
+     */
+    private void releaseImages() {
+        ImageLoader loader = ImageLoader.getInstance();
+        if (mAd != null) {
+            loader.release(mAd.getContent());
+            loader.release(mAd.getIcon());
+            mAd = null;
+        }
+        loader.release(mLogo);
+        mLogo = null;
+    }
+
     @Override
     public void onClick(View v) {
         if (mAdBean == null) {
@@ -192,23 +256,47 @@ public final class NativeAdImp extends AbstractAdsManager implements View.OnClic
     /**
      * draws logo based on adMark
      */
-    private void setUpLogo(ViewGroup parent) {
+    private void setUpLogo(final ViewGroup parent) {
         final AdMark adMark = mAdBean.getAdMark();
         if (adMark == null || TextUtils.isEmpty(adMark.getLogo()) || TextUtils.isEmpty(adMark.getLink())) {
             return;
         }
-        String link = adMark.getLink();
-        try {
-            String logoUrl = adMark.getLogo();
-            if (!TextUtils.isEmpty(logoUrl) && Cache.existCache(mContext, logoUrl)) {
-                drawLogo(parent, ImageUtils.getBitmap(Cache.getCacheFile(mContext, logoUrl,
-                        null)), link);
-            } else {
-                drawLogo(parent, null, link);
-            }
-        } catch (Exception e) {
-            drawLogo(parent, null, link);
+        final String link = adMark.getLink();
+        if (mLogo != null) {
+            drawLogo(parent, mLogo, link);
+            return;
         }
+        // the logo wasn't cached yet when the ad loaded, decoded off the main thread
+        LaneExecutor.execute(LaneExecutor.Lane.DISK, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String logoUrl = adMark.getLogo();
+                    if (!Cache.existCache(mContext, logoUrl)) {
+                        return;
+                    }
+                    int logoSize = DensityUtil.dip2px(mContext, LOGO_SIZE_DP);
+                    final Bitmap logo = ImageLoader.getInstance().load(Cache.getCacheFile(mContext, logoUrl),
+                            logoSize, logoSize);
+                    if (logo == null) {
+                        return;
+                    }
+                    HandlerUtil.runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mAd == null || mLogo != null) {
+                                ImageLoader.getInstance().release(logo);
+                                return;
+                            }
+                            mLogo = logo;
+                            drawLogo(parent, logo, link);
+                        }
+                    });
+                } catch (Exception e) {
+                    DeveloperLog.LogD("Native logo", e);
+                }
+            }
+        });
     }
 
     private void drawLogo(ViewGroup parent, Bitmap bitmap, String link) {
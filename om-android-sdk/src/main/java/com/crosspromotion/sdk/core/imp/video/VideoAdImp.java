@@ -35,7 +35,7 @@ public final class VideoAdImp extends AbstractAdsManager {
             if (!result) {
                 return false;
             }
-            File video = Cache.getCacheFile(mContext, mAdBean.getVideoUrl(), null);
+            File video = Cache.getCacheFile(mContext, mAdBean.getVideoUrl());
             return video != null && video.exists() && video.length() > 0;
         } catch (Exception e) {
             return false;
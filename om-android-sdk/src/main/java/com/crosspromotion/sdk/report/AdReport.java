@@ -7,9 +7,10 @@ import android.content.Context;
 
 import com.crosspromotion.sdk.bean.AdBean;
 import com.crosspromotion.sdk.utils.PUtils;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.SceneUtil;
-import com.openmediation.sdk.utils.WorkExecutor;
 import com.openmediation.sdk.utils.request.network.AdRequest;
+import com.openmediation.sdk.utils.request.network.Request;
 
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -46,7 +47,8 @@ public final class AdReport {
                 tracker = tracker.replace("{scene}", sceneId + "");
             }
             AdRequest.get().url(tracker).readTimeout(60000).connectTimeout(30000)
-                    .instanceFollowRedirects(true).performRequest(context);
+                    .instanceFollowRedirects(true).priority(Request.Priority.REPORT)
+                    .performRequest(context);
         }
 
         sClickReport.add(adBean);
@@ -78,7 +80,8 @@ public final class AdReport {
                 tracker = tracker.replace("{scene}", sceneId + "");
             }
             AdRequest.get().url(tracker).readTimeout(60000).connectTimeout(30000)
-                    .instanceFollowRedirects(true).performRequest(context);
+                    .instanceFollowRedirects(true).priority(Request.Priority.REPORT)
+                    .performRequest(context);
         }
 
         sImpReport.add(adBean);
@@ -95,6 +98,6 @@ public final class AdReport {
             }
         };
 
-        WorkExecutor.execute(runnable);
+        LaneExecutor.execute(LaneExecutor.Lane.DISK, runnable);
     }
 }
@@ -10,42 +10,81 @@ import android.text.TextUtils;
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Response;
 
-import org.json.JSONObject;
-
 import java.io.File;
 import java.io.InputStream;
-import java.nio.charset.Charset;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Disk cache of creatives, on top of {@link CacheIndex}: content files live under the cache dir by
+ * host and path, their size and revalidation headers in the index.
+ */
 public final class Cache {
 
     private static final String FILE_DIR_NAME = "omnetwork";//cache dir name
-    private static final long FREE_SD_SPACE_NEEDED_TO_CACHE = 100 * 1024 * 1024L;//Cache dir max size
+    private static final String PARTIAL_DIR_NAME = "partial";
+    private static final long DEFAULT_MAX_SIZE = 100 * 1024 * 1024L;//Cache dir max size
     private static final long MIN_CACHE_INTERVAL = 60 * 60 * 1000L;//min cache time
     private static final long MAX_CACHE_INTERVAL = 24 * MIN_CACHE_INTERVAL;//max cache time
 
-    private static String[] HEADERS = new String[]{
-            CommonConstants.KEY_CACHE_CONTROL,
-            CommonConstants.KEY_CONTENT_TYPE,
-            CommonConstants.KEY_ETAG,
-            CommonConstants.KEY_LAST_MODIFIED,
-            CommonConstants.KEY_LOCATION,
-            CommonConstants.KEY_CONTENT_LENGTH
-    };
+    private static CacheIndex sIndex;
+    private static long sMaxSize = DEFAULT_MAX_SIZE;
 
     public static void init() {
         if (AdtUtil.getInstance().getApplicationContext() == null) {
             return;
         }
-        createCacheRootDir(AdtUtil.getInstance().getApplicationContext());
-        freeSpaceIfNeeded(AdtUtil.getInstance().getApplicationContext());
+        // reads the journal off the calling thread, it's opened on first use otherwise
+        LaneExecutor.execute(LaneExecutor.Lane.DISK, new Runnable() {
+            @Override
+            public void run() {
+                Context context = AdtUtil.getInstance().getApplicationContext();
+                getIndex(context);
+                PartialDownload.deleteExpired(getPartialDir(context));
+            }
+        });
+    }
+
+    /**
+     * Sets the size budget of the cache, least recently used files are evicted above it
+     *
+     * @param maxSize the budget, in bytes
+     */
+    public static synchronized void setMaxSize(long maxSize) {
+        if (maxSize <= 0) {
+            return;
+        }
+        sMaxSize = maxSize;
+        if (sIndex != null) {
+            sIndex.setMaxSize(maxSize);
+        }
+    }
+
+    /**
+     * @return bytes of cached content
+     */
+    public static long size(Context context) {
+        CacheIndex index = getIndex(context);
+        return index != null ? index.size() : 0;
+    }
+
+    private static synchronized CacheIndex getIndex(Context context) {
+        if (sIndex == null) {
+            if (context == null) {
+                context = AdtUtil.getInstance().getApplicationContext();
+                if (context == null) {
+                    return null;
+                }
+            }
+            sIndex = new CacheIndex(getRootDir(context), sMaxSize, PARTIAL_DIR_NAME);
+        }
+        return sIndex;
     }
 
     /**
@@ -67,55 +106,21 @@ public final class Cache {
      */
     public static boolean existCache(Context context, String url) {
         try {
-            if (context == null) {
-                if (AdtUtil.getInstance().getApplicationContext() == null) {
-                    return false;
-                } else {
-                    context = AdtUtil.getInstance().getApplicationContext();
-                }
-            }
-            File rootDir = getRootDir(context);
-            File content;
-            File header;
-            if (url.startsWith("http")) {
-                Map<String, String> urlFields = getUrlFields(url);
-                String filePath = urlFields.get("path");
-                String fileName = urlFields.get("name");
-                if (TextUtils.isEmpty(fileName)) {
-                    return false;
-                }
-                content = new File(rootDir, filePath + fileName);
-                header = new File(rootDir, filePath + fileName.concat(CommonConstants.FILE_HEADER_SUFFIX));
-            } else {
-                Uri tmp = Uri.parse(url);
-                if (TextUtils.isEmpty(tmp.getPath())) {
-                    return false;
-                }
-                content = new File(tmp.getPath());
-                header = new File(tmp.getPath().concat(CommonConstants.FILE_HEADER_SUFFIX));
+            CacheIndex index = getIndex(context);
+            String key = getKey(context, url);
+            if (index == null || key == null) {
+                return false;
             }
-            if (!header.exists() || !content.exists()) {
+            CacheIndex.Entry entry = index.get(key);
+            if (entry == null || entry.size <= 0) {
                 return false;
             }
-            if (header.length() > 0) {
-                try {
-                    String contentLength = getValueFromFile(header, CommonConstants.KEY_CONTENT_LENGTH);
-                    if (!TextUtils.isEmpty(contentLength)) {
-                        int length = Integer.parseInt(contentLength);
-                        if (content.length() != length) {
-                            return false;
-                        }
-                    }
-                } catch (Exception ignored) {
-                }
+            // the only disk access of a hit: the file may have been cleared behind the index's back
+            if (index.getFile(key).length() != entry.size) {
+                index.remove(key);
+                return false;
             }
-            updateFileTime(header);
-            updateFileTime(content);
-
-            long interval = getRequestInterval(header);
-            long maxAge = getMaxAge(header);
-
-            return interval < maxAge;
+            return entry.isFresh(System.currentTimeMillis());
         } catch (Exception e) {
             DeveloperLog.LogD("Cache", e);
             return false;
@@ -126,219 +131,203 @@ public final class Cache {
      * caches file
      */
     public static boolean saveFile(Context context, String url, Response response) {
-        if (context == null) {
+        CacheIndex index = getIndex(context);
+        String key = getKey(context, url);
+        if (index == null || key == null) {
             return false;
         }
-        boolean success;
+        File tmp = index.newTmpFile();
         try {
-            success = saveContent(context, url, response);
-            if (success) {
-                saveHeaderFields(context, url, response);
+            //only image and video res have value ,otherwise value = -1
+            long contentLength = response.headers().getContentLength();
+            InputStream in = response.body().stream();
+            IOUtil.writeToFile(in, tmp);
+            IOUtil.closeQuietly(in);
+            long size = tmp.length();
+            if (size <= 0 || (contentLength > 0 && size != contentLength)) {
+                DeveloperLog.LogD("Cache", "incomplete content: " + url + ", " + size + "/" + contentLength);
+                return false;
             }
+            return commitFile(context, url, tmp, response.headers());
         } catch (Exception e) {
-            success = false;
             DeveloperLog.LogD("Cache", e);
+            return false;
+        } finally {
+            if (tmp.exists()) {
+                tmp.delete();
+            }
         }
-        return success;
     }
 
     /**
-     * caches header fields
+     * Moves a complete download into the cache
+     *
+     * @param file    the downloaded content, renamed into place
+     * @param headers headers of the response the content came with
+     * @return true if cached
      */
-    public static void saveHeaderFields(Context context, String url, Response response) throws Exception {
-        Headers headers = response.headers();
-        if (headers == null || headers.isEmpty()) {
-            return;
+    static boolean commitFile(Context context, String url, File file, Headers headers) {
+        CacheIndex index = getIndex(context);
+        String key = getKey(context, url);
+        long size = file.length();
+        if (index == null || key == null || size <= 0) {
+            return false;
         }
-        File rootDir = getRootDir(context);
-        Map<String, String> urlFields = getUrlFields(url);
-        String filePath = urlFields.get("path");
-        String fileName = urlFields.get("name").concat(CommonConstants.FILE_HEADER_SUFFIX);
-        File header = makeFilePath(rootDir, filePath, fileName);
-        if (header.length() > 0) {
-            header.delete();
-            header = makeFilePath(rootDir, filePath, fileName);
+        if (!index.fits(size)) {
+            DeveloperLog.LogD("Cache", "too large to cache: " + url + ", size: " + size);
+            file.delete();
+            return false;
         }
-
-        JSONObject object = new JSONObject();
-        for (String s : HEADERS) {
-            if (headers.containsKey(s)) {
-                String value = headers.get(s).get(0);
-                String tmp = value.split(";")[0];
-                object.put(s, tmp.trim());
-            }
+        File content = index.getFile(key);
+        File parent = content.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
         }
-
-        object.put(CommonConstants.KEY_REQUEST_TIME, String.valueOf(System.currentTimeMillis()));
-        IOUtil.writeToFile(object.toString().getBytes(Charset.forName("utf-8")), header);
+        if (content.exists()) {
+            content.delete();
+        }
+        if (!file.renameTo(content)) {
+            return false;
+        }
+        return index.put(newEntry(key, size, headers));
     }
 
     /**
-     * caches file content
+     * @return dir of partly downloaded files, kept across restarts so downloads can resume
      */
-    private static boolean saveContent(Context context, String url, Response response) throws Exception {
-        File rootDir = getRootDir(context);
-        Map<String, String> urlFields = getUrlFields(url);
-        String filePath = urlFields.get("path");
-        String fileName = urlFields.get("name");
-
-        if (TextUtils.isEmpty(fileName)) {
-            return false;
-        }
-        File result = makeFilePath(rootDir, filePath, fileName);
-        if (result.length() > 0) {//if exists, delete it
-            result.delete();
-            result = makeFilePath(rootDir, filePath, fileName);
+    static File getPartialDir(Context context) {
+        // opened first: opening sets up the cache dir the partial dir is in
+        getIndex(context);
+        File dir = new File(getRootDir(context), PARTIAL_DIR_NAME);
+        if (!dir.exists()) {
+            dir.mkdirs();
         }
-        int contentLength = (int) response.headers().getContentLength();//only image and video res have value ,otherwise value = -1
-
-        return convertToResult(result, response, contentLength);
+        return dir;
     }
 
     /**
-     * gets cache file by url and suffix
+     * caches header fields of a response without content: a 304 revalidates the cached content,
+     * a redirect is recorded with its location
      */
-    public static File getCacheFile(Context context, String url, String suffix) {
-        File dir = getRootDir(context);
-        File result;
-        if (url.startsWith("http")) {
-            Map<String, String> urlFields = getUrlFields(url);
-            String filePath = urlFields.get("path");
-            String fileName = urlFields.get("name");
-            if (TextUtils.isEmpty(fileName)) {
-                return null;
-            }
-            if (!TextUtils.isEmpty(suffix)) {
-                fileName = fileName.concat(CommonConstants.FILE_HEADER_SUFFIX);
-            }
-
-            result = makeFilePath(dir, filePath, fileName, false);
-        } else {
-            Uri tmp = Uri.parse(url);
-            if (TextUtils.isEmpty(tmp.getPath())) {
-                return null;
-            }
-            if (TextUtils.isEmpty(suffix)) {
-                result = new File(tmp.getPath());
-            } else {
-                result = new File(tmp.getPath().concat(CommonConstants.FILE_HEADER_SUFFIX));
-            }
+    public static void saveHeaderFields(Context context, String url, Response response) throws Exception {
+        Headers headers = response.headers();
+        if (headers == null || headers.isEmpty()) {
+            return;
+        }
+        CacheIndex index = getIndex(context);
+        String key = getKey(context, url);
+        if (index == null || key == null) {
+            return;
+        }
+        CacheIndex.Entry old = index.get(key);
+        long size = old != null && response.code() == 304 ? old.size : 0;
+        if (size == 0 && old != null && old.size > 0) {
+            // the content doesn't belong to this response anymore
+            index.getFile(key).delete();
+        }
+        CacheIndex.Entry entry = newEntry(key, size, headers);
+        if (old != null && response.code() == 304) {
+            // a 304 may leave out validators the cached content still has
+            entry = new CacheIndex.Entry(key, size, entry.requestTime, entry.maxAge,
+                    TextUtils.isEmpty(entry.eTag) ? old.eTag : entry.eTag,
+                    TextUtils.isEmpty(entry.lastModified) ? old.lastModified : entry.lastModified,
+                    TextUtils.isEmpty(entry.contentType) ? old.contentType : entry.contentType,
+                    entry.location);
         }
-        DeveloperLog.LogD("result:" + result.toString());
-        updateFileTime(result);
-        return result;
+        index.put(entry);
     }
 
     /**
-     * Returns value from file for key
+     * Returns a cached header of url
+     *
+     * @param name one of CommonConstants.KEY_ETAG, KEY_LAST_MODIFIED, KEY_CONTENT_TYPE, KEY_LOCATION
+     * @return the value, empty if url isn't cached or had no such header
      */
-    public static String getValueFromFile(File file, String key) throws Exception {
-        updateFileTime(file);
-        InputStream inputStream = IOUtil.getFileInputStream(file);
-        if (inputStream == null) {
+    public static String getHeader(Context context, String url, String name) {
+        CacheIndex index = getIndex(context);
+        String key = getKey(context, url);
+        if (index == null || key == null) {
             return "";
         }
-        String values = IOUtil.toString(inputStream);
-        if (TextUtils.isEmpty(values)) {
+        CacheIndex.Entry entry = index.get(key);
+        if (entry == null) {
             return "";
         }
-        String tmp = values.substring(values.indexOf("{"), values.lastIndexOf("}") + 1);
-        JSONObject object = new JSONObject(tmp);
-        return object.optString(key);
-    }
-
-    /**
-     * updates file's last modify time
-     */
-    private static void updateFileTime(File file) {
-        if (file != null && file.exists()) {
-            long newModifiedTime = System.currentTimeMillis();
-            file.setLastModified(newModifiedTime);
+        if (CommonConstants.KEY_ETAG.equals(name)) {
+            return entry.eTag;
+        } else if (CommonConstants.KEY_LAST_MODIFIED.equals(name)) {
+            return entry.lastModified;
+        } else if (CommonConstants.KEY_CONTENT_TYPE.equals(name)) {
+            return entry.contentType;
+        } else if (CommonConstants.KEY_LOCATION.equals(name)) {
+            return entry.location;
         }
+        return "";
     }
 
     /**
-     * Stores received data to file
+     * @return true if url was cached as a redirect
      */
-    private static boolean convertToResult(File result, Response response, int length) throws
-            Exception {
-        boolean success;
-        InputStream in = response.body().stream();
-        IOUtil.writeToFile(in, result);
-        IOUtil.closeQuietly(in);
-        if (length <= 0) {
-            success = result.length() > 0;
-        } else {
-            success = result.length() == length;
-        }
-        return success;
+    public static boolean isRedirect(Context context, String url) {
+        return !TextUtils.isEmpty(getHeader(context, url, CommonConstants.KEY_LOCATION));
     }
 
     /**
-     * creates cache root dir
+     * Removes url and its content from the cache
      */
-    private static void createCacheRootDir(Context context) {
-        File root = context.getCacheDir();
-
-        String path = root.getAbsolutePath() + File.separator + FILE_DIR_NAME;
-
-        File file = new File(path);
-        if (!file.exists()) {
-            file.mkdirs();
+    public static void remove(Context context, String url) {
+        CacheIndex index = getIndex(context);
+        String key = getKey(context, url);
+        if (index != null && key != null) {
+            index.remove(key);
         }
     }
 
     /**
-     * checks free space, if not enough in cache left, deletes files by LRU
+     * gets cache file by url
      */
-    private static void freeSpaceIfNeeded(Context context) {
-        File dir = getRootDir(context);
-        File[] files = dir.listFiles();
-        if (files == null) {
-            return;
+    public static File getCacheFile(Context context, String url) {
+        CacheIndex index = getIndex(context);
+        String key = getKey(context, url);
+        if (index == null || key == null) {
+            return null;
         }
+        // marks the entry as used
+        index.get(key);
+        return index.getFile(key);
+    }
 
-        int dirSize = 0;
-        for (File file : files) {
-            dirSize += file.length();
-        }
-        // if the dir size is larger than 100MB
-        // frees 40% space
-        if (dirSize > FREE_SD_SPACE_NEEDED_TO_CACHE) {
-            // delete 40% files by LRU
-            int removeFactor = (int) ((0.4 * files.length) + 1);
-            // sort the files by modify time
-            Arrays.sort(files, new FileLastModifySort());
-            // delete files
-            for (int i = 0; i < removeFactor; i++) {
-                files[i].delete();
-            }
-        }
+    private static CacheIndex.Entry newEntry(String key, long size, Headers headers) {
+        return new CacheIndex.Entry(key, size, System.currentTimeMillis(),
+                getMaxAge(getFirst(headers, CommonConstants.KEY_CACHE_CONTROL)),
+                getFirst(headers, CommonConstants.KEY_ETAG),
+                getFirst(headers, CommonConstants.KEY_LAST_MODIFIED),
+                getFirst(headers, CommonConstants.KEY_CONTENT_TYPE),
+                getFirst(headers, CommonConstants.KEY_LOCATION));
     }
 
-    /**
-     * gets request interval
-     */
-    private static long getRequestInterval(File header) throws Exception {
-        String requestTime = getValueFromFile(header, CommonConstants.KEY_REQUEST_TIME);
-        if (TextUtils.isEmpty(requestTime)) {
-            return 0;
+    private static String getFirst(Headers headers, String name) {
+        List<String> values = headers.get(name);
+        if (values == null || values.isEmpty() || values.get(0) == null) {
+            return "";
         }
-        return System.currentTimeMillis() - Long.parseLong(requestTime);
+        return values.get(0).split(";")[0].trim();
     }
 
     /**
      * gets cache max-age
      */
-    private static long getMaxAge(File header) throws Exception {
+    private static long getMaxAge(String cacheControl) {
         long maxAge = 0;
-        String cacheControl = getValueFromFile(header, CommonConstants.KEY_CACHE_CONTROL);
         if (!TextUtils.isEmpty(cacheControl)) {
             if (cacheControl.contains(CommonConstants.KEY_MAX_AGE)) {
                 String[] tmp = cacheControl.split(",");
                 for (String s : tmp) {
                     if (s.contains(CommonConstants.KEY_MAX_AGE)) {
-                        maxAge = Long.parseLong(s.split("=")[1]) * 1000;
+                        try {
+                            maxAge = Long.parseLong(s.split("=")[1].trim()) * 1000;
+                        } catch (Exception ignored) {
+                        }
                     }
                 }
             }
@@ -353,68 +342,58 @@ public final class Cache {
         }
     }
 
+    /**
+     * Index key of url: its content file path relative to the cache dir. A local url must point
+     * into the cache dir.
+     *
+     * @return the key, null if url can't be cached
+     */
+    private static String getKey(Context context, String url) {
+        if (TextUtils.isEmpty(url)) {
+            return null;
+        }
+        String key;
+        if (url.startsWith("http")) {
+            Map<String, String> urlFields = getUrlFields(url);
+            String filePath = urlFields.get("path");
+            String fileName = urlFields.get("name");
+            if (TextUtils.isEmpty(fileName)) {
+                return null;
+            }
+            key = filePath + fileName;
+        } else {
+            if (context == null) {
+                context = AdtUtil.getInstance().getApplicationContext();
+                if (context == null) {
+                    return null;
+                }
+            }
+            String path = Uri.parse(url).getPath();
+            String root = getRootDir(context).getAbsolutePath() + File.separator;
+            if (TextUtils.isEmpty(path) || !path.startsWith(root)) {
+                return null;
+            }
+            key = path.substring(root.length());
+        }
+        // keys are journal fields
+        if (key.indexOf('\t') >= 0 || key.indexOf('\n') >= 0 || key.indexOf('\r') >= 0) {
+            return null;
+        }
+        return key;
+    }
+
     private static Map<String, String> getUrlFields(String url) {
         Map<String, String> urlFields = new HashMap<>();
         Uri uri = Uri.parse(url);
         String host = uri.getHost();
         String md5Host = Encrypter.md5(host);
-        DeveloperLog.LogD("url host : " + host);
         String path = uri.getPath();
         if (!TextUtils.isEmpty(path)) {
             String filePath = path.substring(0, path.lastIndexOf("/"));
-            DeveloperLog.LogD("url path : " + filePath);
             String fileName = path.substring(path.lastIndexOf("/"));
-            DeveloperLog.LogD("url name : " + fileName);
             urlFields.put("path", md5Host.concat(filePath));
             urlFields.put("name", fileName);
         }
         return urlFields;
     }
-
-    private static File makeFilePath(File root, String filePath, String fileName) {
-        return makeFilePath(root, filePath, fileName, true);
-    }
-
-    private static File makeFilePath(File root, String filePath, String fileName, boolean create) {
-        File file = null;
-        makeRootDirectory(root, filePath);
-        try {
-            file = new File(root, filePath + fileName);
-            if (create && !file.exists()) {
-                file.createNewFile();
-            }
-        } catch (Exception e) {
-            DeveloperLog.LogE("error:", e);
-        }
-        return file;
-    }
-
-    /**
-     * 生成文件夹
-     */
-    public static void makeRootDirectory(File root, String filePath) {
-        try {
-            File file = new File(root, filePath);
-            if (!file.exists()) {
-                file.mkdirs();
-            }
-        } catch (Exception e) {
-            DeveloperLog.LogE("error:", e);
-        }
-    }
-
-    /**
-     * Compares with lastModified
-     */
-    private static class FileLastModifySort implements Comparator<File> {
-        public int compare(File arg0, File arg1) {
-            if (arg0.lastModified() > arg1.lastModified()) {
-                return 1;
-            } else if (arg0.lastModified() == arg1.lastModified()) {
-                return 0;
-            } else {
-                return -1;
-            }
-        }
-    }
 }
@@ -0,0 +1,493 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.crosspromotion.sdk.utils;
+
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.constant.CommonConstants;
+import com.openmediation.sdk.utils.crash.CrashUtil;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the creative cache, kept in least recently used order and backed by an
+ * append-only journal in the cache dir.
+ * <p>
+ * The journal holds one line per change: "PUT" with every field of an entry, or "DEL" with a key. It's
+ * replayed on open and rewritten from the index once it has collected more stale lines than live ones.
+ * Without a usable journal, e.g. the first start after an upgrade from the journal-less cache, the index
+ * is rebuilt from the files in the cache dir: size and mtime, and the validators of an old "-header"
+ * file if there is one. Rebuilt entries are stale, so they're revalidated rather than downloaded again.
+ * Hits only update the in-memory order, it's written back when the journal is rewritten.
+ * <p>
+ * An entry larger than the whole budget is refused, and a put never evicts the entry it adds.
+ */
+final class CacheIndex {
+    private static final String JOURNAL = "journal";
+    private static final String JOURNAL_TMP = "journal.tmp";
+    private static final String MAGIC = "omcache 1";
+    private static final String TMP_DIR = "tmp";
+    private static final String PUT = "PUT";
+    private static final String DEL = "DEL";
+    private static final int MIN_STALE_LINES = 500;
+
+    private final File mDir;
+    private final File mTmpDir;
+    //dirs under mDir that aren't cache content, left alone when the index is rebuilt
+    private final String[] mReservedDirs;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(64, 0.75f, true);
+    private long mSize;
+    private long mMaxSize;
+    private int mStaleLines;
+    private Writer mJournal;
+    private int mTmpCount;
+
+    /**
+     * @param reservedDirs names of dirs under dir that hold no cache content
+     */
+    CacheIndex(File dir, long maxSize, String... reservedDirs) {
+        mDir = dir;
+        mTmpDir = new File(dir, TMP_DIR);
+        mMaxSize = maxSize;
+        mReservedDirs = reservedDirs;
+        open();
+    }
+
+    /**
+     * @return the entry, marked as used, null if not cached
+     */
+    synchronized Entry get(String key) {
+        return mEntries.get(key);
+    }
+
+    /**
+     * @return false if content of this size can't be cached at all
+     */
+    synchronized boolean fits(long size) {
+        return size <= mMaxSize;
+    }
+
+    /**
+     * Adds or replaces an entry, then evicts least recently used entries above the budget, the new
+     * entry aside
+     *
+     * @return false if the entry is larger than the budget and wasn't added
+     */
+    synchronized boolean put(Entry entry) {
+        if (!fits(entry.size)) {
+            DeveloperLog.LogD("CacheIndex refused: " + entry.key + ", size: " + entry.size);
+            remove(entry.key);
+            return false;
+        }
+        Entry old = mEntries.put(entry.key, entry);
+        if (old != null) {
+            mSize -= old.size;
+            mStaleLines++;
+        }
+        mSize += entry.size;
+        append(PUT + "\t" + entry.toLine());
+        trimToSize(entry.key);
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Removes an entry and its content file
+     */
+    synchronized void remove(String key) {
+        Entry old = mEntries.remove(key);
+        if (old == null) {
+            return;
+        }
+        delete(old);
+        compactIfNeeded();
+    }
+
+    synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(null);
+        compactIfNeeded();
+    }
+
+    synchronized long size() {
+        return mSize;
+    }
+
+    /**
+     * @return a new file to download into, renamed into place once complete. Left-overs of a killed
+     * process are deleted on the next open
+     */
+    synchronized File newTmpFile() {
+        if (!mTmpDir.exists()) {
+            mTmpDir.mkdirs();
+        }
+        return new File(mTmpDir, System.currentTimeMillis() + "-" + (mTmpCount++));
+    }
+
+    File getFile(String key) {
+        return new File(mDir, key);
+    }
+
+    /**
+     * @param keep key of an entry not to evict, null for none
+     */
+    private void trimToSize(String keep) {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            if (eldest.key.equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            DeveloperLog.LogD("CacheIndex evict: " + eldest.key + ", size: " + eldest.size);
+            delete(eldest);
+        }
+    }
+
+    private void delete(Entry entry) {
+        mSize -= entry.size;
+        File file = getFile(entry.key);
+        if (file.exists() && !file.delete()) {
+            DeveloperLog.LogD("CacheIndex delete failed: " + file);
+        }
+        // the PUT and this line are both stale from now on
+        mStaleLines += 2;
+        append(DEL + "\t" + entry.key);
+    }
+
+    private void open() {
+        if (!mDir.exists()) {
+            mDir.mkdirs();
+        }
+        deleteContents(mTmpDir);
+        File journal = new File(mDir, JOURNAL);
+        if (!journal.exists() || !replay(journal)) {
+            DeveloperLog.LogD("CacheIndex no usable journal, rebuilding from " + mDir);
+            mEntries.clear();
+            mSize = 0;
+            rebuild();
+            DeveloperLog.LogD("CacheIndex rebuilt, entries: " + mEntries.size() + ", size: " + mSize);
+            trimToSize(null);
+            rewrite();
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            // written to the journal but the content is gone, cleared by the system or the user
+            if (entry.size > 0 && !getFile(entry.key).exists()) {
+                iterator.remove();
+                mSize -= entry.size;
+                mStaleLines++;
+            }
+        }
+        DeveloperLog.LogD("CacheIndex opened, entries: " + mEntries.size() + ", size: " + mSize);
+        if (mSize > mMaxSize || mStaleLines > 0) {
+            trimToSize(null);
+            rewrite();
+        } else {
+            openWriter(true);
+        }
+    }
+
+    /**
+     * @return false if the journal isn't one of ours. A truncated last line is dropped
+     */
+    private boolean replay(File journal) {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal),
+                    CommonConstants.CHARTSET_UTF8));
+            if (!MAGIC.equals(reader.readLine())) {
+                return false;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (PUT.equals(fields[0])) {
+                    Entry entry = Entry.fromFields(fields);
+                    if (entry == null) {
+                        mStaleLines++;
+                        break;
+                    }
+                    Entry old = mEntries.put(entry.key, entry);
+                    if (old != null) {
+                        mSize -= old.size;
+                        mStaleLines++;
+                    }
+                    mSize += entry.size;
+                } else if (DEL.equals(fields[0]) && fields.length == 2) {
+                    Entry old = mEntries.remove(fields[1]);
+                    if (old != null) {
+                        mSize -= old.size;
+                    }
+                    mStaleLines += 2;
+                } else {
+                    mStaleLines++;
+                    break;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            DeveloperLog.LogD("CacheIndex replay", e);
+            return false;
+        } finally {
+            IOUtil.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Indexes the content files under the cache dir, least recently modified first
+     */
+    private void rebuild() {
+        List<File> files = new ArrayList<>();
+        File[] children = mDir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                String name = child.getName();
+                if (JOURNAL.equals(name) || JOURNAL_TMP.equals(name) || TMP_DIR.equals(name) || isReserved(name)) {
+                    continue;
+                }
+                collectFiles(child, files);
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        String root = mDir.getPath() + File.separator;
+        for (File file : files) {
+            String path = file.getPath();
+            if (path.endsWith(CommonConstants.FILE_HEADER_SUFFIX) || !path.startsWith(root)) {
+                continue;
+            }
+            Entry entry = fromHeaderFile(path.substring(root.length()), file.length(), file.lastModified(),
+                    new File(path + CommonConstants.FILE_HEADER_SUFFIX));
+            mEntries.put(entry.key, entry);
+            mSize += entry.size;
+        }
+        // validators are in the index now
+        for (File file : files) {
+            if (file.getPath().endsWith(CommonConstants.FILE_HEADER_SUFFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    private boolean isReserved(String name) {
+        if (mReservedDirs != null) {
+            for (String dir : mReservedDirs) {
+                if (dir.equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void collectFiles(File file, List<File> files) {
+        if (!file.isDirectory()) {
+            if (file.length() > 0) {
+                files.add(file);
+            }
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            collectFiles(child, files);
+        }
+    }
+
+    /**
+     * @return a stale entry for a content file, with the validators of the header file the cache used
+     * to keep next to it, if it's there and readable
+     */
+    private static Entry fromHeaderFile(String key, long size, long modified, File header) {
+        String eTag = null;
+        String lastModified = null;
+        String contentType = null;
+        if (header.exists()) {
+            InputStream input = null;
+            try {
+                input = new FileInputStream(header);
+                String values = IOUtil.toString(input);
+                JSONObject object = new JSONObject(values.substring(values.indexOf('{'),
+                        values.lastIndexOf('}') + 1));
+                eTag = object.optString(CommonConstants.KEY_ETAG);
+                lastModified = object.optString(CommonConstants.KEY_LAST_MODIFIED);
+                contentType = object.optString(CommonConstants.KEY_CONTENT_TYPE);
+            } catch (Exception e) {
+                DeveloperLog.LogD("CacheIndex read header: " + header, e);
+            } finally {
+                IOUtil.closeQuietly(input);
+            }
+        }
+        return new Entry(key, size, modified, 0, eTag, lastModified, contentType, null);
+    }
+
+    private void compactIfNeeded() {
+        if (mStaleLines >= MIN_STALE_LINES && mStaleLines >= mEntries.size()) {
+            rewrite();
+        }
+    }
+
+    /**
+     * Writes the index to a new journal, least recently used entry first, and swaps it in
+     */
+    private void rewrite() {
+        IOUtil.closeQuietly(mJournal);
+        mJournal = null;
+        File tmp = new File(mDir, JOURNAL_TMP);
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp),
+                    CommonConstants.CHARTSET_UTF8));
+            writer.write(MAGIC);
+            writer.write('\n');
+            for (Entry entry : mEntries.values()) {
+                writer.write(PUT + "\t" + entry.toLine());
+                writer.write('\n');
+            }
+            writer.close();
+            writer = null;
+            File journal = new File(mDir, JOURNAL);
+            if (!tmp.renameTo(journal)) {
+                journal.delete();
+                tmp.renameTo(journal);
+            }
+            mStaleLines = 0;
+        } catch (Exception e) {
+            DeveloperLog.LogD("CacheIndex rewrite", e);
+            CrashUtil.getSingleton().saveException(e);
+        } finally {
+            IOUtil.closeQuietly(writer);
+        }
+        openWriter(true);
+    }
+
+    private void openWriter(boolean append) {
+        try {
+            mJournal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(mDir, JOURNAL), append),
+                    CommonConstants.CHARTSET_UTF8));
+        } catch (Exception e) {
+            DeveloperLog.LogD("CacheIndex open journal", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+    }
+
+    private void append(String line) {
+        if (mJournal == null) {
+            return;
+        }
+        try {
+            mJournal.write(line);
+            mJournal.write('\n');
+            mJournal.flush();
+        } catch (Exception e) {
+            DeveloperLog.LogD("CacheIndex append", e);
+        }
+    }
+
+    private static void deleteContents(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteContents(file);
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * One cached url: size of its content file and the response headers needed to revalidate it
+     */
+    static final class Entry {
+        private static final int FIELDS = 9;
+
+        /**
+         * content file path, relative to the cache dir
+         */
+        final String key;
+        final long size;
+        /**
+         * when the response was received, or last revalidated
+         */
+        final long requestTime;
+        /**
+         * milliseconds the content is fresh for after requestTime
+         */
+        final long maxAge;
+        final String eTag;
+        final String lastModified;
+        final String contentType;
+        final String location;
+
+        Entry(String key, long size, long requestTime, long maxAge, String eTag, String lastModified,
+              String contentType, String location) {
+            this.key = key;
+            this.size = size;
+            this.requestTime = requestTime;
+            this.maxAge = maxAge;
+            this.eTag = clean(eTag);
+            this.lastModified = clean(lastModified);
+            this.contentType = clean(contentType);
+            this.location = clean(location);
+        }
+
+        boolean isFresh(long now) {
+            return now - requestTime < maxAge;
+        }
+
+        String toLine() {
+            return key + "\t" + size + "\t" + requestTime + "\t" + maxAge + "\t" + eTag + "\t" + lastModified
+                    + "\t" + contentType + "\t" + location;
+        }
+
+        static Entry fromFields(String[] fields) {
+            if (fields.length != FIELDS) {
+                return null;
+            }
+            try {
+                return new Entry(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                        Long.parseLong(fields[4]), fields[5], fields[6], fields[7], fields[8]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        // tabs and line breaks would break the journal line
+        private static String clean(String value) {
+            if (value == null) {
+                return "";
+            }
+            return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+}
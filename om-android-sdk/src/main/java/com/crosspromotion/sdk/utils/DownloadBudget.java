@@ -0,0 +1,118 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.crosspromotion.sdk.utils;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection and bandwidth budget shared by all creative downloads, apart from the request threads
+ * auctions run on, and the download counters.
+ */
+public final class DownloadBudget {
+    private static final int MAX_CONNECTIONS = 4;
+    private static final Semaphore CONNECTIONS = new Semaphore(MAX_CONNECTIONS, true);
+
+    //0 for no limit
+    private static volatile long sMaxBytesPerSecond;
+    private static long sWindowStart;
+    private static long sWindowBytes;
+
+    private static final AtomicLong BYTES = new AtomicLong();
+    private static final AtomicLong RESUMED_BYTES = new AtomicLong();
+    private static final AtomicLong COMPLETED = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+    private static final AtomicLong SEGMENTED = new AtomicLong();
+
+    private DownloadBudget() {
+    }
+
+    /**
+     * Caps the download bandwidth of all creative downloads together
+     *
+     * @param maxBytesPerSecond the cap, 0 for none
+     */
+    public static void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        sMaxBytesPerSecond = Math.max(0, maxBytesPerSecond);
+    }
+
+    static void acquireConnection() throws InterruptedException {
+        CONNECTIONS.acquire();
+    }
+
+    static void releaseConnection() {
+        CONNECTIONS.release();
+    }
+
+    /**
+     * Counts bytes just read, and sleeps while the bandwidth cap of the current second is used up
+     */
+    static void onRead(int bytes) throws InterruptedException {
+        BYTES.addAndGet(bytes);
+        long max = sMaxBytesPerSecond;
+        if (max <= 0) {
+            return;
+        }
+        long sleep;
+        synchronized (DownloadBudget.class) {
+            long now = SystemClock.elapsedRealtime();
+            if (now - sWindowStart >= 1000) {
+                sWindowStart = now;
+                sWindowBytes = 0;
+            }
+            sWindowBytes += bytes;
+            sleep = sWindowBytes > max ? sWindowStart + 1000 - now : 0;
+        }
+        if (sleep > 0) {
+            Thread.sleep(sleep);
+        }
+    }
+
+    static void onResumed(long bytes) {
+        RESUMED_BYTES.addAndGet(bytes);
+    }
+
+    static void onSegmented() {
+        SEGMENTED.incrementAndGet();
+    }
+
+    static void onFinished(boolean success) {
+        if (success) {
+            COMPLETED.incrementAndGet();
+        } else {
+            FAILED.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return bytes downloaded
+     */
+    public static long getBytes() {
+        return BYTES.get();
+    }
+
+    /**
+     * @return bytes not downloaded again because a download resumed
+     */
+    public static long getResumedBytes() {
+        return RESUMED_BYTES.get();
+    }
+
+    public static long getCompleted() {
+        return COMPLETED.get();
+    }
+
+    public static long getFailed() {
+        return FAILED.get();
+    }
+
+    /**
+     * @return downloads fetched in parallel segments
+     */
+    public static long getSegmented() {
+        return SEGMENTED.get();
+    }
+}
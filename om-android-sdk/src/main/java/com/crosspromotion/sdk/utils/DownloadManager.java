@@ -4,7 +4,7 @@ import android.text.TextUtils;
 
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 
 import java.io.File;
 import java.util.List;
@@ -12,6 +12,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
 
 public class DownloadManager {
 
@@ -40,11 +41,11 @@ public class DownloadManager {
         }
         if (Cache.existCache(AdtUtil.getInstance().getApplicationContext(), url)) {
             if (listener != null) {
-                listener.onCompleted(url, Cache.getCacheFile(AdtUtil.getInstance().getApplicationContext(), url, null));
+                listener.onCompleted(url, Cache.getCacheFile(AdtUtil.getInstance().getApplicationContext(), url));
             }
             return;
         }
-        WorkExecutor.execute(new Runnable() {
+        ScheduledFuture<?> task = LaneExecutor.execute(LaneExecutor.Lane.DOWNLOAD, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -72,6 +73,10 @@ public class DownloadManager {
                 }
             }
         });
+        if (task == null && listener != null) {
+            // the download lane is full
+            listener.onCompleted(url, null);
+        }
     }
 
 
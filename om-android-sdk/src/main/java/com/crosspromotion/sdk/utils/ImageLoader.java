@@ -0,0 +1,210 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.crosspromotion.sdk.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.LruCache;
+
+import com.openmediation.sdk.utils.DeveloperLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes creatives for the size they are shown at and keeps them in a memory LRU shared by all ads.
+ * <p>
+ * Bounds are read first and the image is sampled down to the target size, opaque formats decode to
+ * RGB_565. An ad holds a reference on each bitmap it shows, {@link #load} takes it and
+ * {@link #release} drops it. A bitmap that is neither referenced nor cached goes to a small pool and
+ * its memory is reused by the next decode through inBitmap; a referenced one may still be on screen
+ * and is left alone. Loads do disk reads and decoding, keep them off the main thread.
+ */
+public final class ImageLoader {
+    private static final int MAX_POOLED = 4;
+
+    private final LruCache<String, Bitmap> mCache;
+    //references held by ads, by bitmap
+    private final Map<Bitmap, Integer> mRefs = new IdentityHashMap<>();
+    //bitmaps in mCache, by bitmap
+    private final Map<Bitmap, String> mCached = new IdentityHashMap<>();
+    private final List<Bitmap> mPool = new ArrayList<>();
+
+    private static final class ImageLoaderHolder {
+        private static final ImageLoader INSTANCE = new ImageLoader();
+    }
+
+    private ImageLoader() {
+        // an ad sdk gets a modest share of the app's heap
+        int maxSize = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, 16 * 1024 * 1024);
+        mCache = new LruCache<String, Bitmap>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return byteCount(value);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                synchronized (ImageLoader.this) {
+                    mCached.remove(oldValue);
+                    if (!mRefs.containsKey(oldValue)) {
+                        recycle(oldValue);
+                    }
+                }
+            }
+        };
+    }
+
+    public static ImageLoader getInstance() {
+        return ImageLoaderHolder.INSTANCE;
+    }
+
+    /**
+     * Returns file decoded for a target size, from memory if it was decoded for that size before,
+     * and takes a reference on it
+     *
+     * @param file      the image file
+     * @param maxWidth  target width in pixels, 0 for any
+     * @param maxHeight target height in pixels, 0 for any
+     * @return the bitmap, null if file isn't a decodable image
+     */
+    public Bitmap load(File file, int maxWidth, int maxHeight) {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        String key = file.getAbsolutePath() + "#" + file.length() + "#" + maxWidth + "x" + maxHeight;
+        Bitmap bitmap;
+        synchronized (this) {
+            bitmap = mCache.get(key);
+            if (bitmap != null) {
+                retain(bitmap);
+                return bitmap;
+            }
+        }
+        bitmap = decode(file, maxWidth, maxHeight);
+        if (bitmap == null) {
+            return null;
+        }
+        synchronized (this) {
+            retain(bitmap);
+            mCached.put(bitmap, key);
+            mCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Drops a reference taken by {@link #load}
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        Integer refs = mRefs.get(bitmap);
+        if (refs == null) {
+            return;
+        }
+        if (refs > 1) {
+            mRefs.put(bitmap, refs - 1);
+            return;
+        }
+        mRefs.remove(bitmap);
+        if (!mCached.containsKey(bitmap)) {
+            recycle(bitmap);
+        }
+    }
+
+    private void retain(Bitmap bitmap) {
+        Integer refs = mRefs.get(bitmap);
+        mRefs.put(bitmap, refs == null ? 1 : refs + 1);
+    }
+
+    /**
+     * Keeps a bitmap nobody uses for reuse by a later decode
+     */
+    private void recycle(Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        if (mPool.size() >= MAX_POOLED) {
+            mPool.remove(0);
+        }
+        mPool.add(bitmap);
+    }
+
+    /**
+     * @return a pooled bitmap the decode can write into, null if none fits
+     */
+    private synchronized Bitmap takeReusable(BitmapFactory.Options options) {
+        int width = options.outWidth / options.inSampleSize;
+        int height = options.outHeight / options.inSampleSize;
+        Iterator<Bitmap> iterator = mPool.iterator();
+        while (iterator.hasNext()) {
+            Bitmap candidate = iterator.next();
+            boolean isFit;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                int bytes = width * height * (options.inPreferredConfig == Bitmap.Config.RGB_565 ? 2 : 4);
+                isFit = candidate.getAllocationByteCount() >= bytes;
+            } else {
+                // before KitKat only an unsampled decode of the very same size can reuse a bitmap
+                isFit = options.inSampleSize == 1 && candidate.getWidth() == width
+                        && candidate.getHeight() == height && candidate.getConfig() == options.inPreferredConfig;
+            }
+            if (isFit) {
+                iterator.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private Bitmap decode(File file, int maxWidth, int maxHeight) {
+        String path = file.getAbsolutePath();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = maxWidth > 0 || maxHeight > 0
+                ? ImageUtils.calculateInSampleSize(options, Math.max(1, maxWidth), Math.max(1, maxHeight)) : 1;
+        // jpeg has no alpha channel, half the memory of ARGB_8888
+        options.inPreferredConfig = "image/jpeg".equals(options.outMimeType)
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        Bitmap reusable = takeReusable(options);
+        options.inBitmap = reusable;
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // the pooled bitmap didn't fit after all
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFile(path, options);
+        } catch (OutOfMemoryError e) {
+            DeveloperLog.LogD("ImageLoader decode out of memory: " + path);
+            synchronized (this) {
+                mCache.evictAll();
+                mPool.clear();
+            }
+            return null;
+        }
+        DeveloperLog.LogD("ImageLoader decoded " + options.outWidth + "x" + options.outHeight + "/"
+                + options.inSampleSize + (bitmap != null && bitmap == reusable ? " into a reused bitmap" : "") + ": " + path);
+        return bitmap;
+    }
+
+    private static int byteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
@@ -192,7 +192,7 @@ public final class ImageUtils {
      * @param maxHeight The maximum height.
      * @return the sample size
      */
-    private static int calculateInSampleSize(final BitmapFactory.Options options,
+    static int calculateInSampleSize(final BitmapFactory.Options options,
                                              final int maxWidth,
                                              final int maxHeight) {
         int height = options.outHeight;
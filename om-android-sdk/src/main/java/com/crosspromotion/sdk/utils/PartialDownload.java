@@ -0,0 +1,263 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.crosspromotion.sdk.utils;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.constant.CommonConstants;
+import com.openmediation.sdk.utils.request.network.Headers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * A download in progress, kept in the partial dir so it can resume after a failure or a restart.
+ * <p>
+ * The content is split into segments of fixed ranges, each written to its own part file, so the
+ * length of a part is how far its segment got. A meta file holds the total length, the validator
+ * sent as If-Range, and the headers the cache entry is made from.
+ */
+final class PartialDownload {
+    private static final String META_SUFFIX = ".meta";
+    private static final String PART_SUFFIX = ".part";
+    //partial downloads not touched for this long are deleted
+    private static final long MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+
+    private static final String KEY_TOTAL = "total";
+    private static final String KEY_SEGMENTS = "segments";
+    private static final String[] HEADERS = new String[]{
+            CommonConstants.KEY_ETAG,
+            CommonConstants.KEY_LAST_MODIFIED,
+            CommonConstants.KEY_CACHE_CONTROL,
+            CommonConstants.KEY_CONTENT_TYPE
+    };
+
+    private final File mDir;
+    private final String mName;
+    private final Properties mMeta = new Properties();
+    private long mTotal = -1;
+    private int mSegments = 1;
+
+    private PartialDownload(File dir, String name) {
+        mDir = dir;
+        mName = name;
+    }
+
+    /**
+     * @return the download of url, started or not
+     */
+    static PartialDownload open(Context context, String url) {
+        PartialDownload partial = new PartialDownload(Cache.getPartialDir(context), Encrypter.md5(url));
+        partial.load();
+        return partial;
+    }
+
+    /**
+     * Deletes partial downloads not touched for MAX_AGE
+     */
+    static void deleteExpired(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (now - file.lastModified() > MAX_AGE) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @return true if there is something to resume
+     */
+    boolean isStarted() {
+        return mTotal > 0 && !TextUtils.isEmpty(getValidator());
+    }
+
+    /**
+     * Starts over: drops what was downloaded and records the new content
+     *
+     * @param total    content length
+     * @param segments number of segments to split the content into
+     * @param headers  response headers, a validator among them
+     */
+    void reset(long total, int segments, Headers headers) {
+        delete();
+        mTotal = total;
+        mSegments = Math.max(1, segments);
+        mMeta.clear();
+        mMeta.setProperty(KEY_TOTAL, String.valueOf(total));
+        mMeta.setProperty(KEY_SEGMENTS, String.valueOf(mSegments));
+        for (String name : HEADERS) {
+            String value = headers.getFirst(name);
+            if (!TextUtils.isEmpty(value)) {
+                mMeta.setProperty(name, value);
+            }
+        }
+        save();
+    }
+
+    /**
+     * @return the ETag, or Last-Modified if there is none
+     */
+    String getValidator() {
+        String eTag = mMeta.getProperty(CommonConstants.KEY_ETAG);
+        return !TextUtils.isEmpty(eTag) ? eTag : mMeta.getProperty(CommonConstants.KEY_LAST_MODIFIED, "");
+    }
+
+    /**
+     * @return the headers the content came with, for the cache entry
+     */
+    Headers getHeaders() {
+        Headers headers = new Headers();
+        for (String name : HEADERS) {
+            String value = mMeta.getProperty(name);
+            if (!TextUtils.isEmpty(value)) {
+                headers.set(name, value);
+            }
+        }
+        return headers;
+    }
+
+    long getTotal() {
+        return mTotal;
+    }
+
+    int getSegments() {
+        return mSegments;
+    }
+
+    /**
+     * @return first byte of a segment
+     */
+    long start(int segment) {
+        return segment * (mTotal / mSegments);
+    }
+
+    /**
+     * @return end of a segment, exclusive
+     */
+    long end(int segment) {
+        return segment == mSegments - 1 ? mTotal : start(segment + 1);
+    }
+
+    File part(int segment) {
+        return new File(mDir, mName + PART_SUFFIX + segment);
+    }
+
+    /**
+     * @return bytes of a segment on disk
+     */
+    long progress(int segment) {
+        return Math.min(part(segment).length(), end(segment) - start(segment));
+    }
+
+    boolean isDone(int segment) {
+        return part(segment).length() == end(segment) - start(segment);
+    }
+
+    /**
+     * @return bytes of all segments on disk
+     */
+    long received() {
+        long received = 0;
+        for (int i = 0; i < mSegments; i++) {
+            received += progress(i);
+        }
+        return received;
+    }
+
+    /**
+     * Joins the parts into the first one
+     *
+     * @return the complete content, null if a segment isn't done
+     */
+    File assemble() throws Exception {
+        for (int i = 0; i < mSegments; i++) {
+            if (!isDone(i)) {
+                return null;
+            }
+        }
+        File first = part(0);
+        if (mSegments > 1) {
+            OutputStream out = new FileOutputStream(first, true);
+            try {
+                byte[] buffer = new byte[16 * 1024];
+                for (int i = 1; i < mSegments; i++) {
+                    InputStream in = new FileInputStream(part(i));
+                    try {
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally {
+                        IOUtil.closeQuietly(in);
+                    }
+                }
+            } finally {
+                IOUtil.closeQuietly(out);
+            }
+            for (int i = 1; i < mSegments; i++) {
+                part(i).delete();
+            }
+        }
+        if (first.length() != mTotal) {
+            return null;
+        }
+        return first;
+    }
+
+    /**
+     * Deletes the meta and all parts
+     */
+    void delete() {
+        new File(mDir, mName + META_SUFFIX).delete();
+        for (int i = 0; i < mSegments; i++) {
+            part(i).delete();
+        }
+    }
+
+    private void load() {
+        File meta = new File(mDir, mName + META_SUFFIX);
+        if (!meta.exists()) {
+            return;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(meta);
+            mMeta.load(in);
+            mTotal = Long.parseLong(mMeta.getProperty(KEY_TOTAL, "-1"));
+            mSegments = Math.max(1, Integer.parseInt(mMeta.getProperty(KEY_SEGMENTS, "1")));
+            // keeps it from expiring while it's being resumed
+            meta.setLastModified(System.currentTimeMillis());
+        } catch (Exception e) {
+            DeveloperLog.LogD("PartialDownload load", e);
+            mMeta.clear();
+            mTotal = -1;
+            mSegments = 1;
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    private void save() {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(new File(mDir, mName + META_SUFFIX));
+            mMeta.store(out, null);
+        } catch (Exception e) {
+            DeveloperLog.LogD("PartialDownload save", e);
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+}
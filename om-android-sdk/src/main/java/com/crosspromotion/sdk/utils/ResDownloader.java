@@ -9,18 +9,46 @@ import android.text.TextUtils;
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.network.AdRequest;
+import com.openmediation.sdk.utils.request.network.Request;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Response;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ResDownloader {
+    private static final int CONNECT_TIMEOUT = 30 * 1000;
+    //per read: a stalled download fails early and resumes where it stopped
+    private static final int READ_TIMEOUT = 60 * 1000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_REDIRECTS = 5;
+    //content of at least this size is fetched in MAX_SEGMENTS parallel ranges
+    private static final long SEGMENT_MIN_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 3;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final String KEY_ACCEPT_RANGES = "Accept-Ranges";
+    private static final String KEY_IF_RANGE = "If-Range";
+    //how long a caller waits for someone else's download of the same url before fetching it itself
+    private static final long WAIT_TIMEOUT = 2 * 60 * 1000;
+
+    //downloads in progress by url, a caller asking for one of them waits for it instead of downloading again
+    private static final Map<String, Download> DOWNLOADING = new HashMap<>();
 
     static boolean downloadFile(List<String> urls, List<String> necessaryRes) throws Exception {
         int failSize = 0;
@@ -39,65 +67,362 @@ public class ResDownloader {
         if (TextUtils.isEmpty(url)) {
             return null;
         }
+        Download download;
+        boolean isOwner = false;
+        synchronized (DOWNLOADING) {
+            download = DOWNLOADING.get(url);
+            if (download == null) {
+                download = new Download();
+                DOWNLOADING.put(url, download);
+                isOwner = true;
+            }
+        }
+        if (!isOwner) {
+            DeveloperLog.LogD("ResDownLoader", "url is : " + url + " already downloading, waiting");
+            if (download.latch.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                return download.file;
+            }
+            // the other download is stuck, don't hang the caller with it
+            DeveloperLog.LogD("ResDownLoader", "url is : " + url + " wait timed out, fetching directly");
+            Context context = AdtUtil.getInstance().getApplicationContext();
+            if (Cache.existCache(context, url)) {
+                return Cache.getCacheFile(context, url);
+            }
+            return fetch(url);
+        }
+        try {
+            download.file = fetch(url);
+            return download.file;
+        } finally {
+            synchronized (DOWNLOADING) {
+                DOWNLOADING.remove(url);
+            }
+            download.latch.countDown();
+        }
+    }
+
+    /**
+     * Downloads url, following redirects. A failed attempt is retried and resumes from what is on disk.
+     */
+    private static File fetch(String url) throws Exception {
+        String current = url;
+        for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+            Outcome outcome = null;
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                outcome = fetchOnce(current);
+                if (!outcome.retry) {
+                    break;
+                }
+                DeveloperLog.LogD("ResDownLoader", "url is : " + current + " attempt " + attempt + " failed");
+            }
+            if (outcome.redirect == null) {
+                DownloadBudget.onFinished(outcome.file != null);
+                return outcome.file;
+            }
+            current = outcome.redirect;
+        }
+        DownloadBudget.onFinished(false);
+        return null;
+    }
+
+    private static Outcome fetchOnce(String url) throws Exception {
+        Context context = AdtUtil.getInstance().getApplicationContext();
+        PartialDownload partial = PartialDownload.open(context, url);
+        if (partial.isStarted()) {
+            long received = partial.received();
+            DeveloperLog.LogD("ResDownLoader", "url is : " + url + " resuming at " + received + "/" + partial.getTotal());
+            DownloadBudget.onResumed(received);
+            return finish(context, url, partial, dispatch(url, partial, 0));
+        }
+        List<Segment> segments = null;
         Response response = null;
+        DownloadBudget.acquireConnection();
         try {
-            response = AdRequest.get().url(url).connectTimeout(30 * 1000).readTimeout(10 * 60 * 1000)
-                    .headers(getCacheHeaders(AdtUtil.getInstance().getApplicationContext(), url)).syncRequest();
+            response = AdRequest.get().url(url).connectTimeout(CONNECT_TIMEOUT).readTimeout(READ_TIMEOUT)
+                    .headers(getCacheHeaders(context, url))
+                    .priority(Request.Priority.DOWNLOAD).syncRequest();
 
             if (response == null) {
-                return null;
+                return Outcome.retry();
             }
             int code = response.code();
             if (code == HttpURLConnection.HTTP_OK) {
-                boolean success = Cache.saveFile(AdtUtil.getInstance().getApplicationContext(), url, response);
-                if (success) {
-                    return Cache.getCacheFile(AdtUtil.getInstance().getApplicationContext(), url, null);
-                } else {
+                Headers headers = response.headers();
+                long length = headers.getContentLength();
+                boolean isResumable = length > 0 && (!TextUtils.isEmpty(headers.getFirst(CommonConstants.KEY_ETAG))
+                        || !TextUtils.isEmpty(headers.getFirst(CommonConstants.KEY_LAST_MODIFIED)));
+                if (!isResumable) {
+                    // nothing to resume against, downloaded in one go
+                    if (Cache.saveFile(context, url, response)) {
+                        return Outcome.done(Cache.getCacheFile(context, url));
+                    }
                     deleteFileWhenError(url);
-                    return null;
+                    return Outcome.done(null);
                 }
+                boolean isRanged = "bytes".equalsIgnoreCase(headers.getFirst(KEY_ACCEPT_RANGES));
+                int count = isRanged && length >= SEGMENT_MIN_SIZE ? MAX_SEGMENTS : 1;
+                partial.reset(length, count, headers);
+                if (count > 1) {
+                    DownloadBudget.onSegmented();
+                }
+                // the others get their own range requests, started before this response is read
+                segments = dispatch(url, partial, 1);
+                // the first segment comes off this response, reading stops at its end
+                receive(response.body().stream(), partial, 0);
             } else if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {//文件内容无需更新，但是更新一下header
-                Cache.saveHeaderFields(AdtUtil.getInstance().getApplicationContext(), url, response);
-                return Cache.getCacheFile(AdtUtil.getInstance().getApplicationContext(), url, null);
+                Cache.saveHeaderFields(context, url, response);
+                return Outcome.done(Cache.getCacheFile(context, url));
             } else if (code == 301 || code == 302 || code == 303 || code == 307) {
-                Cache.saveHeaderFields(AdtUtil.getInstance().getApplicationContext(), url, response);
+                Cache.saveHeaderFields(context, url, response);
                 String redirectUrl = response.headers().getLocation();
                 URL u = new URL(new URL(url), redirectUrl);
                 DeveloperLog.LogD("ResDownLoader", "redirect url is : " + u.toString());
-                return downloadFile(u.toString());
+                return Outcome.redirect(u.toString());
             } else {
                 deleteFileWhenError(url);
-                return null;
+                return Outcome.done(null);
+            }
+        } catch (IOException e) {
+            // broken off mid-body, what was written is kept for the retry
+            DeveloperLog.LogD("ResDownLoader", "url is : " + url + " " + e.getMessage());
+            if (segments == null) {
+                return Outcome.retry();
             }
+            // the dispatched segments are waited for below, a retry must not fetch them a second time
         } finally {
             DeveloperLog.LogD("ResDownLoader", "url is : " + url + " finally close response");
             IOUtil.closeQuietly(response);
+            DownloadBudget.releaseConnection();
         }
+        return finish(context, url, partial, segments);
     }
 
-    private static void deleteFileWhenError(String url) {
-        File content = Cache.getCacheFile(AdtUtil.getInstance().getApplicationContext(), url, null);
-        if (content != null && content.exists()) {
-            DeveloperLog.LogD("ResDownLoader", "delete content file when error : " + content.delete());
+    /**
+     * Starts fetching the segments not done yet, from index first on
+     *
+     * @return the segments, to be passed to finish
+     */
+    private static List<Segment> dispatch(String url, PartialDownload partial, int first) {
+        List<Segment> segments = new ArrayList<>();
+        for (int i = first; i < partial.getSegments(); i++) {
+            if (!partial.isDone(i)) {
+                segments.add(new Segment(url, partial, i));
+            }
         }
-        File header = Cache.getCacheFile(AdtUtil.getInstance().getApplicationContext(), url, CommonConstants.FILE_HEADER_SUFFIX);
-        if (header != null && header.exists()) {
-            DeveloperLog.LogD("ResDownLoader", "delete header file when error : " + header.delete());
+        // offered to the download lane, the first one only if this thread isn't busy with segment 0:
+        // finish takes whatever the lane hasn't started yet, so nothing waits on a task stuck in the queue
+        for (int i = first == 0 ? 1 : 0; i < segments.size(); i++) {
+            LaneExecutor.execute(LaneExecutor.Lane.DOWNLOAD, segments.get(i));
         }
+        return segments;
     }
 
-    private static Headers getCacheHeaders(Context context, String url) throws Exception {
+    /**
+     * Waits for the dispatched segments and caches the content once all segments are done
+     */
+    private static Outcome finish(Context context, String url, PartialDownload partial, List<Segment> segments)
+            throws Exception {
+        for (Segment segment : segments) {
+            segment.run();
+        }
+        boolean isChanged = false;
+        boolean isFailed = false;
+        for (Segment segment : segments) {
+            segment.await();
+            isChanged |= segment.result == Segment.CHANGED;
+            isFailed |= segment.result != Segment.DONE;
+        }
+        for (int i = 0; i < partial.getSegments(); i++) {
+            // segment 0 read off the first response has no Segment
+            isFailed |= !partial.isDone(i);
+        }
+        if (isChanged) {
+            DeveloperLog.LogD("ResDownLoader", "url is : " + url + " changed on the server, starting over");
+            partial.delete();
+            return Outcome.retry();
+        }
+        if (isFailed) {
+            DeveloperLog.LogD("ResDownLoader", "url is : " + url + " progress " + partial.received() + "/"
+                    + partial.getTotal());
+            return Outcome.retry();
+        }
+        File file = partial.assemble();
+        if (file == null || !Cache.commitFile(context, url, file, partial.getHeaders())) {
+            partial.delete();
+            deleteFileWhenError(url);
+            return Outcome.done(null);
+        }
+        partial.delete();
+        return Outcome.done(Cache.getCacheFile(context, url));
+    }
+
+    /**
+     * Requests the rest of one segment with Range and If-Range
+     */
+    private static int fetchSegment(String url, PartialDownload partial, int segment) throws Exception {
+        if (partial.part(segment).length() > partial.end(segment) - partial.start(segment)) {
+            partial.part(segment).delete();
+        }
+        long from = partial.start(segment) + partial.progress(segment);
         Headers headers = HeaderUtils.getBaseHeaders();
-        File header = Cache.getCacheFile(context, url, CommonConstants.FILE_HEADER_SUFFIX);
-        if (header != null && header.exists()) {
-            String eTag = Cache.getValueFromFile(header, CommonConstants.KEY_ETAG);
-            if (!TextUtils.isEmpty(eTag)) {
-                headers.set(CommonConstants.KEY_IF_NONE_MATCH, eTag);
-            } else {
-                String lastModified = Cache.getValueFromFile(header, CommonConstants.KEY_LAST_MODIFIED);
-                if (!TextUtils.isEmpty(lastModified)) {
-                    headers.set(CommonConstants.KEY_IF_MODIFIED_SINCE, lastModified);
+        headers.set(Headers.KEY_RANGE, "bytes=" + from + "-" + (partial.end(segment) - 1));
+        headers.set(KEY_IF_RANGE, partial.getValidator());
+        Response response = null;
+        DownloadBudget.acquireConnection();
+        try {
+            response = AdRequest.get().url(url).connectTimeout(CONNECT_TIMEOUT).readTimeout(READ_TIMEOUT)
+                    .headers(headers).priority(Request.Priority.DOWNLOAD).syncRequest();
+            if (response == null) {
+                return Segment.FAILED;
+            }
+            if (response.code() == HttpURLConnection.HTTP_OK) {
+                // If-Range didn't match, the whole new content was sent instead of the range
+                return Segment.CHANGED;
+            }
+            if (response.code() != HttpURLConnection.HTTP_PARTIAL || !startsAt(response.headers(), from)) {
+                return Segment.FAILED;
+            }
+            receive(response.body().stream(), partial, segment);
+            return partial.isDone(segment) ? Segment.DONE : Segment.FAILED;
+        } catch (IOException e) {
+            DeveloperLog.LogD("ResDownLoader", "url is : " + url + " segment " + segment + " " + e.getMessage());
+            return Segment.FAILED;
+        } finally {
+            IOUtil.closeQuietly(response);
+            DownloadBudget.releaseConnection();
+        }
+    }
+
+    /**
+     * Appends the body to a segment's part, up to the end of the segment
+     */
+    private static void receive(InputStream in, PartialDownload partial, int segment) throws Exception {
+        long remaining = partial.end(segment) - partial.start(segment) - partial.progress(segment);
+        OutputStream out = new FileOutputStream(partial.part(segment), true);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    break;
                 }
+                out.write(buffer, 0, read);
+                remaining -= read;
+                DownloadBudget.onRead(read);
+            }
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    /**
+     * @return true if Content-Range ("bytes 100-199/1000") starts at from
+     */
+    private static boolean startsAt(Headers headers, long from) {
+        String range = headers.getContentRange();
+        if (TextUtils.isEmpty(range)) {
+            return false;
+        }
+        try {
+            String value = range.trim();
+            if (value.startsWith("bytes")) {
+                value = value.substring(5).trim();
+            }
+            return Long.parseLong(value.substring(0, value.indexOf('-')).trim()) == from;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static final class Outcome {
+        private File file;
+        private String redirect;
+        private boolean retry;
+
+        static Outcome done(File file) {
+            Outcome outcome = new Outcome();
+            outcome.file = file;
+            return outcome;
+        }
+
+        static Outcome redirect(String url) {
+            Outcome outcome = new Outcome();
+            outcome.redirect = url;
+            return outcome;
+        }
+
+        static Outcome retry() {
+            Outcome outcome = new Outcome();
+            outcome.retry = true;
+            return outcome;
+        }
+    }
+
+    /**
+     * One segment to fetch, run by whichever thread claims it first
+     */
+    private static final class Segment implements Runnable {
+        static final int FAILED = 0;
+        static final int DONE = 1;
+        static final int CHANGED = 2;
+
+        private final String url;
+        private final PartialDownload partial;
+        private final int index;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile int result = FAILED;
+
+        Segment(String url, PartialDownload partial, int index) {
+            this.url = url;
+            this.partial = partial;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result = fetchSegment(url, partial, index);
+            } catch (Exception e) {
+                DeveloperLog.LogD("ResDownLoader", e);
+                result = FAILED;
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        void await() throws InterruptedException {
+            finished.await();
+        }
+    }
+
+    private static final class Download {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile File file;
+    }
+
+    private static void deleteFileWhenError(String url) {
+        DeveloperLog.LogD("ResDownLoader", "remove from cache when error : " + url);
+        Cache.remove(AdtUtil.getInstance().getApplicationContext(), url);
+    }
+
+    private static Headers getCacheHeaders(Context context, String url) throws Exception {
+        Headers headers = HeaderUtils.getBaseHeaders();
+        // a 304 is only of use with the content at hand
+        File content = Cache.getCacheFile(context, url);
+        if (content == null || !content.exists()) {
+            return headers;
+        }
+        String eTag = Cache.getHeader(context, url, CommonConstants.KEY_ETAG);
+        if (!TextUtils.isEmpty(eTag)) {
+            headers.set(CommonConstants.KEY_IF_NONE_MATCH, eTag);
+        } else {
+            String lastModified = Cache.getHeader(context, url, CommonConstants.KEY_LAST_MODIFIED);
+            if (!TextUtils.isEmpty(lastModified)) {
+                headers.set(CommonConstants.KEY_IF_MODIFIED_SINCE, lastModified);
             }
         }
         return headers;
@@ -14,7 +14,6 @@ import com.openmediation.sdk.utils.IOUtil;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 
-import java.io.File;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
@@ -38,21 +37,14 @@ public final class ResUtil {
             if (i != -1) url = url.substring(0, i);
 
             //Check redirect location
-            File headerFile = Cache.getCacheFile(view.getContext(), url, CommonConstants.FILE_HEADER_SUFFIX);
-            if (headerFile == null || !headerFile.exists()) {
+            if (Cache.isRedirect(view.getContext(), url)) {
                 return null;
-            } else {
-                String location = Cache.getValueFromFile(headerFile, CommonConstants.KEY_LOCATION);
-                if (!TextUtils.isEmpty(location)) {
-                    return null;
-                }
             }
 
             if (Cache.existCache(view.getContext(), url)) {
                 DeveloperLog.LogD("exist:" + url);
                 try {
-//                    File header = Cache.getCacheFile(view.getContext().getApplicationContext(), url, Constants.FILE_HEADER_SUFFIX);
-                    String mime_type = Cache.getValueFromFile(headerFile, CommonConstants.KEY_CONTENT_TYPE);
+                    String mime_type = Cache.getHeader(view.getContext(), url, CommonConstants.KEY_CONTENT_TYPE);
 
                     if (TextUtils.isEmpty(mime_type)) {//checks the mimeType obtained from the header
                         String extension = MimeTypeMap.getFileExtensionFromUrl(url);
@@ -65,7 +57,7 @@ public final class ResUtil {
 
                     if (!TextUtils.isEmpty(mime_type)) {//re-checks the mimeType in order to not load pure text files
                         InputStream input = IOUtil.getFileInputStream(Cache.getCacheFile(view.getContext().getApplicationContext(),
-                                url, null));
+                                url));
                         if (input == null) {
                             return null;
                         }
@@ -4,8 +4,7 @@ import android.text.TextUtils;
 
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.Gzip;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.constant.KeyConstants;
@@ -15,18 +14,18 @@ import com.openmediation.sdk.utils.model.PlacementInfo;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
 import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
+import com.openmediation.sdk.utils.request.network.JsonRequestBody;
+import com.openmediation.sdk.utils.request.network.RequestBody;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Request;
 
 import org.json.JSONObject;
 
-import java.nio.charset.Charset;
 
 public class PayloadHelper {
 
     public static void payloadRequest(final PlacementInfo info, final String payload, final Request.OnRequestCallback callback) throws Exception {
-        WorkExecutor.execute(new Runnable() {
+        LaneExecutor.execute(LaneExecutor.Lane.AUCTION, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -36,12 +35,12 @@ public class PayloadHelper {
                         return;
                     }
                     String url = buildCPPlUrl(config.getApi().getCppl());
-                    byte[] bytes = buildPlRequestBody(info, payload);
+                    RequestBody requestBody = buildPlRequestBody(info, payload);
 
-                    ByteRequestBody requestBody = new ByteRequestBody(bytes);
                     Headers headers = HeaderUtils.getBaseHeaders();
                     AdRequest.post().url(url).body(requestBody).headers(headers).connectTimeout(30000).readTimeout(60000)
-                            .callback(callback).performRequest(AdtUtil.getInstance().getApplicationContext());
+                            .callback(callback).priority(Request.Priority.AUCTION)
+                            .performRequest(AdtUtil.getInstance().getApplicationContext());
                 } catch (Exception e) {
                     DeveloperLog.LogE("CrossPromotion SDK Payload Error: " + e.getMessage());
                     CrashUtil.getSingleton().saveException(e);
@@ -66,7 +65,7 @@ public class PayloadHelper {
         return host + "?" + request;
     }
 
-    private static byte[] buildPlRequestBody(PlacementInfo info, String token) throws Exception {
+    private static RequestBody buildPlRequestBody(PlacementInfo info, String token) throws Exception {
         JSONObject body = RequestBuilder.getRequestBodyBaseJson();
         body.put("pid", info.getId());
         body.put("token", token);
@@ -76,6 +75,6 @@ public class PayloadHelper {
         if (info.getHeight() != 0) {
             body.put(KeyConstants.RequestBody.KEY_H, info.getHeight());
         }
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName("UTF-8")));
+        return new JsonRequestBody(body);
     }
 }
@@ -8,8 +8,7 @@ import android.text.TextUtils;
 import com.crosspromotion.sdk.utils.PUtils;
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.Gzip;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.constant.KeyConstants;
@@ -21,13 +20,13 @@ import com.openmediation.sdk.utils.model.PlacementInfo;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
 import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
+import com.openmediation.sdk.utils.request.network.JsonRequestBody;
+import com.openmediation.sdk.utils.request.network.RequestBody;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Request;
 
 import org.json.JSONObject;
 
-import java.nio.charset.Charset;
 import java.util.Map;
 
 
@@ -46,7 +45,7 @@ public class WaterFallHelper {
     public static void wfRequest(final PlacementInfo info, final int loadType,
                                  final Request.OnRequestCallback callback, final Map<String, Object> extras) throws Exception {
 
-        WorkExecutor.execute(new Runnable() {
+        LaneExecutor.execute(LaneExecutor.Lane.AUCTION, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -56,17 +55,17 @@ public class WaterFallHelper {
                         return;
                     }
                     String url = buildCPCLUrl(config.getApi().getCpcl());
-                    byte[] bytes = buildClRequestBody(extras, info.getId(),
+                    RequestBody requestBody = buildClRequestBody(extras, info.getId(),
                             String.valueOf(info.getWidth()),
                             String.valueOf(info.getHeight()),
                             String.valueOf(PUtils.getPlacementImprCount(info.getId())),
                             String.valueOf(IapHelper.getIap()),
                             String.valueOf(loadType));
 
-                    ByteRequestBody requestBody = new ByteRequestBody(bytes);
                     Headers headers = HeaderUtils.getBaseHeaders();
                     AdRequest.post().url(url).body(requestBody).headers(headers).connectTimeout(30000).readTimeout(60000)
-                            .callback(callback).performRequest(AdtUtil.getInstance().getApplicationContext());
+                            .callback(callback).priority(Request.Priority.AUCTION).coalesce(true)
+                            .performRequest(AdtUtil.getInstance().getApplicationContext());
                 } catch (Exception e) {
                     DeveloperLog.LogE("CrossPromotionSDK WaterFall Error: " + e.getMessage());
                     CrashUtil.getSingleton().saveException(e);
@@ -92,13 +91,13 @@ public class WaterFallHelper {
     }
 
     /**
-     * Build wf request body byte [ ].
+     * Build wf request body.
      *
      * @param extras the extras
-     * @return the byte [ ]
+     * @return the request body
      * @throws Exception the exception
      */
-    private static byte[] buildClRequestBody(Map<String, Object> map, String... extras) throws Exception {
+    private static RequestBody buildClRequestBody(Map<String, Object> map, String... extras) throws Exception {
         JSONObject body = RequestBuilder.getRequestBodyBaseJson();
         body.put(KeyConstants.RequestBody.KEY_PID, extras[0]);
         if (!"0".equals(extras[1])) {
@@ -119,7 +118,9 @@ public class WaterFallHelper {
                 body.put(KeyConstants.RequestBody.KEY_REQ_ID, map.get("AuctionId"));
             }
         }
-        DeveloperLog.LogD("request cp/cl params : " + body.toString());
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName("UTF-8")));
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("request cp/cl params : " + body.toString());
+        }
+        return new JsonRequestBody(body);
     }
 }
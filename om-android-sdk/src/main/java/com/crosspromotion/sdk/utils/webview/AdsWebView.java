@@ -5,7 +5,6 @@ package com.crosspromotion.sdk.utils.webview;
 
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.HandlerUtil;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 
 public class AdsWebView {
@@ -26,27 +25,16 @@ public class AdsWebView {
 
 
     public void init() {
-        HandlerUtil.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    if (mAdView == null || isDestroyed) {
-                        mAdView = new BaseWebView(AdtUtil.getInstance().getApplicationContext());
-                    }
-                    isDestroyed = false;
-                    mAdView.loadUrl("about:blank");
-                } catch (Throwable e) {
-                    DeveloperLog.LogD("AdsWebView", e);
-                    CrashUtil.getSingleton().saveException(e);
-                }
-            }
-        });
+        WebViewPool.getInstance().init(AdtUtil.getInstance().getApplicationContext());
     }
 
+    /**
+     * Main thread only
+     */
     public BaseWebView getAdView() {
-        if (isDestroyed) {
-            init();
-            return mAdView;
+        if (mAdView == null || isDestroyed) {
+            mAdView = WebViewPool.getInstance().acquire();
+            isDestroyed = false;
         }
         return mAdView;
     }
@@ -55,12 +43,16 @@ public class AdsWebView {
         if (baseWebView == null) {
             return;
         }
-        baseWebView.removeAllViews();
-        baseWebView.removeJavascriptInterface(jsName);
-        baseWebView.setWebViewClient(null);
-        baseWebView.setWebChromeClient(null);
-        baseWebView.freeMemory();
-        baseWebView.destroy();
+        try {
+            baseWebView.removeJavascriptInterface(jsName);
+            WebViewPool.getInstance().recycle(baseWebView);
+        } catch (Throwable e) {
+            DeveloperLog.LogD("AdsWebView", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+        if (baseWebView == mAdView) {
+            mAdView = null;
+        }
         isDestroyed = true;
     }
 }
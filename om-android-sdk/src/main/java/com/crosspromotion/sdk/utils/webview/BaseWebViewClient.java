@@ -28,6 +28,12 @@ public class BaseWebViewClient extends WebViewClient {
         mPkgName = pkgName;
     }
 
+    @Override
+    public void onPageFinished(WebView view, String url) {
+        super.onPageFinished(view, url);
+        WebViewPool.getInstance().onPageFinished(view, url);
+    }
+
     @Override
     public boolean shouldOverrideUrlLoading(WebView view, String url) {
         try {
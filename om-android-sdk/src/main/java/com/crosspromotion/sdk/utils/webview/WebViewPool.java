@@ -0,0 +1,287 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.crosspromotion.sdk.utils.webview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.webkit.CookieManager;
+import android.webkit.WebStorage;
+import android.webkit.WebView;
+
+import com.openmediation.sdk.utils.AdtUtil;
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.HandlerUtil;
+import com.openmediation.sdk.utils.crash.CrashUtil;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Pool of ready WebViews for ad rendering.
+ * <p>
+ * Creating the first WebView of a process starts Chromium, which takes hundreds of milliseconds on the
+ * main thread. The pool creates its WebViews while the main thread is idle, one per idle pass, so an
+ * ad only pays for loading its own page. WebViews are reset and put back when an ad is done with
+ * them, and dropped when the system asks for memory. Everything runs on the main thread.
+ * <p>
+ * Cookies and web storage are shared by every WebView of the process, the host app's included, so a
+ * recycled WebView only has those of the origin its ad page was loaded from cleared, not all of them.
+ */
+public final class WebViewPool implements ComponentCallbacks2 {
+    private static final int DEFAULT_MAX_SIZE = 2;
+    private static final String BLANK = "about:blank";
+
+    private final LinkedList<BaseWebView> mIdle = new LinkedList<>();
+    //acquire time of WebViews yet to render a page, for time-to-render
+    private final Map<BaseWebView, Long> mAcquired = new IdentityHashMap<>();
+    private Context mContext;
+    private int mMaxSize = DEFAULT_MAX_SIZE;
+    private boolean isWarmUpScheduled;
+
+    private long mHits;
+    private long mMisses;
+    private long mRenders;
+    private long mRenderMillis;
+
+    private static final class WebViewPoolHolder {
+        private static final WebViewPool INSTANCE = new WebViewPool();
+    }
+
+    private WebViewPool() {
+    }
+
+    public static WebViewPool getInstance() {
+        return WebViewPoolHolder.INSTANCE;
+    }
+
+    /**
+     * Starts filling the pool once the main thread is idle
+     */
+    public void init(final Context context) {
+        if (context == null) {
+            return;
+        }
+        HandlerUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mContext == null) {
+                    mContext = context.getApplicationContext();
+                    mContext.registerComponentCallbacks(WebViewPool.this);
+                }
+                scheduleWarmUp();
+            }
+        });
+    }
+
+    /**
+     * Sets how many idle WebViews are kept ready
+     *
+     * @param maxSize pool size, 0 to create WebViews on demand only
+     */
+    public void setMaxSize(final int maxSize) {
+        HandlerUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mMaxSize = Math.max(0, maxSize);
+                trimToSize(mMaxSize);
+                scheduleWarmUp();
+            }
+        });
+    }
+
+    /**
+     * Takes a WebView from the pool, or creates one if it's empty. Main thread only
+     */
+    public BaseWebView acquire() {
+        BaseWebView webView = mIdle.poll();
+        if (webView != null) {
+            mHits++;
+            // the blank page has loaded by now, this leaves nothing of the previous ad to go back to
+            webView.clearHistory();
+        } else {
+            mMisses++;
+            webView = new BaseWebView(mContext != null ? mContext : AdtUtil.getInstance().getApplicationContext());
+        }
+        mAcquired.put(webView, SystemClock.elapsedRealtime());
+        scheduleWarmUp();
+        return webView;
+    }
+
+    /**
+     * Resets a WebView an ad is done with and puts it back, destroys it if the pool is full.
+     * Main thread only
+     */
+    public void recycle(BaseWebView webView) {
+        if (webView == null) {
+            return;
+        }
+        mAcquired.remove(webView);
+        try {
+            String url = webView.getUrl();
+            webView.stopLoading();
+            clearSiteData(url);
+            ViewParent parent = webView.getParent();
+            if (parent instanceof ViewGroup) {
+                ((ViewGroup) parent).removeView(webView);
+            }
+            webView.removeAllViews();
+            webView.removeJavascriptInterface("sdk");
+            webView.removeJavascriptInterface("playin");
+            webView.setWebViewClient(null);
+            webView.setWebChromeClient(null);
+            webView.setBackgroundColor(Color.WHITE);
+            webView.scrollTo(0, 0);
+            if (mIdle.size() >= mMaxSize || mIdle.contains(webView)) {
+                destroy(webView);
+                return;
+            }
+            // unloads the ad, and the interfaces removed above with it
+            webView.loadUrl(BLANK);
+            webView.clearHistory();
+            mIdle.add(webView);
+        } catch (Throwable e) {
+            DeveloperLog.LogD("WebViewPool recycle", e);
+            CrashUtil.getSingleton().saveException(e);
+            destroy(webView);
+        }
+    }
+
+    /**
+     * Records time-to-render of the first page an acquired WebView finishes
+     */
+    void onPageFinished(WebView view, String url) {
+        if (!(view instanceof BaseWebView) || url == null || url.startsWith(BLANK)) {
+            return;
+        }
+        Long acquired = mAcquired.remove(view);
+        if (acquired == null) {
+            return;
+        }
+        long millis = SystemClock.elapsedRealtime() - acquired;
+        mRenders++;
+        mRenderMillis += millis;
+        DeveloperLog.LogD("WebViewPool rendered in " + millis + "ms, hits: " + mHits + ", misses: " + mMisses);
+    }
+
+    /**
+     * @return WebViews handed out from the pool
+     */
+    public long getHits() {
+        return mHits;
+    }
+
+    /**
+     * @return WebViews created on demand because the pool was empty
+     */
+    public long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return average milliseconds from acquiring a WebView to its ad page finishing, 0 if none yet
+     */
+    public long getAverageRenderMillis() {
+        return mRenders == 0 ? 0 : mRenderMillis / mRenders;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // UI_HIDDEN only means the app went to the background, not that memory is short
+        if (level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN) {
+            DeveloperLog.LogD("WebViewPool trim, level: " + level);
+            trimToSize(0);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trimToSize(0);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private void scheduleWarmUp() {
+        if (isWarmUpScheduled || mContext == null || mIdle.size() >= mMaxSize) {
+            return;
+        }
+        isWarmUpScheduled = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (mIdle.size() >= mMaxSize) {
+                    isWarmUpScheduled = false;
+                    return false;
+                }
+                try {
+                    BaseWebView webView = new BaseWebView(mContext);
+                    webView.loadUrl(BLANK);
+                    mIdle.add(webView);
+                } catch (Throwable e) {
+                    // no WebView on this device, or it's being updated
+                    DeveloperLog.LogD("WebViewPool warm up", e);
+                    isWarmUpScheduled = false;
+                    return false;
+                }
+                isWarmUpScheduled = mIdle.size() < mMaxSize;
+                return isWarmUpScheduled;
+            }
+        });
+    }
+
+    private void trimToSize(int size) {
+        while (mIdle.size() > size) {
+            destroy(mIdle.removeLast());
+        }
+    }
+
+    /**
+     * Deletes the cookies and web storage of the origin of url
+     */
+    private static void clearSiteData(String url) {
+        if (url == null || url.startsWith(BLANK)) {
+            return;
+        }
+        Uri uri = Uri.parse(url);
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            return;
+        }
+        try {
+            String origin = uri.getScheme() + "://" + uri.getHost() + (uri.getPort() != -1 ? ":" + uri.getPort() : "");
+            WebStorage.getInstance().deleteOrigin(origin);
+            CookieManager cookieManager = CookieManager.getInstance();
+            String cookies = cookieManager.getCookie(url);
+            if (cookies == null) {
+                return;
+            }
+            // no per-site delete, each cookie is expired instead
+            for (String cookie : cookies.split(";")) {
+                int index = cookie.indexOf('=');
+                String name = (index >= 0 ? cookie.substring(0, index) : cookie).trim();
+                if (!name.isEmpty()) {
+                    cookieManager.setCookie(url, name + "=; Expires=Thu, 01 Jan 1970 00:00:00 GMT");
+                }
+            }
+        } catch (Throwable e) {
+            DeveloperLog.LogD("WebViewPool clear site data", e);
+        }
+    }
+
+    private static void destroy(BaseWebView webView) {
+        try {
+            webView.destroy();
+        } catch (Throwable ignored) {
+        }
+    }
+}
@@ -24,6 +24,7 @@ import com.crosspromotion.sdk.utils.webview.BaseWebView;
 import com.crosspromotion.sdk.utils.webview.BaseWebViewClient;
 import com.crosspromotion.sdk.utils.webview.JsBridge;
 import com.crosspromotion.sdk.utils.webview.JsBridgeConstants;
+import com.crosspromotion.sdk.utils.webview.WebViewPool;
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DensityUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
@@ -91,7 +92,6 @@ public final class PromotionAdView implements JsBridge.MessageListener {
             public void run() {
                 try {
                     createWebView();
-                    mAdView.loadUrl("about:blank");
                 } catch (Throwable e) {
                     DeveloperLog.LogD("PromotionAdView", e);
                     CrashUtil.getSingleton().saveException(e);
@@ -104,7 +104,7 @@ public final class PromotionAdView implements JsBridge.MessageListener {
         if (mAdView == null) {
             synchronized (PromotionAdView.class) {
                 if (mAdView == null) {
-                    mAdView = new BaseWebView(AdtUtil.getInstance().getApplicationContext());
+                    mAdView = WebViewPool.getInstance().acquire();
                     mAdView.setBackgroundColor(0);
                     mWebClient = new AdWebClient(AdtUtil.getInstance().getApplicationContext(), "");
                     mAdView.setWebViewClient(mWebClient);
@@ -133,7 +133,7 @@ public final class PromotionAdView implements JsBridge.MessageListener {
             mAdJsBridge.setPlacementId(placementId);
             mAdJsBridge.setCampaign(adBean.getAdString());
             mAdJsBridge.setMessageListener(this);
-            File file = Cache.getCacheFile(mAdView.getContext(), url, null);
+            File file = Cache.getCacheFile(mAdView.getContext(), url);
             String data = IOUtil.toString(IOUtil.getFileInputStream(file), CommonConstants.CHARTSET_UTF8);
             mAdView.loadDataWithBaseURL(url, data, "text/html",
                     CommonConstants.CHARTSET_UTF8, null);
@@ -213,16 +213,7 @@ public final class PromotionAdView implements JsBridge.MessageListener {
                         frameLayout.removeAllViews();
                         frameLayout = null;
                     }
-                    if (mAdView.getParent() != null) {
-                        ViewGroup parent = (ViewGroup) mAdView.getParent();
-                        parent.removeView(mAdView);
-                    }
-                    mAdView.removeAllViews();
-                    mAdView.removeJavascriptInterface("");
-                    mAdView.setWebViewClient(null);
-                    mAdView.setWebChromeClient(null);
-                    mAdView.freeMemory();
-                    mAdView.destroy();
+                    WebViewPool.getInstance().recycle(mAdView);
                     mAdView = null;
                 } catch (Throwable ignored) {
                 }
@@ -8,7 +8,6 @@ import android.util.SparseArray;
 
 import com.openmediation.sdk.banner.AdSize;
 import com.openmediation.sdk.core.InsManager;
-import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 import com.openmediation.sdk.utils.event.EventId;
@@ -16,12 +15,12 @@ import com.openmediation.sdk.utils.event.EventUploadManager;
 import com.openmediation.sdk.utils.model.Configurations;
 import com.openmediation.sdk.utils.model.BaseInstance;
 import com.openmediation.sdk.utils.model.Placement;
-import com.openmediation.sdk.utils.request.network.AdRequest;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class BidAuctionManager {
@@ -104,6 +103,10 @@ public class BidAuctionManager {
         BidS2SAuctionManager.getInstance().bid(context, placementId, reqId, adType, callback);
     }
 
+    public void s2sBid(Context context, String placementId, String reqId, int adType, Set<Integer> skipIds, AuctionCallback callback) {
+        BidS2SAuctionManager.getInstance().bid(context, placementId, reqId, adType, skipIds, callback);
+    }
+
     public void notifyWin(BaseInstance instance) {
         if (BidAdapterUtil.hasBidAdapter(instance.getMediationId())) {
             BidAdapter bidAdapter = BidAdapterUtil.getBidAdapter(instance.getMediationId());
@@ -115,7 +118,7 @@ public class BidAuctionManager {
     }
 
     void notifyWin(String url, BaseInstance instance) {
-        AdRequest.get().url(url).performRequest(AdtUtil.getInstance().getApplicationContext());
+        BidNoticeOutbox.getInstance().add(url);
         EventUploadManager.getInstance().uploadEvent(EventId.INSTANCE_BID_WIN, InsManager.buildReportData(instance));
     }
 
@@ -136,7 +139,7 @@ public class BidAuctionManager {
     }
 
     void notifyLose(String url, BaseInstance instance) {
-        AdRequest.get().url(url).performRequest(AdtUtil.getInstance().getApplicationContext());
+        BidNoticeOutbox.getInstance().add(url);
         EventUploadManager.getInstance().uploadEvent(EventId.INSTANCE_BID_LOSE, InsManager.buildReportData(instance));
     }
 
@@ -4,15 +4,14 @@
 package com.openmediation.sdk.bid;
 
 import android.content.Context;
-import android.os.Looper;
 
 import com.openmediation.sdk.banner.AdSize;
 import com.openmediation.sdk.core.InsManager;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.HandlerUtil;
 import com.openmediation.sdk.utils.JsonUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.PlacementUtils;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.TimerWheel;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 import com.openmediation.sdk.utils.event.EventId;
 import com.openmediation.sdk.utils.event.EventUploadManager;
@@ -23,16 +22,15 @@ import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class BidC2SAuctionManager {
 
     private final ConcurrentHashMap<String, List<BaseInstance>> mBidInstances;
     private final ConcurrentHashMap<String, List<BidResponse>> mInstanceBidResponse;
     private final ConcurrentHashMap<String, List<BaseInstance>> mSuccessInstances;
-    private final ConcurrentHashMap<Integer, BidTimeout> mBidTimeoutRunnable;
     private final ConcurrentHashMap<String, AuctionCallback> mBidResultCallbacks;
     private final ConcurrentHashMap<Integer, Long> mBidStartTime;
-    private final HandlerUtil.HandlerHolder mHandler;
 
     private static final class BidHolder {
         private static final BidC2SAuctionManager INSTANCE = new BidC2SAuctionManager();
@@ -42,10 +40,8 @@ public class BidC2SAuctionManager {
         mBidInstances = new ConcurrentHashMap<>();
         mInstanceBidResponse = new ConcurrentHashMap<>();
         mSuccessInstances = new ConcurrentHashMap<>();
-        mBidTimeoutRunnable = new ConcurrentHashMap<>();
         mBidResultCallbacks = new ConcurrentHashMap<>();
         mBidStartTime = new ConcurrentHashMap<>();
-        mHandler = new HandlerUtil.HandlerHolder(null, Looper.getMainLooper());
     }
 
     public static BidC2SAuctionManager getInstance() {
@@ -62,7 +58,7 @@ public class BidC2SAuctionManager {
             return;
         }
 
-        WorkExecutor.execute(new Runnable() {
+        LaneExecutor.execute(LaneExecutor.Lane.AUCTION, new Runnable() {
             @Override
             public void run() {
                 mBidInstances.put(placementId, bidInstances);
@@ -114,12 +110,11 @@ public class BidC2SAuctionManager {
     }
 
     private synchronized void bidSuccess(BaseInstance instance, BidResponse response) {
-        // TODO
-        if (instance.getBidState() != BaseInstance.BID_STATE.BID_PENDING) {
+        // the first result of a bid wins, a response after the timeout is dropped
+        if (!instance.compareAndSetBidState(BaseInstance.BID_STATE.BID_PENDING, BaseInstance.BID_STATE.BID_SUCCESS)) {
             return;
         }
         instance.setRevenue(response.getPrice());
-        instance.setBidState(BaseInstance.BID_STATE.BID_SUCCESS);
         instance.setBidResponse(response);
         JSONObject jsonObject = InsManager.buildReportData(instance);
         if (mBidStartTime != null && mBidStartTime.get(instance.getId()) != null) {
@@ -152,7 +147,9 @@ public class BidC2SAuctionManager {
 
     private synchronized void bidFailed(BaseInstance instance, String error) {
         DeveloperLog.LogD(instance + " C2S Bid Failed: " + error);
-        instance.setBidState(BaseInstance.BID_STATE.BID_FAILED);
+        if (!instance.compareAndSetBidState(BaseInstance.BID_STATE.BID_PENDING, BaseInstance.BID_STATE.BID_FAILED)) {
+            return;
+        }
         JSONObject jsonObject = InsManager.buildReportData(instance);
         JsonUtil.put(jsonObject, "msg", error);
         if (mBidStartTime != null && mBidStartTime.get(instance.getId()) != null) {
@@ -180,20 +177,16 @@ public class BidC2SAuctionManager {
     }
 
     private void startTimeout(BaseInstance instance) {
-        BidTimeout timeout = mBidTimeoutRunnable.get(instance.getId());
+        TimerWheel.Timeout timeout = instance.getBidTimeout();
         if (timeout == null) {
-            timeout = new BidTimeout(instance);
-            mBidTimeoutRunnable.put(instance.getId(), timeout);
+            timeout = new TimerWheel.Timeout(TimerWheel.Kind.BID, new BidTimeout(instance));
+            instance.setBidTimeout(timeout);
         }
-        mHandler.postDelayed(timeout, instance.getHbt());
+        TimerWheel.getInstance().schedule(timeout, instance.getHbt(), TimeUnit.MILLISECONDS);
     }
 
     private void stopTimeout(BaseInstance instance) {
-        BidTimeout timeout = mBidTimeoutRunnable.get(instance.getId());
-        if (timeout != null) {
-            mHandler.removeCallbacks(timeout);
-            mBidTimeoutRunnable.remove(instance.getId());
-        }
+        TimerWheel.getInstance().cancel(instance.getBidTimeout());
     }
 
     private synchronized boolean isBidComplete(String placementId) {
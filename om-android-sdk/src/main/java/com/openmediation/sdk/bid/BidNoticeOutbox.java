@@ -0,0 +1,330 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.bid;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import com.openmediation.sdk.utils.AdtUtil;
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
+import com.openmediation.sdk.utils.cache.DataBaseHelper;
+import com.openmediation.sdk.utils.constant.CommonConstants;
+import com.openmediation.sdk.utils.crash.CrashUtil;
+import com.openmediation.sdk.utils.request.network.AdRequest;
+import com.openmediation.sdk.utils.request.network.Request;
+import com.openmediation.sdk.utils.request.network.Response;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbox for win/loss notice urls (nurl, lurl).
+ * <p>
+ * A notice is saved to the bid_notices table before it's sent and deleted once the server answered,
+ * so notices left by a killed process are sent on the next start. The same url is queued only once.
+ * At most MAX_CONCURRENT notices are in flight, a failed one is retried with a growing delay until
+ * MAX_ATTEMPTS or MAX_AGE.
+ */
+public final class BidNoticeOutbox {
+    private static final String TABLE_NAME = "bid_notices";
+    private static final int MAX_CONCURRENT = 4;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long MIN_RETRY_DELAY = 10 * 1000;
+    private static final long MAX_RETRY_DELAY = 30 * 60 * 1000;
+    //notices older than this are dropped, in milliseconds
+    private static final long MAX_AGE = 24 * 60 * 60 * 1000;
+
+    private SQLiteDatabase mDatabase;
+    private SQLiteStatement mInsertStatement;
+    private SQLiteStatement mDeleteStatement;
+    private SQLiteStatement mUpdateStatement;
+    private boolean isOpened;
+
+    //waiting notices by url, in arrival order
+    private final Map<String, Notice> mPending = new LinkedHashMap<>();
+    private final Map<String, Notice> mInFlight = new HashMap<>();
+    private long mScheduledAt;
+
+    private final AtomicLong mDelivered = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mTotalLatency = new AtomicLong();
+    private final AtomicLong mMaxLatency = new AtomicLong();
+
+    private final Runnable mDeliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (BidNoticeOutbox.this) {
+                mScheduledAt = 0;
+            }
+            deliver();
+        }
+    };
+
+    private static final class BidNoticeOutboxHolder {
+        private static final BidNoticeOutbox INSTANCE = new BidNoticeOutbox();
+    }
+
+    private BidNoticeOutbox() {
+    }
+
+    public static BidNoticeOutbox getInstance() {
+        return BidNoticeOutboxHolder.INSTANCE;
+    }
+
+    /**
+     * Queues a notice url
+     *
+     * @param url nurl or lurl, with the price macro already replaced
+     */
+    public void add(final String url) {
+        if (TextUtils.isEmpty(url)) {
+            return;
+        }
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, new Runnable() {
+            @Override
+            public void run() {
+                synchronized (BidNoticeOutbox.this) {
+                    open();
+                    if (mPending.containsKey(url) || mInFlight.containsKey(url)) {
+                        DeveloperLog.LogD("BidNoticeOutbox duplicate notice: " + url);
+                        return;
+                    }
+                    Notice notice = new Notice(url, System.currentTimeMillis(), 0);
+                    try {
+                        if (mInsertStatement != null) {
+                            mInsertStatement.bindString(1, url);
+                            mInsertStatement.bindLong(2, notice.createdAt);
+                            mInsertStatement.executeInsert();
+                        }
+                    } catch (Exception e) {
+                        DeveloperLog.LogD("BidNoticeOutbox add", e);
+                        CrashUtil.getSingleton().saveException(e);
+                    }
+                    mPending.put(url, notice);
+                }
+                deliver();
+            }
+        });
+    }
+
+    /**
+     * Sends waiting notices, including those saved by a previous process
+     */
+    public void flush() {
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, mDeliverRunnable);
+    }
+
+    /**
+     * @return notices the server answered
+     */
+    public long getDelivered() {
+        return mDelivered.get();
+    }
+
+    /**
+     * @return notices given up after MAX_ATTEMPTS or MAX_AGE
+     */
+    public long getDropped() {
+        return mDropped.get();
+    }
+
+    /**
+     * @return average time, in milliseconds, from queueing to the server's answer
+     */
+    public long getAvgLatency() {
+        long delivered = mDelivered.get();
+        return delivered == 0 ? 0 : mTotalLatency.get() / delivered;
+    }
+
+    public long getMaxLatency() {
+        return mMaxLatency.get();
+    }
+
+    private void deliver() {
+        List<Notice> toSend = new ArrayList<>();
+        synchronized (this) {
+            open();
+            long now = System.currentTimeMillis();
+            long nextRetry = Long.MAX_VALUE;
+            Iterator<Notice> iterator = mPending.values().iterator();
+            while (iterator.hasNext() && mInFlight.size() + toSend.size() < MAX_CONCURRENT) {
+                Notice notice = iterator.next();
+                if (notice.retryAt > now) {
+                    nextRetry = Math.min(nextRetry, notice.retryAt);
+                    continue;
+                }
+                iterator.remove();
+                toSend.add(notice);
+            }
+            for (Notice notice : toSend) {
+                mInFlight.put(notice.url, notice);
+            }
+            if (nextRetry != Long.MAX_VALUE) {
+                schedule(nextRetry);
+            }
+        }
+        for (Notice notice : toSend) {
+            send(notice);
+        }
+    }
+
+    private void send(final Notice notice) {
+        try {
+            AdRequest.get()
+                    .url(notice.url)
+                    .connectTimeout(30000)
+                    .readTimeout(30000)
+                    .instanceFollowRedirects(true)
+                    .priority(Request.Priority.REPORT)
+                    .callback(new Request.OnRequestCallback() {
+                        @Override
+                        public void onRequestSuccess(Response response) {
+                            IOUtil.closeQuietly(response);
+                            onDelivered(notice);
+                        }
+
+                        @Override
+                        public void onRequestFailed(String error) {
+                            onFailed(notice, error);
+                        }
+                    })
+                    .performRequest(AdtUtil.getInstance().getApplicationContext());
+        } catch (Exception e) {
+            DeveloperLog.LogD("BidNoticeOutbox send", e);
+            onFailed(notice, e.getMessage());
+        }
+    }
+
+    private void onDelivered(Notice notice) {
+        long latency = System.currentTimeMillis() - notice.createdAt;
+        mDelivered.incrementAndGet();
+        mTotalLatency.addAndGet(latency);
+        long max = mMaxLatency.get();
+        while (latency > max && !mMaxLatency.compareAndSet(max, latency)) {
+            max = mMaxLatency.get();
+        }
+        DeveloperLog.LogD("BidNoticeOutbox delivered in " + latency + "ms: " + notice.url);
+        synchronized (this) {
+            mInFlight.remove(notice.url);
+            delete(notice.url);
+        }
+        flush();
+    }
+
+    private void onFailed(Notice notice, String error) {
+        DeveloperLog.LogD("BidNoticeOutbox failed: " + notice.url + ", " + error);
+        synchronized (this) {
+            mInFlight.remove(notice.url);
+            notice.attempts++;
+            long now = System.currentTimeMillis();
+            if (notice.attempts >= MAX_ATTEMPTS || now - notice.createdAt > MAX_AGE) {
+                mDropped.incrementAndGet();
+                delete(notice.url);
+            } else {
+                notice.retryAt = now + Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << (notice.attempts - 1));
+                updateAttempts(notice);
+                mPending.put(notice.url, notice);
+            }
+        }
+        flush();
+    }
+
+    private void schedule(long at) {
+        if (mScheduledAt != 0 && mScheduledAt <= at) {
+            return;
+        }
+        mScheduledAt = at;
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, mDeliverRunnable,
+                Math.max(0, at - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the table on first use and queues the notices a previous process didn't send
+     */
+    private void open() {
+        if (isOpened) {
+            return;
+        }
+        isOpened = true;
+        Cursor cursor = null;
+        try {
+            DataBaseHelper helper = DataBaseHelper.getSingleton(AdtUtil.getInstance().getApplicationContext(),
+                    CommonConstants.DB_NAME, CommonConstants.DB_VERSION);
+            mDatabase = helper.getWritableDatabase();
+            mDatabase.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+                    + " (URL VARCHAR PRIMARY KEY,CREATED INTEGER,ATTEMPTS INTEGER DEFAULT 0)");
+            mInsertStatement = mDatabase.compileStatement("INSERT OR IGNORE INTO " + TABLE_NAME
+                    + "(URL,CREATED) VALUES(?,?)");
+            mDeleteStatement = mDatabase.compileStatement("DELETE FROM " + TABLE_NAME + " WHERE URL=?");
+            mUpdateStatement = mDatabase.compileStatement("UPDATE " + TABLE_NAME + " SET ATTEMPTS=? WHERE URL=?");
+            long minCreated = System.currentTimeMillis() - MAX_AGE;
+            mDatabase.execSQL("DELETE FROM " + TABLE_NAME + " WHERE CREATED<" + minCreated);
+            cursor = mDatabase.rawQuery("SELECT URL,CREATED,ATTEMPTS FROM " + TABLE_NAME + " ORDER BY CREATED", null);
+            while (cursor.moveToNext()) {
+                String url = cursor.getString(0);
+                if (!mPending.containsKey(url)) {
+                    mPending.put(url, new Notice(url, cursor.getLong(1), cursor.getInt(2)));
+                }
+            }
+            DeveloperLog.LogD("BidNoticeOutbox loaded notices: " + mPending.size());
+        } catch (Exception e) {
+            DeveloperLog.LogD("BidNoticeOutbox open", e);
+            CrashUtil.getSingleton().saveException(e);
+        } finally {
+            if (cursor != null && !cursor.isClosed()) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void delete(String url) {
+        if (mDeleteStatement == null) {
+            return;
+        }
+        try {
+            mDeleteStatement.bindString(1, url);
+            mDeleteStatement.executeUpdateDelete();
+        } catch (Exception e) {
+            DeveloperLog.LogD("BidNoticeOutbox delete", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+    }
+
+    private void updateAttempts(Notice notice) {
+        if (mUpdateStatement == null) {
+            return;
+        }
+        try {
+            mUpdateStatement.bindLong(1, notice.attempts);
+            mUpdateStatement.bindString(2, notice.url);
+            mUpdateStatement.executeUpdateDelete();
+        } catch (Exception e) {
+            DeveloperLog.LogD("BidNoticeOutbox update", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+    }
+
+    private static final class Notice {
+        private final String url;
+        private final long createdAt;
+        private int attempts;
+        private long retryAt;
+
+        Notice(String url, long createdAt, int attempts) {
+            this.url = url;
+            this.createdAt = createdAt;
+            this.attempts = attempts;
+        }
+    }
+}
@@ -8,13 +8,14 @@ import android.text.TextUtils;
 
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.InsUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.PlacementUtils;
-import com.openmediation.sdk.utils.WorkExecutor;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 import com.openmediation.sdk.utils.model.BaseInstance;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class BidS2SAuctionManager {
@@ -38,6 +39,14 @@ public class BidS2SAuctionManager {
      * s2s
      */
     public void bid(final Context context, final String placementId, final String reqId, final int adType, final AuctionCallback callback) {
+        bid(context, placementId, reqId, adType, null, callback);
+    }
+
+    /**
+     * s2s, skipping the instances which are being bid through c2s at the same time
+     */
+    public void bid(final Context context, final String placementId, final String reqId, final int adType,
+                    final Set<Integer> skipIds, final AuctionCallback callback) {
         resetBidResponse(placementId);
         ConcurrentHashMap<String, List<BaseInstance>> bidInstancesMap = BidAuctionManager.getInstance().getBidInstances();
         if (!bidInstancesMap.containsKey(placementId)) {
@@ -54,7 +63,7 @@ public class BidS2SAuctionManager {
             return;
         }
 
-        WorkExecutor.execute(new Runnable() {
+        LaneExecutor.execute(LaneExecutor.Lane.AUCTION, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -62,8 +71,11 @@ public class BidS2SAuctionManager {
                         mBidResultCallbacks.put(placementId, callback);
                     }
                     boolean cacheAdsType = PlacementUtils.isCacheAdsType(adType);
-                    resetBidState(cacheAdsType, bidInstances);
+                    resetBidState(cacheAdsType, bidInstances, skipIds);
                     for (BaseInstance bidInstance : bidInstances) {
+                        if (skipIds != null && skipIds.contains(bidInstance.getId())) {
+                            continue;
+                        }
                         BidAdapter bidAdapter = BidAdapterUtil.getBidAdapter(bidInstance.getMediationId());
                         if (bidAdapter == null) {
                             bidInstance.setBidState(BaseInstance.BID_STATE.BID_FAILED);
@@ -142,8 +154,11 @@ public class BidS2SAuctionManager {
         }
     }
 
-    private void resetBidState(boolean cacheAdsType, List<BaseInstance> bidInstances) {
+    private void resetBidState(boolean cacheAdsType, List<BaseInstance> bidInstances, Set<Integer> skipIds) {
         for (BaseInstance instance : bidInstances) {
+            if (skipIds != null && skipIds.contains(instance.getId())) {
+                continue;
+            }
             if (cacheAdsType && InsUtil.isInstanceAvailable(instance)) {
                 continue;
             }
@@ -26,16 +26,16 @@ import com.openmediation.sdk.utils.error.ErrorBuilder;
 import com.openmediation.sdk.utils.error.ErrorCode;
 import com.openmediation.sdk.utils.helper.LrReportHelper;
 import com.openmediation.sdk.utils.helper.WaterFallHelper;
+import com.openmediation.sdk.utils.helper.WaterfallParser;
 import com.openmediation.sdk.utils.model.BaseInstance;
 import com.openmediation.sdk.utils.model.MediationRule;
 import com.openmediation.sdk.utils.model.Placement;
 import com.openmediation.sdk.utils.model.PlacementInfo;
 import com.openmediation.sdk.utils.model.Scene;
+import com.openmediation.sdk.utils.model.WaterfallResult;
 import com.openmediation.sdk.utils.request.network.Request;
 import com.openmediation.sdk.utils.request.network.Response;
 
-import org.json.JSONObject;
-
 import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.util.List;
@@ -64,7 +64,9 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
      */
     protected int mRuleId = -1;
 
-    private JSONObject mWFJsonInfo;
+    private WaterfallResult mWaterfall;
+
+    private volatile LoadPipeline mPipeline;
 
     public abstract boolean isInventoryAdsType();
 
@@ -93,11 +95,11 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
 
     protected abstract void resetBeforeGetInsOrder();
 
-    protected abstract void startLoadAds(JSONObject clInfo, List<BaseInstance> instances);
+    protected abstract void startLoadAds(WaterfallResult result, List<BaseInstance> instances);
 
     protected abstract void notifyUnLoadInsBidLose();
 
-    protected void startLoadAdsImpl(JSONObject clInfo, List<BaseInstance> totalIns) {
+    protected void startLoadAdsImpl(WaterfallResult result, List<BaseInstance> totalIns) {
     }
 
     public AbstractAdsApi() {
@@ -161,6 +163,12 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
             startLoadAdsImpl(null, InsManager.getInstanceList(mPlacement));
             return;
         }
+        if (mPlacement.isPipelineLoad()) {
+            mPipeline = new LoadPipeline(this, mActRefs.get(), mPlacement, mReqId);
+            mPipeline.start();
+            return;
+        }
+        mPipeline = null;
         BidAuctionManager.getInstance().s2sBid(mActRefs.get(), mPlacement.getId(), mReqId, mPlacement.getT(),
                 this);
     }
@@ -241,16 +249,28 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
         instance.setBidResponse(null);
     }
 
-    protected synchronized void onInsLoadSuccess(BaseInstance instance) {
+    /**
+     * @return false if the instance's state rejected the result, a duplicate or late callback
+     */
+    protected boolean onInsLoadSuccess(BaseInstance instance) {
+        if (!InsManager.onInsLoadSuccess(instance)) {
+            return false;
+        }
         if (instance.getHb() != 1) {
             LrReportHelper.report(instance, mLoadType.getValue(), mPlacement.getWfAbt(), CommonConstants.INSTANCE_READY, 0);
         }
-        InsManager.onInsLoadSuccess(instance);
+        return true;
     }
 
-    protected synchronized void onInsLoadFailed(BaseInstance instance, AdapterError error) {
+    /**
+     * @return false if the instance's state rejected the result, a duplicate or late callback
+     */
+    protected boolean onInsLoadFailed(BaseInstance instance, AdapterError error) {
+        if (!InsManager.onInsLoadFailed(instance, error, !isManualTriggered)) {
+            return false;
+        }
         notifyLoadFailedInsBidLose(instance);
-        InsManager.onInsLoadFailed(instance, error, !isManualTriggered);
+        return true;
     }
 
     protected void onInsShowSuccess(BaseInstance instance, Scene scene) {
@@ -331,7 +351,11 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
 
     @Override
     public void onBidS2SComplete(List<BidResponse> responses) {
-        WaterFallHelper.wfRequest(getPlacementInfo(), mLoadType, appendLastBidResult(), responses,
+        requestWaterfall(responses);
+    }
+
+    void requestWaterfall(List<BidResponse> s2sResponses) {
+        WaterFallHelper.wfRequest(getPlacementInfo(), mLoadType, appendLastBidResult(), s2sResponses,
                 InsManager.getInstanceLoadStatuses(mTotalIns), mReqId, this);
     }
 
@@ -342,7 +366,7 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
             if (responses != null && !responses.isEmpty()) {
                 storeC2sResult(responses);
             }
-            startLoadAds(mWFJsonInfo, c2sInstances);
+            startLoadAds(mWaterfall, c2sInstances);
         } catch (Exception e) {
             DeveloperLog.LogE("onBidC2SComplete, Placement:" + mPlacement, e);
             Error error = ErrorBuilder.build(ErrorCode.CODE_LOAD_SERVER_ERROR
@@ -355,6 +379,8 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
 
     @Override
     public void onRequestSuccess(Response response) {
+        LoadPipeline pipeline = mPipeline;
+        boolean toPipeline = false;
         try {
             if (!Preconditions.checkNotNull(response) || response.code() != HttpURLConnection.HTTP_OK) {
                 Error error = ErrorBuilder.build(ErrorCode.CODE_LOAD_SERVER_ERROR
@@ -364,17 +390,17 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
                 callbackLoadError(error);
                 return;
             }
-            JSONObject clInfo = new JSONObject(response.body().string());
+            WaterfallResult result = WaterfallParser.parse(response);
 
             if (isInventoryAdsType()) {
                 inventoryAdsReportAReady();
             }
 
-            int code = clInfo.optInt("code");
+            int code = result.getCode();
             if (code != 0) {
                 List<BaseInstance> lastAvailableIns = InsManager.getInsWithStatus(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE);
                 if (lastAvailableIns == null || lastAvailableIns.isEmpty()) {
-                    String msg = clInfo.optString("msg");
+                    String msg = result.getMsg();
                     Error error = new Error(ErrorCode.CODE_LOAD_NO_AVAILABLE_AD
                             , msg, ErrorCode.CODE_INTERNAL_SERVER_ERROR);
                     DeveloperLog.LogE(error.toString());
@@ -383,17 +409,20 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
                 return;
             }
 
-            MediationRule mediationRule = WaterFallHelper.getMediationRule(clInfo);
+            MediationRule mediationRule = result.getRule();
             if (mediationRule != null) {
                 mRuleId = mediationRule.getId();
             }
 
-            mPlacement.setWfAbt(clInfo.optInt("abt"));
+            mPlacement.setWfAbt(result.getAbt());
 
-            mWFJsonInfo = clInfo;
-            List<BaseInstance> c2SInstances = InsManager.getC2SInstances(mReqId, clInfo, mPlacement);
-            if (c2SInstances == null || c2SInstances.isEmpty()) {
-                startLoadAds(clInfo, null);
+            mWaterfall = result;
+            List<BaseInstance> c2SInstances = InsManager.getC2SInstances(mReqId, result, mPlacement);
+            if (pipeline != null) {
+                toPipeline = true;
+                pipeline.onWaterfallResponse(c2SInstances);
+            } else if (c2SInstances == null || c2SInstances.isEmpty()) {
+                startLoadAds(result, null);
             } else {
                 BidAuctionManager.getInstance().c2sBid(mActRefs.get(), c2SInstances, mPlacement.getId(), mReqId, mPlacement.getT(),
                         AbstractAdsApi.this);
@@ -406,12 +435,19 @@ public abstract class AbstractAdsApi implements InitCallback, AuctionCallback, R
             CrashUtil.getSingleton().saveException(e);
             callbackLoadError(error);
         } finally {
+            if (pipeline != null && !toPipeline) {
+                pipeline.abort();
+            }
             IOUtil.closeQuietly(response);
         }
     }
 
     @Override
     public void onRequestFailed(String error) {
+        LoadPipeline pipeline = mPipeline;
+        if (pipeline != null) {
+            pipeline.abort();
+        }
         Error errorResult = ErrorBuilder.build(ErrorCode.CODE_LOAD_SERVER_ERROR
                 , ErrorCode.MSG_LOAD_SERVER_ERROR, ErrorCode.CODE_INTERNAL_SERVER_FAILED);
         DeveloperLog.LogE(errorResult.toString() + ", request cl failed : " + errorResult + ", error" + error);
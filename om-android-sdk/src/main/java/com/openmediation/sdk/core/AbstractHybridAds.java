@@ -1,6 +1,5 @@
 package com.openmediation.sdk.core;
 
-import android.os.Looper;
 import android.text.TextUtils;
 
 import com.openmediation.sdk.bid.AuctionUtil;
@@ -15,6 +14,7 @@ import com.openmediation.sdk.utils.AdapterUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.HandlerUtil;
 import com.openmediation.sdk.utils.PlacementUtils;
+import com.openmediation.sdk.utils.TimerWheel;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 import com.openmediation.sdk.utils.error.Error;
@@ -25,12 +25,12 @@ import com.openmediation.sdk.utils.helper.LrReportHelper;
 import com.openmediation.sdk.utils.helper.WaterFallHelper;
 import com.openmediation.sdk.utils.model.BaseInstance;
 import com.openmediation.sdk.utils.model.Scene;
-
-import org.json.JSONObject;
+import com.openmediation.sdk.utils.model.WaterfallResult;
 
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractHybridAds extends AbstractAdsApi {
     /**
@@ -65,14 +65,17 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
      */
     int mPt;
 
-    private final HandlerUtil.HandlerHolder mHandler;
+    //deadline of the group being loaded, reused for every group
+    private final TimerWheel.Timeout mLoadTimeout;
+    //index the group timeout moves on from
+    private volatile int mTimeoutIndex;
     private int mLoadedInsIndex = 0;
     private int mCanCallbackIndex;//index of current callback
 
     public AbstractHybridAds(String placementId) {
         super();
         this.mPlacementId = placementId;
-        mHandler = new HandlerUtil.HandlerHolder(null, Looper.getMainLooper());
+        mLoadTimeout = new TimerWheel.Timeout(TimerWheel.Kind.HYBRID_LOAD, new TimeoutRunnable());
         setCurrentPlacement(PlacementUtils.getPlacement(placementId));
     }
 
@@ -172,8 +175,8 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
     }
 
     @Override
-    protected void startLoadAds(JSONObject clInfo, List<BaseInstance> instances) {
-        List<BaseInstance> wfInstances = InsManager.getListInsResult(mReqId, clInfo, mPlacement, mBs);
+    protected void startLoadAds(WaterfallResult result, List<BaseInstance> instances) {
+        List<BaseInstance> wfInstances = InsManager.getListInsResult(mReqId, result, mPlacement, mBs);
         DeveloperLog.LogD("AbstractHybridAds startLoadAd wfInstances : " + wfInstances);
         List<BaseInstance> totalIns = InsManager.sort(wfInstances, instances);
         DeveloperLog.LogD("AbstractHybridAds after instances sort: " + totalIns);
@@ -189,7 +192,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
             mTotalIns.addAll(finalTotalIns);
             InsManager.resetInsStateOnClResponse(mTotalIns);
             if (mPlacement != null) {
-                Map<Integer, BidResponse> bidResponseMap = WaterFallHelper.getS2sBidResponse(mPlacement, clInfo);
+                Map<Integer, BidResponse> bidResponseMap = WaterFallHelper.getS2sBidResponse(mPlacement, result);
                 if (bidResponseMap != null && !bidResponseMap.isEmpty()) {
                     mBidResponses.putAll(bidResponseMap);
                 }
@@ -253,7 +256,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
     }
 
     @Override
-    protected synchronized void onInsLoadSuccess(BaseInstance instances) {
+    protected synchronized boolean onInsLoadSuccess(BaseInstance instances) {
         super.onInsLoadSuccess(instances);
 
         if (!isManualTriggered) {
@@ -265,6 +268,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
         } else {
             checkReadyInstance();
         }
+        return true;
     }
 
 //    @Override
@@ -282,7 +286,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
     protected void onInsShowSuccess(BaseInstance instance, Scene scene) {
         super.onInsShowSuccess(instance, scene);
         callbackAdShowedOnUiThread();
-        AdRateUtil.onInstancesShowed(instance.getPlacementId(), instance.getKey());
+        AdRateUtil.onInstancesShowed(instance);
     }
 
     @Override
@@ -366,7 +370,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
     }
 
     @Override
-    protected void onInsLoadFailed(BaseInstance instance, AdapterError error) {
+    protected boolean onInsLoadFailed(BaseInstance instance, AdapterError error) {
         super.onInsLoadFailed(instance, error);
 
 //        testNotifyInsFailed(instance);
@@ -383,7 +387,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
             Error errorResult = new Error(ErrorCode.CODE_LOAD_FAILED_IN_ADAPTER, ErrorCode.ERROR_NO_FILL, -1);
             callbackLoadError(errorResult);
             cancelTimeout();
-            return;
+            return true;
         }
 
         //groupIndex of current failed instance
@@ -402,7 +406,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
             cancelTimeout();
             //loads the next group
             startNextInstance((groupIndex + 1) * mBs);
-            return;
+            return true;
         }
 
         if (instance.isFirst()) {
@@ -411,6 +415,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
             mCanCallbackIndex = instance.getIndex() + mBs - 1;
             checkReadyInstance();
         }
+        return true;
     }
 
     /**
@@ -464,7 +469,7 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
                 }
 
                 //blocked?
-                if (AdRateUtil.shouldBlockInstance(mPlacementId + i.getKey(), i)) {
+                if (AdRateUtil.shouldBlockInstance(i)) {
                     onInsCapped(PlacementUtils.getPlacementType(getPlacementType()), i);
                     continue;
                 }
@@ -597,26 +602,19 @@ public abstract class AbstractHybridAds extends AbstractAdsApi {
     }
 
     private void startTimeout(int insIndex) {
-        TimeoutRunnable timeout = new TimeoutRunnable(insIndex);
-        mHandler.postDelayed(timeout, mPt * 1000L);
+        mTimeoutIndex = insIndex;
+        TimerWheel.getInstance().schedule(mLoadTimeout, mPt, TimeUnit.SECONDS);
     }
 
     protected void cancelTimeout() {
-        if (mHandler != null) {
-            mHandler.removeCallbacksAndMessages(null);
-        }
+        TimerWheel.getInstance().cancel(mLoadTimeout);
     }
 
     private class TimeoutRunnable implements Runnable {
 
-        private final int insIndex;
-
-        TimeoutRunnable(int insIndex) {
-            this.insIndex = insIndex;
-        }
-
         @Override
         public void run() {
+            int insIndex = mTimeoutIndex;
             DeveloperLog.LogD("timeout startNextInstance : " + insIndex);
             startNextInstance(insIndex);
         }
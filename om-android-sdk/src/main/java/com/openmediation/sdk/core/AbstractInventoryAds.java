@@ -12,10 +12,10 @@ import com.openmediation.sdk.utils.AdapterUtil;
 import com.openmediation.sdk.utils.AdsUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.HandlerUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.PlacementUtils;
 import com.openmediation.sdk.utils.Preconditions;
 import com.openmediation.sdk.utils.SceneUtil;
-import com.openmediation.sdk.utils.WorkExecutor;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.constant.KeyConstants;
@@ -30,6 +30,7 @@ import com.openmediation.sdk.utils.model.BaseInstance;
 import com.openmediation.sdk.utils.model.Placement;
 import com.openmediation.sdk.utils.model.PlacementInfo;
 import com.openmediation.sdk.utils.model.Scene;
+import com.openmediation.sdk.utils.model.WaterfallResult;
 
 import org.json.JSONObject;
 
@@ -53,7 +54,14 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
     private final AtomicBoolean mLastAvailability = new AtomicBoolean(false);
     private final AtomicBoolean mDidScheduleTaskStarted = new AtomicBoolean(false);
     private final AtomicBoolean isAReadyReported = new AtomicBoolean(false);
+    //whether this load's all-failed result was handled, results of one load may race to finish it
+    private final AtomicBoolean isAllFailedReported = new AtomicBoolean(false);
     private final AtomicInteger mAllLoadFailedCount = new AtomicInteger(0);
+    //mTotalIns by mediation state
+    private final InstanceStates mInsStates = new InstanceStates();
+    //load concurrency from instances' recent fill and latency
+    private final LoadConcurrency mConcurrency = new LoadConcurrency();
+    private volatile int mLastLoadLimit;
 
     protected abstract void onAvailabilityChanged(boolean available, Error error);
 
@@ -114,7 +122,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
 
     @Override
     protected boolean shouldReplenishInventory(OmManager.LOAD_TYPE type) {
-        int availableCount = InsManager.instanceCount(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE);
+        int availableCount = mInsStates.count(BaseInstance.MEDIATION_STATE.AVAILABLE);
 
         //if load is manually triggered
         if (type == OmManager.LOAD_TYPE.MANUAL) {
@@ -150,6 +158,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
     @Override
     protected void resetBeforeGetInsOrder() {
         isAReadyReported.set(false);
+        isAllFailedReported.set(false);
         isInLoadingProgress = true;
         removeBidResponseWhenLoad();
     }
@@ -164,7 +173,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
     protected void inventoryAdsReportAReady() {
         //when not trigger by init, checks cache before aReady reporting
         if (mLoadType != OmManager.LOAD_TYPE.INIT) {
-            int availableCount = InsManager.instanceCount(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE);
+            int availableCount = mInsStates.count(BaseInstance.MEDIATION_STATE.AVAILABLE);
             if (availableCount > 0) {
                 isAReadyReported.set(true);
                 LrReportHelper.report(mReqId, mRuleId, mPlacement.getId(), mLoadType.getValue(), mPlacement.getWfAbt(),
@@ -174,17 +183,17 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
     }
 
     @Override
-    protected void startLoadAds(JSONObject clInfo, List<BaseInstance> instances) {
-        List<BaseInstance> wfInstances = InsManager.getListInsResult(mReqId, clInfo, mPlacement);
+    protected void startLoadAds(WaterfallResult result, List<BaseInstance> instances) {
+        List<BaseInstance> wfInstances = InsManager.getListInsResult(mReqId, result, mPlacement);
         DeveloperLog.LogD("AbstractInventoryAds startLoadAd wfInstances : " + wfInstances);
         List<BaseInstance> totalIns = InsManager.sort(wfInstances, instances);
         DeveloperLog.LogD("AbstractInventoryAds after instances sort: " + totalIns);
-        startLoadAdsImpl(clInfo, totalIns);
+        startLoadAdsImpl(result, totalIns);
     }
 
     @Override
-    protected void startLoadAdsImpl(JSONObject clInfo, List<BaseInstance> totalIns) {
-        List<BaseInstance> lastAvailableIns = InsManager.getInsWithStatus(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE);
+    protected void startLoadAdsImpl(WaterfallResult result, List<BaseInstance> totalIns) {
+        List<BaseInstance> lastAvailableIns = mInsStates.get(BaseInstance.MEDIATION_STATE.AVAILABLE);
         if (totalIns == null || totalIns.isEmpty()) {
             if (lastAvailableIns == null || lastAvailableIns.isEmpty()) {
                 Error error = new Error(ErrorCode.CODE_LOAD_NO_AVAILABLE_AD
@@ -202,9 +211,10 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
         }
         mTotalIns.clear();
         mTotalIns.addAll(totalIns);
+        mInsStates.reset(mTotalIns);
         InsManager.resetInsStateOnClResponse(mTotalIns);
         DeveloperLog.LogD("TotalIns is : " + mTotalIns.toString());
-        int availableCount = InsManager.instanceCount(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE);
+        int availableCount = mInsStates.count(BaseInstance.MEDIATION_STATE.AVAILABLE);
         reSizeInventorySize();
         DeveloperLog.LogD("after cl, Inventory size is : " + mInventorySize);
         //if availableCount == mCacheSize, do not load any new instance
@@ -213,7 +223,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
             isInLoadingProgress = false;
         } else {
             if (mPlacement != null) {
-                Map<Integer, BidResponse> bidResponseMap = WaterFallHelper.getS2sBidResponse(mPlacement, clInfo);
+                Map<Integer, BidResponse> bidResponseMap = WaterFallHelper.getS2sBidResponse(mPlacement, result);
                 if (bidResponseMap != null && !bidResponseMap.isEmpty()) {
                     mBidResponses.putAll(bidResponseMap);
                 }
@@ -232,7 +242,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
         List<BidResponse> responses = null;
         if (hasAvailableInventory()) {
             responses = new ArrayList<>();
-            List<Integer> ids = InsManager.getInsIdWithStatus(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE);
+            List<Integer> ids = mInsStates.getIds(BaseInstance.MEDIATION_STATE.AVAILABLE);
             for (Integer id : ids) {
                 BidResponse bidResponse = mBidResponses.get(id);
                 if (bidResponse != null) {
@@ -287,8 +297,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
     @Override
     protected void loadInsAndSendEvent(BaseInstance instance) {
         super.loadInsAndSendEvent(instance);
-        if (AdRateUtil.shouldBlockInstance(Preconditions.checkNotNull(mPlacement) ?
-                mPlacement.getId() : "" + instance.getKey(), instance)) {
+        if (AdRateUtil.shouldBlockInstance(instance)) {
             instance.setMediationState(BaseInstance.MEDIATION_STATE.CAPPED);
             onInsCapped(PlacementUtils.getPlacementType(getPlacementType()), instance);
             return;
@@ -316,10 +325,10 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
         notifyLoadFailedInsBidLose(instance);
         if (shouldFinishLoad()) {
             boolean hasInventory = hasAvailableInventory();
-            if (isManualTriggered && !hasInventory) {
-                callbackLoadFailedOnManual(error);
-            }
-            if (!hasInventory) {
+            if (!hasInventory && isAllFailedReported.compareAndSet(false, true)) {
+                if (isManualTriggered) {
+                    callbackLoadFailedOnManual(error);
+                }
                 whenAllLoadFailed();
             }
             if (shouldNotifyAvailableChanged(hasInventory)) {
@@ -337,8 +346,11 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
      * @param instance the instance
      */
     @Override
-    protected synchronized void onInsLoadSuccess(BaseInstance instance) {
-        super.onInsLoadSuccess(instance);
+    protected boolean onInsLoadSuccess(BaseInstance instance) {
+        if (!super.onInsLoadSuccess(instance)) {
+            return false;
+        }
+        mConcurrency.onFilled(instance, getLoadDuration(instance));
         mAllLoadFailedCount.set(0);
         if (!shouldFinishLoad()) {
             initOrFetchNextAdapter();
@@ -349,14 +361,14 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
             callbackLoadSuccessOnManual();
         }
         if (shouldNotifyAvailableChanged(true)) {
-            if (!isAReadyReported.get()) {
-                isAReadyReported.set(true);
+            if (isAReadyReported.compareAndSet(false, true)) {
                 LrReportHelper.report(mReqId, mRuleId, instance.getPlacementId(), mLoadType.getValue(), mPlacement.getWfAbt(),
                         CommonConstants.WATERFALL_READY, 0);
             }
             onAvailabilityChanged(true, null);
         }
         AdLog.getSingleton().LogD("Ad load success placementId: " + mPlacementId);
+        return true;
     }
 
     /**
@@ -366,15 +378,21 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
      * @param error    the error
      */
     @Override
-    protected synchronized void onInsLoadFailed(BaseInstance instance, AdapterError error) {
-        super.onInsLoadFailed(instance, error);
+    protected boolean onInsLoadFailed(BaseInstance instance, AdapterError error) {
+        if (!super.onInsLoadFailed(instance, error)) {
+            return false;
+        }
+        // no fill and timeouts only, not the loads the sdk itself refused
+        if (error != null && (error.isLoadFailFromAdn() || error.getMessage().contains(ErrorCode.ERROR_TIMEOUT))) {
+            mConcurrency.onNoFill(instance, getLoadDuration(instance));
+        }
         Error errorResult = new Error(ErrorCode.CODE_LOAD_FAILED_IN_ADAPTER, error.toString(), -1);
         if (shouldFinishLoad()) {
             boolean hasInventory = hasAvailableInventory();
-            if (isManualTriggered && !hasInventory) {
-                callbackLoadFailedOnManual(errorResult);
-            }
-            if (!hasInventory) {
+            if (!hasInventory && isAllFailedReported.compareAndSet(false, true)) {
+                if (isManualTriggered) {
+                    callbackLoadFailedOnManual(errorResult);
+                }
                 whenAllLoadFailed();
             }
             if (shouldNotifyAvailableChanged(hasInventory)) {
@@ -386,6 +404,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
         } else {
             initOrFetchNextAdapter();
         }
+        return true;
     }
 
     /**
@@ -460,11 +479,11 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
      * @return should finish load or not
      */
     private boolean shouldFinishLoad() {
-        int readyCount = InsManager.instanceCount(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE);
-        int allLoadedCount = InsManager.instanceCount(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE,
+        int readyCount = mInsStates.count(BaseInstance.MEDIATION_STATE.AVAILABLE);
+        int allLoadedCount = mInsStates.count(BaseInstance.MEDIATION_STATE.AVAILABLE,
                 BaseInstance.MEDIATION_STATE.INIT_FAILED, BaseInstance.MEDIATION_STATE.LOAD_FAILED,
                 BaseInstance.MEDIATION_STATE.CAPPED);
-        if (readyCount >= mInventorySize || allLoadedCount == mTotalIns.size()) {
+        if (readyCount >= mInventorySize || allLoadedCount == mInsStates.size()) {
             DeveloperLog.LogD("full of cache or loaded all ins, current load is finished : " +
                     readyCount);
             isInLoadingProgress = false;
@@ -502,7 +521,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
         if (delay > 0) {
             mDidScheduleTaskStarted.set(true);
             DeveloperLog.LogD("post adsScheduleTask delay : " + delay);
-            WorkExecutor.execute(new AdsScheduleTask(this, delay), delay,
+            LaneExecutor.execute(LaneExecutor.Lane.AUCTION, new AdsScheduleTask(this, delay), delay,
                     TimeUnit.SECONDS);
         }
     }
@@ -513,10 +532,11 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
             return false;
         }
 
-        if ((isManualTriggered || mLastAvailability.get() != available)) {
+        // only the caller that flips it notifies, concurrent results agree on one change
+        boolean isChanged = mLastAvailability.compareAndSet(!available, available);
+        if (isManualTriggered || isChanged) {
             DeveloperLog.LogD("shouldNotifyAvailableChanged for placement: " + mPlacement + " " + true);
 //            isManualTriggered = false;
-            mLastAvailability.set(available);
             return true;
         }
         DeveloperLog.LogD("shouldNotifyAvailableChanged for placement : " + mPlacement + " " + false);
@@ -576,16 +596,26 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
     }
 
     protected boolean hasAvailableInventory() {
-        return InsManager.instanceCount(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE) > 0;
+        return mInsStates.count(BaseInstance.MEDIATION_STATE.AVAILABLE) > 0;
     }
 
     /**
      * @return limit of loadable instances
      */
     private int getLoadLimit() {
-        //compares with server issued max concurrent number
-        return Math.min(mPlacement.getBs(), mInventorySize -
-                InsManager.instanceCount(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE));
+        //server issued max concurrent number, narrowed while top instances fill reliably
+        int limit = mConcurrency.getLimit(mPlacement.getBs(), mPlacement.getPt(), mTotalIns);
+        if (limit != mLastLoadLimit) {
+            mLastLoadLimit = limit;
+            DeveloperLog.LogD("load limit of placement " + mPlacementId + " is " + limit
+                    + ", bs: " + mPlacement.getBs());
+        }
+        return Math.min(limit, mInventorySize -
+                mInsStates.count(BaseInstance.MEDIATION_STATE.AVAILABLE));
+    }
+
+    private static long getLoadDuration(BaseInstance instance) {
+        return instance.getLoadStart() > 0 ? System.currentTimeMillis() - instance.getLoadStart() : 0;
     }
 
     /**
@@ -603,7 +633,7 @@ public abstract class AbstractInventoryAds extends AbstractAdsApi {
         if (mBidResponses == null || mBidResponses.isEmpty()) {
             return;
         }
-        List<Integer> availableIns = InsManager.getInsIdWithStatus(mTotalIns, BaseInstance.MEDIATION_STATE.AVAILABLE);
+        List<Integer> availableIns = mInsStates.getIds(BaseInstance.MEDIATION_STATE.AVAILABLE);
         if (availableIns.isEmpty()) {
             mBidResponses.clear();
             return;
@@ -10,6 +10,7 @@ import android.text.TextUtils;
 import com.openmediation.sdk.InitCallback;
 import com.openmediation.sdk.InitConfiguration;
 import com.openmediation.sdk.bid.BidAuctionManager;
+import com.openmediation.sdk.bid.BidNoticeOutbox;
 import com.openmediation.sdk.core.runnable.InitScheduleTask;
 import com.openmediation.sdk.utils.AFManager;
 import com.openmediation.sdk.utils.lifecycle.ActLifecycle;
@@ -22,7 +23,9 @@ import com.openmediation.sdk.utils.JsonUtil;
 import com.openmediation.sdk.utils.OaidHelper;
 import com.openmediation.sdk.utils.SdkUtil;
 import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.cache.ConfigCache;
 import com.openmediation.sdk.utils.cache.DataCache;
+import com.openmediation.sdk.utils.cache.FrequencyCapStore;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.constant.KeyConstants;
 import com.openmediation.sdk.utils.crash.CrashUtil;
@@ -33,15 +36,20 @@ import com.openmediation.sdk.utils.error.ErrorCode;
 import com.openmediation.sdk.utils.event.EventId;
 import com.openmediation.sdk.utils.event.EventUploadManager;
 import com.openmediation.sdk.utils.helper.ConfigurationHelper;
+import com.openmediation.sdk.utils.helper.LrReportBatcher;
 import com.openmediation.sdk.utils.model.Configurations;
 import com.openmediation.sdk.utils.request.network.Request;
 import com.openmediation.sdk.utils.request.network.Response;
+import com.openmediation.sdk.utils.request.network.connect.EndpointWarmer;
 
 import org.json.JSONObject;
 
 import java.net.HttpURLConnection;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The type Init imp.
@@ -53,6 +61,13 @@ public final class InitImp {
     private static long sInitStart;
     // Re Init Delay
     private static AtomicBoolean reInitRunning = new AtomicBoolean(false);
+    // init succeeded from the config snapshot, the init request is revalidating it
+    private static AtomicBoolean isRevalidating = new AtomicBoolean(false);
+    // failed revalidations of the snapshot config, the first one confirms the snapshot config for the session
+    private static AtomicInteger sRevalidateFailures = new AtomicInteger();
+    private static volatile byte[] sSnapshotData;
+    private static final int MAX_REVALIDATE_RETRIES = 5;
+    private static final long REVALIDATE_DELAY = 30 * 1000;
 
     /**
      * init method
@@ -166,15 +181,40 @@ public final class InitImp {
      */
     private static void initUtil() {
         DataCache.getInstance().init(AdtUtil.getInstance().getApplicationContext());
+        FrequencyCapStore.getInstance().init(AdtUtil.getInstance().getApplicationContext());
     }
 
     private static void doAfterGetConfig(String appKey, Configurations config) {
+        applyConfigSettings(config);
+        doAfterConfigConfirmed(appKey, config);
+    }
+
+    /**
+     * Settings that take effect as soon as a config is in memory, whether it came from the snapshot or the server
+     */
+    private static void applyConfigSettings(Configurations config) {
         try {
             DeveloperLog.enableDebug(AdtUtil.getInstance().getApplicationContext(), config.getD() == 1);
-            AFManager.checkAfDataStatus();
             EventUploadManager.getInstance().updateReportSettings(config);
+            EndpointWarmer.getInstance().setEndpoints(config.getApi());
+        } catch(Exception e) {
+            DeveloperLog.LogD("applyConfigSettings  exception : ", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+    }
+
+    /**
+     * Work that only runs once the server has answered the init request
+     */
+    private static void doAfterConfigConfirmed(String appKey, Configurations config) {
+        try {
+            AFManager.checkAfDataStatus();
             //reports error logs
             CrashUtil.getSingleton().uploadException(config, appKey);
+            //sends lr records a previous process didn't send
+            LrReportBatcher.getInstance().flush();
+            //sends win/loss notices a previous process didn't send
+            BidNoticeOutbox.getInstance().flush();
 
             InitScheduleTask.startTask(config);
         } catch(Exception e) {
@@ -183,6 +223,68 @@ public final class InitImp {
         }
     }
 
+    private static void setConfiguration(Configurations config) {
+        Configurations oldConfig = DataCache.getInstance().getFromMem(KeyConstants.KEY_CONFIGURATION, Configurations.class);
+        ConfigurationHelper.keepUnchangedPlacements(oldConfig, config);
+        DataCache.getInstance().setMEM(KeyConstants.KEY_CONFIGURATION, config);
+        FrequencyCapStore.getInstance().migrate(config);
+        try {
+            BidAuctionManager.getInstance().initBid(AdtUtil.getInstance().getApplicationContext(), config);
+        } catch(Exception e) {
+            DeveloperLog.LogD("initBid  exception : ", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+    }
+
+    /**
+     * Serves the last good config from disk on cold start, the init request then revalidates it
+     *
+     * @return true if init succeeded from the snapshot
+     */
+    private static boolean initFromSnapshot(Context context, String appKey) {
+        if (DataCache.getInstance().getFromMem(KeyConstants.KEY_CONFIGURATION, Configurations.class) != null) {
+            return false;
+        }
+        byte[] data = ConfigCache.load(context, appKey);
+        if (data == null) {
+            return false;
+        }
+        Configurations config = ConfigurationHelper.parseFormServerResponse(
+                new String(data, Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        if (config == null) {
+            ConfigCache.clear(context);
+            return false;
+        }
+        DeveloperLog.LogD("Om init from config snapshot");
+        sSnapshotData = data;
+        sRevalidateFailures.set(0);
+        isRevalidating.set(true);
+        setConfiguration(config);
+        callbackInitSuccessOnUIThread();
+        applyConfigSettings(config);
+        return true;
+    }
+
+    /**
+     * The init request couldn't revalidate the snapshot config: the session goes on with it, and the
+     * request is retried with backoff
+     */
+    private static void onRevalidateFailed(String appKey) {
+        int failures = sRevalidateFailures.incrementAndGet();
+        if (failures == 1) {
+            doAfterConfigConfirmed(appKey, DataCache.getInstance().getFromMem(KeyConstants.KEY_CONFIGURATION,
+                    Configurations.class));
+        }
+        if (failures > MAX_REVALIDATE_RETRIES) {
+            DeveloperLog.LogD("Om init config snapshot revalidation failed " + failures + " times, gave up");
+            sSnapshotData = null;
+            return;
+        }
+        long delay = REVALIDATE_DELAY << (failures - 1);
+        DeveloperLog.LogD("Om init config snapshot revalidation retry in " + delay + "ms");
+        WorkExecutor.execute(new RevalidateRunnable(appKey), delay, TimeUnit.MILLISECONDS);
+    }
+
     private static void callbackInitErrorOnUIThread(final Error result) {
         AdLog.getSingleton().LogE("Init Failed: " + result);
         HandlerUtil.runOnUiThread(new InitFailRunnable(result));
@@ -247,6 +349,7 @@ public final class InitImp {
                 if (!TextUtils.isEmpty(initConfiguration.getInitHost())) {
                     DataCache.getInstance().setMEM(KeyConstants.KEY_INIT_HOST, initConfiguration.getInitHost());
                 }
+                initFromSnapshot(context, initConfiguration.getAppKey());
                 AdvertisingIdClient.getGaid(AdtUtil.getInstance().getApplicationContext(), new AdvertisingIdClient.OnGetGaidListener() {
                     @Override
                     public void onGetGaid(String gaid) {
@@ -303,6 +406,33 @@ public final class InitImp {
         }
     }
 
+    private static class RevalidateRunnable implements Runnable {
+        private String appKey;
+
+        private RevalidateRunnable(String appKey) {
+            this.appKey = appKey;
+        }
+
+        @Override
+        public void run() {
+            if (sSnapshotData == null) {
+                // a re-init has confirmed a config meanwhile
+                return;
+            }
+            isRevalidating.set(true);
+            try {
+                ConfigurationHelper.getConfiguration(appKey, DataCache.getInstance().getFromMem(
+                        KeyConstants.KEY_INIT_HOST, String.class), new InitRequestCallback(appKey));
+            } catch(Exception e) {
+                DeveloperLog.LogD("revalidate config  exception : ", e);
+                CrashUtil.getSingleton().saveException(e);
+                if (isRevalidating.getAndSet(false)) {
+                    onRevalidateFailed(appKey);
+                }
+            }
+        }
+    }
+
     private static class InitRequestCallback implements Request.OnRequestCallback {
 
         private String appKey;
@@ -318,48 +448,64 @@ public final class InitImp {
 
         @Override
         public void onRequestSuccess(Response response) {
+            boolean revalidate = isRevalidating.getAndSet(false);
             try {
                 if (response.code() != HttpURLConnection.HTTP_OK) {
                     Error error = new Error(ErrorCode.CODE_INIT_SERVER_ERROR
                             , ErrorCode.MSG_INIT_SERVER_ERROR, ErrorCode.CODE_INTERNAL_SERVER_ERROR);
                     DeveloperLog.LogE(error.toString() + "Om init request config response code not 200 : " + response.code());
-                    callbackInitErrorOnUIThread(error);
+                    callbackInitError(revalidate, error);
                     return;
                 }
 
-                String requestData = new String(ConfigurationHelper.checkResponse(response), Charset.forName(CommonConstants.CHARTSET_UTF8));
-                if (TextUtils.isEmpty(requestData)) {
+                byte[] data = ConfigurationHelper.checkResponse(response);
+                if (data == null || data.length == 0) {
                     Error error = new Error(ErrorCode.CODE_INIT_SERVER_ERROR
                             , ErrorCode.MSG_INIT_SERVER_ERROR, ErrorCode.CODE_INTERNAL_SERVER_ERROR);
-                    DeveloperLog.LogE(error.toString() + ", Om init response data is null: " + requestData);
-                    callbackInitErrorOnUIThread(error);
+                    DeveloperLog.LogE(error.toString() + ", Om init response data is null");
+                    callbackInitError(revalidate, error);
+                    return;
+                }
+                if (revalidate && Arrays.equals(data, sSnapshotData)) {
+                    DeveloperLog.LogD("Om init config snapshot is up to date");
+                    sSnapshotData = null;
+                    if (sRevalidateFailures.get() == 0) {
+                        doAfterConfigConfirmed(appKey, DataCache.getInstance().getFromMem(
+                                KeyConstants.KEY_CONFIGURATION, Configurations.class));
+                    }
+                    // refreshes the snapshot's save time
+                    ConfigCache.save(AdtUtil.getInstance().getApplicationContext(), appKey, data);
                     return;
                 }
+                String requestData = new String(data, Charset.forName(CommonConstants.CHARTSET_UTF8));
                 //adds global data to memory
                 Configurations config = ConfigurationHelper.parseFormServerResponse(requestData);
                 if (config != null) {
                     DeveloperLog.LogD("Om init request config success");
-                    DataCache.getInstance().setMEM(KeyConstants.KEY_CONFIGURATION, config);
-                    try {
-                        BidAuctionManager.getInstance().initBid(AdtUtil.getInstance().getApplicationContext(), config);
-                    } catch(Exception e) {
-                        DeveloperLog.LogD("initBid  exception : ", e);
-                        CrashUtil.getSingleton().saveException(e);
+                    sSnapshotData = null;
+                    setConfiguration(config);
+                    if (!revalidate) {
+                        callbackInitSuccessOnUIThread();
                     }
-                    callbackInitSuccessOnUIThread();
-                    doAfterGetConfig(appKey, config);
+                    if (revalidate && sRevalidateFailures.get() > 0) {
+                        // the session already went on with the snapshot config
+                        applyConfigSettings(config);
+                    } else {
+                        doAfterGetConfig(appKey, config);
+                    }
+                    ConfigCache.save(AdtUtil.getInstance().getApplicationContext(), appKey, data);
                 } else {
                     Error error = new Error(ErrorCode.CODE_INIT_SERVER_ERROR
                             , ErrorCode.MSG_INIT_SERVER_ERROR, ErrorCode.CODE_INTERNAL_SERVER_ERROR);
                     DeveloperLog.LogE(error.toString() + ", Om init format config is null");
-                    callbackInitErrorOnUIThread(error);
+                    callbackInitError(revalidate, error);
                 }
             } catch(Exception e) {
                 CrashUtil.getSingleton().saveException(e);
                 Error error = new Error(ErrorCode.CODE_INIT_SERVER_ERROR
                         , ErrorCode.MSG_INIT_SERVER_ERROR, ErrorCode.CODE_INTERNAL_UNKNOWN_OTHER);
                 DeveloperLog.LogE(error.toString() + ", request config exception:" + e);
-                callbackInitErrorOnUIThread(error);
+                callbackInitError(revalidate, error);
             } finally {
                 IOUtil.closeQuietly(response);
             }
@@ -370,8 +516,22 @@ public final class InitImp {
             Error result = new Error(ErrorCode.CODE_INIT_SERVER_ERROR
                     , ErrorCode.MSG_INIT_SERVER_ERROR, ErrorCode.CODE_INTERNAL_SERVER_FAILED);
             DeveloperLog.LogE("request config failed : " + result + ", error:" + error);
+            if (isRevalidating.getAndSet(false)) {
+                // keeps serving the snapshot config
+                onRevalidateFailed(appKey);
+                return;
+            }
             AdLog.getSingleton().LogE("Init Failed: " + error);
             callbackInitErrorOnUIThread(result);
         }
+
+        private void callbackInitError(boolean revalidate, Error error) {
+            if (revalidate) {
+                // init has already succeeded with the snapshot config
+                onRevalidateFailed(appKey);
+                return;
+            }
+            callbackInitErrorOnUIThread(error);
+        }
     }
 }
@@ -13,9 +13,9 @@ import com.openmediation.sdk.utils.AdRateUtil;
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DensityUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.InsExecutor;
 import com.openmediation.sdk.utils.JsonUtil;
 import com.openmediation.sdk.utils.PlacementUtils;
+import com.openmediation.sdk.utils.TimerWheel;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.constant.KeyConstants;
 import com.openmediation.sdk.utils.error.ErrorCode;
@@ -30,8 +30,8 @@ import com.openmediation.sdk.utils.model.Mediation;
 import com.openmediation.sdk.utils.model.MediationRule;
 import com.openmediation.sdk.utils.model.Placement;
 import com.openmediation.sdk.utils.model.Scene;
+import com.openmediation.sdk.utils.model.WaterfallResult;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
@@ -41,7 +41,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class InsManager {
@@ -146,14 +145,16 @@ public class InsManager {
         if (insFields == null) {
             return;
         }
-        if (insFields.getTimeoutRunnable() == null) {
+        TimerWheel.Timeout loadTimeout = insFields.getLoadTimeout();
+        if (loadTimeout == null) {
             LoadTimeoutRunnable timeoutRunnable = new LoadTimeoutRunnable();
             timeoutRunnable.setTimeoutListener(listener);
-            insFields.setTimeoutRunnable(timeoutRunnable);
+            loadTimeout = new TimerWheel.Timeout(TimerWheel.Kind.INSTANCE_LOAD, timeoutRunnable);
+            insFields.setLoadTimeout(loadTimeout);
         }
         Placement placement = PlacementUtils.getPlacement(insFields.getPlacementId());
         int timeout = placement != null ? placement.getPt() : 30;
-        insFields.setScheduledFuture(InsExecutor.execute(insFields.getTimeoutRunnable(), timeout, TimeUnit.SECONDS));
+        TimerWheel.getInstance().schedule(loadTimeout, timeout, TimeUnit.SECONDS);
     }
 
     /**
@@ -163,18 +164,7 @@ public class InsManager {
         if (insFields == null) {
             return;
         }
-        if (insFields.getScheduledFuture() != null) {
-            ScheduledFuture scheduledFuture = insFields.getScheduledFuture();
-            if (!scheduledFuture.isCancelled()) {
-                scheduledFuture.cancel(true);
-            }
-            insFields.setScheduledFuture(null);
-        }
-
-        if (insFields.getTimeoutRunnable() != null) {
-            InsExecutor.remove(insFields.getTimeoutRunnable());
-            insFields.setTimeoutRunnable(null);
-        }
+        TimerWheel.getInstance().cancel(insFields.getLoadTimeout());
     }
 
     /**
@@ -191,11 +181,13 @@ public class InsManager {
     /**
      * On ins init success.
      */
-    public static void onInsInitSuccess(BaseInstance insFields) {
+    public static boolean onInsInitSuccess(BaseInstance insFields) {
         if (insFields == null) {
-            return;
+            return false;
+        }
+        if (!insFields.moveMediationState(BaseInstance.MEDIATION_STATE.INITIATED)) {
+            return false;
         }
-        insFields.setMediationState(BaseInstance.MEDIATION_STATE.INITIATED);
         JSONObject data = buildReportData(insFields);
         if (insFields.getInitStart() > 0) {
             int dur = (int) (System.currentTimeMillis() - insFields.getInitStart()) / 1000;
@@ -203,6 +195,7 @@ public class InsManager {
             insFields.setInitStart(0);
         }
         EventUploadManager.getInstance().uploadEvent(EventId.INSTANCE_INIT_SUCCESS, data);
+        return true;
     }
 
     /**
@@ -210,11 +203,13 @@ public class InsManager {
      *
      * @param error the error
      */
-    public static void onInsInitFailed(BaseInstance insFields, AdapterError error) {
+    public static boolean onInsInitFailed(BaseInstance insFields, AdapterError error) {
         if (insFields == null) {
-            return;
+            return false;
+        }
+        if (!insFields.moveMediationState(BaseInstance.MEDIATION_STATE.INIT_FAILED)) {
+            return false;
         }
-        insFields.setMediationState(BaseInstance.MEDIATION_STATE.INIT_FAILED);
         JSONObject data = buildReportData(insFields);
         if (error != null) {
             JsonUtil.put(data, "code", error.getCode());
@@ -226,18 +221,21 @@ public class InsManager {
             insFields.setInitStart(0);
         }
         EventUploadManager.getInstance().uploadEvent(EventId.INSTANCE_INIT_FAILED, data);
+        return true;
     }
 
     /**
      * On ins load success.
      */
-    public static void onInsLoadSuccess(BaseInstance insFields) {
+    public static boolean onInsLoadSuccess(BaseInstance insFields) {
         if (insFields == null) {
-            return;
+            return false;
         }
         insFields.setLastLoadStatus(null);
         cancelInsLoadTimer(insFields);
-        insFields.setMediationState(BaseInstance.MEDIATION_STATE.AVAILABLE);
+        if (!insFields.moveMediationState(BaseInstance.MEDIATION_STATE.AVAILABLE)) {
+            return false;
+        }
         JSONObject data = buildReportData(insFields);
         if (insFields.getLoadStart() > 0) {
             int dur = (int) (System.currentTimeMillis() - insFields.getLoadStart()) / 1000;
@@ -248,14 +246,17 @@ public class InsManager {
         } else {
             EventUploadManager.getInstance().uploadEvent(EventId.INSTANCE_LOAD_SUCCESS, data);
         }
+        return true;
     }
 
-    public static void onInsLoadFailed(BaseInstance insFields, AdapterError error, boolean reload) {
+    public static boolean onInsLoadFailed(BaseInstance insFields, AdapterError error, boolean reload) {
         if (insFields == null) {
-            return;
+            return false;
         }
         cancelInsLoadTimer(insFields);
-        insFields.setMediationState(BaseInstance.MEDIATION_STATE.LOAD_FAILED);
+        if (!insFields.moveMediationState(BaseInstance.MEDIATION_STATE.LOAD_FAILED)) {
+            return false;
+        }
         JSONObject data = buildReportData(insFields);
         if (error != null) {
             JsonUtil.put(data, "code", error.getCode());
@@ -280,6 +281,7 @@ public class InsManager {
             }
         }
         setLoadStatus(insFields, dur, error);
+        return true;
     }
 
     private static void setLoadStatus(BaseInstance insFields, long duration, AdapterError error) {
@@ -304,7 +306,7 @@ public class InsManager {
             return;
         }
         insFields.setShowStart(System.currentTimeMillis());
-        AdRateUtil.onInstancesShowed(insFields.getPlacementId(), insFields.getKey());
+        AdRateUtil.onInstancesShowed(insFields);
         if (scene != null) {
             AdRateUtil.onSceneShowed(insFields.getPlacementId(), scene);
         }
@@ -515,19 +517,15 @@ public class InsManager {
         return statusList;
     }
 
+    /**
+     * Copies the instances of a placement into a list the caller may change. Read-only callers
+     * should use {@link Placement#getRegistry()} instead
+     */
     public static CopyOnWriteArrayList<BaseInstance> getInstanceList(Placement placement) {
-        if (placement == null || placement.getInsMap() == null || placement.getInsMap().size() == 0) {
+        if (placement == null || placement.getRegistry().isEmpty()) {
             return null;
         }
-        SparseArray<BaseInstance> insMap = placement.getInsMap();
-        CopyOnWriteArrayList<BaseInstance> list = new CopyOnWriteArrayList<>();
-        for (int i = 0; i < insMap.size(); i++) {
-            BaseInstance instance = insMap.valueAt(i);
-            if (instance instanceof BaseInstance) {
-                list.add(instance);
-            }
-        }
-        return list;
+        return new CopyOnWriteArrayList<>(placement.getRegistry().getAll());
     }
 
     /**
@@ -558,27 +556,28 @@ public class InsManager {
      * @return BaseInstance
      */
     public static BaseInstance getInsById(Placement placement, String instanceId) {
-        if (TextUtils.isEmpty(instanceId)) {
+        if (TextUtils.isEmpty(instanceId) || placement == null) {
             return null;
         }
-
-        if (placement == null) {
+        try {
+            return placement.getRegistry().get(Integer.parseInt(instanceId));
+        } catch (NumberFormatException e) {
             return null;
         }
+    }
 
-        CopyOnWriteArrayList<BaseInstance> instanceList = getInstanceList(placement);
-        if (instanceList == null || instanceList.isEmpty()) {
+    /**
+     * Gets ins by id.
+     *
+     * @param placement  the placement
+     * @param instanceId the instance id
+     * @return BaseInstance
+     */
+    public static BaseInstance getInsById(Placement placement, int instanceId) {
+        if (placement == null) {
             return null;
         }
-        for (BaseInstance ins : instanceList) {
-            if (ins == null) {
-                continue;
-            }
-            if (TextUtils.equals(instanceId, String.valueOf(ins.getId()))) {
-                return ins;
-            }
-        }
-        return null;
+        return placement.getRegistry().get(instanceId);
     }
 
     public static boolean isInstanceAvailable(BaseInstance instance) {
@@ -617,14 +616,14 @@ public class InsManager {
     /**
      * Gets list ins result.
      *
-     * @param clInfo    the cl info
+     * @param result    the waterfall
      * @param placement the placement
      * @return the list ins result
      */
-    public static List<BaseInstance> getC2SInstances(String reqId, JSONObject clInfo, Placement placement) {
+    public static List<BaseInstance> getC2SInstances(String reqId, WaterfallResult result, Placement placement) {
 
-        JSONArray insArray = clInfo.optJSONArray("c2s");
-        if (insArray == null || insArray.length() <= 0) {
+        List<Integer> c2s = result.getC2s();
+        if (c2s.isEmpty()) {
             return null;
         }
 
@@ -633,11 +632,10 @@ public class InsManager {
             return null;
         }
         boolean cacheAds = PlacementUtils.isCacheAdsType(placement.getT());
-        MediationRule mediationRule = WaterFallHelper.getMediationRule(clInfo);
-        int abt = clInfo.optInt("abt");
+        MediationRule mediationRule = result.getRule();
+        int abt = result.getAbt();
         List<BaseInstance> instancesList = new ArrayList<>();
-        for (int i = 0; i < insArray.length(); i++) {
-            int insId = insArray.optInt(i);
+        for (int insId : c2s) {
             BaseInstance instance = insMap.get(insId);
             if (instance != null) {
                 instance.setWfAbt(abt);
@@ -658,18 +656,18 @@ public class InsManager {
         return instancesList;
     }
 
-    public static List<BaseInstance> getListInsResult(String reqId, JSONObject clInfo, Placement placement) {
-        return getListInsResult(reqId, clInfo, placement, 0);
+    public static List<BaseInstance> getListInsResult(String reqId, WaterfallResult result, Placement placement) {
+        return getListInsResult(reqId, result, placement, 0);
     }
 
     /**
      * Gets list ins result.
      *
-     * @param clInfo    the cl info
+     * @param result    the waterfall
      * @param placement the placement
      * @return the list ins result
      */
-    public static List<BaseInstance> getListInsResult(String reqId, JSONObject clInfo, Placement placement, int bs) {
+    public static List<BaseInstance> getListInsResult(String reqId, WaterfallResult result, Placement placement, int bs) {
 
         // FixMe
         List<BaseInstance> test = WaterFallHelper.getTestInstanceMap().get(placement.getId());
@@ -681,8 +679,7 @@ public class InsManager {
             return splitAbsIns(test);
         }
 
-        JSONArray insArray = clInfo.optJSONArray("ins");
-        if (insArray == null || insArray.length() <= 0) {
+        if (result == null || result.getIns().isEmpty()) {
             return null;
         }
 
@@ -691,13 +688,12 @@ public class InsManager {
             return null;
         }
 
-        MediationRule mediationRule = WaterFallHelper.getMediationRule(clInfo);
-        int abt = clInfo.optInt("abt");
+        MediationRule mediationRule = result.getRule();
+        int abt = result.getAbt();
 
         boolean cacheAds = PlacementUtils.isCacheAdsType(placement.getT());
         List<BaseInstance> instancesList = new ArrayList<>();
-        for (int i = 0; i < insArray.length(); i++) {
-            JSONObject insObject = insArray.optJSONObject(i);
+        for (WaterfallResult.Ins insObject : result.getIns()) {
             BaseInstance instance = getInstance(reqId, placement, insObject, insMap, mediationRule, abt);
             if (instance != null) {
                 // TODO
@@ -738,19 +734,19 @@ public class InsManager {
         return origin;
     }
 
-    private static BaseInstance getInstance(String reqId, Placement placement, JSONObject insObject,
+    private static BaseInstance getInstance(String reqId, Placement placement, WaterfallResult.Ins insObject,
                                             SparseArray<BaseInstance> insMap, MediationRule mediationRule, int abt) {
         if (insObject != null) {
-            int insId = insObject.optInt("id");
+            int insId = insObject.getId();
             BaseInstance ins = insMap.get(insId);
             if (ins != null) {
                 if (ins.getMediationState() != BaseInstance.MEDIATION_STATE.AVAILABLE) {
                     ins.setWfAbt(abt);
                     ins.setMediationRule(mediationRule);
                     ins.setReqId(reqId);
-                    ins.setRevenue(insObject.optDouble("r", 0d));
-                    ins.setPriority(insObject.optInt("i", -1));
-                    ins.setRevenuePrecision(insObject.optInt("rp", -1));
+                    ins.setRevenue(insObject.getR());
+                    ins.setPriority(insObject.getI());
+                    ins.setRevenuePrecision(insObject.getRp());
                 }
                 return ins;
             }
@@ -767,20 +763,8 @@ public class InsManager {
             if (p == null) {
                 continue;
             }
-            SparseArray<BaseInstance> instances = p.getInsMap();
-            if (instances != null && instances.size() > 0) {
-                int size = instances.size();
-                for (int i = 0; i < size; i++) {
-                    BaseInstance mp = instances.valueAt(i);
-                    if (mp == null) {
-                        continue;
-                    }
-                    //mp doesn't belong to the AdNetwork
-                    if (mp.getMediationId() != mediation.getId()) {
-                        continue;
-                    }
-                    instanceKeys.add(mp.getKey());
-                }
+            for (BaseInstance mp : p.getRegistry().getByMediation(mediation.getId())) {
+                instanceKeys.add(mp.getKey());
             }
         }
         return instanceKeys;
@@ -0,0 +1,163 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.core;
+
+import com.openmediation.sdk.utils.model.BaseInstance;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instances of a load, in priority order, bucketed by mediation state.
+ * <p>
+ * Each state has a count and a bit set of the positions of its instances, kept up to date by the
+ * instances themselves through {@link BaseInstance.OnMediationStateChangedListener}. Counting is
+ * constant time and finding the best instance in a state takes one scan of the bit set words. A
+ * change reads the instance's current state rather than trusting the order notifications arrive
+ * in, so concurrent changes of one instance still leave it in the bucket of its last state.
+ */
+final class InstanceStates implements BaseInstance.OnMediationStateChangedListener {
+    private static final BaseInstance.MEDIATION_STATE[] STATES = BaseInstance.MEDIATION_STATE.values();
+
+    private final List<BaseInstance> mInstances = new ArrayList<>();
+    private final Map<BaseInstance, Integer> mPositions = new IdentityHashMap<>();
+    //state each position is bucketed under, null for none
+    private BaseInstance.MEDIATION_STATE[] mStates = new BaseInstance.MEDIATION_STATE[0];
+    private final BitSet[] mBuckets = new BitSet[STATES.length];
+    private final int[] mCounts = new int[STATES.length];
+
+    InstanceStates() {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Tracks a new set of instances instead of the current one
+     *
+     * @param instances the instances, in priority order
+     */
+    synchronized void reset(List<BaseInstance> instances) {
+        for (BaseInstance instance : mInstances) {
+            if (instance.getOnMediationStateChangedListener() == this) {
+                instance.setOnMediationStateChangedListener(null);
+            }
+        }
+        mInstances.clear();
+        mPositions.clear();
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i].clear();
+            mCounts[i] = 0;
+        }
+        if (instances != null) {
+            for (BaseInstance instance : instances) {
+                if (instance != null && !mPositions.containsKey(instance)) {
+                    mPositions.put(instance, mInstances.size());
+                    mInstances.add(instance);
+                }
+            }
+        }
+        mStates = new BaseInstance.MEDIATION_STATE[mInstances.size()];
+        for (int i = 0; i < mInstances.size(); i++) {
+            BaseInstance instance = mInstances.get(i);
+            instance.setOnMediationStateChangedListener(this);
+            move(i, instance.getMediationState());
+        }
+    }
+
+    @Override
+    public synchronized void onMediationStateChanged(BaseInstance instance) {
+        Integer position = mPositions.get(instance);
+        if (position != null) {
+            move(position, instance.getMediationState());
+        }
+    }
+
+    synchronized int size() {
+        return mInstances.size();
+    }
+
+    /**
+     * @return number of instances in any of the states
+     */
+    synchronized int count(BaseInstance.MEDIATION_STATE... states) {
+        int count = 0;
+        for (BaseInstance.MEDIATION_STATE state : states) {
+            count += mCounts[state.ordinal()];
+        }
+        return count;
+    }
+
+    /**
+     * @return highest priority instance in any of the states, null if there is none
+     */
+    synchronized BaseInstance first(BaseInstance.MEDIATION_STATE... states) {
+        int first = -1;
+        for (BaseInstance.MEDIATION_STATE state : states) {
+            int position = mBuckets[state.ordinal()].nextSetBit(0);
+            if (position >= 0 && (first < 0 || position < first)) {
+                first = position;
+            }
+        }
+        return first >= 0 ? mInstances.get(first) : null;
+    }
+
+    /**
+     * @return highest priority instance a load can start on, null if there is none
+     */
+    BaseInstance nextLoadable() {
+        return first(BaseInstance.MEDIATION_STATE.NOT_INITIATED, BaseInstance.MEDIATION_STATE.INITIATED,
+                BaseInstance.MEDIATION_STATE.NOT_AVAILABLE);
+    }
+
+    /**
+     * @return instances in a state, in priority order
+     */
+    synchronized List<BaseInstance> get(BaseInstance.MEDIATION_STATE state) {
+        BitSet bucket = mBuckets[state.ordinal()];
+        if (bucket.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<BaseInstance> instances = new ArrayList<>(mCounts[state.ordinal()]);
+        for (int i = bucket.nextSetBit(0); i >= 0; i = bucket.nextSetBit(i + 1)) {
+            instances.add(mInstances.get(i));
+        }
+        return instances;
+    }
+
+    /**
+     * @return ids of instances in a state, in priority order
+     */
+    synchronized List<Integer> getIds(BaseInstance.MEDIATION_STATE state) {
+        BitSet bucket = mBuckets[state.ordinal()];
+        if (bucket.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Integer> ids = new ArrayList<>(mCounts[state.ordinal()]);
+        for (int i = bucket.nextSetBit(0); i >= 0; i = bucket.nextSetBit(i + 1)) {
+            ids.add(mInstances.get(i).getId());
+        }
+        return ids;
+    }
+
+    private void move(int position, BaseInstance.MEDIATION_STATE state) {
+        BaseInstance.MEDIATION_STATE old = mStates[position];
+        if (old == state) {
+            return;
+        }
+        if (old != null) {
+            mBuckets[old.ordinal()].clear(position);
+            mCounts[old.ordinal()]--;
+        }
+        if (state != null) {
+            mBuckets[state.ordinal()].set(position);
+            mCounts[state.ordinal()]++;
+        }
+        mStates[position] = state;
+    }
+}
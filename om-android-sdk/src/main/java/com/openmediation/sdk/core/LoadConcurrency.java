@@ -0,0 +1,125 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.core;
+
+import android.util.SparseIntArray;
+
+import com.openmediation.sdk.utils.model.BaseInstance;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * How many instances of a placement load at once, from what its instances did lately.
+ * <p>
+ * Each instance has a rolling fill rate and load latency, exponentially weighted, kept in primitive
+ * arrays indexed through a SparseIntArray of instance ids. The limit walks the loadable instances in
+ * priority order and stops once the chance that none of them fills drops under {@value #MISS_TARGET}:
+ * when the top instances fill reliably only they load, and networks further down aren't asked for ads
+ * they would only be outbid on. Timeouts and no-fills lower an instance's fill rate, and a fill slower
+ * than half the load timeout counts half, so top instances that keep timing out bring the limit back up.
+ * Until an instance has {@value #MIN_SAMPLES} results nothing is known and the walk stops at bs, the
+ * server's concurrency, which is also the upper bound.
+ */
+final class LoadConcurrency {
+    private static final float ALPHA = 0.2f;
+    private static final int MIN_SAMPLES = 3;
+    private static final float MISS_TARGET = 0.1f;
+
+    //instance id to index of the arrays below
+    private final SparseIntArray mIndexes = new SparseIntArray();
+    private float[] mFill = new float[8];
+    private int[] mLatency = new int[8];
+    private int[] mSamples = new int[8];
+
+    /**
+     * Records a load that filled
+     *
+     * @param duration milliseconds from load start to fill
+     */
+    synchronized void onFilled(BaseInstance instance, long duration) {
+        record(instance, 1, duration);
+    }
+
+    /**
+     * Records a load that returned no fill or timed out
+     *
+     * @param duration milliseconds from load start to the failure
+     */
+    synchronized void onNoFill(BaseInstance instance, long duration) {
+        record(instance, 0, duration);
+    }
+
+    /**
+     * @param bs        server issued max concurrent number
+     * @param timeout   placement load timeout, in seconds
+     * @param instances instances of the load in priority order
+     * @return instances that should be loading at once, between 1 and bs
+     */
+    synchronized int getLimit(int bs, int timeout, List<BaseInstance> instances) {
+        if (bs <= 1) {
+            return bs;
+        }
+        int slow = timeout * 500;
+        float miss = 1f;
+        int count = 0;
+        for (BaseInstance instance : instances) {
+            if (!isLoadable(instance.getMediationState())) {
+                continue;
+            }
+            count++;
+            if (count >= bs) {
+                return bs;
+            }
+            int index = mIndexes.get(instance.getId(), -1);
+            if (index < 0 || mSamples[index] < MIN_SAMPLES) {
+                return bs;
+            }
+            float fill = mLatency[index] > slow ? mFill[index] / 2 : mFill[index];
+            miss *= 1f - fill;
+            if (miss <= MISS_TARGET) {
+                return count;
+            }
+        }
+        return bs;
+    }
+
+    private void record(BaseInstance instance, int filled, long duration) {
+        if (instance == null) {
+            return;
+        }
+        int index = mIndexes.get(instance.getId(), -1);
+        if (index < 0) {
+            index = mIndexes.size();
+            mIndexes.put(instance.getId(), index);
+            if (index == mFill.length) {
+                mFill = Arrays.copyOf(mFill, index * 2);
+                mLatency = Arrays.copyOf(mLatency, index * 2);
+                mSamples = Arrays.copyOf(mSamples, index * 2);
+            }
+        }
+        int latency = (int) Math.max(0, Math.min(duration, Integer.MAX_VALUE));
+        if (mSamples[index] == 0) {
+            mFill[index] = filled;
+            mLatency[index] = latency;
+        } else {
+            mFill[index] += ALPHA * (filled - mFill[index]);
+            mLatency[index] += (int) (ALPHA * (latency - mLatency[index]));
+        }
+        if (mSamples[index] < MIN_SAMPLES) {
+            mSamples[index]++;
+        }
+    }
+
+    /**
+     * @return true for states initOrFetchNextAdapter counts against the limit
+     */
+    private static boolean isLoadable(BaseInstance.MEDIATION_STATE state) {
+        return state == BaseInstance.MEDIATION_STATE.NOT_INITIATED
+                || state == BaseInstance.MEDIATION_STATE.INIT_PENDING
+                || state == BaseInstance.MEDIATION_STATE.INITIATED
+                || state == BaseInstance.MEDIATION_STATE.LOAD_PENDING
+                || state == BaseInstance.MEDIATION_STATE.NOT_AVAILABLE;
+    }
+}
@@ -0,0 +1,280 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.core;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.openmediation.sdk.bid.AuctionCallback;
+import com.openmediation.sdk.bid.AuctionUtil;
+import com.openmediation.sdk.bid.BidAuctionManager;
+import com.openmediation.sdk.bid.BidLoseReason;
+import com.openmediation.sdk.bid.BidResponse;
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.JsonUtil;
+import com.openmediation.sdk.utils.PlacementUtils;
+import com.openmediation.sdk.utils.event.EventId;
+import com.openmediation.sdk.utils.event.EventUploadManager;
+import com.openmediation.sdk.utils.model.BaseInstance;
+import com.openmediation.sdk.utils.model.Placement;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pipelined load: S2S token collection, the waterfall request and C2S bids for the instances that
+ * the last waterfall of this placement returned as c2s run at the same time. Once both the waterfall
+ * response and the C2S bids are back, the results are merged and handed to
+ * {@link AbstractAdsApi#onBidC2SComplete(List, List)}, which orders them with {@link InsManager#sort(List, List)}
+ * just like the serial load does.
+ */
+class LoadPipeline {
+
+    /**
+     * c2s instance ids of the last waterfall response, per placement
+     */
+    private static final Map<String, Set<Integer>> C2S_HINTS = new ConcurrentHashMap<>();
+
+    private final AbstractAdsApi mAdsApi;
+    private final Context mContext;
+    private final Placement mPlacement;
+    private final String mReqId;
+
+    private final Set<Integer> mSpeculativeIds = new HashSet<>();
+    private final Map<Integer, BaseInstance> mBidInstances = new HashMap<>();
+    private final Map<Integer, BidResponse> mBidResponses = new HashMap<>();
+    private List<BaseInstance> mWfC2SInstances;
+
+    private boolean isWfReturned;
+    private boolean isSpeculativeDone;
+    private boolean isLateBidding;
+    private boolean isFinished;
+
+    private long mStartTs;
+    private long mS2SDoneTs;
+    private long mWfDoneTs;
+    private long mC2SDoneTs;
+
+    LoadPipeline(AbstractAdsApi adsApi, Context context, Placement placement, String reqId) {
+        mAdsApi = adsApi;
+        mContext = context;
+        mPlacement = placement;
+        mReqId = reqId;
+    }
+
+    void start() {
+        mStartTs = System.currentTimeMillis();
+        List<BaseInstance> speculative = getSpeculativeInstances();
+        for (BaseInstance instance : speculative) {
+            mSpeculativeIds.add(instance.getId());
+        }
+        DeveloperLog.LogD("LoadPipeline start, placement: " + mPlacement.getId() + ", speculative c2s: " + mSpeculativeIds);
+        BidAuctionManager.getInstance().s2sBid(mContext, mPlacement.getId(), mReqId, mPlacement.getT(),
+                new HashSet<>(mSpeculativeIds), new S2SCallback());
+        BidAuctionManager.getInstance().c2sBid(mContext, speculative, mPlacement.getId(), mReqId, mPlacement.getT(),
+                new C2SCallback(true));
+    }
+
+    /**
+     * Called with the c2s instances of the waterfall response
+     *
+     * @param c2sInstances c2s instances, may be null or empty
+     */
+    synchronized void onWaterfallResponse(List<BaseInstance> c2sInstances) {
+        if (isFinished) {
+            return;
+        }
+        mWfDoneTs = System.currentTimeMillis();
+        isWfReturned = true;
+        mWfC2SInstances = c2sInstances;
+        Set<Integer> hints = new HashSet<>();
+        if (c2sInstances != null) {
+            for (BaseInstance instance : c2sInstances) {
+                hints.add(instance.getId());
+            }
+        }
+        C2S_HINTS.put(mPlacement.getId(), hints);
+        tryMerge();
+    }
+
+    /**
+     * Called when the load ended before the merge, releases bids won speculatively
+     */
+    synchronized void abort() {
+        if (isFinished) {
+            return;
+        }
+        isFinished = true;
+        if (isSpeculativeDone) {
+            notifyLose(new ArrayList<>(mBidResponses.keySet()));
+        }
+    }
+
+    private synchronized void onS2SComplete() {
+        mS2SDoneTs = System.currentTimeMillis();
+    }
+
+    private synchronized void onC2SComplete(boolean speculative, List<BaseInstance> instances, List<BidResponse> responses) {
+        if (responses != null) {
+            for (BidResponse response : responses) {
+                if (response != null) {
+                    mBidResponses.put(response.getIid(), response);
+                }
+            }
+        }
+        if (instances != null) {
+            for (BaseInstance instance : instances) {
+                if (instance != null && instance.getBidState() == BaseInstance.BID_STATE.BID_SUCCESS) {
+                    mBidInstances.put(instance.getId(), instance);
+                }
+            }
+        }
+        if (isFinished) {
+            // load ended while bidding, nobody is going to use these bids
+            notifyLose(new ArrayList<>(mBidResponses.keySet()));
+            return;
+        }
+        if (speculative) {
+            isSpeculativeDone = true;
+        } else {
+            isLateBidding = false;
+        }
+        mC2SDoneTs = System.currentTimeMillis();
+        tryMerge();
+    }
+
+    private void tryMerge() {
+        if (!isWfReturned || !isSpeculativeDone || isLateBidding) {
+            return;
+        }
+        List<BaseInstance> lateInstances = new ArrayList<>();
+        Set<Integer> wfIds = new HashSet<>();
+        if (mWfC2SInstances != null) {
+            for (BaseInstance instance : mWfC2SInstances) {
+                wfIds.add(instance.getId());
+                if (!mSpeculativeIds.contains(instance.getId())) {
+                    lateInstances.add(instance);
+                }
+            }
+        }
+        // bids the server didn't ask for this time
+        List<Integer> unused = new ArrayList<>();
+        for (Integer id : mBidResponses.keySet()) {
+            if (!wfIds.contains(id)) {
+                unused.add(id);
+            }
+        }
+        notifyLose(unused);
+
+        if (!lateInstances.isEmpty()) {
+            // instances the hint missed, bid them now
+            isLateBidding = true;
+            mSpeculativeIds.addAll(wfIds);
+            BidAuctionManager.getInstance().c2sBid(mContext, lateInstances, mPlacement.getId(), mReqId,
+                    mPlacement.getT(), new C2SCallback(false));
+            return;
+        }
+        isFinished = true;
+
+        List<BaseInstance> c2sInstances = new ArrayList<>();
+        List<BidResponse> responses = new ArrayList<>();
+        if (mWfC2SInstances != null) {
+            for (BaseInstance instance : mWfC2SInstances) {
+                BidResponse response = mBidResponses.get(instance.getId());
+                if (response == null || !mBidInstances.containsKey(instance.getId())) {
+                    continue;
+                }
+                // InsManager.getC2SInstances reset these when the waterfall came back
+                instance.setRevenue(response.getPrice());
+                instance.setBidResponse(response);
+                c2sInstances.add(instance);
+                responses.add(response);
+            }
+        }
+        reportTiming();
+        mAdsApi.onBidC2SComplete(c2sInstances, responses);
+    }
+
+    private void notifyLose(List<Integer> ids) {
+        for (Integer id : ids) {
+            BidResponse response = mBidResponses.remove(id);
+            BaseInstance instance = mBidInstances.remove(id);
+            if (response == null || instance == null) {
+                continue;
+            }
+            AuctionUtil.notifyLose(instance, response, BidLoseReason.INTERNAL.getValue());
+            instance.setBidResponse(null);
+        }
+    }
+
+    private List<BaseInstance> getSpeculativeInstances() {
+        List<BaseInstance> instances = new ArrayList<>();
+        Set<Integer> hints = C2S_HINTS.get(mPlacement.getId());
+        SparseArray<BaseInstance> insMap = mPlacement.getInsMap();
+        if (hints == null || hints.isEmpty() || insMap == null) {
+            return instances;
+        }
+        boolean cacheAds = PlacementUtils.isCacheAdsType(mPlacement.getT());
+        for (Integer id : hints) {
+            BaseInstance instance = insMap.get(id);
+            if (instance == null || instance.getHb() != 1) {
+                continue;
+            }
+            if (cacheAds && InsManager.isInstanceAvailable(instance)) {
+                continue;
+            }
+            instances.add(instance);
+        }
+        return instances;
+    }
+
+    private void reportTiming() {
+        long end = System.currentTimeMillis();
+        JSONObject data = PlacementUtils.placementEventParams(mPlacement.getId());
+        JsonUtil.put(data, "reqId", mReqId);
+        JsonUtil.put(data, "s2s", mS2SDoneTs > 0 ? mS2SDoneTs - mStartTs : -1);
+        JsonUtil.put(data, "wf", mWfDoneTs - mStartTs);
+        JsonUtil.put(data, "c2s", mC2SDoneTs > 0 ? mC2SDoneTs - mStartTs : -1);
+        JsonUtil.put(data, "duration", end - mStartTs);
+        DeveloperLog.LogD("LoadPipeline merged, timing: " + data);
+        EventUploadManager.getInstance().uploadEvent(EventId.LOAD_PIPELINE_TIMING, data);
+    }
+
+    private class S2SCallback implements AuctionCallback {
+
+        @Override
+        public void onBidS2SComplete(List<BidResponse> responses) {
+            onS2SComplete();
+            mAdsApi.requestWaterfall(responses);
+        }
+
+        @Override
+        public void onBidC2SComplete(List<BaseInstance> c2sInstances, List<BidResponse> responses) {
+        }
+    }
+
+    private class C2SCallback implements AuctionCallback {
+        private final boolean isSpeculative;
+
+        C2SCallback(boolean speculative) {
+            isSpeculative = speculative;
+        }
+
+        @Override
+        public void onBidS2SComplete(List<BidResponse> responses) {
+        }
+
+        @Override
+        public void onBidC2SComplete(List<BaseInstance> c2sInstances, List<BidResponse> responses) {
+            onC2SComplete(isSpeculative, c2sInstances, responses);
+        }
+    }
+}
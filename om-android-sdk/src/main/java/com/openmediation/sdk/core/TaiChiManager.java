@@ -8,7 +8,7 @@ package com.openmediation.sdk.core;
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.FirebaseUtil;
 import com.openmediation.sdk.utils.JsonUtil;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.cache.LifetimeRevenueData;
 import com.openmediation.sdk.utils.constant.KeyConstants;
@@ -60,7 +60,7 @@ public class TaiChiManager {
                 }
             }
         };
-        WorkExecutor.execute(runnable);
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, runnable);
     }
 
     private static void resetUarData() {
@@ -72,14 +72,18 @@ public class IsInstance extends BaseInstance implements InterstitialAdCallback,
 
     @Override
     public void onInterstitialAdInitSuccess() {
-        InsManager.onInsInitSuccess(this);
+        if (!InsManager.onInsInitSuccess(this)) {
+            return;
+        }
         mListener.onInterstitialAdInitSuccess(this);
     }
 
     @Override
     public void onInterstitialAdInitFailed(AdapterError error) {
         AdLog.getSingleton().LogE("Interstitial Ad Init Failed: " + error.toString());
-        InsManager.onInsInitFailed(this, error);
+        if (!InsManager.onInsInitFailed(this, error)) {
+            return;
+        }
         mListener.onInterstitialAdInitFailed(this, error);
     }
 
@@ -122,4 +126,9 @@ public class IsInstance extends BaseInstance implements InterstitialAdCallback,
                 AdapterErrorBuilder.AD_UNIT_INTERSTITIAL, mAdapter == null ? "" : mAdapter.getClass().getSimpleName(), ErrorCode.ERROR_TIMEOUT);
         onInterstitialAdLoadFailed(errorResult);
     }
+
+    @Override
+    protected boolean isMediationStateGuarded() {
+        return true;
+    }
 }
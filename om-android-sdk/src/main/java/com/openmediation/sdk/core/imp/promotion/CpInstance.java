@@ -70,13 +70,17 @@ public class CpInstance extends BaseInstance implements PromotionAdCallback, Loa
 
     @Override
     public void onPromotionAdInitSuccess() {
-        InsManager.onInsInitSuccess(this);
+        if (!InsManager.onInsInitSuccess(this)) {
+            return;
+        }
         mListener.onPromotionAdInitSuccess(this);
     }
 
     @Override
     public void onPromotionAdInitFailed(AdapterError error) {
-        InsManager.onInsInitFailed(this, error);
+        if (!InsManager.onInsInitFailed(this, error)) {
+            return;
+        }
         mListener.onPromotionAdInitFailed(this, error);
     }
 
@@ -122,4 +126,9 @@ public class CpInstance extends BaseInstance implements PromotionAdCallback, Loa
         onPromotionAdLoadFailed(AdapterErrorBuilder.buildLoadCheckError(
                 AdapterErrorBuilder.AD_UNIT_PROMOTION, mAdapter == null ? "" : mAdapter.getClass().getSimpleName(), ErrorCode.ERROR_TIMEOUT));
     }
+
+    @Override
+    protected boolean isMediationStateGuarded() {
+        return true;
+    }
 }
@@ -79,14 +79,18 @@ public class RvInstance extends BaseInstance implements RewardedVideoCallback, L
 
     @Override
     public void onRewardedVideoInitSuccess() {
-        InsManager.onInsInitSuccess(this);
+        if (!InsManager.onInsInitSuccess(this)) {
+            return;
+        }
         mListener.onRewardedVideoInitSuccess(this);
     }
 
     @Override
     public void onRewardedVideoInitFailed(AdapterError error) {
         AdLog.getSingleton().LogE("RewardedVideo Ad Init Failed: " + error.toString());
-        InsManager.onInsInitFailed(this, error);
+        if (!InsManager.onInsInitFailed(this, error)) {
+            return;
+        }
         mListener.onRewardedVideoInitFailed(this, error);
     }
 
@@ -148,4 +152,9 @@ public class RvInstance extends BaseInstance implements RewardedVideoCallback, L
                 AdapterErrorBuilder.AD_UNIT_REWARDED_VIDEO, mAdapter == null ? "" : mAdapter.getClass().getSimpleName(), ErrorCode.ERROR_TIMEOUT);
         onRewardedVideoLoadFailed(errorResult);
     }
+
+    @Override
+    protected boolean isMediationStateGuarded() {
+        return true;
+    }
 }
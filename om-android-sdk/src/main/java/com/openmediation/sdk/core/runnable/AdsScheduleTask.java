@@ -3,7 +3,7 @@ package com.openmediation.sdk.core.runnable;
 import com.openmediation.sdk.core.AbstractInventoryAds;
 import com.openmediation.sdk.core.OmManager;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 
 import java.util.Map;
@@ -47,7 +47,7 @@ public class AdsScheduleTask implements Runnable {
             }
             if (delay > 0) {
                 DeveloperLog.LogD("execute adsScheduleTask delay : " + delay + ", fail count = " + count);
-                WorkExecutor.execute(this, delay, TimeUnit.SECONDS);
+                LaneExecutor.execute(LaneExecutor.Lane.AUCTION, this, delay, TimeUnit.SECONDS);
             } else {
                 DeveloperLog.LogD("can't execute adsScheduleTask delay : " + delay);
             }
@@ -3,12 +3,9 @@
 
 package com.openmediation.sdk.core.runnable;
 
-import com.openmediation.sdk.utils.HandlerUtil;
-
 /**
- * Instance's ads load timeout runnable, when timeout occurs, call{@link OnLoadTimeoutListener} to notify Instance
- *
- * 
+ * Instance's ads load timeout runnable, when timeout occurs, call{@link OnLoadTimeoutListener} to notify Instance.
+ * Runs on the main thread, from {@link com.openmediation.sdk.utils.TimerWheel}
  */
 public class LoadTimeoutRunnable implements Runnable {
 
@@ -23,14 +20,9 @@ public class LoadTimeoutRunnable implements Runnable {
 
     @Override
     public void run() {
-        HandlerUtil.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                if (mListener != null) {
-                    mListener.onLoadTimeout();
-                }
-            }
-        });
+        if (mListener != null) {
+            mListener.onLoadTimeout();
+        }
     }
 
     /**
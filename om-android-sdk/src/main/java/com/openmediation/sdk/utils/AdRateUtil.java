@@ -3,40 +3,40 @@
 
 package com.openmediation.sdk.utils;
 
-import android.text.TextUtils;
-
 import com.openmediation.sdk.core.InsManager;
 import com.openmediation.sdk.utils.event.EventId;
 import com.openmediation.sdk.utils.event.EventUploadManager;
 import com.openmediation.sdk.utils.model.BaseInstance;
 import com.openmediation.sdk.utils.model.Placement;
 import com.openmediation.sdk.utils.model.Scene;
-import com.openmediation.sdk.utils.cache.DataCache;
+import com.openmediation.sdk.utils.cache.FrequencyCapStore;
 
 /**
- * Ads impression rate control
+ * Ads impression rate control, counters are kept in {@link FrequencyCapStore}
  */
 public class AdRateUtil {
-    private static String RATE = "Rate";
-    private static String CAP = "CAP";
-    private static String CAP_TIME = "CAPTime";
 
     /**
      * saves placement's and instance's impression time and count
      *
-     * @param placementId  the placement id
-     * @param instancesKey the instances key
+     * @param instance the instance
      */
-    public static void onInstancesShowed(final String placementId, final String instancesKey) {
-        WorkExecutor.execute(new Runnable() {
+    public static void onInstancesShowed(BaseInstance instance) {
+        if (instance == null) {
+            return;
+        }
+        final String placementId = instance.getPlacementId();
+        int id = parseId(placementId);
+        if (id < 0) {
+            return;
+        }
+        Placement placement = PlacementUtils.getPlacement(placementId);
+        FrequencyCapStore store = FrequencyCapStore.getInstance();
+        store.onPlacementShowed(id, placement != null ? placement.getFrequencyUnit() : 0);
+        store.onInstanceShowed(id, instance.getId(), instance.getFrequencyUnit());
+        LaneExecutor.execute(LaneExecutor.Lane.DISK, new Runnable() {
             @Override
             public void run() {
-                AdRateUtil.saveShowTime(placementId);
-                AdRateUtil.addCAP(placementId);
-
-                AdRateUtil.saveShowTime(placementId + instancesKey);
-                AdRateUtil.addCAP(placementId + instancesKey);
-                //
                 PlacementUtils.savePlacementImprCount(placementId);
             }
         });
@@ -48,23 +48,12 @@ public class AdRateUtil {
      * @param placementId the placement id
      * @param scene       the scene
      */
-    public static void onSceneShowed(final String placementId, final Scene scene) {
-        if (scene != null) {
-            WorkExecutor.execute(new Runnable() {
-                @Override
-                public void run() {
-                    AdRateUtil.saveShowTime(placementId + scene.getN());
-                    AdRateUtil.addCAP(placementId + scene.getN());
-                }
-            });
+    public static void onSceneShowed(String placementId, Scene scene) {
+        int id = parseId(placementId);
+        if (scene == null || id < 0) {
+            return;
         }
-    }
-
-    /**
-     * @param key
-     */
-    private static void saveShowTime(String key) {
-        DataCache.getInstance().set(RATE + key, System.currentTimeMillis());
+        FrequencyCapStore.getInstance().onSceneShowed(id, scene.getId(), scene.getFrequencyUnit());
     }
 
     /**
@@ -74,10 +63,11 @@ public class AdRateUtil {
      * @return the boolean
      */
     public static boolean shouldBlockPlacement(Placement placement) {
-        if (placement == null || TextUtils.isEmpty(placement.getId())) {
+        int id = placement != null ? parseId(placement.getId()) : -1;
+        if (id < 0) {
             return false;
         }
-        boolean result = AdRateUtil.isInterval(placement.getId(), placement.getFrequencyInterval());
+        boolean result = FrequencyCapStore.getInstance().isPlacementInInterval(id, placement.getFrequencyInterval());
         if (result) {
             EventUploadManager.getInstance().uploadEvent(EventId.PLACEMENT_CAPPED);
         }
@@ -91,11 +81,12 @@ public class AdRateUtil {
      * @return the boolean
      */
     public static boolean isPlacementCapped(Placement placement) {
-        if (placement == null || TextUtils.isEmpty(placement.getId())) {
+        int id = placement != null ? parseId(placement.getId()) : -1;
+        if (id < 0) {
             return false;
         }
-        boolean result = AdRateUtil.isCAP(placement.getId(), placement.getFrequencyUnit(), placement.getFrequencyCap());
-
+        boolean result = FrequencyCapStore.getInstance().isPlacementCapped(id, placement.getFrequencyUnit(),
+                placement.getFrequencyCap());
         if (result) {
             EventUploadManager.getInstance().uploadEvent(EventId.PLACEMENT_CAPPED);
         }
@@ -105,16 +96,17 @@ public class AdRateUtil {
     /**
      * Should block instance boolean.
      *
-     * @param key      the key
      * @param instance the instance
      * @return the boolean
      */
-    public static boolean shouldBlockInstance(String key, BaseInstance instance) {
-        if (TextUtils.isEmpty(key)) {
+    public static boolean shouldBlockInstance(BaseInstance instance) {
+        int id = instance != null ? parseId(instance.getPlacementId()) : -1;
+        if (id < 0) {
             return false;
         }
-        boolean result = AdRateUtil.isInterval(key, instance.getFrequencyInterval())
-                || AdRateUtil.isCAP(key, instance.getFrequencyUnit(), instance.getFrequencyCap());
+        FrequencyCapStore store = FrequencyCapStore.getInstance();
+        boolean result = store.isInstanceInInterval(id, instance.getId(), instance.getFrequencyInterval())
+                || store.isInstanceCapped(id, instance.getId(), instance.getFrequencyUnit(), instance.getFrequencyCap());
         if (result) {
             EventUploadManager.getInstance().uploadEvent(EventId.INSTANCE_CAPPED, InsManager.buildReportData(instance));
         }
@@ -129,8 +121,9 @@ public class AdRateUtil {
      * @return the boolean
      */
     public static boolean shouldBlockScene(String placementId, Scene scene) {
-        boolean result = scene != null && AdRateUtil.isCAP(placementId + scene.getN(), scene.getFrequencyUnit(),
-                scene.getFrequencyCap());
+        int id = parseId(placementId);
+        boolean result = scene != null && id >= 0 && FrequencyCapStore.getInstance().isSceneCapped(id, scene.getId(),
+                scene.getFrequencyUnit(), scene.getFrequencyCap());
         if (result) {
             EventUploadManager.getInstance().uploadEvent(EventId.SCENE_CAPPED, SceneUtil.sceneReport(placementId, scene));
         }
@@ -138,75 +131,22 @@ public class AdRateUtil {
     }
 
     /**
-     * is Interval long enough
-     *
-     * @param key
-     * @param rate
-     * @return
-     */
-    private static boolean isInterval(String key, long rate) {
-        if (rate == 0) {
-            return false;
-        }
-        Long beforeTime = DataCache.getInstance().get(RATE + key, long.class);
-        if (beforeTime == null) {
-            return false;
-        }
-        DeveloperLog.LogD("Interval:" + key + ":" + (System.currentTimeMillis() - beforeTime) + ":" + rate);
-        return System.currentTimeMillis() - beforeTime < rate;
-    }
-
-    /**
-     * saves current Placement/Mediation impression count and 1st impression time
+     * Parses a numeric id without allocating
      *
-     * @param key
+     * @return the id, or -1 if it isn't a non-negative int
      */
-    private static void addCAP(String key) {
-        Integer cap = DataCache.getInstance().get(CAP + key, int.class);
-        if (cap == null) {
-            cap = 0;
+    private static int parseId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 10) {
+            return -1;
         }
-        DeveloperLog.LogD("AddCAP:" + key + ":" + cap + 1);
-        DataCache.getInstance().set(CAP + key, cap + 1);
-        Long capTime = DataCache.getInstance().get(CAP_TIME + key, long.class);
-        if (capTime == null) {
-            DataCache.getInstance().set(CAP_TIME + key, System.currentTimeMillis());
-        }
-    }
-
-    /**
-     * checks how many impressions exist between current Placement's 1st impression time and now
-     *
-     * @param key
-     * @param time  hours
-     * @param count
-     * @return
-     */
-    private static boolean isCAP(String key, int time, int count) {
-        if (count <= 0) {
-            return false;
-        }
-        Long capTime = DataCache.getInstance().get(CAP_TIME + key, long.class);
-        if (capTime == null) {
-            return false;
-        }
-        try {
-            Integer cap = DataCache.getInstance().get(CAP + key, int.class);
-            DeveloperLog.LogD("CapTime:" + key + ":" + (System.currentTimeMillis() - capTime) +
-                    ":" + time + ":Cap:" + cap + ":" + count);
-            if (cap == null) {
-                cap = 0;
-            }
-            if (System.currentTimeMillis() - capTime < time) {
-                return cap >= count;
-            } else {
-                DataCache.getInstance().delete(CAP_TIME + key);
-                DataCache.getInstance().delete(CAP + key);
-                return false;
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
             }
-        } catch(Exception e) {
-            DeveloperLog.LogD("isCAP Error: " + e.getMessage());
+            value = value * 10 + (c - '0');
         }
-        return false;
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
     }
 }
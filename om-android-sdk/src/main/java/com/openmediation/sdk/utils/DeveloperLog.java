@@ -19,6 +19,10 @@ public class DeveloperLog {
         debug = enable || (context != null && new File(context.getFilesDir(), "log.txt").exists());
     }
 
+    public static boolean isDebug() {
+        return debug;
+    }
+
     public static void LogD(String info) {
         if (!debug) {
             return;
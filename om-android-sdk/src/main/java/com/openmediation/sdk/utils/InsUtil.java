@@ -177,19 +177,15 @@ public class InsUtil {
         return statusList;
     }
 
+    /**
+     * Copies the instances of a placement into a list the caller may change. Read-only callers
+     * should use {@link Placement#getRegistry()} instead
+     */
     public static CopyOnWriteArrayList<BaseInstance> getInstanceList(Placement placement) {
-        if (placement == null || placement.getInsMap() == null || placement.getInsMap().size() == 0) {
+        if (placement == null || placement.getRegistry().isEmpty()) {
             return null;
         }
-        SparseArray<BaseInstance> insMap = placement.getInsMap();
-        CopyOnWriteArrayList<BaseInstance> list = new CopyOnWriteArrayList<>();
-        for (int i = 0; i < insMap.size(); i++) {
-            BaseInstance instance = insMap.valueAt(i);
-            if (instance != null) {
-                list.add(instance);
-            }
-        }
-        return list;
+        return new CopyOnWriteArrayList<>(placement.getRegistry().getAll());
     }
 
     /**
@@ -220,25 +216,28 @@ public class InsUtil {
      * @return BaseInstance
      */
     public static BaseInstance getInsById(Placement placement, String instanceId) {
-        if (TextUtils.isEmpty(instanceId)) {
+        if (TextUtils.isEmpty(instanceId) || placement == null) {
             return null;
         }
-        if (placement == null) {
+        try {
+            return placement.getRegistry().get(Integer.parseInt(instanceId));
+        } catch (NumberFormatException e) {
             return null;
         }
-        CopyOnWriteArrayList<BaseInstance> instanceList = getInstanceList(placement);
-        if (instanceList == null || instanceList.isEmpty()) {
+    }
+
+    /**
+     * Gets ins by id.
+     *
+     * @param placement  the placement
+     * @param instanceId the instance id
+     * @return BaseInstance
+     */
+    public static BaseInstance getInsById(Placement placement, int instanceId) {
+        if (placement == null) {
             return null;
         }
-        for (BaseInstance ins : instanceList) {
-            if (ins == null) {
-                continue;
-            }
-            if (TextUtils.equals(instanceId, String.valueOf(ins.getId()))) {
-                return ins;
-            }
-        }
-        return null;
+        return placement.getRegistry().get(instanceId);
     }
 
     public static boolean isInstanceAvailable(BaseInstance instance) {
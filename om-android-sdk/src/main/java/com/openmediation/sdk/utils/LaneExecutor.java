@@ -0,0 +1,256 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.openmediation.sdk.utils.crash.CrashUtil;
+
+import java.util.Locale;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named thread pools, one per kind of work, so a burst in one lane can't delay another.
+ * <p>
+ * Each lane has its own threads, thread priority and queue bound. A task that finds its lane's queue full
+ * is counted as rejected and stays out of other pools: on DISK and REPORT it runs at once on the caller's
+ * thread, delay or not, as a flush or a report run early beats a lost one. On AUCTION and DOWNLOAD it is dropped.
+ */
+public final class LaneExecutor {
+
+    public enum Lane {
+        /**
+         * waterfall and bid requests, ad reloads
+         */
+        AUCTION("om-auction", 4, Process.THREAD_PRIORITY_DEFAULT, 128, false),
+        /**
+         * lr, crash, iap and other reports
+         */
+        REPORT("om-report", 2, Process.THREAD_PRIORITY_BACKGROUND, 256, true),
+        /**
+         * local stores and counters
+         */
+        DISK("om-disk", 2, Process.THREAD_PRIORITY_BACKGROUND, 128, true),
+        /**
+         * creative and resource downloads
+         */
+        DOWNLOAD("om-download", 3, Process.THREAD_PRIORITY_LOWEST, 64, false);
+
+        private final String mName;
+        private final int mThreads;
+        private final int mPriority;
+        private final int mMaxQueued;
+        //whether a task rejected by a full queue runs on the caller's thread, or is dropped
+        private final boolean isCallerRuns;
+
+        Lane(String name, int threads, int priority, int maxQueued, boolean callerRuns) {
+            this.mName = name;
+            this.mThreads = threads;
+            this.mPriority = priority;
+            this.mMaxQueued = maxQueued;
+            this.isCallerRuns = callerRuns;
+        }
+    }
+
+    private static final LanePool[] POOLS;
+
+    static {
+        Lane[] lanes = Lane.values();
+        POOLS = new LanePool[lanes.length];
+        for (Lane lane : lanes) {
+            POOLS[lane.ordinal()] = new LanePool(lane);
+        }
+    }
+
+    private LaneExecutor() {
+    }
+
+    public static ScheduledFuture<?> execute(Lane lane, Runnable command) {
+        return execute(lane, command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the scheduled task, or null if the lane's queue was full and the task ran on the caller's
+     * thread or was dropped
+     */
+    public static ScheduledFuture<?> execute(Lane lane, Runnable command, long delay, TimeUnit unit) {
+        LanePool pool = POOLS[lane.ordinal()];
+        if (pool.getQueue().size() >= lane.mMaxQueued) {
+            pool.mRejected.incrementAndGet();
+            if (!lane.isCallerRuns) {
+                DeveloperLog.LogD(lane.mName + " queue full, task dropped");
+                return null;
+            }
+            DeveloperLog.LogD(lane.mName + " queue full, running on the caller's thread");
+            try {
+                command.run();
+            } catch (Throwable e) {
+                DeveloperLog.LogD(lane.mName + " task error : " + e.getMessage());
+                CrashUtil.getSingleton().saveException(e);
+            }
+            return null;
+        }
+        pool.mSubmitted.incrementAndGet();
+        return pool.schedule(new TimedTask(pool, command, SystemClock.uptimeMillis() + unit.toMillis(delay)),
+                delay, unit);
+    }
+
+    /**
+     * @param lane the lane
+     * @return a snapshot of the lane's counters
+     */
+    public static Stats getStats(Lane lane) {
+        LanePool pool = POOLS[lane.ordinal()];
+        long completed = pool.mCompleted.get();
+        return new Stats(lane, pool.getQueue().size(), pool.getActiveCount(), pool.mSubmitted.get(),
+                pool.mRejected.get(), completed,
+                completed == 0 ? 0 : pool.mTotalWait.get() / completed, pool.mMaxWait.get());
+    }
+
+    /**
+     * Logs the counters of every lane
+     */
+    public static void logStats() {
+        if (!DeveloperLog.isDebug()) {
+            return;
+        }
+        for (Lane lane : Lane.values()) {
+            DeveloperLog.LogD(getStats(lane).toString());
+        }
+    }
+
+    public static final class Stats {
+        private final Lane mLane;
+        private final int mDepth;
+        private final int mActive;
+        private final long mSubmitted;
+        private final long mRejected;
+        private final long mCompleted;
+        private final long mAvgWait;
+        private final long mMaxWait;
+
+        Stats(Lane lane, int depth, int active, long submitted, long rejected, long completed,
+              long avgWait, long maxWait) {
+            this.mLane = lane;
+            this.mDepth = depth;
+            this.mActive = active;
+            this.mSubmitted = submitted;
+            this.mRejected = rejected;
+            this.mCompleted = completed;
+            this.mAvgWait = avgWait;
+            this.mMaxWait = maxWait;
+        }
+
+        public Lane getLane() {
+            return mLane;
+        }
+
+        /**
+         * @return tasks waiting in the queue, delayed ones included
+         */
+        public int getDepth() {
+            return mDepth;
+        }
+
+        public int getActive() {
+            return mActive;
+        }
+
+        public long getSubmitted() {
+            return mSubmitted;
+        }
+
+        /**
+         * @return tasks that found the queue full and ran on the caller's thread or were dropped
+         */
+        public long getRejected() {
+            return mRejected;
+        }
+
+        public long getCompleted() {
+            return mCompleted;
+        }
+
+        /**
+         * @return average time, in milliseconds, between a task being due and starting to run
+         */
+        public long getAvgWait() {
+            return mAvgWait;
+        }
+
+        public long getMaxWait() {
+            return mMaxWait;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s depth=%d active=%d submitted=%d rejected=%d completed=%d "
+                            + "avgWait=%dms maxWait=%dms", mLane.mName, mDepth, mActive, mSubmitted, mRejected,
+                    mCompleted, mAvgWait, mMaxWait);
+        }
+    }
+
+    private static final class LanePool extends ScheduledThreadPoolExecutor {
+        private final AtomicLong mSubmitted = new AtomicLong();
+        private final AtomicLong mRejected = new AtomicLong();
+        private final AtomicLong mCompleted = new AtomicLong();
+        private final AtomicLong mTotalWait = new AtomicLong();
+        private final AtomicLong mMaxWait = new AtomicLong();
+
+        LanePool(final Lane lane) {
+            super(lane.mThreads, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(lane.mPriority);
+                            r.run();
+                        }
+                    }, lane.mName + "-" + mCount.incrementAndGet());
+                }
+            });
+            setKeepAliveTime(60, TimeUnit.SECONDS);
+            allowCoreThreadTimeOut(true);
+        }
+
+        void onTaskStarted(long wait) {
+            mTotalWait.addAndGet(wait);
+            long max = mMaxWait.get();
+            while (wait > max && !mMaxWait.compareAndSet(max, wait)) {
+                max = mMaxWait.get();
+            }
+        }
+    }
+
+    private static final class TimedTask implements Runnable {
+        private final LanePool mPool;
+        private final Runnable mCommand;
+        private final long mDueAt;
+
+        TimedTask(LanePool pool, Runnable command, long dueAt) {
+            this.mPool = pool;
+            this.mCommand = command;
+            this.mDueAt = dueAt;
+        }
+
+        @Override
+        public void run() {
+            mPool.onTaskStarted(Math.max(0, SystemClock.uptimeMillis() - mDueAt));
+            try {
+                mCommand.run();
+            } finally {
+                mPool.mCompleted.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.openmediation.sdk.utils.crash.CrashUtil;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadlines of the ad pipeline: instance loads, C2S bids and hybrid ad groups.
+ * <p>
+ * A hashed timer wheel of {@value #WHEEL_SIZE} slots of {@value #TICK_MS}ms ticking on the main
+ * thread. A {@link Timeout} is made once by its owner and reused for every deadline it sets, each slot
+ * is an intrusive list of timeouts, so scheduling and cancelling are constant time and allocate
+ * nothing. A tick fires every timeout due in it in one main thread message, and the wheel only ticks
+ * while something is pending. Deadlines longer than a turn of the wheel keep their slot until their
+ * tick comes round. Timeouts may be scheduled and cancelled from any thread, tasks run on the main
+ * thread.
+ */
+public final class TimerWheel {
+    private static final int TICK_MS = 50;
+    private static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int FIRING = 2;
+
+    public enum Kind {
+        /**
+         * an instance's ad load
+         */
+        INSTANCE_LOAD,
+        /**
+         * a C2S bid
+         */
+        BID,
+        /**
+         * a group of banner, native or splash instances
+         */
+        HYBRID_LOAD
+    }
+
+    /**
+     * Time source of the wheel, SystemClock.uptimeMillis by default
+     */
+    interface Clock {
+        long uptimeMillis();
+    }
+
+    /**
+     * Runs the wheel's tick later, on the main thread by default
+     */
+    interface TickPoster {
+        void postDelayed(Runnable tick, long delayMillis);
+    }
+
+    //sentinel heads of the slot lists
+    private final Timeout[] mSlots = new Timeout[WHEEL_SIZE];
+    private final Clock mClock;
+    private final TickPoster mPoster;
+    private final long mStart;
+    //last tick whose slot was processed
+    private long mTick;
+    private int mPending;
+    private boolean isTicking;
+    private final int[] mPendingByKind = new int[Kind.values().length];
+    private final long[] mScheduled = new long[Kind.values().length];
+    private final long[] mCancelled = new long[Kind.values().length];
+    private final long[] mFired = new long[Kind.values().length];
+
+    //timeouts due in the current tick, main thread only
+    private final ArrayList<Timeout> mExpired = new ArrayList<>();
+    private final Runnable mTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onTick();
+        }
+    };
+
+    /**
+     * A deadline its owner sets, moves and cancels over and over
+     */
+    public static final class Timeout {
+        private final Kind mKind;
+        private final Runnable mTask;
+        private Timeout mPrev;
+        private Timeout mNext;
+        private long mDeadlineTick;
+        private int mState = IDLE;
+
+        /**
+         * @param kind what the deadline is for, for stats
+         * @param task runs on the main thread when the deadline passes
+         */
+        public Timeout(Kind kind, Runnable task) {
+            mKind = kind;
+            mTask = task;
+        }
+
+        public Kind getKind() {
+            return mKind;
+        }
+    }
+
+    private static final class TimerWheelHolder {
+        private static final TimerWheel INSTANCE = new TimerWheel();
+    }
+
+    private TimerWheel() {
+        this(new Clock() {
+            @Override
+            public long uptimeMillis() {
+                return SystemClock.uptimeMillis();
+            }
+        }, new TickPoster() {
+            private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void postDelayed(Runnable tick, long delayMillis) {
+                mHandler.postDelayed(tick, delayMillis);
+            }
+        });
+    }
+
+    /**
+     * For tests, the wheel runs on the given clock and ticks when the poster runs them
+     */
+    TimerWheel(Clock clock, TickPoster poster) {
+        mClock = clock;
+        mPoster = poster;
+        mStart = clock.uptimeMillis();
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            Timeout head = new Timeout(null, null);
+            head.mPrev = head;
+            head.mNext = head;
+            mSlots[i] = head;
+        }
+    }
+
+    public static TimerWheel getInstance() {
+        return TimerWheelHolder.INSTANCE;
+    }
+
+    /**
+     * Sets a timeout's deadline, replacing the one it had if it's pending
+     *
+     * @param timeout the timeout
+     * @param delay   time from now, rounded up to a tick
+     * @param unit    unit of delay
+     */
+    public void schedule(Timeout timeout, long delay, TimeUnit unit) {
+        if (timeout == null) {
+            return;
+        }
+        boolean shouldTick;
+        synchronized (this) {
+            long now = currentTick();
+            if (mPending == 0) {
+                // slots are empty, skip the ticks nobody waited for
+                mTick = now;
+            }
+            if (timeout.mState == SCHEDULED) {
+                unlink(timeout);
+            } else {
+                mPending++;
+                mPendingByKind[timeout.mKind.ordinal()]++;
+            }
+            long ticks = Math.max(1, (unit.toMillis(delay) + TICK_MS - 1) / TICK_MS);
+            timeout.mDeadlineTick = now + ticks;
+            timeout.mState = SCHEDULED;
+            link(timeout);
+            mScheduled[timeout.mKind.ordinal()]++;
+            shouldTick = !isTicking;
+            isTicking = true;
+        }
+        if (shouldTick) {
+            mPoster.postDelayed(mTickRunnable, TICK_MS);
+        }
+    }
+
+    /**
+     * Cancels a timeout, its task won't run unless it's scheduled again
+     *
+     * @return true if it was pending
+     */
+    public boolean cancel(Timeout timeout) {
+        if (timeout == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (timeout.mState == SCHEDULED) {
+                unlink(timeout);
+                mPending--;
+                mPendingByKind[timeout.mKind.ordinal()]--;
+            } else if (timeout.mState != FIRING) {
+                return false;
+            }
+            // a firing one is in the current batch, it is skipped when its turn comes
+            timeout.mState = IDLE;
+            mCancelled[timeout.mKind.ordinal()]++;
+            return true;
+        }
+    }
+
+    public synchronized boolean isPending(Timeout timeout) {
+        return timeout != null && timeout.mState != IDLE;
+    }
+
+    /**
+     * @return timeouts waiting for their deadline
+     */
+    public synchronized int getPending() {
+        return mPending;
+    }
+
+    /**
+     * @param kind the kind of timeout
+     * @return a snapshot of the counters of a kind
+     */
+    public synchronized Stats getStats(Kind kind) {
+        int i = kind.ordinal();
+        return new Stats(kind, mPendingByKind[i], mScheduled[i], mCancelled[i], mFired[i]);
+    }
+
+    /**
+     * Logs the counters of every kind
+     */
+    public void logStats() {
+        if (!DeveloperLog.isDebug()) {
+            return;
+        }
+        for (Kind kind : Kind.values()) {
+            DeveloperLog.LogD(getStats(kind).toString());
+        }
+    }
+
+    public static final class Stats {
+        private final Kind mKind;
+        private final int mPending;
+        private final long mScheduled;
+        private final long mCancelled;
+        private final long mFired;
+
+        Stats(Kind kind, int pending, long scheduled, long cancelled, long fired) {
+            this.mKind = kind;
+            this.mPending = pending;
+            this.mScheduled = scheduled;
+            this.mCancelled = cancelled;
+            this.mFired = fired;
+        }
+
+        public Kind getKind() {
+            return mKind;
+        }
+
+        public int getPending() {
+            return mPending;
+        }
+
+        /**
+         * @return deadlines set, a reschedule of a pending timeout included
+         */
+        public long getScheduled() {
+            return mScheduled;
+        }
+
+        public long getCancelled() {
+            return mCancelled;
+        }
+
+        public long getFired() {
+            return mFired;
+        }
+
+        /**
+         * @return share of settled deadlines that timed out rather than being cancelled, 0 if none
+         */
+        public float getFireRate() {
+            long settled = mFired + mCancelled;
+            return settled == 0 ? 0 : (float) mFired / settled;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "TimerWheel %s pending=%d scheduled=%d cancelled=%d fired=%d "
+                    + "fireRate=%.2f", mKind, mPending, mScheduled, mCancelled, mFired, getFireRate());
+        }
+    }
+
+    private void onTick() {
+        boolean shouldTick;
+        synchronized (this) {
+            long now = currentTick();
+            // a busy main thread may have missed ticks, one turn covers every slot
+            long last = Math.min(now, mTick + WHEEL_SIZE);
+            for (long tick = mTick + 1; tick <= last; tick++) {
+                Timeout head = mSlots[(int) (tick & MASK)];
+                Timeout timeout = head.mNext;
+                while (timeout != head) {
+                    Timeout next = timeout.mNext;
+                    if (timeout.mDeadlineTick <= now) {
+                        unlink(timeout);
+                        mPending--;
+                        mPendingByKind[timeout.mKind.ordinal()]--;
+                        timeout.mState = FIRING;
+                        mExpired.add(timeout);
+                    }
+                    timeout = next;
+                }
+            }
+            mTick = now;
+            shouldTick = mPending > 0;
+            isTicking = shouldTick;
+        }
+        if (shouldTick) {
+            mPoster.postDelayed(mTickRunnable, TICK_MS);
+        }
+        for (int i = 0; i < mExpired.size(); i++) {
+            Timeout timeout = mExpired.get(i);
+            synchronized (this) {
+                // cancelled or scheduled again since the batch was taken
+                if (timeout.mState != FIRING) {
+                    continue;
+                }
+                timeout.mState = IDLE;
+                mFired[timeout.mKind.ordinal()]++;
+            }
+            try {
+                timeout.mTask.run();
+            } catch (Throwable e) {
+                DeveloperLog.LogD("TimerWheel " + timeout.mKind + " task error", e);
+                CrashUtil.getSingleton().saveException(e);
+            }
+        }
+        mExpired.clear();
+    }
+
+    private long currentTick() {
+        return (mClock.uptimeMillis() - mStart) / TICK_MS;
+    }
+
+    private void link(Timeout timeout) {
+        Timeout head = mSlots[(int) (timeout.mDeadlineTick & MASK)];
+        timeout.mPrev = head.mPrev;
+        timeout.mNext = head;
+        head.mPrev.mNext = timeout;
+        head.mPrev = timeout;
+    }
+
+    private static void unlink(Timeout timeout) {
+        timeout.mPrev.mNext = timeout.mNext;
+        timeout.mNext.mPrev = timeout.mPrev;
+        timeout.mPrev = null;
+        timeout.mNext = null;
+    }
+}
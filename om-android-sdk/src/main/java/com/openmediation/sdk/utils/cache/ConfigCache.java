@@ -0,0 +1,152 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.cache;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.Gzip;
+import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.constant.CommonConstants;
+import com.openmediation.sdk.utils.crash.CrashUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk snapshot of the last good init configuration, so that a cold start can serve ads
+ * before the init request answers.
+ * <p>
+ * File layout: magic, format version, sdk version, appKey, save time, gzip length, gzip bytes, crc32 of the
+ * raw config
+ */
+public class ConfigCache {
+    private static final String FILE_NAME = "om_config.snapshot";
+    private static final int MAGIC = 0x4F4D4346;
+    private static final int FORMAT_VERSION = 1;
+    //snapshots older than this are not served
+    private static final long MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+
+    private ConfigCache() {
+    }
+
+    /**
+     * Saves the raw config response, replacing the previous snapshot atomically
+     *
+     * @param context the context
+     * @param appKey  the app key the config belongs to
+     * @param data    raw config data
+     */
+    public static synchronized void save(Context context, String appKey, byte[] data) {
+        if (context == null || TextUtils.isEmpty(appKey) || data == null || data.length == 0) {
+            return;
+        }
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        DataOutputStream out = null;
+        try {
+            byte[] gzip = Gzip.inGZip(data);
+            if (gzip == null) {
+                return;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            FileOutputStream fos = new FileOutputStream(tmp);
+            out = new DataOutputStream(IOUtil.toBufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(CommonConstants.SDK_VERSION_NAME);
+            out.writeUTF(appKey);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(gzip.length);
+            out.write(gzip);
+            out.writeLong(crc.getValue());
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                DeveloperLog.LogD("ConfigCache rename snapshot failed");
+                tmp.delete();
+            }
+        } catch (Exception e) {
+            DeveloperLog.LogD("ConfigCache save", e);
+            CrashUtil.getSingleton().saveException(e);
+            tmp.delete();
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Loads the raw config saved for the appKey
+     *
+     * @param context the context
+     * @param appKey  the app key
+     * @return raw config data, or null if there's no valid snapshot
+     */
+    public static synchronized byte[] load(Context context, String appKey) {
+        if (context == null || TextUtils.isEmpty(appKey)) {
+            return null;
+        }
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(IOUtil.toBufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            if (!CommonConstants.SDK_VERSION_NAME.equals(in.readUTF()) || !appKey.equals(in.readUTF())) {
+                return null;
+            }
+            long saveTime = in.readLong();
+            if (System.currentTimeMillis() - saveTime > MAX_AGE) {
+                return null;
+            }
+            int len = in.readInt();
+            if (len <= 0 || len > file.length()) {
+                return null;
+            }
+            byte[] gzip = new byte[len];
+            in.readFully(gzip);
+            long checksum = in.readLong();
+            byte[] data = Gzip.unGZip(gzip);
+            if (data == null || data.length == 0) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if (crc.getValue() != checksum) {
+                DeveloperLog.LogD("ConfigCache snapshot checksum mismatch");
+                return null;
+            }
+            return data;
+        } catch (Exception e) {
+            DeveloperLog.LogD("ConfigCache load", e);
+            return null;
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Deletes the snapshot
+     *
+     * @param context the context
+     */
+    public static synchronized void clear(Context context) {
+        if (context == null) {
+            return;
+        }
+        new File(context.getFilesDir(), FILE_NAME).delete();
+    }
+}
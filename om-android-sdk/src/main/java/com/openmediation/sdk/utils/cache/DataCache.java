@@ -12,7 +12,6 @@ import com.openmediation.sdk.utils.crash.CrashUtil;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -20,15 +19,15 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Operations on Data Cache
+ * <p>
+ * Values live in memory; {@link #set(String, Object)} and {@link #delete(String...)} are written behind to db
+ * by {@link KeyValueStore}
  */
 public class DataCache {
-    private static String TABLE_NAME = "table_core";
-    private static String TABLE_CREATE_COLUMN = "KEY VARCHAR(30),VALUE VARCHAR";
-    private static String TABLE_COLUMN = "KEY,VALUE";
 
     private Map<String, Object> mHashMap = new HashMap<>();
     private ReadWriteLock lock = new ReentrantReadWriteLock();
-    private DataBaseUtil mDataBaseUtil;
+    private volatile KeyValueStore mStore;
 
     private DataCache() {
     }
@@ -51,11 +50,24 @@ public class DataCache {
      *
      * @param context the context
      */
-    public void init(Context context) {
-        this.mDataBaseUtil = DataBaseUtil.getSingleton();
-        this.mDataBaseUtil.init(context, CommonConstants.DB_NAME, CommonConstants.DB_VERSION);
-        this.mDataBaseUtil.createTable(TABLE_NAME, TABLE_CREATE_COLUMN);
-        hashSet();
+    public synchronized void init(Context context) {
+        if (mStore == null) {
+            KeyValueStore store = new KeyValueStore();
+            Map<String, String> rows = store.open(context, CommonConstants.DB_NAME, CommonConstants.DB_VERSION);
+            lock.writeLock().lock();
+            try {
+                for (Map.Entry<String, String> entry : rows.entrySet()) {
+                    //values set before init win over db values
+                    if (!mHashMap.containsKey(entry.getKey())) {
+                        mHashMap.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                mStore = store;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        AdapterRepository.getInstance().syncMetaData();
     }
 
     /**
@@ -65,28 +77,27 @@ public class DataCache {
      * @param value the value
      */
     public void set(String key, Object value) {
-        if (mDataBaseUtil == null) {
+        if (mStore == null) {
             return;
         }
         lock.writeLock().lock();
         try {
             if (!mHashMap.containsKey(key)) {
-                if (mDataBaseUtil.insert(TABLE_NAME, TABLE_COLUMN, String.format("\"%s\",\"%s\"", key, value))) {
-                    mHashMap.put(key, value);
-                }
+                mHashMap.put(key, value);
+                mStore.put(key, value);
             } else {
                 Object oldValue = mHashMap.get(key);
                 if (oldValue != null && !oldValue.equals(value)) {
-                    if (mDataBaseUtil.update(TABLE_NAME, new String[]{String.format("%s=\"%s\"", "VALUE", value)}, String.format("%s=\"%s\"", "KEY", key))) {
-                        mHashMap.put(key, value);
-                    }
+                    mHashMap.put(key, value);
+                    mStore.put(key, value);
                 }
             }
         } catch (Exception e) {
             DeveloperLog.LogD("AdtAds init", e);
             CrashUtil.getSingleton().saveException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
-        lock.writeLock().unlock();
     }
 
     /**
@@ -127,40 +138,26 @@ public class DataCache {
      * @param maps the maps
      */
     public void set(Map<String, Object> maps) {
-        lock.writeLock().lock();
-        ArrayList<String> deleteData = new ArrayList<>();
-        //finds data that needs to be updated; adds unchanged for deletion
-        Iterator<Map.Entry<String, Object>> it = maps.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, Object> entry = it.next();
-            String key = entry.getKey();
-            Object value = entry.getValue();
-            if (mHashMap.containsKey(key)) {
-                Object oldValue = mHashMap.get(key);
-                if (oldValue != null && !oldValue.equals(value)) {
-                    deleteData.add(key);
-                } else {
-                    it.remove();
-                }
-            }
-        }
-        //actual deletion
-        if (deleteData.size() != 0) {
-            delete(deleteData.toArray(new String[deleteData.size()]));
+        if (mStore == null) {
+            return;
         }
-        //inserts
-        if (maps.size() != 0) {
-            String[] inserts = new String[maps.size()];
-            int i = 0;
+        lock.writeLock().lock();
+        try {
             for (Map.Entry<String, Object> entry : maps.entrySet()) {
-                inserts[i] = String.format("\"%s\",\"%s\"", entry.getKey(), entry.getValue());
-                i++;
-            }
-            if (mDataBaseUtil.insert(TABLE_NAME, TABLE_COLUMN, inserts)) {
-                mHashMap.putAll(maps);
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (mHashMap.containsKey(key)) {
+                    Object oldValue = mHashMap.get(key);
+                    if (oldValue == null || oldValue.equals(value)) {
+                        continue;
+                    }
+                }
+                mHashMap.put(key, value);
+                mStore.put(key, value);
             }
+        } finally {
+            lock.writeLock().unlock();
         }
-        lock.writeLock().unlock();
     }
 
     /**
@@ -169,30 +166,33 @@ public class DataCache {
      * @param keys the keys
      */
     public void delete(String... keys) {
-        if (mDataBaseUtil == null) {
+        if (mStore == null) {
             return;
         }
         lock.writeLock().lock();
         try {
-            ArrayList<String> deleteKey = new ArrayList<>();
             for (String key : keys) {
                 if (mHashMap.containsKey(key)) {
-                    deleteKey.add(key);
-                }
-            }
-            if (deleteKey.size() != 0) {
-                String[] deleteWhere = deleteKey.toArray(new String[deleteKey.size()]);
-                if (mDataBaseUtil.delete(TABLE_NAME, "KEY", deleteWhere)) {
-                    for (int i = 0; i < deleteKey.size(); i++) {
-                        mHashMap.remove(deleteKey.get(i));
-                    }
+                    mHashMap.remove(key);
+                    mStore.remove(key);
                 }
             }
         } catch (Exception e) {
             DeveloperLog.LogD("AdtAds init", e);
             CrashUtil.getSingleton().saveException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes queued changes to db right away, called when the app goes to background
+     */
+    public void flush() {
+        if (mStore == null) {
+            return;
         }
-        lock.writeLock().unlock();
+        mStore.flushAsync();
     }
 
     /**
@@ -205,42 +205,6 @@ public class DataCache {
         return mHashMap.containsKey(key);
     }
 
-    /**
-     * saves db data in memory; no more db queries until app restarts
-     */
-    private void hashSet() {
-        lock.readLock().lock();
-        ArrayList<String[]> dataArray = null;
-        try {
-            dataArray = mDataBaseUtil.query(TABLE_NAME, TABLE_COLUMN);
-            if (dataArray != null) {
-                int keyIndex = 0;
-                int valueIndex = 0;
-                for (int i = 0; i < dataArray.size(); i++) {
-                    String[] values = dataArray.get(i);
-                    if (i == 0) {
-                        for (int j = 0; j < values.length; j++) {
-                            String keyValue = values[j];
-                            if (keyValue.equals("KEY")) {
-                                keyIndex = j;
-                            }
-                            if (keyValue.equals("VALUE")) {
-                                valueIndex = j;
-                            }
-                        }
-                    } else {
-                        mHashMap.put(values[keyIndex], values[valueIndex]);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            DeveloperLog.LogD("DataCache", e);
-            CrashUtil.getSingleton().saveException(e);
-        }
-        lock.readLock().unlock();
-        AdapterRepository.getInstance().syncMetaData();
-    }
-
     /**
      * Get t.
      *
@@ -0,0 +1,465 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.cache;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
+import com.openmediation.sdk.utils.crash.CrashUtil;
+import com.openmediation.sdk.utils.model.BaseInstance;
+import com.openmediation.sdk.utils.model.Configurations;
+import com.openmediation.sdk.utils.model.Placement;
+import com.openmediation.sdk.utils.model.Scene;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Impression counters for frequency capping, keyed by placement id, placement id + instance id and
+ * placement id + scene id.
+ * <p>
+ * Lookups don't lock or allocate. A counter's window starts with its first impression and lasts one
+ * frequency unit; its start and count are one immutable Window swapped with compare-and-set, so an
+ * impression racing a window reset is never lost. Counters are saved to a small binary file a few
+ * seconds after they change and when the app goes to background.
+ * <p>
+ * The first time the file is created, counters DataCache kept before ("Rate", "CAP" and "CAPTime"
+ * followed by the placement id and the instance key or scene name) are moved over once a config tells
+ * which ids they belong to.
+ * <p>
+ * File layout: magic, format version, then per table: entry count, and key, count, window start,
+ * last impression time per entry
+ */
+public class FrequencyCapStore {
+    private static final String FILE_NAME = "om_fcap.bin";
+    private static final int MAGIC = 0x4F4D4643;
+    private static final int FORMAT_VERSION = 1;
+    //delay before changed counters are saved, in milliseconds
+    private static final long SAVE_DELAY = 5000;
+    //counters without impressions for this long are not saved
+    private static final long MAX_IDLE = 30 * 24 * 60 * 60 * 1000L;
+
+    private final CounterTable mPlacements = new CounterTable();
+    private final CounterTable mInstances = new CounterTable();
+    private final CounterTable mScenes = new CounterTable();
+
+    //old DataCache key prefixes
+    private static final String OLD_RATE = "Rate";
+    private static final String OLD_CAP = "CAP";
+    private static final String OLD_CAP_TIME = "CAPTime";
+
+    private volatile File mFile;
+    private volatile boolean isMigrationPending;
+    private final AtomicBoolean isSaveScheduled = new AtomicBoolean(false);
+
+    private final Runnable mSaveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isSaveScheduled.set(false);
+            save();
+        }
+    };
+
+    private static final class FrequencyCapStoreHolder {
+        private static final FrequencyCapStore INSTANCE = new FrequencyCapStore();
+    }
+
+    private FrequencyCapStore() {
+    }
+
+    public static FrequencyCapStore getInstance() {
+        return FrequencyCapStoreHolder.INSTANCE;
+    }
+
+    /**
+     * Loads the saved counters, only the first call has effect
+     *
+     * @param context the context
+     */
+    public synchronized void init(Context context) {
+        if (mFile != null || context == null) {
+            return;
+        }
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        isMigrationPending = !file.exists();
+        load(file);
+        mFile = file;
+    }
+
+    /**
+     * Moves the counters DataCache kept before this store over, once after the store file is created
+     *
+     * @param config config the placements, instances and scenes of the old keys are looked up in
+     */
+    public synchronized void migrate(Configurations config) {
+        if (!isMigrationPending || config == null || config.getPls() == null) {
+            return;
+        }
+        isMigrationPending = false;
+        DataCache cache = DataCache.getInstance();
+        int migrated = 0;
+        for (Placement placement : config.getPls().values()) {
+            int placementId;
+            try {
+                placementId = Integer.parseInt(placement.getId());
+            } catch (Exception e) {
+                continue;
+            }
+            String pid = placement.getId();
+            if (migrate(cache, pid, mPlacements, placementId)) {
+                migrated++;
+            }
+            SparseArray<BaseInstance> instances = placement.getInsMap();
+            for (int i = 0; instances != null && i < instances.size(); i++) {
+                BaseInstance instance = instances.valueAt(i);
+                if (instance != null && migrate(cache, pid + instance.getKey(), mInstances,
+                        key(placementId, instance.getId()))) {
+                    migrated++;
+                }
+            }
+            if (placement.getScenes() != null) {
+                for (Scene scene : placement.getScenes().values()) {
+                    if (scene != null && migrate(cache, pid + scene.getN(), mScenes,
+                            key(placementId, scene.getId()))) {
+                        migrated++;
+                    }
+                }
+            }
+        }
+        DeveloperLog.LogD("FrequencyCapStore migrated counters: " + migrated);
+        if (migrated > 0 && isSaveScheduled.compareAndSet(false, true)) {
+            LaneExecutor.execute(LaneExecutor.Lane.DISK, mSaveRunnable);
+        }
+    }
+
+    private static boolean migrate(DataCache cache, String oldKey, CounterTable table, long key) {
+        Long lastShow = cache.get(OLD_RATE + oldKey, long.class);
+        Integer count = cache.get(OLD_CAP + oldKey, int.class);
+        Long windowStart = cache.get(OLD_CAP_TIME + oldKey, long.class);
+        if (lastShow == null && count == null && windowStart == null) {
+            return false;
+        }
+        Counter counter = table.getOrCreate(key);
+        if (lastShow != null) {
+            counter.lastShow.set(lastShow);
+        }
+        if (count != null && windowStart != null) {
+            counter.window.set(new Window(windowStart, count));
+        }
+        cache.delete(OLD_RATE + oldKey, OLD_CAP + oldKey, OLD_CAP_TIME + oldKey);
+        return true;
+    }
+
+    /**
+     * Records an impression of the placement
+     *
+     * @param placementId the placement id
+     * @param unit        frequency unit of the placement, in milliseconds
+     */
+    public void onPlacementShowed(int placementId, int unit) {
+        onShowed(mPlacements.getOrCreate(placementId), unit);
+    }
+
+    /**
+     * Records an impression of the instance
+     *
+     * @param placementId the placement id
+     * @param instanceId  the instance id
+     * @param unit        frequency unit of the instance, in milliseconds
+     */
+    public void onInstanceShowed(int placementId, int instanceId, int unit) {
+        onShowed(mInstances.getOrCreate(key(placementId, instanceId)), unit);
+    }
+
+    /**
+     * Records an impression in the scene
+     *
+     * @param placementId the placement id
+     * @param sceneId     the scene id
+     * @param unit        frequency unit of the scene, in milliseconds
+     */
+    public void onSceneShowed(int placementId, int sceneId, int unit) {
+        onShowed(mScenes.getOrCreate(key(placementId, sceneId)), unit);
+    }
+
+    /**
+     * @return true if the placement's last impression was less than interval milliseconds ago
+     */
+    public boolean isPlacementInInterval(int placementId, int interval) {
+        return isInInterval(mPlacements.get(placementId), interval);
+    }
+
+    /**
+     * @return true if the placement reached cap impressions in the current window
+     */
+    public boolean isPlacementCapped(int placementId, int unit, int cap) {
+        return isCapped(mPlacements.get(placementId), unit, cap);
+    }
+
+    /**
+     * @return true if the instance's last impression was less than interval milliseconds ago
+     */
+    public boolean isInstanceInInterval(int placementId, int instanceId, int interval) {
+        return isInInterval(mInstances.get(key(placementId, instanceId)), interval);
+    }
+
+    /**
+     * @return true if the instance reached cap impressions in the current window
+     */
+    public boolean isInstanceCapped(int placementId, int instanceId, int unit, int cap) {
+        return isCapped(mInstances.get(key(placementId, instanceId)), unit, cap);
+    }
+
+    /**
+     * @return true if the scene reached cap impressions in the current window
+     */
+    public boolean isSceneCapped(int placementId, int sceneId, int unit, int cap) {
+        return isCapped(mScenes.get(key(placementId, sceneId)), unit, cap);
+    }
+
+    /**
+     * Saves changed counters now, off the caller's thread
+     */
+    public void saveAsync() {
+        if (isSaveScheduled.compareAndSet(true, false)) {
+            LaneExecutor.execute(LaneExecutor.Lane.DISK, mSaveRunnable);
+        }
+    }
+
+    private void onShowed(Counter counter, int unit) {
+        long now = System.currentTimeMillis();
+        counter.lastShow.set(now);
+        while (true) {
+            Window window = counter.window.get();
+            Window next = window.start == 0 || now - window.start >= unit
+                    ? new Window(now, 1) : new Window(window.start, window.count + 1);
+            if (counter.window.compareAndSet(window, next)) {
+                break;
+            }
+        }
+        if (isSaveScheduled.compareAndSet(false, true)) {
+            LaneExecutor.execute(LaneExecutor.Lane.DISK, mSaveRunnable, SAVE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static boolean isInInterval(Counter counter, int interval) {
+        if (interval <= 0 || counter == null) {
+            return false;
+        }
+        long last = counter.lastShow.get();
+        return last > 0 && System.currentTimeMillis() - last < interval;
+    }
+
+    private static boolean isCapped(Counter counter, int unit, int cap) {
+        if (cap <= 0 || counter == null) {
+            return false;
+        }
+        Window window = counter.window.get();
+        if (window.start == 0 || System.currentTimeMillis() - window.start >= unit) {
+            // window is over, the next impression opens a new one
+            return false;
+        }
+        return window.count >= cap;
+    }
+
+    private static long key(int placementId, int id) {
+        return ((long) placementId << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private synchronized void save() {
+        File file = mFile;
+        if (file == null) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            long minShow = System.currentTimeMillis() - MAX_IDLE;
+            FileOutputStream fos = new FileOutputStream(tmp);
+            out = new DataOutputStream(IOUtil.toBufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            mPlacements.writeTo(out, minShow);
+            mInstances.writeTo(out, minShow);
+            mScenes.writeTo(out, minShow);
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                DeveloperLog.LogD("FrequencyCapStore rename failed");
+                tmp.delete();
+            }
+        } catch (Exception e) {
+            DeveloperLog.LogD("FrequencyCapStore save", e);
+            CrashUtil.getSingleton().saveException(e);
+            tmp.delete();
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    private void load(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(IOUtil.toBufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            mPlacements.readFrom(in);
+            mInstances.readFrom(in);
+            mScenes.readFrom(in);
+        } catch (Exception e) {
+            DeveloperLog.LogD("FrequencyCapStore load", e);
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Start and impression count of a frequency window, replaced as a whole
+     */
+    private static final class Window {
+        private static final Window NONE = new Window(0, 0);
+
+        private final long start;
+        private final int count;
+
+        Window(long start, int count) {
+            this.start = start;
+            this.count = count;
+        }
+    }
+
+    private static final class Counter {
+        private final long key;
+        private final AtomicReference<Window> window = new AtomicReference<>(Window.NONE);
+        private final AtomicLong lastShow = new AtomicLong();
+
+        Counter(long key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Open addressing table of counters. Reads walk the slots without locking; inserts and growth are
+     * serialized and copy counter references, so updates made through an old table are never lost
+     */
+    private static final class CounterTable {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private volatile AtomicReferenceArray<Counter> mSlots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        private int mSize;
+
+        Counter get(long key) {
+            AtomicReferenceArray<Counter> slots = mSlots;
+            int mask = slots.length() - 1;
+            int i = hash(key) & mask;
+            Counter counter;
+            while ((counter = slots.get(i)) != null) {
+                if (counter.key == key) {
+                    return counter;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        Counter getOrCreate(long key) {
+            Counter counter = get(key);
+            if (counter != null) {
+                return counter;
+            }
+            synchronized (this) {
+                counter = get(key);
+                if (counter == null) {
+                    counter = new Counter(key);
+                    insert(counter);
+                }
+                return counter;
+            }
+        }
+
+        private void insert(Counter counter) {
+            AtomicReferenceArray<Counter> slots = mSlots;
+            // keep at most half the slots used so probes stay short and always hit an empty slot
+            if ((mSize + 1) * 2 > slots.length()) {
+                AtomicReferenceArray<Counter> grown = new AtomicReferenceArray<>(slots.length() * 2);
+                for (int i = 0; i < slots.length(); i++) {
+                    Counter c = slots.get(i);
+                    if (c != null) {
+                        place(grown, c);
+                    }
+                }
+                place(grown, counter);
+                mSlots = grown;
+            } else {
+                place(slots, counter);
+            }
+            mSize++;
+        }
+
+        private static void place(AtomicReferenceArray<Counter> slots, Counter counter) {
+            int mask = slots.length() - 1;
+            int i = hash(counter.key) & mask;
+            while (slots.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            slots.set(i, counter);
+        }
+
+        private static int hash(long key) {
+            int h = (int) (key ^ (key >>> 32));
+            return (h * 0x9E3779B9) ^ (h >>> 16);
+        }
+
+        void writeTo(DataOutputStream out, long minShow) throws Exception {
+            AtomicReferenceArray<Counter> slots = mSlots;
+            int n = 0;
+            for (int i = 0; i < slots.length(); i++) {
+                Counter c = slots.get(i);
+                if (c != null && c.lastShow.get() >= minShow) {
+                    n++;
+                }
+            }
+            out.writeInt(n);
+            for (int i = 0; i < slots.length() && n > 0; i++) {
+                Counter c = slots.get(i);
+                if (c == null || c.lastShow.get() < minShow) {
+                    continue;
+                }
+                Window window = c.window.get();
+                out.writeLong(c.key);
+                out.writeInt(window.count);
+                out.writeLong(window.start);
+                out.writeLong(c.lastShow.get());
+                n--;
+            }
+        }
+
+        void readFrom(DataInputStream in) throws Exception {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Counter c = getOrCreate(in.readLong());
+                int count = in.readInt();
+                c.window.set(new Window(in.readLong(), count));
+                c.lastShow.set(in.readLong());
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.cache;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.LaneExecutor;
+import com.openmediation.sdk.utils.crash.CrashUtil;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disk side of {@link DataCache}: key-value rows in table_core with a unique index on KEY.
+ * <p>
+ * Writes are queued and coalesced per key, then flushed in one transaction with bound statements off the
+ * caller's thread
+ */
+class KeyValueStore {
+    private static final String TABLE_NAME = "table_core";
+    //delay before queued writes are flushed, in milliseconds
+    private static final long FLUSH_DELAY = 1000;
+    //failed flushes in a row before a batch is dropped
+    private static final int MAX_ATTEMPTS = 5;
+    //value marking a queued delete
+    private static final String DELETED = new String("");
+
+    private DataBaseHelper mDataBaseHelper;
+    private SQLiteDatabase mDatabase;
+    private SQLiteStatement mUpsertStatement;
+    private SQLiteStatement mDeleteStatement;
+
+    //key -> latest value, or DELETED
+    private final Map<String, String> mPendingWrites = new LinkedHashMap<>();
+    private boolean isFlushScheduled;
+    //failed flushes in a row, guarded by this
+    private int mFailures;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Opens the db, removes duplicate keys left by older versions and creates the unique index
+     *
+     * @return all rows
+     */
+    synchronized Map<String, String> open(Context context, String name, int version) {
+        Map<String, String> rows = new HashMap<>();
+        Cursor cursor = null;
+        try {
+            mDataBaseHelper = DataBaseHelper.getSingleton(context, name, version);
+            mDatabase = mDataBaseHelper.getWritableDatabase();
+            mDatabase.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+                    + " (_id INTEGER PRIMARY KEY AUTOINCREMENT,KEY VARCHAR(30),VALUE VARCHAR)");
+            mDatabase.execSQL("DELETE FROM " + TABLE_NAME + " WHERE _id NOT IN (SELECT MAX(_id) FROM "
+                    + TABLE_NAME + " GROUP BY KEY)");
+            mDatabase.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_core_key ON " + TABLE_NAME + "(KEY)");
+            mUpsertStatement = mDatabase.compileStatement("INSERT OR REPLACE INTO " + TABLE_NAME
+                    + "(KEY,VALUE) VALUES(?,?)");
+            mDeleteStatement = mDatabase.compileStatement("DELETE FROM " + TABLE_NAME + " WHERE KEY=?");
+            cursor = mDatabase.rawQuery("SELECT KEY,VALUE FROM " + TABLE_NAME, null);
+            while (cursor.moveToNext()) {
+                rows.put(cursor.getString(0), cursor.getString(1));
+            }
+        } catch (Exception e) {
+            DeveloperLog.LogD("KeyValueStore", e);
+            CrashUtil.getSingleton().saveException(e);
+        } finally {
+            if (cursor != null && !cursor.isClosed()) {
+                cursor.close();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Queues an insert or update
+     */
+    void put(String key, Object value) {
+        enqueue(key, String.valueOf(value));
+    }
+
+    /**
+     * Queues a delete
+     */
+    void remove(String key) {
+        enqueue(key, DELETED);
+    }
+
+    private void enqueue(String key, String value) {
+        synchronized (mPendingWrites) {
+            mPendingWrites.put(key, value);
+            if (isFlushScheduled) {
+                return;
+            }
+            isFlushScheduled = true;
+        }
+        LaneExecutor.execute(LaneExecutor.Lane.DISK, mFlushRunnable, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes queued writes now on the disk lane, without waiting for them: the process may be killed
+     * soon after the app goes to background
+     */
+    void flushAsync() {
+        synchronized (mPendingWrites) {
+            if (mPendingWrites.isEmpty()) {
+                return;
+            }
+        }
+        LaneExecutor.execute(LaneExecutor.Lane.DISK, mFlushRunnable);
+    }
+
+    /**
+     * Writes all queued writes in one transaction. On failure the writes are queued again unless a newer
+     * value for the key came in meanwhile, with a growing delay. After MAX_ATTEMPTS failed flushes in a
+     * row the db is taken as unusable and the batch is dropped, the values stay in memory
+     */
+    synchronized void flush() {
+        Map<String, String> batch;
+        synchronized (mPendingWrites) {
+            isFlushScheduled = false;
+            if (mPendingWrites.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(mPendingWrites);
+            mPendingWrites.clear();
+        }
+        if (mDatabase == null || !mDatabase.isOpen()) {
+            onFlushFailed(batch);
+            return;
+        }
+        boolean success = false;
+        try {
+            mDatabase.beginTransaction();
+            try {
+                for (Map.Entry<String, String> entry : batch.entrySet()) {
+                    if (entry.getValue() == DELETED) {
+                        mDeleteStatement.bindString(1, entry.getKey());
+                        mDeleteStatement.executeUpdateDelete();
+                    } else {
+                        mUpsertStatement.bindString(1, entry.getKey());
+                        mUpsertStatement.bindString(2, entry.getValue());
+                        mUpsertStatement.executeInsert();
+                    }
+                }
+                mDatabase.setTransactionSuccessful();
+                success = true;
+            } finally {
+                mDatabase.endTransaction();
+            }
+        } catch (Exception e) {
+            DeveloperLog.LogD("KeyValueStore flush", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+        if (success) {
+            mFailures = 0;
+        } else {
+            onFlushFailed(batch);
+        }
+    }
+
+    private void onFlushFailed(Map<String, String> batch) {
+        mFailures++;
+        if (mFailures >= MAX_ATTEMPTS) {
+            DeveloperLog.LogD("KeyValueStore dropped " + batch.size() + " writes after " + mFailures
+                    + " failed flushes");
+            mFailures = 0;
+            return;
+        }
+        requeue(batch, FLUSH_DELAY << mFailures);
+    }
+
+    private void requeue(Map<String, String> batch, long delay) {
+        synchronized (mPendingWrites) {
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                if (!mPendingWrites.containsKey(entry.getKey())) {
+                    mPendingWrites.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (isFlushScheduled) {
+                return;
+            }
+            isFlushScheduled = true;
+        }
+        // tried again later, not left for the next write to pick up
+        LaneExecutor.execute(LaneExecutor.Lane.DISK, mFlushRunnable, delay, TimeUnit.MILLISECONDS);
+    }
+}
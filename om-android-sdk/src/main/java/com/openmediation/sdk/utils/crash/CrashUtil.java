@@ -9,14 +9,15 @@ import android.text.TextUtils;
 
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.constant.KeyConstants;
 import com.openmediation.sdk.utils.model.Configurations;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
 import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
+import com.openmediation.sdk.utils.request.network.Request;
+import com.openmediation.sdk.utils.request.network.RequestBody;
 import com.openmediation.sdk.utils.request.network.Headers;
 
 import java.io.PrintWriter;
@@ -130,7 +131,7 @@ public class CrashUtil implements Thread.UncaughtExceptionHandler {
                 }
             }
         };
-        WorkExecutor.execute(runnable);
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, runnable);
     }
 
     /**
@@ -154,7 +155,7 @@ public class CrashUtil implements Thread.UncaughtExceptionHandler {
             return;
         }
 
-        WorkExecutor.execute(new Runnable() {
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -177,14 +178,15 @@ public class CrashUtil implements Thread.UncaughtExceptionHandler {
                             errorType = "UnknownError";
                         }
                         errorInfo = errorInfo.replaceAll("\u0001", " ");
-                        byte[] body = RequestBuilder.buildErrorRequestBody(errorType, errorInfo);
+                        RequestBody body = RequestBuilder.buildErrorRequestBody(errorType, errorInfo);
                         Headers headers = HeaderUtils.getBaseHeaders();
                         AdRequest.post()
-                                .body(new ByteRequestBody(body))
+                                .body(body)
                                 .headers(headers)
                                 .url(xrUrl)
                                 .connectTimeout(30000)
                                 .readTimeout(60000)
+                                .priority(Request.Priority.REPORT)
                                 .performRequest(AdtUtil.getInstance().getApplicationContext());
                     }
                 } catch (Throwable e) {
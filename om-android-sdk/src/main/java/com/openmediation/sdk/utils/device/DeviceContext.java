@@ -0,0 +1,196 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.device;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Build;
+
+import com.openmediation.sdk.utils.AdtUtil;
+import com.openmediation.sdk.utils.DensityUtil;
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.constant.KeyConstants;
+import com.openmediation.sdk.utils.request.network.util.NetworkChecker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Device part of the request body base json.
+ * <p>
+ * Fields that can't change while the process lives are computed once. Fields that can (network, locale,
+ * time zone, screen size, battery, free storage) are computed again after VOLATILE_TTL, or on the next
+ * request after the default network changes, or after a locale, time zone or configuration change broadcast.
+ */
+public final class DeviceContext {
+    //max age of the volatile fields, in milliseconds
+    private static final long VOLATILE_TTL = 60 * 1000;
+
+    private volatile JSONObject mStaticFields;
+    private volatile JSONObject mVolatileFields;
+    private volatile long mVolatileExpiry;
+    private final AtomicBoolean isReceiverRegistered = new AtomicBoolean(false);
+
+    private final BroadcastReceiver mChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mVolatileExpiry = 0;
+        }
+    };
+
+    private static final class DeviceContextHolder {
+        private static final DeviceContext INSTANCE = new DeviceContext();
+    }
+
+    private DeviceContext() {
+    }
+
+    public static DeviceContext getInstance() {
+        return DeviceContextHolder.INSTANCE;
+    }
+
+    /**
+     * Puts the device fields into body
+     *
+     * @param body the request body
+     * @throws JSONException the json exception
+     */
+    public void appendTo(JSONObject body) throws JSONException {
+        Context context = AdtUtil.getInstance().getApplicationContext();
+        registerReceiver(context);
+        copy(getStaticFields(context), body);
+        copy(getVolatileFields(context), body);
+    }
+
+    private JSONObject getStaticFields(Context context) throws JSONException {
+        JSONObject fields = mStaticFields;
+        if (fields != null) {
+            return fields;
+        }
+        fields = new JSONObject();
+        fields.put(KeyConstants.RequestBody.KEY_FIT, DeviceUtil.getFit());
+        fields.put(KeyConstants.RequestBody.KEY_SESSION, DeviceUtil.getSessionId());
+        fields.put(KeyConstants.RequestBody.KEY_UID, DeviceUtil.getUid());
+        fields.put(KeyConstants.RequestBody.KEY_FLT, DeviceUtil.getFlt());
+        fields.put(KeyConstants.RequestBody.KEY_JB, DeviceUtil.isRoot() ? 1 : 0);
+        fields.put(KeyConstants.RequestBody.KEY_BUNDLE, context != null ? context.getPackageName() : "");
+        fields.put(KeyConstants.RequestBody.KEY_MAKE, Build.MANUFACTURER);
+        fields.put(KeyConstants.RequestBody.KEY_BRAND, Build.BRAND);
+        fields.put(KeyConstants.RequestBody.KEY_MODEL, Build.MODEL);
+        fields.put(KeyConstants.RequestBody.KEY_OSV, Build.VERSION.RELEASE);
+        fields.put(KeyConstants.RequestBody.KEY_BUILD, Build.DISPLAY);
+        fields.put(KeyConstants.RequestBody.KEY_APPV, DeviceUtil.getVersionName(context));
+        if (context != null) {
+            // without a context some fields are placeholders, compute them again next time
+            mStaticFields = fields;
+        }
+        return fields;
+    }
+
+    private JSONObject getVolatileFields(Context context) throws JSONException {
+        JSONObject fields = mVolatileFields;
+        long now = System.currentTimeMillis();
+        if (fields != null && now < mVolatileExpiry) {
+            return fields;
+        }
+        fields = new JSONObject();
+        Locale locale = Locale.getDefault();
+        fields.put(KeyConstants.RequestBody.KEY_ZO, DeviceUtil.getTimeZoneOffset());
+        fields.put(KeyConstants.RequestBody.KEY_TZ, DeviceUtil.getTimeZone());
+        fields.put(KeyConstants.RequestBody.KEY_LANG, locale.getLanguage());
+        fields.put(KeyConstants.RequestBody.KEY_LANG_NAME, locale.getDisplayLanguage());
+        fields.put(KeyConstants.RequestBody.KEY_LCOUNTRY, locale.getCountry());
+        fields.put(KeyConstants.RequestBody.KEY_W, DensityUtil.getPhoneWidth(context));
+        fields.put(KeyConstants.RequestBody.KEY_H, DensityUtil.getPhoneHeight(context));
+        fields.put(KeyConstants.RequestBody.KEY_CONT, NetworkChecker.getConnectType(context));
+        fields.put(KeyConstants.RequestBody.KEY_CARRIER, NetworkChecker.getNetworkOperator(context));
+        fields.put(KeyConstants.RequestBody.KEY_LIP, DeviceUtil.getHostIp());
+        fields.put(KeyConstants.RequestBody.KEY_FM, DeviceUtil.getFm());
+        Map<String, Integer> battery = DeviceUtil.getBatteryInfo(context);
+        if (battery != null) {
+            for (Map.Entry<String, Integer> integerEntry : battery.entrySet()) {
+                if (integerEntry == null) {
+                    continue;
+                }
+                fields.put(integerEntry.getKey(), integerEntry.getValue());
+            }
+        }
+        if (!fields.has(KeyConstants.RequestBody.KEY_BATTERY)) {
+            fields.put(KeyConstants.RequestBody.KEY_BATTERY, 0);
+        }
+        mVolatileFields = fields;
+        mVolatileExpiry = now + VOLATILE_TTL;
+        return fields;
+    }
+
+    private void registerReceiver(Context context) {
+        if (context == null || !isReceiverRegistered.compareAndSet(false, true)) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            registerNetworkCallback(context);
+        } else {
+            addConnectivityAction(filter);
+        }
+        try {
+            filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            filter.addAction(Intent.ACTION_CONFIGURATION_CHANGED);
+            context.registerReceiver(mChangeReceiver, filter);
+        } catch (Exception e) {
+            DeveloperLog.LogD("DeviceContext registerReceiver", e);
+        }
+    }
+
+    /**
+     * API 24+: the default network callback replaces the connectivity broadcast
+     */
+    private void registerNetworkCallback(Context context) {
+        try {
+            ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            if (manager == null) {
+                return;
+            }
+            manager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    mVolatileExpiry = 0;
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    mVolatileExpiry = 0;
+                }
+            });
+        } catch (Exception e) {
+            DeveloperLog.LogD("DeviceContext registerNetworkCallback", e);
+        }
+    }
+
+    /**
+     * Before API 24 the connectivity broadcast is the only way to hear about network changes
+     */
+    @SuppressWarnings("deprecation")
+    private static void addConnectivityAction(IntentFilter filter) {
+        filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
+    }
+
+    private static void copy(JSONObject from, JSONObject to) throws JSONException {
+        Iterator<String> keys = from.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            to.put(key, from.opt(key));
+        }
+    }
+}
@@ -3,27 +3,38 @@
 
 package com.openmediation.sdk.utils.event;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.cache.DataBaseHelper;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * DB helper for saving events and reporting; different table from key-value in the same DB
+ * DB helper for saving events and reporting; different table from key-value in the same DB.
+ * <p>
+ * Rows are addressed by their _id: inserts return it, deletes go by id range, loading goes page by page,
+ * and the table keeps at most MAX_ROWS rows by dropping the oldest ones
  */
 public class DataBaseEventsStorage extends DataBaseHelper {
 
     private static DataBaseEventsStorage mInstance;
     private static final String DB_TABLE_NAME = "events";
     private static final String DB_COLUMN_EVENT = "event";
+    //max rows kept, older rows are dropped first
+    static final int MAX_ROWS = 5000;
+
+    private SQLiteStatement mInsertStatement;
+    private SQLiteStatement mDeleteRangeStatement;
+    //rows in the table, -1 until counted
+    private long mRowCount = -1;
 
     private DataBaseEventsStorage(Context context, String databaseName, int databaseVersion) {
         super(context, databaseName, databaseVersion);
@@ -50,32 +61,74 @@ public class DataBaseEventsStorage extends DataBaseHelper {
     /**
      *
      */
-    void createTable() {
+    synchronized void createTable() {
         try {
             getWritableDatabase();
             mSQLiteDatabase.execSQL(String.format("CREATE TABLE IF NOT EXISTS %s (_id INTEGER PRIMARY KEY AUTOINCREMENT,%s)",
                     DB_TABLE_NAME, DB_COLUMN_EVENT));
+            mInsertStatement = mSQLiteDatabase.compileStatement("INSERT INTO " + DB_TABLE_NAME
+                    + "(" + DB_COLUMN_EVENT + ") VALUES(?)");
+            mDeleteRangeStatement = mSQLiteDatabase.compileStatement("DELETE FROM " + DB_TABLE_NAME
+                    + " WHERE _id BETWEEN ? AND ?");
         } catch (Exception e) {
             CrashUtil.getSingleton().saveException(e);
         }
     }
 
+    /**
+     * Saves the event and sets its row id
+     */
     synchronized void addEvent(Event event) {
-        if (event != null) {
-            try {
-                getWritableDatabase();
-                if (!isRead()) {
-                    return;
-                }
-                ContentValues values = getContentValuesForEvent(event);
-                mSQLiteDatabase.insert(DB_TABLE_NAME, null, values);
-            } catch (Throwable throwable) {
-                DeveloperLog.LogE("Exception while saving events: ", throwable);
+        if (event == null || mInsertStatement == null || !isRead()) {
+            return;
+        }
+        try {
+            mInsertStatement.bindString(1, event.toJson());
+            long rowId = mInsertStatement.executeInsert();
+            if (rowId == -1) {
+                return;
+            }
+            event.setRowId(rowId);
+            if (mRowCount >= 0) {
+                mRowCount++;
+            }
+            trim();
+        } catch (Throwable throwable) {
+            DeveloperLog.LogE("Exception while saving events: ", throwable);
+        }
+    }
+
+    /**
+     * @return the largest row id, 0 if the table is empty
+     */
+    synchronized long getMaxRowId() {
+        Cursor cursor = null;
+        try {
+            getReadableDatabase();
+            if (!isRead()) {
+                return 0;
+            }
+            cursor = mSQLiteDatabase.rawQuery("SELECT MAX(_id) FROM " + DB_TABLE_NAME, null);
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } catch (Throwable throwable) {
+            DeveloperLog.LogE("Exception while reading max event id: ", throwable);
+            return 0;
+        } finally {
+            if (cursor != null && !cursor.isClosed()) {
+                cursor.close();
             }
         }
     }
 
-    synchronized List<Event> loadEvents() {
+    /**
+     * Loads a page of events in row order
+     *
+     * @param afterId  only rows with a larger id are loaded
+     * @param maxId    only rows up to this id are loaded
+     * @param pageSize max rows loaded
+     * @return the events, with row ids set
+     */
+    synchronized List<Event> loadEvents(long afterId, long maxId, int pageSize) {
         List<Event> events = new ArrayList<>();
         Cursor cursor = null;
         try {
@@ -83,18 +136,17 @@ public class DataBaseEventsStorage extends DataBaseHelper {
             if (!isRead()) {
                 return events;
             }
-            cursor = mSQLiteDatabase.query(DB_TABLE_NAME, null, null, null
-                    , null, null, null);
-            if (cursor.getCount() > 0) {
-                cursor.moveToFirst();
-
-                while (!cursor.isAfterLast()) {
-                    String data = cursor.getString(cursor.getColumnIndex(DB_COLUMN_EVENT));
-                    Event event = new Event(data);
+            cursor = mSQLiteDatabase.rawQuery("SELECT _id," + DB_COLUMN_EVENT + " FROM " + DB_TABLE_NAME
+                            + " WHERE _id>? AND _id<=? ORDER BY _id LIMIT " + pageSize,
+                    new String[]{String.valueOf(afterId), String.valueOf(maxId)});
+            while (cursor.moveToNext()) {
+                try {
+                    Event event = new Event(cursor.getString(1));
+                    event.setRowId(cursor.getLong(0));
                     events.add(event);
-                    cursor.moveToNext();
+                } catch (Exception e) {
+                    DeveloperLog.LogD("skip broken event row " + cursor.getLong(0));
                 }
-                cursor.close();
             }
         } catch (Throwable throwable) {
             DeveloperLog.LogE("Exception while loading events: ", throwable);
@@ -107,33 +159,80 @@ public class DataBaseEventsStorage extends DataBaseHelper {
         return events;
     }
 
-    synchronized void clearEvents(ConcurrentLinkedQueue<Event> events) {
-        try {
-            DeveloperLog.LogD("clearing events: " + events.size());
-            getWritableDatabase();
-            if (!isRead()) {
-                return;
+    /**
+     * Deletes the events' rows, runs of consecutive ids go in one statement
+     */
+    synchronized void clearEvents(Collection<Event> events) {
+        if (events == null || events.isEmpty() || mDeleteRangeStatement == null || !isRead()) {
+            return;
+        }
+        long[] ids = new long[events.size()];
+        int n = 0;
+        for (Event event : events) {
+            if (event.getRowId() > 0) {
+                ids[n++] = event.getRowId();
             }
+        }
+        if (n == 0) {
+            return;
+        }
+        Arrays.sort(ids, 0, n);
+        DeveloperLog.LogD("clearing events: " + n);
+        try {
             mSQLiteDatabase.beginTransaction();
-            for (Event event : events) {
-                mSQLiteDatabase.delete(DB_TABLE_NAME, DB_COLUMN_EVENT + "=?", new String[]{event.toJson()});
+            try {
+                int start = 0;
+                for (int i = 1; i <= n; i++) {
+                    if (i == n || ids[i] != ids[i - 1] + 1) {
+                        deleteRange(ids[start], ids[i - 1]);
+                        start = i;
+                    }
+                }
+                mSQLiteDatabase.setTransactionSuccessful();
+            } finally {
+                mSQLiteDatabase.endTransaction();
             }
-            mSQLiteDatabase.setTransactionSuccessful();
         } catch (Throwable throwable) {
-            throwable.printStackTrace();
             DeveloperLog.LogE("Exception while clearing events: ", throwable);
-        } finally {
-            mSQLiteDatabase.endTransaction();
         }
     }
 
-    private ContentValues getContentValuesForEvent(Event event) {
-        ContentValues values = null;
-        if (event != null) {
-            values = new ContentValues(4);
-            values.put(DB_COLUMN_EVENT, event.toJson());
+    private void deleteRange(long from, long to) {
+        mDeleteRangeStatement.bindLong(1, from);
+        mDeleteRangeStatement.bindLong(2, to);
+        int deleted = mDeleteRangeStatement.executeUpdateDelete();
+        if (mRowCount >= 0) {
+            mRowCount = Math.max(0, mRowCount - deleted);
         }
+    }
+
+    /**
+     * Drops the oldest rows once the table holds more than MAX_ROWS
+     */
+    private void trim() {
+        if (mRowCount < 0) {
+            mRowCount = count();
+        }
+        if (mRowCount <= MAX_ROWS) {
+            return;
+        }
+        // leave some room so this doesn't run on every insert
+        long keep = MAX_ROWS - MAX_ROWS / 10;
+        mSQLiteDatabase.execSQL("DELETE FROM " + DB_TABLE_NAME + " WHERE _id<=(SELECT _id FROM " + DB_TABLE_NAME
+                + " ORDER BY _id DESC LIMIT 1 OFFSET " + keep + ")");
+        DeveloperLog.LogD("events table over " + MAX_ROWS + " rows, dropped oldest");
+        mRowCount = count();
+    }
 
-        return values;
+    private long count() {
+        Cursor cursor = null;
+        try {
+            cursor = mSQLiteDatabase.rawQuery("SELECT COUNT(*) FROM " + DB_TABLE_NAME, null);
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            if (cursor != null && !cursor.isClosed()) {
+                cursor.close();
+            }
+        }
     }
 }
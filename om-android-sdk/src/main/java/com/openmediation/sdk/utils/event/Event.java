@@ -34,6 +34,8 @@ public class Event {
 
     private String reqId; // AuctionID
     private int ruleId; // Mediation Rule ID
+    //_id of the event's row in the events table, -1 if it isn't stored; not reported
+    private long rowId = -1;
 
     Event() throws Exception {
         this((String) null);
@@ -119,6 +121,14 @@ public class Event {
         return toJson();
     }
 
+    long getRowId() {
+        return rowId;
+    }
+
+    void setRowId(long rowId) {
+        this.rowId = rowId;
+    }
+
     public long getTs() {
         return ts;
     }
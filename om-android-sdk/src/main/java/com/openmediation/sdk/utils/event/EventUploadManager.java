@@ -8,41 +8,66 @@ import android.text.TextUtils;
 
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.IOUtil;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.crash.CrashUtil;
+import com.openmediation.sdk.utils.helper.LrReportBatcher;
 import com.openmediation.sdk.utils.model.Configurations;
 import com.openmediation.sdk.utils.model.Events;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
 import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Request;
+import com.openmediation.sdk.utils.request.network.RequestBody;
 import com.openmediation.sdk.utils.request.network.Response;
+import com.openmediation.sdk.utils.request.network.util.NetworkChecker;
 
 import org.json.JSONObject;
 
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * The type Event upload manager.
  */
-public class EventUploadManager implements Request.OnRequestCallback {
+public class EventUploadManager {
+
+    //batch size grows up to this multiple of Events.mn while uploads are fast
+    private static final int MAX_BATCH_FACTOR = 4;
+    private static final long FAST_UPLOAD = 1000;
+    private static final long SLOW_UPLOAD = 5000;
+    private static final long MIN_BACKOFF = 5 * 1000;
+    private static final long MAX_BACKOFF = 5 * 60 * 1000;
+    private static final Pattern RESPONSE_CODE = Pattern.compile("RequestCode:(\\d+)");
 
-    private AtomicBoolean isReporting = new AtomicBoolean(false);
     private AtomicInteger mMaxReportEventsCount = new AtomicInteger(5);
-    private ConcurrentLinkedQueue<Event> mEvents;
+    private final AtomicInteger mBatchSize = new AtomicInteger(5);
+    private final AtomicInteger mInFlightBatches = new AtomicInteger(0);
+    private final AtomicInteger mFailures = new AtomicInteger(0);
+    private final AtomicBoolean isRetryScheduled = new AtomicBoolean(false);
+    private volatile long mRetryAt;
+    private final Random mRandom = new Random();
+    private ScheduledFuture<?> mIntervalTask;
+    private LinkedBlockingDeque<Event> mEvents;
     private ConcurrentLinkedQueue<Event> mDelayEvents;
     private DataBaseEventsStorage mEventDataBase;
     private List<Integer> mAllowedEvents;
-    private ConcurrentLinkedQueue<Event> mReportEvents;
     private Events mEventsSettings;
+    //saved events are loaded page by page, from mLoadCursor up to mLoadLimit, the last row of the previous process
+    private static final int LOAD_PAGE_SIZE = 100;
+    private long mLoadCursor;
+    private volatile long mLoadLimit;
 
     private EventUploadManager() {
     }
@@ -66,9 +91,8 @@ public class EventUploadManager implements Request.OnRequestCallback {
      * @param context the context
      */
     public void init(final Context context) {
-        mEvents = new ConcurrentLinkedQueue<>();
+        mEvents = new LinkedBlockingDeque<>();
         mDelayEvents = new ConcurrentLinkedQueue<>();
-        mReportEvents = new ConcurrentLinkedQueue<>();
         if (mEventDataBase == null) {
             mEventDataBase = DataBaseEventsStorage.getInstance(context, CommonConstants.DB_NAME, CommonConstants.DB_VERSION);
             mEventDataBase.createTable();
@@ -77,13 +101,22 @@ public class EventUploadManager implements Request.OnRequestCallback {
     }
 
     /**
-     *
+     * Loads the next page of events a previous process saved but didn't report
      */
-    private void loadEvents() {
+    private synchronized void loadEvents() {
+        if (mEventDataBase == null || mLoadCursor >= mLoadLimit) {
+            return;
+        }
         if (mEvents == null) {
-            mEvents = new ConcurrentLinkedQueue<>();
+            mEvents = new LinkedBlockingDeque<>();
+        }
+        List<Event> events = mEventDataBase.loadEvents(mLoadCursor, mLoadLimit, LOAD_PAGE_SIZE);
+        if (events.isEmpty()) {
+            mLoadCursor = mLoadLimit;
+            return;
         }
-        mEvents.addAll(mEventDataBase.loadEvents());
+        mLoadCursor = events.get(events.size() - 1).getRowId();
+        mEvents.addAll(events);
     }
 
     /**
@@ -149,13 +182,10 @@ public class EventUploadManager implements Request.OnRequestCallback {
             return;
         }
         if (mEvents == null) {
-            mEvents = new ConcurrentLinkedQueue<>();
+            mEvents = new LinkedBlockingDeque<>();
         }
         DeveloperLog.LogD("save event " + event.toString());
-        mEvents.add(event);
-        if (mEventDataBase != null) {
-            mEventDataBase.addEvent(event);
-        }
+        addEvent(event);
         if (mEvents.size() >= mMaxReportEventsCount.get()/* && NetworkChecker.isAvailable(AdtUtil.getApplication())*/) {
             DeveloperLog.LogD("update events by reached max events count");
             uploadEvents();
@@ -164,15 +194,23 @@ public class EventUploadManager implements Request.OnRequestCallback {
 
     private void flushEvents(Event event) {
         if (mEvents == null) {
-            mEvents = new ConcurrentLinkedQueue<>();
+            mEvents = new LinkedBlockingDeque<>();
         }
         DeveloperLog.LogD("save event " + event.toString());
-        mEvents.add(event);
+        addEvent(event);
+        DeveloperLog.LogD("update events by reached max events count");
+        uploadEvents();
+    }
+
+    private void addEvent(Event event) {
         if (mEventDataBase != null) {
             mEventDataBase.addEvent(event);
         }
-        DeveloperLog.LogD("update events by reached max events count");
-        uploadEvents();
+        mEvents.add(event);
+        // the table drops its oldest rows past MAX_ROWS, so does the queue
+        while (mEvents.size() > DataBaseEventsStorage.MAX_ROWS) {
+            mEvents.poll();
+        }
     }
 
     /**
@@ -186,12 +224,17 @@ public class EventUploadManager implements Request.OnRequestCallback {
             return;
         }
         mEventsSettings = configurations.getEvents();
-        mMaxReportEventsCount.set(mEventsSettings.getMn());
+        mMaxReportEventsCount.set(Math.max(1, mEventsSettings.getMn()));
+        mBatchSize.set(mMaxReportEventsCount.get());
         if (mEventsSettings.getIds() != null) {
             mAllowedEvents.addAll(mEventsSettings.getIds());
         }
+        if (mIntervalTask != null) {
+            mIntervalTask.cancel(false);
+            mIntervalTask = null;
+        }
         if (mEventsSettings.getCi() != 0) {
-            EventExecutor.scheduleWithFixedDelay(new EventRunnable(), mEventsSettings.getCi(),
+            mIntervalTask = EventExecutor.scheduleWithFixedDelay(new EventRunnable(), mEventsSettings.getCi(),
                     mEventsSettings.getCi(), TimeUnit.SECONDS);
         }
         if (!mAllowedEvents.isEmpty()) {
@@ -222,92 +265,182 @@ public class EventUploadManager implements Request.OnRequestCallback {
         return event;
     }
 
-    private void internalUpload(byte[] body) {
-        String url = RequestBuilder.buildEventUrl(mEventsSettings.getUrl());
-        if (TextUtils.isEmpty(url)) {
-            return;
-        }
-        ByteRequestBody requestBody = new ByteRequestBody(body);
-        Headers headers = HeaderUtils.getBaseHeaders();
-        AdRequest.post().url(url).body(requestBody).headers(headers).connectTimeout(50000)
-                .readTimeout(100000)
-                .callback(this)
-                .performRequest(AdtUtil.getInstance().getApplicationContext());
-    }
-
     /**
-     *
+     * Sends queued events in batches, up to Events.mc batches at a time on Wi-Fi or ethernet.
+     * On a metered network only one batch of at most Events.mn events is in flight.
+     * Events stay in the db until the server acknowledged their batch.
      */
     private void uploadEvents() {
         try {
             if (mEventsSettings == null || TextUtils.isEmpty(mEventsSettings.getUrl())
-                    || mEvents == null || mEvents.isEmpty() || isReporting.get()) {
+                    || mEvents == null || mEvents.isEmpty()) {
                 return;
             }
-            isReporting.set(true);
-            Iterator<Event> iterator = mEvents.iterator();
-            int i = 0;
-            while (i < mMaxReportEventsCount.get()) {
-                if (iterator.hasNext()) {
-                    mReportEvents.add(iterator.next());
-                }
-                i++;
+            if (System.currentTimeMillis() < mRetryAt) {
+                // backing off, the retry task uploads
+                return;
             }
-            if (mReportEvents.isEmpty()) {
+            Context context = AdtUtil.getInstance().getApplicationContext();
+            int netType = NetworkChecker.getConnectType(context);
+            if (netType == NetworkChecker.NetType.UNKNOWN.getValue()) {
                 return;
             }
-            byte[] body = RequestBuilder.buildEventRequestBody(mReportEvents);
-            if (body == null) {
+            boolean unmetered = netType == NetworkChecker.NetType.WIFI.getValue()
+                    || netType == NetworkChecker.NetType.ETHERNET.getValue();
+            int maxBatches = unmetered ? Math.max(1, mEventsSettings.getMc()) : 1;
+            int batchSize = unmetered ? mBatchSize.get() : mMaxReportEventsCount.get();
+            while (!mEvents.isEmpty()) {
+                int inFlight = mInFlightBatches.get();
+                if (inFlight >= maxBatches) {
+                    return;
+                }
+                if (!mInFlightBatches.compareAndSet(inFlight, inFlight + 1)) {
+                    continue;
+                }
+                List<Event> batch = new ArrayList<>(batchSize);
+                Event event;
+                while (batch.size() < batchSize && (event = mEvents.poll()) != null) {
+                    batch.add(event);
+                }
+                if (batch.isEmpty()) {
+                    mInFlightBatches.decrementAndGet();
+                    return;
+                }
+                sendBatch(batch);
+            }
+        } catch (Exception e) {
+            DeveloperLog.LogD("update events exception : " + e.getMessage());
+            CrashUtil.getSingleton().saveException(e);
+        }
+    }
+
+    private void sendBatch(List<Event> batch) {
+        BatchCallback callback = new BatchCallback(batch);
+        try {
+            String url = RequestBuilder.buildEventUrl(mEventsSettings.getUrl());
+            RequestBody body = RequestBuilder.buildEventRequestBody(batch);
+            if (TextUtils.isEmpty(url) || body == null) {
                 DeveloperLog.LogD("build events request data error");
+                callback.onRequestFailed("build events request data error");
                 return;
             }
-
-            internalUpload(body);
-            clearEvents();
+            Headers headers = HeaderUtils.getBaseHeaders();
+            AdRequest.post().url(url).body(body).headers(headers).connectTimeout(50000)
+                    .readTimeout(100000)
+                    .callback(callback)
+                    .priority(Request.Priority.REPORT)
+                    .performRequest(AdtUtil.getInstance().getApplicationContext());
         } catch (Exception e) {
-            isReporting.set(false);
-            DeveloperLog.LogD("update events exception : " + e.getMessage());
             CrashUtil.getSingleton().saveException(e);
+            callback.onRequestFailed(e.getMessage());
         }
     }
 
-    /**
-     *
-     */
-    private void clearEvents() {
-        if (mReportEvents.isEmpty()) {
-            return;
+    private void onBatchSuccess(List<Event> batch, long latency) {
+        if (mEventDataBase != null) {
+            mEventDataBase.clearEvents(batch);
         }
-        if (mEvents != null) {
-            mEvents.removeAll(mReportEvents);
+        mInFlightBatches.decrementAndGet();
+        mFailures.set(0);
+        mRetryAt = 0;
+        // grow batches while the server answers fast, shrink them when it's slow
+        int mn = mMaxReportEventsCount.get();
+        int size = mBatchSize.get();
+        if (latency < FAST_UPLOAD) {
+            mBatchSize.set(Math.min(mn * MAX_BATCH_FACTOR, size + mn));
+        } else if (latency > SLOW_UPLOAD) {
+            mBatchSize.set(Math.max(mn, size / 2));
         }
-        if (mEventDataBase != null) {
-            mEventDataBase.clearEvents(mReportEvents);
+        if (mEvents.size() < mMaxReportEventsCount.get()) {
+            loadEvents();
         }
-
-        mReportEvents.clear();
-    }
-
-    @Override
-    public void onRequestSuccess(Response response) {
-        isReporting.set(false);
-        if (mEvents.size() >= mMaxReportEventsCount.get() /*&& NetworkChecker.isAvailable(AdtUtil.getApplication())*/) {
+        if (mEvents.size() >= mMaxReportEventsCount.get()) {
             DeveloperLog.LogD("update events after upload success");
             uploadEvents();
         }
     }
 
-    @Override
-    public void onRequestFailed(String error) {
-        //
+    private void onBatchFailed(List<Event> batch, int code, String error) {
         DeveloperLog.LogD("uploadEvent error : " + error);
-        //
-        isReporting.set(false);
+        if (!LrReportBatcher.isRetryable(code)) {
+            // the server refused the events, sending them again won't change that
+            DeveloperLog.LogD("drop " + batch.size() + " events, response code: " + code);
+            if (mEventDataBase != null) {
+                mEventDataBase.clearEvents(batch);
+            }
+            mInFlightBatches.decrementAndGet();
+            if (mEvents.size() >= mMaxReportEventsCount.get()) {
+                uploadEvents();
+            }
+            return;
+        }
+        // the rows are still in the db, put the events back in front of the newer ones for the next try
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            mEvents.offerFirst(batch.get(i));
+        }
+        mInFlightBatches.decrementAndGet();
+        mBatchSize.set(mMaxReportEventsCount.get());
+        int failures = mFailures.incrementAndGet();
+        long backoff = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(failures - 1, 10));
+        // half fixed, half random, so devices that failed together don't retry together
+        long delay = backoff / 2 + (long) (mRandom.nextDouble() * (backoff / 2));
+        mRetryAt = System.currentTimeMillis() + delay;
+        if (isRetryScheduled.compareAndSet(false, true)) {
+            EventExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    isRetryScheduled.set(false);
+                    uploadEvents();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private class BatchCallback implements Request.OnRequestCallback {
+        private final List<Event> mBatch;
+        private final long mStart;
+        private final AtomicBoolean isDone = new AtomicBoolean(false);
+
+        BatchCallback(List<Event> batch) {
+            mBatch = batch;
+            mStart = System.currentTimeMillis();
+        }
+
+        @Override
+        public void onRequestSuccess(Response response) {
+            int code = response != null ? response.code() : -1;
+            IOUtil.closeQuietly(response);
+            if (code != HttpURLConnection.HTTP_OK) {
+                onRequestFailed("events response RequestCode:" + code);
+                return;
+            }
+            if (isDone.compareAndSet(false, true)) {
+                onBatchSuccess(mBatch, System.currentTimeMillis() - mStart);
+            }
+        }
+
+        @Override
+        public void onRequestFailed(String error) {
+            if (!isDone.compareAndSet(false, true)) {
+                return;
+            }
+            int code = -1;
+            if (error != null) {
+                Matcher matcher = RESPONSE_CODE.matcher(error);
+                if (matcher.find()) {
+                    code = Integer.parseInt(matcher.group(1));
+                }
+            }
+            onBatchFailed(mBatch, code, error);
+        }
     }
 
     private class EventRunnable implements Runnable {
         @Override
         public void run() {
+            if (mEvents.isEmpty()) {
+                loadEvents();
+            }
             if (!mEvents.isEmpty()) {
                 DeveloperLog.LogD("update events by reached interval");
                 uploadEvents();
@@ -320,6 +453,7 @@ public class EventUploadManager implements Request.OnRequestCallback {
         @Override
         public void run() {
             if (mEventDataBase != null) {
+                mLoadLimit = mEventDataBase.getMaxRowId();
                 loadEvents();
             }
         }
@@ -3,7 +3,7 @@ package com.openmediation.sdk.utils.helper;
 import android.text.TextUtils;
 
 import com.openmediation.sdk.utils.AdtUtil;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.constant.KeyConstants;
 import com.openmediation.sdk.utils.crash.CrashUtil;
@@ -11,7 +11,8 @@ import com.openmediation.sdk.utils.model.Configurations;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
 import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
+import com.openmediation.sdk.utils.request.network.Request;
+import com.openmediation.sdk.utils.request.network.RequestBody;
 import com.openmediation.sdk.utils.request.network.Headers;
 
 public class AfHelper {
@@ -20,7 +21,7 @@ public class AfHelper {
         if (data == null) {
             return;
         }
-        WorkExecutor.execute(new Runnable() {
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -32,15 +33,14 @@ public class AfHelper {
 
                     Headers headers = HeaderUtils.getBaseHeaders();
 
-                    byte[] bytes = RequestBuilder.buildCdRequestBody(type, data);
-
-                    ByteRequestBody requestBody = new ByteRequestBody(bytes);
+                    RequestBody requestBody = RequestBuilder.buildCdRequestBody(type, data);
                     AdRequest.post()
                             .url(url)
                             .headers(headers)
                             .body(requestBody)
                             .connectTimeout(30000)
                             .readTimeout(60000)
+                            .priority(Request.Priority.REPORT)
                             .performRequest(AdtUtil.getInstance().getApplicationContext());
                 } catch (Exception e) {
                     CrashUtil.getSingleton().saveException(e);
@@ -26,7 +26,6 @@ import com.openmediation.sdk.utils.model.Scene;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
 import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Request;
 import com.openmediation.sdk.utils.request.network.Response;
@@ -74,10 +73,11 @@ public class ConfigurationHelper {
         AdRequest.post()
                 .url(initUrl)
                 .headers(headers)
-                .body(new ByteRequestBody(RequestBuilder.buildConfigRequestBody(AdapterUtil.getAdns())))
+                .body(RequestBuilder.buildConfigRequestBody(AdapterUtil.getAdns()))
                 .connectTimeout(30000)
                 .readTimeout(60000)
                 .instanceFollowRedirects(true)
+                .coalesce(true)
                 .callback(requestCallback)
                 .performRequest(AdtUtil.getInstance().getApplicationContext());
     }
@@ -142,6 +142,43 @@ public class ConfigurationHelper {
         return null;
     }
 
+    /**
+     * Carries placements whose config didn't change over from the old configurations, so that instances
+     * keep their loaded state when a fresh config is swapped in
+     *
+     * @param oldConfig the configurations in use
+     * @param newConfig the fresh configurations
+     */
+    public static void keepUnchangedPlacements(Configurations oldConfig, Configurations newConfig) {
+        if (oldConfig == null || newConfig == null || oldConfig.getPls() == null || newConfig.getPls() == null) {
+            return;
+        }
+        Map<String, Placement> oldPls = oldConfig.getPls();
+        for (Map.Entry<String, Placement> entry : newConfig.getPls().entrySet()) {
+            Placement oldPlacement = oldPls.get(entry.getKey());
+            if (oldPlacement != null && TextUtils.equals(oldPlacement.getOriData(), entry.getValue().getOriData())
+                    && isSameMediations(oldPlacement, newConfig.getMs())) {
+                entry.setValue(oldPlacement);
+            }
+        }
+    }
+
+    private static boolean isSameMediations(Placement placement, SparseArray<Mediation> mediations) {
+        SparseArray<BaseInstance> insMap = placement.getInsMap();
+        if (insMap == null || mediations == null) {
+            return false;
+        }
+        int size = insMap.size();
+        for (int i = 0; i < size; i++) {
+            BaseInstance instance = insMap.valueAt(i);
+            Mediation mediation = mediations.get(instance.getMediationId());
+            if (mediation == null || !TextUtils.equals(mediation.getK(), instance.getAppKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static ApiConfigurations parseApiConfiguration(JSONObject jsonObject) {
         if (jsonObject == null) {
             return null;
@@ -149,6 +186,7 @@ public class ConfigurationHelper {
         ApiConfigurations configurations = new ApiConfigurations();
         configurations.setWf(jsonObject.optString("wf"));
         configurations.setLr(jsonObject.optString("lr"));
+        configurations.setLrb(jsonObject.optString("lrb"));
         configurations.setEr(jsonObject.optString("er"));
         configurations.setIc(jsonObject.optString("ic"));
         configurations.setIap(jsonObject.optString("iap"));
@@ -195,6 +233,7 @@ public class ConfigurationHelper {
             placement.setPt(placementObject.optInt("pt"));
             placement.setRlw(placementObject.optInt("rlw"));
             placement.setHasHb(placementObject.optInt("hb") == 1);
+            placement.setPpl(placementObject.optInt("ppl"));
             placement.setMain(placementObject.optInt("main"));
             placement.setScenes(formatScenes(placementObject.optJSONArray("scenes")));
             placement.setInsMap(formatInstances(placementId, mapps, adType, placementObject.optJSONArray("ins")));
@@ -7,7 +7,7 @@ import android.text.TextUtils;
 
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.constant.KeyConstants;
 import com.openmediation.sdk.utils.crash.CrashUtil;
@@ -15,7 +15,7 @@ import com.openmediation.sdk.utils.model.Configurations;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
 import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
+import com.openmediation.sdk.utils.request.network.RequestBody;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Request;
 import com.openmediation.sdk.utils.request.network.Response;
@@ -97,7 +97,7 @@ public class IapHelper {
     }
 
     private static void iapReport(final String iapCount, final String currency, final String iapt, final Request.OnRequestCallback callback) {
-        WorkExecutor.execute(new Runnable() {
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -113,19 +113,18 @@ public class IapHelper {
 
                     Headers headers = HeaderUtils.getBaseHeaders();
 
-                    byte[] bytes = RequestBuilder.buildIapRequestBody(
+                    RequestBody requestBody = RequestBuilder.buildIapRequestBody(
                             currency,
                             iapCount,
                             iapt);
 
-                    if (bytes == null) {
+                    if (requestBody == null) {
                         if (callback != null) {
                             callback.onRequestFailed("Iap param is null");
                         }
                         return;
                     }
 
-                    ByteRequestBody requestBody = new ByteRequestBody(bytes);
                     AdRequest.post()
                             .url(url)
                             .body(requestBody)
@@ -133,6 +132,7 @@ public class IapHelper {
                             .connectTimeout(30000)
                             .readTimeout(60000)
                             .callback(callback)
+                            .priority(Request.Priority.REPORT)
                             .performRequest(AdtUtil.getInstance().getApplicationContext());
 
                 } catch (Exception e) {
@@ -14,7 +14,7 @@ import com.openmediation.sdk.utils.model.Configurations;
 import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
 import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
+import com.openmediation.sdk.utils.request.network.Request;
 import com.openmediation.sdk.utils.request.network.Headers;
 
 /**
@@ -47,11 +47,12 @@ public class IcHelper {
             AdRequest.post()
                     .url(vpcUrl)
                     .headers(headers)
-                    .body(new ByteRequestBody(RequestBuilder.buildIcRequestBody(Integer.valueOf(placementId),
-                            mediationId, insId, scene, extId)))
+                    .body(RequestBuilder.buildIcRequestBody(Integer.valueOf(placementId),
+                            mediationId, insId, scene, extId))
                     .connectTimeout(30000)
                     .readTimeout(60000)
                     .instanceFollowRedirects(true)
+                    .priority(Request.Priority.REPORT)
                     .performRequest(AdtUtil.getInstance().getApplicationContext());
         } catch (Exception e) {
             DeveloperLog.LogE("icReport error ", e);
@@ -0,0 +1,429 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.helper;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.openmediation.sdk.utils.AdtUtil;
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
+import com.openmediation.sdk.utils.cache.DataBaseHelper;
+import com.openmediation.sdk.utils.cache.DataCache;
+import com.openmediation.sdk.utils.constant.CommonConstants;
+import com.openmediation.sdk.utils.constant.KeyConstants;
+import com.openmediation.sdk.utils.crash.CrashUtil;
+import com.openmediation.sdk.utils.model.Configurations;
+import com.openmediation.sdk.utils.request.HeaderUtils;
+import com.openmediation.sdk.utils.request.RequestBuilder;
+import com.openmediation.sdk.utils.request.network.AdRequest;
+import com.openmediation.sdk.utils.request.network.Request;
+import com.openmediation.sdk.utils.request.network.Response;
+
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lr channel: records are saved to the lr_reports table, then sent when MAX_BATCH records are waiting,
+ * FLUSH_DELAY after the first one, or when the app goes to background. With a batch url (lrb) in the
+ * config they go together in one gzip body with one device header. Without one they go on the lr url, a
+ * request per record. Rows are deleted only after the server accepted them, so a killed process sends
+ * them on the next start.
+ * <p>
+ * The table keeps at most MAX_ROWS records, the oldest are dropped. A failed record is retried with
+ * exponential backoff and dropped after MAX_ATTEMPTS, or at once if the server refused it with a 4xx, so
+ * one bad record can't hold back the ones after it.
+ */
+public final class LrReportBatcher {
+    private static final String TABLE_NAME = "lr_reports";
+    //records per request
+    private static final int MAX_BATCH = 20;
+    //max age of a waiting record, in milliseconds
+    private static final long FLUSH_DELAY = 10 * 1000;
+    static final int MAX_ROWS = 1000;
+    static final int MAX_ATTEMPTS = 5;
+    private static final long MAX_BACKOFF = 10 * 60 * 1000;
+    private static final Pattern RESPONSE_CODE = Pattern.compile("RequestCode:(\\d+)");
+
+    private SQLiteDatabase mDatabase;
+    private SQLiteStatement mInsertStatement;
+    private SQLiteStatement mDeleteStatement;
+    private boolean isOpened;
+
+    private final List<Record> mPending = new ArrayList<>();
+    private final List<Record> mInFlight = new ArrayList<>();
+    private boolean isFlushScheduled;
+    //failed uploads in a row, and when the next one may start
+    private int mFailures;
+    private long mRetryAt;
+    //some records of the current flight failed and wait for a retry
+    private boolean isFlightRetried;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (LrReportBatcher.this) {
+                isFlushScheduled = false;
+            }
+            upload();
+        }
+    };
+
+    private static final class LrReportBatcherHolder {
+        private static final LrReportBatcher INSTANCE = new LrReportBatcher();
+    }
+
+    private LrReportBatcher() {
+    }
+
+    public static LrReportBatcher getInstance() {
+        return LrReportBatcherHolder.INSTANCE;
+    }
+
+    /**
+     * Saves a record and schedules its upload, called on a worker thread
+     *
+     * @param record lr record built with {@link RequestBuilder#buildLrRecord}
+     */
+    synchronized void add(JSONObject record) {
+        open();
+        long id = -1;
+        try {
+            if (mInsertStatement != null) {
+                mInsertStatement.bindString(1, record.toString());
+                id = mInsertStatement.executeInsert();
+            }
+        } catch (Exception e) {
+            DeveloperLog.LogD("LrReportBatcher add", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+        mPending.add(new Record(id, record));
+        trim();
+        if (mPending.size() >= MAX_BATCH) {
+            LaneExecutor.execute(LaneExecutor.Lane.REPORT, mFlushRunnable);
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Sends waiting records now, including those saved by a previous process
+     */
+    public void flush() {
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, mFlushRunnable);
+    }
+
+    private void scheduleFlush() {
+        scheduleFlush(FLUSH_DELAY);
+    }
+
+    private void scheduleFlush(long delay) {
+        if (isFlushScheduled) {
+            return;
+        }
+        isFlushScheduled = true;
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, mFlushRunnable, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void upload() {
+        List<Record> records;
+        String lrb;
+        String lr;
+        synchronized (this) {
+            open();
+            if (!mInFlight.isEmpty() || mPending.isEmpty()) {
+                return;
+            }
+            long wait = mRetryAt - SystemClock.elapsedRealtime();
+            if (wait > 0) {
+                scheduleFlush(wait);
+                return;
+            }
+            Configurations config = DataCache.getInstance().getFromMem(KeyConstants.KEY_CONFIGURATION, Configurations.class);
+            if (config == null || config.getApi() == null) {
+                // sent once a config is there
+                return;
+            }
+            lrb = config.getApi().getLrb();
+            lr = config.getApi().getLr();
+            if (TextUtils.isEmpty(lrb) && TextUtils.isEmpty(lr)) {
+                List<Record> dropped = new ArrayList<>(mPending);
+                mPending.clear();
+                delete(dropped);
+                DeveloperLog.LogD("LrReportBatcher no lr url, dropped records: " + dropped.size());
+                return;
+            }
+            int count = Math.min(MAX_BATCH, mPending.size());
+            records = new ArrayList<>(mPending.subList(0, count));
+            mPending.subList(0, count).clear();
+            mInFlight.addAll(records);
+        }
+        if (!TextUtils.isEmpty(lrb)) {
+            List<JSONObject> data = new ArrayList<>(records.size());
+            for (Record record : records) {
+                data.add(record.data);
+            }
+            send(RequestBuilder.buildLrUrl(lrb), records, data);
+            return;
+        }
+        // no batch url in the config: a request per record on the lr url, each deleted once acknowledged
+        String url = RequestBuilder.buildLrUrl(lr);
+        for (Record record : records) {
+            send(url, Collections.singletonList(record), null);
+        }
+    }
+
+    /**
+     * Sends records in one batch body, or a single record in an lr body if batch is null
+     */
+    private void send(String url, List<Record> records, List<JSONObject> batch) {
+        UploadCallback callback = new UploadCallback(records);
+        try {
+            AdRequest.post()
+                    .url(url)
+                    .headers(HeaderUtils.getBaseHeaders())
+                    .body(batch != null ? RequestBuilder.buildLrBatchRequestBody(batch)
+                            : RequestBuilder.buildLrRequestBody(records.get(0).data))
+                    .connectTimeout(30000)
+                    .readTimeout(60000)
+                    .instanceFollowRedirects(true)
+                    .callback(callback)
+                    .priority(Request.Priority.REPORT)
+                    .performRequest(AdtUtil.getInstance().getApplicationContext());
+        } catch (Exception e) {
+            DeveloperLog.LogE("httpLr error ", e);
+            CrashUtil.getSingleton().saveException(e);
+            callback.onRequestFailed(e.getMessage());
+        }
+    }
+
+    private void onUploaded(List<Record> records) {
+        boolean more;
+        synchronized (this) {
+            delete(records);
+            mInFlight.removeAll(records);
+            more = onFlightDone();
+        }
+        if (more) {
+            flush();
+        }
+    }
+
+    private void onUploadFailed(List<Record> records, int code, String error) {
+        boolean more;
+        synchronized (this) {
+            DeveloperLog.LogD("LrReportBatcher upload failed: " + error);
+            boolean isRetryable = isRetryable(code);
+            List<Record> dropped = new ArrayList<>();
+            for (Record record : records) {
+                record.attempts++;
+                if (!isRetryable || record.attempts >= MAX_ATTEMPTS) {
+                    dropped.add(record);
+                } else {
+                    requeue(record);
+                    isFlightRetried = true;
+                }
+            }
+            mInFlight.removeAll(records);
+            if (!dropped.isEmpty()) {
+                DeveloperLog.LogD("LrReportBatcher dropped records: " + dropped.size() + ", code: " + code);
+                delete(dropped);
+            }
+            more = onFlightDone();
+        }
+        if (more) {
+            flush();
+        }
+    }
+
+    /**
+     * Puts a record back ahead of the newer ones, the requests of a flight fail in any order
+     */
+    private void requeue(Record record) {
+        int i = 0;
+        while (i < mPending.size() && mPending.get(i).id < record.id) {
+            i++;
+        }
+        mPending.add(i, record);
+    }
+
+    /**
+     * Once every request of the flight is answered, backs off if records of it are to be retried, or
+     * schedules the next flush
+     *
+     * @return true if a full batch is waiting and should go now
+     */
+    private boolean onFlightDone() {
+        if (!mInFlight.isEmpty()) {
+            return false;
+        }
+        if (isFlightRetried) {
+            isFlightRetried = false;
+            mFailures++;
+            long backoff = Math.min(MAX_BACKOFF, FLUSH_DELAY << Math.min(mFailures - 1, 10));
+            mRetryAt = SystemClock.elapsedRealtime() + backoff;
+            scheduleFlush(backoff);
+            return false;
+        }
+        // accepted, or refused by the server rather than the channel: the next ones may go now
+        mFailures = 0;
+        mRetryAt = 0;
+        if (mPending.size() >= MAX_BATCH) {
+            return true;
+        }
+        if (!mPending.isEmpty()) {
+            scheduleFlush();
+        }
+        return false;
+    }
+
+    private final class UploadCallback implements Request.OnRequestCallback {
+        private final List<Record> mRecords;
+        private final AtomicBoolean isDone = new AtomicBoolean(false);
+
+        UploadCallback(List<Record> records) {
+            mRecords = records;
+        }
+
+        @Override
+        public void onRequestSuccess(Response response) {
+            int code = response != null ? response.code() : -1;
+            IOUtil.closeQuietly(response);
+            if (code != HttpURLConnection.HTTP_OK) {
+                onRequestFailed("lr response RequestCode:" + code);
+                return;
+            }
+            if (isDone.compareAndSet(false, true)) {
+                onUploaded(mRecords);
+            }
+        }
+
+        @Override
+        public void onRequestFailed(String error) {
+            if (!isDone.compareAndSet(false, true)) {
+                return;
+            }
+            int code = -1;
+            if (error != null) {
+                Matcher matcher = RESPONSE_CODE.matcher(error);
+                if (matcher.find()) {
+                    code = Integer.parseInt(matcher.group(1));
+                }
+            }
+            onUploadFailed(mRecords, code, error);
+        }
+    }
+
+    /**
+     * @param code response code, -1 when there was no response
+     * @return false for a client error a retry won't fix
+     */
+    public static boolean isRetryable(int code) {
+        return code < 400 || code >= 500 || code == 408 || code == 429;
+    }
+
+    /**
+     * Drops the oldest waiting records once more than MAX_ROWS are kept
+     */
+    private void trim() {
+        int over = mPending.size() + mInFlight.size() - MAX_ROWS;
+        if (over <= 0) {
+            return;
+        }
+        // leave some room so this doesn't run on every add
+        int count = Math.min(mPending.size(), over + MAX_ROWS / 10);
+        List<Record> dropped = new ArrayList<>(mPending.subList(0, count));
+        mPending.subList(0, count).clear();
+        delete(dropped);
+        DeveloperLog.LogD("LrReportBatcher over " + MAX_ROWS + " records, dropped oldest: " + count);
+    }
+
+    /**
+     * Opens the table on first use and queues the rows a previous process didn't send
+     */
+    private void open() {
+        if (isOpened) {
+            return;
+        }
+        isOpened = true;
+        Cursor cursor = null;
+        try {
+            DataBaseHelper helper = DataBaseHelper.getSingleton(AdtUtil.getInstance().getApplicationContext(),
+                    CommonConstants.DB_NAME, CommonConstants.DB_VERSION);
+            mDatabase = helper.getWritableDatabase();
+            mDatabase.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+                    + " (_id INTEGER PRIMARY KEY AUTOINCREMENT,RECORD VARCHAR)");
+            mInsertStatement = mDatabase.compileStatement("INSERT INTO " + TABLE_NAME + "(RECORD) VALUES(?)");
+            mDeleteStatement = mDatabase.compileStatement("DELETE FROM " + TABLE_NAME + " WHERE _id=?");
+            // only the newest MAX_ROWS are loaded
+            mDatabase.execSQL("DELETE FROM " + TABLE_NAME + " WHERE _id<=(SELECT _id FROM " + TABLE_NAME
+                    + " ORDER BY _id DESC LIMIT 1 OFFSET " + MAX_ROWS + ")");
+            cursor = mDatabase.rawQuery("SELECT _id,RECORD FROM " + TABLE_NAME + " ORDER BY _id", null);
+            List<Record> saved = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                try {
+                    saved.add(new Record(cursor.getLong(0), new JSONObject(cursor.getString(1))));
+                } catch (Exception e) {
+                    DeveloperLog.LogD("LrReportBatcher bad record", e);
+                }
+            }
+            mPending.addAll(0, saved);
+            DeveloperLog.LogD("LrReportBatcher loaded records: " + saved.size());
+        } catch (Exception e) {
+            DeveloperLog.LogD("LrReportBatcher open", e);
+            CrashUtil.getSingleton().saveException(e);
+        } finally {
+            if (cursor != null && !cursor.isClosed()) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void delete(List<Record> records) {
+        if (mDatabase == null || mDeleteStatement == null) {
+            return;
+        }
+        try {
+            mDatabase.beginTransaction();
+            try {
+                for (Record record : records) {
+                    if (record.id < 0) {
+                        continue;
+                    }
+                    mDeleteStatement.bindLong(1, record.id);
+                    mDeleteStatement.executeUpdateDelete();
+                }
+                mDatabase.setTransactionSuccessful();
+            } finally {
+                mDatabase.endTransaction();
+            }
+        } catch (Exception e) {
+            DeveloperLog.LogD("LrReportBatcher delete", e);
+            CrashUtil.getSingleton().saveException(e);
+        }
+    }
+
+    private static final class Record {
+        private final long id;
+        private final JSONObject data;
+        private int attempts;
+
+        Record(long id, JSONObject data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+}
@@ -5,19 +5,14 @@ package com.openmediation.sdk.utils.helper;
 
 import android.text.TextUtils;
 
-import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.WorkExecutor;
+import com.openmediation.sdk.utils.LaneExecutor;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.constant.KeyConstants;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 import com.openmediation.sdk.utils.model.Configurations;
 import com.openmediation.sdk.utils.model.BaseInstance;
-import com.openmediation.sdk.utils.request.HeaderUtils;
 import com.openmediation.sdk.utils.request.RequestBuilder;
-import com.openmediation.sdk.utils.request.network.AdRequest;
-import com.openmediation.sdk.utils.request.network.ByteRequestBody;
-import com.openmediation.sdk.utils.request.network.Headers;
 
 /**
  *
@@ -41,7 +36,7 @@ public final class LrReportHelper {
 
     private static void report(final String reqId, final int ruleId, final BaseInstance instance, final String placementId, final int sceneId, final int loadType,
                                final int instanceId, final int mediationId, final int abt, final int reportType, final int bid) {
-        WorkExecutor.execute(new Runnable() {
+        LaneExecutor.execute(LaneExecutor.Lane.REPORT, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -49,33 +44,9 @@ public final class LrReportHelper {
                     if (config == null || config.getApi() == null || TextUtils.isEmpty(config.getApi().getLr())) {
                         return;
                     }
-                    String lrUrl = RequestBuilder.buildLrUrl(config.getApi().getLr());
-
-                    if (TextUtils.isEmpty(lrUrl)) {
-                        return;
-                    }
-
-                    Headers headers = HeaderUtils.getBaseHeaders();
-                    AdRequest.post()
-                            .url(lrUrl)
-                            .headers(headers)
-                            .body(new ByteRequestBody(RequestBuilder.buildLrRequestBody(
-                                    reqId,
-                                    ruleId,
-                                    instance,
-                                    Integer.parseInt(placementId),
-                                    sceneId,
-                                    loadType,
-                                    mediationId,
-                                    instanceId,
-                                    abt,
-                                    reportType,
-                                    bid)
-                            ))
-                            .connectTimeout(30000)
-                            .readTimeout(60000)
-                            .instanceFollowRedirects(true)
-                            .performRequest(AdtUtil.getInstance().getApplicationContext());
+                    LrReportBatcher.getInstance().add(RequestBuilder.buildLrRecord(reqId, ruleId, instance,
+                            Integer.parseInt(placementId), sceneId, loadType, mediationId, instanceId, abt,
+                            reportType, bid));
                 } catch (Exception e) {
                     DeveloperLog.LogE("httpLr error ", e);
                     CrashUtil.getSingleton().saveException(e);
@@ -0,0 +1,242 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.helper;
+
+import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.openmediation.sdk.bid.BidResponse;
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.constant.CommonConstants;
+import com.openmediation.sdk.utils.model.MediationRule;
+import com.openmediation.sdk.utils.model.WaterfallResult;
+import com.openmediation.sdk.utils.request.network.Headers;
+import com.openmediation.sdk.utils.request.network.Response;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Pull parser for the waterfall response. Reads the response stream once, straight into a
+ * {@link WaterfallResult}, without the whole body as a String or a JSONObject tree.
+ * <p>
+ * Values are coerced like JSONObject.optXxx does, unknown fields are skipped
+ */
+public final class WaterfallParser {
+    private static final String AUCTION_PRICE = "${AUCTION_PRICE}";
+
+    private WaterfallParser() {
+    }
+
+    /**
+     * @param response the waterfall response, not closed here
+     * @return the result
+     * @throws IOException on read or syntax errors
+     */
+    public static WaterfallResult parse(Response response) throws IOException {
+        String charset = CommonConstants.CHARTSET_UTF8;
+        if (response.headers() != null) {
+            String contentType = response.headers().getContentType();
+            charset = Headers.parseSubValue(contentType, "charset", CommonConstants.CHARTSET_UTF8);
+            if (TextUtils.isEmpty(charset)) {
+                charset = CommonConstants.CHARTSET_UTF8;
+            }
+        }
+        JsonReader reader = new JsonReader(new InputStreamReader(response.body().stream(), charset));
+        WaterfallResult result = new WaterfallResult();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("code".equals(name)) {
+                result.setCode(readInt(reader, 0));
+            } else if ("msg".equals(name)) {
+                result.setMsg(readString(reader));
+            } else if ("abt".equals(name)) {
+                result.setAbt(readInt(reader, 0));
+            } else if ("rule".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                result.setRule(MediationRule.create(readObject(reader)));
+            } else if ("ins".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                readIns(reader, result);
+            } else if ("c2s".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    result.getC2s().add(readInt(reader, 0));
+                }
+                reader.endArray();
+            } else if ("bidresp".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                readBidResponses(reader, result);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return result;
+    }
+
+    private static void readIns(JsonReader reader, WaterfallResult result) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            WaterfallResult.Ins ins = new WaterfallResult.Ins();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("id".equals(name)) {
+                    ins.setId(readInt(reader, 0));
+                } else if ("r".equals(name)) {
+                    ins.setR(readDouble(reader, 0d));
+                } else if ("i".equals(name)) {
+                    ins.setI(readInt(reader, -1));
+                } else if ("rp".equals(name)) {
+                    ins.setRp(readInt(reader, -1));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            result.getIns().add(ins);
+        }
+        reader.endArray();
+    }
+
+    private static void readBidResponses(JsonReader reader, WaterfallResult result) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            int iid = 0;
+            int nbr = 0;
+            int expire = 0;
+            double price = 0;
+            String adm = "";
+            String nurl = "";
+            String lurl = "";
+            String err = "";
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("iid".equals(name)) {
+                    iid = readInt(reader, 0);
+                } else if ("adm".equals(name)) {
+                    adm = readString(reader);
+                } else if ("price".equals(name)) {
+                    price = readDouble(reader, 0d);
+                } else if ("nurl".equals(name)) {
+                    nurl = readString(reader);
+                } else if ("lurl".equals(name)) {
+                    lurl = readString(reader);
+                } else if ("expire".equals(name)) {
+                    expire = readInt(reader, 0);
+                } else if ("nbr".equals(name)) {
+                    nbr = readInt(reader, 0);
+                } else if ("err".equals(name)) {
+                    err = readString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (TextUtils.isEmpty(adm)) {
+                DeveloperLog.LogD("Ins : " + iid + " bid failed cause" + " nbr : " + nbr + " err : " + err);
+                continue;
+            }
+            BidResponse response = new BidResponse();
+            response.setIid(iid);
+            response.setPayLoad(adm);
+            if (!TextUtils.isEmpty(nurl) && nurl.contains(AUCTION_PRICE)) {
+                nurl = nurl.replace(AUCTION_PRICE, String.valueOf(price));
+            }
+            response.setNurl(nurl);
+            if (!TextUtils.isEmpty(lurl) && lurl.contains(AUCTION_PRICE)) {
+                lurl = lurl.replace(AUCTION_PRICE, String.valueOf(price + 0.1));
+            }
+            response.setLurl(lurl);
+            response.setPrice(price);
+            response.setExpire(expire);
+            result.getBidResponses().add(response);
+        }
+        reader.endArray();
+    }
+
+    private static int readInt(JsonReader reader, int defaultValue) throws IOException {
+        return (int) readDouble(reader, defaultValue);
+    }
+
+    private static double readDouble(JsonReader reader, double defaultValue) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            try {
+                return Double.parseDouble(reader.nextString());
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        reader.skipValue();
+        return defaultValue;
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        } else if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        reader.skipValue();
+        return "";
+    }
+
+    private static JSONObject readObject(JsonReader reader) throws IOException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        try {
+            while (reader.hasNext()) {
+                object.put(reader.nextName(), readValue(reader));
+            }
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage());
+        }
+        reader.endObject();
+        return object;
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                String number = reader.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            default:
+                return reader.nextString();
+        }
+    }
+}
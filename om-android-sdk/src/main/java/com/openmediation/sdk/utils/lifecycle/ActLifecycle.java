@@ -12,13 +12,22 @@ import android.os.Bundle;
 
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.LaneExecutor;
+import com.openmediation.sdk.utils.TimerWheel;
+import com.openmediation.sdk.utils.cache.DataCache;
+import com.openmediation.sdk.utils.cache.FrequencyCapStore;
+import com.openmediation.sdk.utils.helper.LrReportBatcher;
+import com.openmediation.sdk.utils.request.network.connect.EndpointWarmer;
 
 import java.util.Enumeration;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ActLifecycle implements Application.ActivityLifecycleCallbacks {
 
     private ConcurrentHashMap<Integer, Activity> mRefActivities = new ConcurrentHashMap<>();
+    //started activities, the app is in the foreground while this is above 0
+    private final AtomicInteger mStartedCount = new AtomicInteger();
 
     private static final class DKLifecycleHolder {
         private static final ActLifecycle INSTANCE = new ActLifecycle();
@@ -49,6 +58,10 @@ public class ActLifecycle implements Application.ActivityLifecycleCallbacks {
 
     @Override
     public void onActivityStarted(Activity activity) {
+        if (mStartedCount.getAndIncrement() == 0) {
+            //back in the foreground, parked connections may have been closed while in the background
+            EndpointWarmer.getInstance().refresh();
+        }
         if (isAdActivity(activity)) {
             return;
         }
@@ -66,10 +79,18 @@ public class ActLifecycle implements Application.ActivityLifecycleCallbacks {
 
     @Override
     public void onActivityPaused(Activity activity) {
+        DataCache.getInstance().flush();
+        FrequencyCapStore.getInstance().saveAsync();
+        LrReportBatcher.getInstance().flush();
+        LaneExecutor.logStats();
+        TimerWheel.getInstance().logStats();
     }
 
     @Override
     public void onActivityStopped(Activity activity) {
+        if (mStartedCount.decrementAndGet() < 0) {
+            mStartedCount.set(0);
+        }
     }
 
     @Override
@@ -6,6 +6,8 @@ package com.openmediation.sdk.utils.model;
 public class ApiConfigurations {
     private String wf;
     private String lr;
+    //batched lr url, lr reports are batched when it is set
+    private String lrb;
     private String er;
     private String ic;
     private String iap;
@@ -30,6 +32,14 @@ public class ApiConfigurations {
         this.lr = lr;
     }
 
+    public String getLrb() {
+        return lrb;
+    }
+
+    public void setLrb(String lrb) {
+        this.lrb = lrb;
+    }
+
     public String getEr() {
         return er;
     }
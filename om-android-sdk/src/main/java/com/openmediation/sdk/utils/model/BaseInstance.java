@@ -3,12 +3,12 @@ package com.openmediation.sdk.utils.model;
 import android.text.TextUtils;
 
 import com.openmediation.sdk.bid.BidResponse;
-import com.openmediation.sdk.core.runnable.LoadTimeoutRunnable;
 import com.openmediation.sdk.mediation.CustomAdsAdapter;
 import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.TimerWheel;
 
 import java.math.BigDecimal;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class BaseInstance extends Frequency implements Comparable<BaseInstance> {
     // AuctionID
@@ -39,7 +39,7 @@ public class BaseInstance extends Frequency implements Comparable<BaseInstance>
     private int hb;
 
     private int hbt;
-    private BID_STATE bidState = BID_STATE.NOT_BIDDING;
+    private final AtomicReference<BID_STATE> bidState = new AtomicReference<>(BID_STATE.NOT_BIDDING);
     private int wfAbt;
     private BidResponse bidResponse;
 
@@ -62,9 +62,12 @@ public class BaseInstance extends Frequency implements Comparable<BaseInstance>
 
     protected InstanceLoadStatus mLastLoadStatus;
 
-    private MEDIATION_STATE mMediationState;
-    private LoadTimeoutRunnable mTimeoutRunnable;
-    private ScheduledFuture mScheduledFuture;
+    private final AtomicReference<MEDIATION_STATE> mMediationState = new AtomicReference<>();
+    private final StateHistory mStateHistory = new StateHistory();
+    private volatile OnMediationStateChangedListener mStateListener;
+    //deadlines of this instance's loads and bids, reused for each one
+    private TimerWheel.Timeout mLoadTimeout;
+    private TimerWheel.Timeout mBidTimeout;
 
     public String getReqId() {
         return reqId;
@@ -228,11 +231,20 @@ public class BaseInstance extends Frequency implements Comparable<BaseInstance>
     }
 
     public void setBidState(BID_STATE bidState) {
-        this.bidState = bidState;
+        this.bidState.set(bidState);
+    }
+
+    /**
+     * Sets bid state only if it's expect, so a bid result and its timeout can't both land
+     *
+     * @return true if set
+     */
+    public boolean compareAndSetBidState(BID_STATE expect, BID_STATE update) {
+        return bidState.compareAndSet(expect, update);
     }
 
     public BID_STATE getBidState() {
-        return bidState;
+        return bidState.get();
     }
 
     public void setAdapter(CustomAdsAdapter adapter) {
@@ -268,12 +280,76 @@ public class BaseInstance extends Frequency implements Comparable<BaseInstance>
     }
 
     /**
-     * Sets mediation state.
+     * Sets mediation state, whatever it was. For commands: starting an init or a load, resets, capping
      *
      * @param state the state
      */
     public void setMediationState(MEDIATION_STATE state) {
-        mMediationState = state;
+        MEDIATION_STATE old = mMediationState.getAndSet(state);
+        mStateHistory.add(old, state, true);
+        notifyMediationStateChanged();
+    }
+
+    /**
+     * Moves mediation state to the result of an init or a load. On an instance with a guarded state
+     * the move must be legal from the current state, see {@link MEDIATION_STATE#canMoveTo}: a
+     * duplicate or late adapter callback is rejected instead of overwriting a newer result.
+     *
+     * @param state the result state
+     * @return false if rejected, the callback should be dropped
+     */
+    public boolean moveMediationState(MEDIATION_STATE state) {
+        if (!isMediationStateGuarded()) {
+            setMediationState(state);
+            return true;
+        }
+        while (true) {
+            MEDIATION_STATE current = mMediationState.get();
+            if (current == null || !current.canMoveTo(state)) {
+                mStateHistory.add(current, state, false);
+                DeveloperLog.LogD("Instance " + id + " rejected state " + current + " > " + state
+                        + ", history: " + mStateHistory);
+                return false;
+            }
+            if (mMediationState.compareAndSet(current, state)) {
+                mStateHistory.add(current, state, true);
+                notifyMediationStateChanged();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if init and load results must be legal moves, see {@link #moveMediationState}.
+     * Off by default: hybrid ads get init results while LOAD_PENDING and refresh failures after AVAILABLE
+     */
+    protected boolean isMediationStateGuarded() {
+        return false;
+    }
+
+    /**
+     * @return the last state changes, for diagnostics
+     */
+    public String getMediationStateHistory() {
+        return mStateHistory.toString();
+    }
+
+    private void notifyMediationStateChanged() {
+        OnMediationStateChangedListener listener = mStateListener;
+        if (listener != null) {
+            listener.onMediationStateChanged(this);
+        }
+    }
+
+    /**
+     * Sets the listener told after every mediation state change, one per instance
+     */
+    public void setOnMediationStateChangedListener(OnMediationStateChangedListener listener) {
+        mStateListener = listener;
+    }
+
+    public OnMediationStateChangedListener getOnMediationStateChangedListener() {
+        return mStateListener;
     }
 
     /**
@@ -282,7 +358,7 @@ public class BaseInstance extends Frequency implements Comparable<BaseInstance>
      * @return the mediation state
      */
     public MEDIATION_STATE getMediationState() {
-        return mMediationState;
+        return mMediationState.get();
     }
 
     /**
@@ -318,20 +394,20 @@ public class BaseInstance extends Frequency implements Comparable<BaseInstance>
         return mLoadStart;
     }
 
-    public LoadTimeoutRunnable getTimeoutRunnable() {
-        return mTimeoutRunnable;
+    public TimerWheel.Timeout getLoadTimeout() {
+        return mLoadTimeout;
     }
 
-    public void setTimeoutRunnable(LoadTimeoutRunnable timeoutRunnable) {
-        this.mTimeoutRunnable = timeoutRunnable;
+    public void setLoadTimeout(TimerWheel.Timeout loadTimeout) {
+        this.mLoadTimeout = loadTimeout;
     }
 
-    public void setScheduledFuture(ScheduledFuture scheduledFuture) {
-        this.mScheduledFuture = scheduledFuture;
+    public TimerWheel.Timeout getBidTimeout() {
+        return mBidTimeout;
     }
 
-    public ScheduledFuture getScheduledFuture() {
-        return mScheduledFuture;
+    public void setBidTimeout(TimerWheel.Timeout bidTimeout) {
+        this.mBidTimeout = bidTimeout;
     }
 
     @Override
@@ -424,6 +500,16 @@ public class BaseInstance extends Frequency implements Comparable<BaseInstance>
         }
     }
 
+    /**
+     * Told after an instance's mediation state is set, on the thread that set it
+     */
+    public interface OnMediationStateChangedListener {
+        /**
+         * @param instance the instance, its current state is the one to use
+         */
+        void onMediationStateChanged(BaseInstance instance);
+    }
+
     /**
      * The enum Mediation state.
      */
@@ -490,5 +576,30 @@ public class BaseInstance extends Frequency implements Comparable<BaseInstance>
         public int getValue() {
             return this.mValue;
         }
+
+        /**
+         * Legal moves to init and load results. Commands, anything else, may be set from any state
+         *
+         * @param next the result state
+         * @return true if next may follow this state
+         */
+        public boolean canMoveTo(MEDIATION_STATE next) {
+            switch (next) {
+                case INITIATED:
+                    return this == NOT_INITIATED || this == INIT_PENDING || this == INIT_FAILED;
+                case INIT_FAILED:
+                    return this == NOT_INITIATED || this == INIT_PENDING;
+                case AVAILABLE:
+                    // a fill after the load timed out is still inventory
+                    return this == LOAD_PENDING || this == LOAD_FAILED || this == NOT_AVAILABLE
+                            || this == INITIATED;
+                case LOAD_FAILED:
+                    // a capped instance fails its load without starting it
+                    return this == LOAD_PENDING || this == CAPPED || this == INITIATED
+                            || this == NOT_AVAILABLE || this == NOT_INITIATED || this == INIT_FAILED;
+                default:
+                    return true;
+            }
+        }
     }
 }
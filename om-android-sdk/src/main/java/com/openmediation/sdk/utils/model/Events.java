@@ -27,6 +27,10 @@ public class Events {
      * checkInterval in seconds
      */
     private int ci;
+    /**
+     * max batches uploaded at the same time on an unmetered network
+     */
+    private int mc = 2;
     /**
      * EventIDs
      */
@@ -44,6 +48,7 @@ public class Events {
         url = object.optString("url");
         mn = object.optInt("mn");
         ci = object.optInt("ci");
+        mc = object.optInt("mc", 2);
         try {
             JSONArray idArray = object.optJSONArray("ids");
             if (idArray != null) {
@@ -102,6 +107,14 @@ public class Events {
         this.ci = ci;
     }
 
+    public int getMc() {
+        return mc;
+    }
+
+    public void setMc(int mc) {
+        this.mc = mc;
+    }
+
     public List<Integer> getIds() {
         return ids;
     }
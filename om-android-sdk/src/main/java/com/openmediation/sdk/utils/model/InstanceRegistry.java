@@ -0,0 +1,77 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.model;
+
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Instances of a placement, indexed by id and by mediation.
+ * <p>
+ * Built once when the placement is parsed and never changed after, so lookups need no locking and
+ * the lists it returns are read-only views, not copies.
+ */
+public final class InstanceRegistry {
+    static final InstanceRegistry EMPTY = new InstanceRegistry(null);
+
+    private final SparseArray<BaseInstance> mById;
+    private final List<BaseInstance> mAll;
+    private final SparseArray<List<BaseInstance>> mByMediation = new SparseArray<>();
+
+    InstanceRegistry(SparseArray<BaseInstance> insMap) {
+        mById = insMap != null ? insMap : new SparseArray<BaseInstance>();
+        int size = mById.size();
+        List<BaseInstance> all = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            BaseInstance instance = mById.valueAt(i);
+            if (instance == null) {
+                continue;
+            }
+            all.add(instance);
+            List<BaseInstance> mediation = mByMediation.get(instance.getMediationId());
+            if (mediation == null) {
+                mediation = new ArrayList<>();
+                mByMediation.put(instance.getMediationId(), mediation);
+            }
+            mediation.add(instance);
+        }
+        mAll = Collections.unmodifiableList(all);
+        for (int i = 0; i < mByMediation.size(); i++) {
+            mByMediation.setValueAt(i, Collections.unmodifiableList(mByMediation.valueAt(i)));
+        }
+    }
+
+    /**
+     * @return the instance, null if the placement has no such instance
+     */
+    public BaseInstance get(int instanceId) {
+        return mById.get(instanceId);
+    }
+
+    /**
+     * @return all instances in id order, read-only
+     */
+    public List<BaseInstance> getAll() {
+        return mAll;
+    }
+
+    /**
+     * @return instances of an ad network in id order, read-only and empty if there are none
+     */
+    public List<BaseInstance> getByMediation(int mediationId) {
+        List<BaseInstance> instances = mByMediation.get(mediationId);
+        return instances != null ? instances : Collections.<BaseInstance>emptyList();
+    }
+
+    public int size() {
+        return mAll.size();
+    }
+
+    public boolean isEmpty() {
+        return mAll.isEmpty();
+    }
+}
@@ -35,12 +35,16 @@ public class Placement extends Frequency {
     private Map<Integer, Integer> rfs;
     //Mediation placement data
     private SparseArray<BaseInstance> insMap;
+    //insMap indexed for lookups, rebuilt with it
+    private InstanceRegistry registry = InstanceRegistry.EMPTY;
 
     private int rlw;
 
     private String oriData;
 
     private boolean hasHb;
+    //pipelined load: S2S, waterfall and C2S bidding run in parallel    0
+    private int ppl;
     private int hbAbt;
     private int wfAbt;
 
@@ -98,6 +102,11 @@ public class Placement extends Frequency {
 
     public void setInsMap(SparseArray<BaseInstance> insMap) {
         this.insMap = insMap;
+        this.registry = new InstanceRegistry(insMap);
+    }
+
+    public InstanceRegistry getRegistry() {
+        return registry;
     }
 
     public Map<String, Scene> getScenes() {
@@ -180,6 +189,14 @@ public class Placement extends Frequency {
         return hasHb;
     }
 
+    public void setPpl(int ppl) {
+        this.ppl = ppl;
+    }
+
+    public boolean isPipelineLoad() {
+        return ppl == 1;
+    }
+
     @Override
     public String toString() {
         return "Placement{" +
@@ -0,0 +1,60 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Last mediation state changes of an instance, for diagnostics.
+ * <p>
+ * A ring buffer of packed longs written without locks: a change claims a slot with an atomic counter.
+ * Rejected changes are recorded too, they are what explains a dropped callback.
+ */
+final class StateHistory {
+    private static final int SIZE = 16;
+    private static final int NONE = 0xFF;
+
+    private final AtomicLongArray mEntries = new AtomicLongArray(SIZE);
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    void add(BaseInstance.MEDIATION_STATE from, BaseInstance.MEDIATION_STATE to, boolean accepted) {
+        // time, 1 bit accepted, 8 bits from, 8 bits to
+        long entry = (System.currentTimeMillis() << 17) | (accepted ? 1L << 16 : 0)
+                | ((long) ordinal(from) << 8) | ordinal(to);
+        int slot = (mCount.getAndIncrement() & Integer.MAX_VALUE) % SIZE;
+        mEntries.set(slot, entry);
+    }
+
+    /**
+     * @return the changes, oldest first, as "time from>to" with a "!" on rejected ones
+     */
+    @Override
+    public String toString() {
+        int count = mCount.get() & Integer.MAX_VALUE;
+        int size = Math.min(count, SIZE);
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = count - size; i < count; i++) {
+            long entry = mEntries.get(i % SIZE);
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(entry >>> 17).append(' ')
+                    .append(name((int) (entry >> 8) & 0xFF)).append('>').append(name((int) entry & 0xFF));
+            if ((entry & (1L << 16)) == 0) {
+                builder.append('!');
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    private static int ordinal(BaseInstance.MEDIATION_STATE state) {
+        return state != null ? state.ordinal() : NONE;
+    }
+
+    private static String name(int ordinal) {
+        BaseInstance.MEDIATION_STATE[] states = BaseInstance.MEDIATION_STATE.values();
+        return ordinal < states.length ? states[ordinal].name() : "null";
+    }
+}
@@ -0,0 +1,140 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.model;
+
+import com.openmediation.sdk.bid.BidResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Waterfall response, decoded from the response stream by
+ * {@link com.openmediation.sdk.utils.helper.WaterfallParser}
+ */
+public class WaterfallResult {
+    private int code;
+    private String msg = "";
+    private int abt;
+    private MediationRule rule;
+    /**
+     * waterfall instances, in server order
+     */
+    private final List<Ins> ins = new ArrayList<>();
+    /**
+     * ids of the instances to bid client side
+     */
+    private final List<Integer> c2s = new ArrayList<>();
+    /**
+     * successful server side bids
+     */
+    private final List<BidResponse> bidResponses = new ArrayList<>();
+
+    public int getCode() {
+        return code;
+    }
+
+    public void setCode(int code) {
+        this.code = code;
+    }
+
+    public String getMsg() {
+        return msg;
+    }
+
+    public void setMsg(String msg) {
+        this.msg = msg;
+    }
+
+    public int getAbt() {
+        return abt;
+    }
+
+    public void setAbt(int abt) {
+        this.abt = abt;
+    }
+
+    public MediationRule getRule() {
+        return rule;
+    }
+
+    public void setRule(MediationRule rule) {
+        this.rule = rule;
+    }
+
+    public List<Ins> getIns() {
+        return ins;
+    }
+
+    public List<Integer> getC2s() {
+        return c2s;
+    }
+
+    public List<BidResponse> getBidResponses() {
+        return bidResponses;
+    }
+
+    @Override
+    public String toString() {
+        return "WaterfallResult{" +
+                "code=" + code +
+                ", msg='" + msg + '\'' +
+                ", abt=" + abt +
+                ", rule=" + rule +
+                ", ins=" + ins.size() +
+                ", c2s=" + c2s +
+                ", bidResponses=" + bidResponses.size() +
+                '}';
+    }
+
+    /**
+     * One waterfall instance
+     */
+    public static class Ins {
+        private int id;
+        /**
+         * revenue
+         */
+        private double r;
+        /**
+         * priority, -1 if not set
+         */
+        private int i = -1;
+        /**
+         * revenue precision, -1 if not set
+         */
+        private int rp = -1;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public double getR() {
+            return r;
+        }
+
+        public void setR(double r) {
+            this.r = r;
+        }
+
+        public int getI() {
+            return i;
+        }
+
+        public void setI(int i) {
+            this.i = i;
+        }
+
+        public int getRp() {
+            return rp;
+        }
+
+        public void setRp(int rp) {
+            this.rp = rp;
+        }
+    }
+}
@@ -13,19 +13,20 @@ import com.openmediation.sdk.core.OmManager;
 import com.openmediation.sdk.utils.AdtUtil;
 import com.openmediation.sdk.utils.DensityUtil;
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.Gzip;
 import com.openmediation.sdk.utils.JsonUtil;
 import com.openmediation.sdk.utils.OaidHelper;
 import com.openmediation.sdk.utils.cache.DataCache;
 import com.openmediation.sdk.utils.constant.CommonConstants;
 import com.openmediation.sdk.utils.constant.KeyConstants;
+import com.openmediation.sdk.utils.device.DeviceContext;
 import com.openmediation.sdk.utils.device.DeviceUtil;
 import com.openmediation.sdk.utils.event.Event;
 import com.openmediation.sdk.utils.model.BaseInstance;
 import com.openmediation.sdk.utils.model.InstanceLoadStatus;
 import com.openmediation.sdk.utils.model.MediationRule;
 import com.openmediation.sdk.utils.model.PlacementInfo;
-import com.openmediation.sdk.utils.request.network.util.NetworkChecker;
+import com.openmediation.sdk.utils.request.network.JsonRequestBody;
+import com.openmediation.sdk.utils.request.network.RequestBody;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -33,12 +34,12 @@ import org.json.JSONObject;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.regex.Pattern;
 
 /**
@@ -47,6 +48,7 @@ import java.util.regex.Pattern;
 public class RequestBuilder {
 
     private static final Pattern REG_UNMATCHED_PERCENTAGE = Pattern.compile("(?i)%(?![\\da-f]{2})");
+    private static volatile JSONObject sAndroidBody;
 
     private static class Param {
         private String name, value;
@@ -275,14 +277,80 @@ public class RequestBuilder {
 
 
     /**
-     * Build lr request body byte [ ].
+     * Build lr request body.
      *
      * @param extras the extras
-     * @return the byte [ ]
+     * @return the request body
      * @throws Exception the exception
      */
-    public static byte[] buildLrRequestBody(String reqId, int ruleId, BaseInstance instance, int... extras) throws Exception {
+    public static RequestBody buildLrRequestBody(String reqId, int ruleId, BaseInstance instance, int... extras) throws Exception {
         JSONObject jsonObject = getRequestBodyBaseJson();
+        putLrParams(jsonObject, reqId, ruleId, instance, extras);
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("lr params:" + jsonObject.toString());
+        }
+        return new JsonRequestBody(jsonObject);
+    }
+
+    /**
+     * Build a single lr record for the batched lr request, without the device fields
+     *
+     * @param reqId    the req id
+     * @param ruleId   the rule id
+     * @param instance the instance
+     * @param extras   the extras, same as {@link #buildLrRequestBody(String, int, BaseInstance, int...)}
+     * @return the json object
+     */
+    public static JSONObject buildLrRecord(String reqId, int ruleId, BaseInstance instance, int... extras) {
+        JSONObject record = new JSONObject();
+        putLrParams(record, reqId, ruleId, instance, extras);
+        JsonUtil.put(record, KeyConstants.RequestBody.KEY_TS, System.currentTimeMillis());
+        return record;
+    }
+
+    /**
+     * Build a single lr request body from a record saved for the batched lr request
+     *
+     * @param record lr record built with {@link #buildLrRecord(String, int, BaseInstance, int...)}
+     * @return the request body
+     * @throws Exception the exception
+     */
+    public static RequestBody buildLrRequestBody(JSONObject record) throws Exception {
+        JSONObject jsonObject = getRequestBodyBaseJson();
+        Iterator<String> keys = record.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!KeyConstants.RequestBody.KEY_TS.equals(key)) {
+                jsonObject.put(key, record.opt(key));
+            }
+        }
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("lr params:" + jsonObject.toString());
+        }
+        return new JsonRequestBody(jsonObject);
+    }
+
+    /**
+     * Build batched lr request body.
+     *
+     * @param records lr records built with {@link #buildLrRecord(String, int, BaseInstance, int...)}
+     * @return the request body
+     * @throws Exception the exception
+     */
+    public static RequestBody buildLrBatchRequestBody(List<JSONObject> records) throws Exception {
+        JSONObject body = getRequestBodyBaseJson();
+        JSONArray lrs = new JSONArray();
+        for (JSONObject record : records) {
+            lrs.put(record);
+        }
+        body.put("lrs", lrs);
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("lr batch params:" + body.toString());
+        }
+        return new JsonRequestBody(body);
+    }
+
+    private static void putLrParams(JSONObject jsonObject, String reqId, int ruleId, BaseInstance instance, int... extras) {
         if (instance != null) {
             JsonUtil.put(jsonObject, KeyConstants.RequestBody.KEY_REQ_ID, instance.getReqId());
             JsonUtil.put(jsonObject, KeyConstants.RequestBody.KEY_INSTANCE_REVENUE, instance.getRevenue());
@@ -306,34 +374,32 @@ public class RequestBuilder {
         if (extras[7] == 1) {
             JsonUtil.put(jsonObject, KeyConstants.RequestBody.KEY_BID, extras[7]);
         }
-        DeveloperLog.LogD("lr params:" + jsonObject.toString());
-        return Gzip.inGZip(jsonObject.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
     }
 
     /**
-     * Build ic request body byte [ ].
+     * Build ic request body.
      *
      * @param extras the extras
-     * @return the byte [ ]
+     * @return the request body
      */
-    public static byte[] buildIcRequestBody(Object... extras) throws Exception {
+    public static RequestBody buildIcRequestBody(Object... extras) throws Exception {
         JSONObject body = getRequestBodyBaseJson();
         body.put("pid", extras[0]);
         body.put("mid", extras[1]);
         body.put("iid", extras[2]);
         body.put("scene", extras[3]);
         body.put("content", extras[4]);
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        return new JsonRequestBody(body);
     }
 
     /**
      * All keys must present! Values can be null
      *
      * @param adapters the adapters
-     * @return the byte [ ]
+     * @return the request body
      * @throws Exception the exception
      */
-    public static byte[] buildConfigRequestBody(JSONArray adapters) throws Exception {
+    public static RequestBody buildConfigRequestBody(JSONArray adapters) throws Exception {
         Context context = AdtUtil.getInstance().getApplicationContext();
         JSONObject body = getRequestBodyBaseJson();
         body.put(KeyConstants.RequestBody.KEY_BTIME, DeviceUtil.getBtime());
@@ -341,59 +407,21 @@ public class RequestBuilder {
         body.put(KeyConstants.RequestBody.KEY_ADNS, adapters);
         body.put(KeyConstants.RequestBody.KEY_ANDROID, buildAndroidRequestBody(context));
 
-        DeveloperLog.LogD("init params:" + body.toString());
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("init params:" + body.toString());
+        }
+        return new JsonRequestBody(body);
     }
 
     public static JSONObject getRequestBodyBaseJson() throws Exception {
         JSONObject body = new JSONObject();
-        Map<String, Object> map = DeviceUtil.getLocaleInfo();
-        Context context = AdtUtil.getInstance().getApplicationContext();
         body.put(KeyConstants.RequestBody.KEY_TS, System.currentTimeMillis());
-        body.put(KeyConstants.RequestBody.KEY_FIT, DeviceUtil.getFit());
-        body.put(KeyConstants.RequestBody.KEY_ZO, DeviceUtil.getTimeZoneOffset());
-        body.put(KeyConstants.RequestBody.KEY_TZ, DeviceUtil.getTimeZone());
-        body.put(KeyConstants.RequestBody.KEY_SESSION, DeviceUtil.getSessionId());
-        body.put(KeyConstants.RequestBody.KEY_UID, DeviceUtil.getUid());
-        body.put(KeyConstants.RequestBody.KEY_FLT, DeviceUtil.getFlt());
+        DeviceContext.getInstance().appendTo(body);
         Map<String, Object> gaidMap = getGaidMap();
         for (Map.Entry<String, Object> integerEntry : gaidMap.entrySet()) {
             body.put(integerEntry.getKey(), integerEntry.getValue());
         }
-        body.put(KeyConstants.RequestBody.KEY_LANG, map.get(KeyConstants.RequestBody.KEY_LANG));
-        body.put(KeyConstants.RequestBody.KEY_LANG_NAME, DeviceUtil.getLocaleInfo().get(KeyConstants.RequestBody.KEY_LANG_NAME));
-        body.put(KeyConstants.RequestBody.KEY_JB, DeviceUtil.isRoot() ? 1 : 0);
-        body.put(KeyConstants.RequestBody.KEY_BUNDLE, context != null ? context.getPackageName() : "");
-        body.put(KeyConstants.RequestBody.KEY_MAKE, Build.MANUFACTURER);
-        body.put(KeyConstants.RequestBody.KEY_BRAND, Build.BRAND);
-        body.put(KeyConstants.RequestBody.KEY_MODEL, Build.MODEL);
-        body.put(KeyConstants.RequestBody.KEY_OSV, Build.VERSION.RELEASE);
-        body.put(KeyConstants.RequestBody.KEY_BUILD, Build.DISPLAY);
-        body.put(KeyConstants.RequestBody.KEY_APPV, DeviceUtil.getVersionName(context));
-        body.put(KeyConstants.RequestBody.KEY_W, DensityUtil.getPhoneWidth(context));
-        body.put(KeyConstants.RequestBody.KEY_H, DensityUtil.getPhoneHeight(context));
-        body.put(KeyConstants.RequestBody.KEY_CONT, NetworkChecker.getConnectType(context));
-        body.put(KeyConstants.RequestBody.KEY_CARRIER, NetworkChecker.getNetworkOperator(context));
-        body.put(KeyConstants.RequestBody.KEY_LIP, DeviceUtil.getHostIp());
-        body.put(KeyConstants.RequestBody.KEY_LCOUNTRY, map.get(KeyConstants.RequestBody.KEY_LCOUNTRY));
-        body.put(KeyConstants.RequestBody.KEY_FM, DeviceUtil.getFm());
         body.put(KeyConstants.RequestBody.KEY_AF_ID, DataCache.getInstance().getFromMem(KeyConstants.KEY_AF_ID, String.class));
-        Map<String, Integer> battery = DeviceUtil.getBatteryInfo(context);
-        if (battery == null || battery.isEmpty()) {
-            body.put(KeyConstants.RequestBody.KEY_BATTERY, 0);
-        } else {
-            for (Map.Entry<String, Integer> integerEntry : battery.entrySet()) {
-                if (integerEntry == null) {
-                    continue;
-                }
-
-                body.put(integerEntry.getKey(), integerEntry.getValue());
-            }
-
-            if (!body.has(KeyConstants.RequestBody.KEY_BATTERY)) {
-                body.put(KeyConstants.RequestBody.KEY_BATTERY, 0);
-            }
-        }
         String channel = DataCache.getInstance().getFromMem(KeyConstants.KEY_APP_CHANNEL, String.class);
         body.put(KeyConstants.RequestBody.KEY_CHANNEL, channel);
         body.put(KeyConstants.RequestBody.KEY_CDID, OmManager.getInstance().getUserId());
@@ -433,14 +461,14 @@ public class RequestBuilder {
     }
 
     /**
-     * Build wf request body byte [ ].
+     * Build wf request body.
      *
      * @param c2sResult the responses
      * @param extras    the extras
-     * @return the byte [ ]
+     * @return the request body
      * @throws Exception the exception
      */
-    public static byte[] buildWfRequestBody(PlacementInfo info, List<BidResponse> c2sResult, List<BidResponse> s2sResult,
+    public static RequestBody buildWfRequestBody(PlacementInfo info, List<BidResponse> c2sResult, List<BidResponse> s2sResult,
                                             List<InstanceLoadStatus> statusList, String reqId,
                                             String... extras) throws Exception {
         JSONObject body = getRequestBodyBaseJson();
@@ -500,36 +528,40 @@ public class RequestBuilder {
             }
             body.put("ils", array);
         }
-        DeveloperLog.LogD("request wf params : " + body.toString());
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("request wf params : " + body.toString());
+        }
+        return new JsonRequestBody(body);
     }
 
     /**
-     * Build iap request body byte [ ].
+     * Build iap request body.
      *
      * @param extras the extras
-     * @return the byte [ ]
+     * @return the request body
      * @throws Exception the exception
      */
-    public static byte[] buildIapRequestBody(String... extras) throws Exception {
+    public static RequestBody buildIapRequestBody(String... extras) throws Exception {
         JSONObject body = getRequestBodyBaseJson();
         body.put("cur", extras[0]);
         body.put("iap", extras[1]);
         body.put("iapt", extras[2]);
 
-        DeveloperLog.LogD("iap params : " + body.toString());
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("iap params : " + body.toString());
+        }
+        return new JsonRequestBody(body);
     }
 
 
     /**
-     * Build event request body byte [ ].
+     * Build event request body.
      *
      * @param events the events
-     * @return the byte [ ]
+     * @return the request body
      * @throws Exception the exception
      */
-    public static byte[] buildEventRequestBody(ConcurrentLinkedQueue<Event> events) throws Exception {
+    public static RequestBody buildEventRequestBody(Collection<Event> events) throws Exception {
         JSONObject body = getRequestBodyBaseJson();
         body.put(KeyConstants.RequestBody.KEY_APPK, DataCache.getInstance().getFromMem(KeyConstants.KEY_APP_KEY, String.class));
         JSONArray jsonEvents = new JSONArray();
@@ -537,50 +569,54 @@ public class RequestBuilder {
             jsonEvents.put(e.toJSONObject());
         }
         body.put("events", jsonEvents);
-        DeveloperLog.LogD("event report params : " + body.toString());
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("event report params : " + body.toString());
+        }
+        return new JsonRequestBody(body);
     }
 
-    public static byte[] buildEventRequestBody(Event event) throws Exception {
+    public static RequestBody buildEventRequestBody(Event event) throws Exception {
         JSONObject body = getRequestBodyBaseJson();
         JSONArray jsonEvents = new JSONArray();
         jsonEvents.put(event.toJSONObject());
         body.put("events", jsonEvents);
-        DeveloperLog.LogD("event report params : " + body.toString());
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName("UTF-8")));
+        if (DeveloperLog.isDebug()) {
+            DeveloperLog.LogD("event report params : " + body.toString());
+        }
+        return new JsonRequestBody(body);
     }
 
     /**
-     * Build error request body byte [ ].
+     * Build error request body.
      *
      * @param extras the extras
-     * @return the byte [ ]
+     * @return the request body
      * @throws Exception the exception
      */
-    public static byte[] buildErrorRequestBody(String... extras) throws Exception {
+    public static RequestBody buildErrorRequestBody(String... extras) throws Exception {
         JSONObject body = getRequestBodyBaseJson();
         body.put("tag", extras[0]);
         body.put("error", extras[1]);
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        return new JsonRequestBody(body);
     }
 
     /**
-     * Build hb request body byte [ ].
+     * Build hb request body.
      *
      * @param extras the extras
-     * @return the byte [ ]
+     * @return the request body
      * @throws Exception the exception
      */
-    public static byte[] buildHbRequestBody(Object... extras) throws Exception {
+    public static RequestBody buildHbRequestBody(Object... extras) throws Exception {
         JSONObject body = getRequestBodyBaseJson();
         body.put(KeyConstants.RequestBody.KEY_PID, extras[0]);
         body.put(KeyConstants.RequestBody.KEY_IAP, extras[1]);
         body.put(KeyConstants.RequestBody.KEY_IMPRTIMES, extras[2]);
         body.put("act", extras[3]);
-        return Gzip.inGZip(body.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        return new JsonRequestBody(body);
     }
 
-    public static byte[] buildCdRequestBody(int type, Object data) throws Exception {
+    public static RequestBody buildCdRequestBody(int type, Object data) throws Exception {
         JSONObject jsonObject = getRequestBodyBaseJson();
         JsonUtil.put(jsonObject, "type", type);
         JSONObject object = null;
@@ -590,10 +626,20 @@ public class RequestBuilder {
             object = new JSONObject((String) data);
         }
         JsonUtil.put(jsonObject, "cd", object);
-        return Gzip.inGZip(jsonObject.toString().getBytes(Charset.forName(CommonConstants.CHARTSET_UTF8)));
+        return new JsonRequestBody(jsonObject);
     }
 
     private static JSONObject buildAndroidRequestBody(Context context) throws Exception {
+        // nothing in here changes while the process lives
+        JSONObject androidBody = sAndroidBody;
+        if (androidBody == null) {
+            androidBody = createAndroidRequestBody(context);
+            sAndroidBody = androidBody;
+        }
+        return androidBody;
+    }
+
+    private static JSONObject createAndroidRequestBody(Context context) throws Exception {
         JSONObject androidBody = new JSONObject();
         androidBody.put(KeyConstants.Android.KEY_DEVICE, Build.DEVICE);
         androidBody.put(KeyConstants.Android.KEY_PRODUCE, Build.PRODUCT);
@@ -3,21 +3,59 @@
 
 package com.openmediation.sdk.utils.request.network;
 
+import android.net.Uri;
+import android.os.SystemClock;
+
 import com.openmediation.sdk.utils.DeveloperLog;
 
 
 class AsyncReq extends BaseTask implements Runnable {
 
     private OnTaskCallback mCallback;
+    private final String mHost;
+    private final long mDeadline;
 
     AsyncReq(Request request) {
         super(request);
+        String host = Uri.parse(request.getUrl()).getHost();
+        mHost = host != null ? host : "";
+        long timeout = (long) request.getConnectTimeout() + request.getReadTimeout();
+        // no timeout set: never expires while queued, ordered behind requests that have one
+        mDeadline = timeout > 0 ? SystemClock.elapsedRealtime() + timeout : Long.MAX_VALUE;
     }
 
     public void setCallback(OnTaskCallback mCallback) {
         this.mCallback = mCallback;
     }
 
+    Request.Priority getPriority() {
+        return mRequest.getPriority();
+    }
+
+    String getHost() {
+        return mHost;
+    }
+
+    String getUrl() {
+        return mRequest.getUrl();
+    }
+
+    /**
+     * @return elapsedRealtime after which the request is failed instead of sent
+     */
+    long getDeadline() {
+        return mDeadline;
+    }
+
+    /**
+     * Fails a request that won't be sent
+     */
+    void reject(String error) {
+        if (mCallback != null) {
+            mCallback.onError(error);
+        }
+    }
+
     @Override
     public void run() {
         try {
@@ -50,6 +88,7 @@ class AsyncReq extends BaseTask implements Runnable {
                     DeveloperLog.LogD("AsyncReq", e);
                 }
             }
+            ReqExecutor.finished(this);
         }
     }
 
@@ -4,8 +4,7 @@
 package com.openmediation.sdk.utils.request.network;
 
 import com.openmediation.sdk.utils.request.network.connect.AbstractUrlConnection;
-import com.openmediation.sdk.utils.request.network.connect.HttpConnection;
-import com.openmediation.sdk.utils.request.network.connect.HttpsConnection;
+import com.openmediation.sdk.utils.request.network.connect.ConnectionFactory;
 import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 
@@ -18,12 +17,7 @@ abstract class BaseTask {
     BaseTask(Request request) {
         try {
             mRequest = request;
-            String protocol = new URL(request.getUrl()).getProtocol();
-            if ("http".equalsIgnoreCase(protocol)) {
-                mConnection = new HttpConnection();
-            } else if ("https".equalsIgnoreCase(protocol)) {
-                mConnection = new HttpsConnection();
-            }
+            mConnection = ConnectionFactory.create(new URL(request.getUrl()));
         } catch (Exception e) {
             DeveloperLog.LogD("BaseTask", e);
             CrashUtil.getSingleton().saveException(e);
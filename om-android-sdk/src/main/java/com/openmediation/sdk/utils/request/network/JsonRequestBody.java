@@ -0,0 +1,196 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network;
+
+import android.util.JsonWriter;
+
+import com.openmediation.sdk.utils.constant.CommonConstants;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Gzip json body, serialized once on first use straight from the JSONObject into a pooled buffer, so
+ * the json text is never held in memory as a whole and only the compressed bytes are kept.
+ * <p>
+ * The length is known before the connection opens: the body goes out with a Content-Length and can be
+ * written again on a redirect or a retry.
+ */
+public class JsonRequestBody implements RequestBody {
+    private static final int BUFFER_SIZE = 4096;
+    //deflaters kept for reuse, each one holds native memory
+    private static final int MAX_POOLED_DEFLATERS = 4;
+    private static final Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    //serialization buffers kept for reuse, larger ones are let go
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+    private static final Queue<PoolBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
+
+    private final JSONObject mBody;
+    private byte[] mBytes;
+    private IOException mError;
+
+    public JsonRequestBody(JSONObject body) {
+        this.mBody = body;
+    }
+
+    @Override
+    public long length() {
+        try {
+            return encode().length;
+        } catch (IOException e) {
+            // writeTo throws it again
+            return -1;
+        }
+    }
+
+    @Override
+    public String contentType() {
+        return Headers.VALUE_APPLICATION_JSON;
+    }
+
+    @Override
+    public void writeTo(OutputStream writer) throws IOException {
+        writer.write(encode());
+        writer.flush();
+    }
+
+    private synchronized byte[] encode() throws IOException {
+        if (mBytes != null) {
+            return mBytes;
+        }
+        if (mError != null) {
+            throw mError;
+        }
+        PoolBuffer buffer = obtainBuffer();
+        try {
+            gzip(buffer, mBody);
+            mBytes = buffer.toByteArray();
+            return mBytes;
+        } catch (IOException e) {
+            mError = e;
+            throw e;
+        } catch (RuntimeException e) {
+            // JsonWriter refuses NaN and infinite numbers
+            mError = new IOException(e);
+            throw mError;
+        } finally {
+            recycleBuffer(buffer);
+        }
+    }
+
+    private static void gzip(OutputStream writer, JSONObject body) throws IOException {
+        Deflater deflater = obtainDeflater();
+        try {
+            writer.write(GZIP_HEADER);
+            final CRC32 crc = new CRC32();
+            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(writer, deflater, BUFFER_SIZE) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    crc.update(b, off, len);
+                    super.write(b, off, len);
+                }
+            };
+            JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(deflaterStream, CommonConstants.CHARTSET_UTF8));
+            writeObject(jsonWriter, body);
+            jsonWriter.flush();
+            deflaterStream.finish();
+            writeIntLE(writer, (int) crc.getValue());
+            writeIntLE(writer, (int) deflater.getBytesRead());
+            writer.flush();
+        } finally {
+            recycleDeflater(deflater);
+        }
+    }
+
+    private static void writeObject(JsonWriter writer, JSONObject object) throws IOException {
+        writer.beginObject();
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            writer.name(key);
+            writeValue(writer, object.opt(key));
+        }
+        writer.endObject();
+    }
+
+    private static void writeArray(JsonWriter writer, JSONArray array) throws IOException {
+        writer.beginArray();
+        for (int i = 0; i < array.length(); i++) {
+            writeValue(writer, array.opt(i));
+        }
+        writer.endArray();
+    }
+
+    private static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            writer.nullValue();
+        } else if (value instanceof JSONObject) {
+            writeObject(writer, (JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            writeArray(writer, (JSONArray) value);
+        } else if (value instanceof Boolean) {
+            writer.value(((Boolean) value).booleanValue());
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else {
+            writer.value(value.toString());
+        }
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    private static PoolBuffer obtainBuffer() {
+        PoolBuffer buffer = BUFFERS.poll();
+        return buffer != null ? buffer : new PoolBuffer();
+    }
+
+    private static void recycleBuffer(PoolBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE && BUFFERS.size() < MAX_POOLED_BUFFERS) {
+            buffer.reset();
+            BUFFERS.offer(buffer);
+        }
+    }
+
+    private static Deflater obtainDeflater() {
+        Deflater deflater = DEFLATERS.poll();
+        return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    private static void recycleDeflater(Deflater deflater) {
+        deflater.reset();
+        if (DEFLATERS.size() < MAX_POOLED_DEFLATERS) {
+            DEFLATERS.offer(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+
+    private static final class PoolBuffer extends ByteArrayOutputStream {
+        PoolBuffer() {
+            super(BUFFER_SIZE);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
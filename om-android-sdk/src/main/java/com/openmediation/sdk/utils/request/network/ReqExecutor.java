@@ -3,18 +3,37 @@
 
 package com.openmediation.sdk.utils.request.network;
 
+import android.os.SystemClock;
+
 import com.openmediation.sdk.utils.DeveloperLog;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Dispatches async requests.
+ * <p>
+ * Waiting requests are ordered by {@link Request.Priority}, then by deadline (enqueue time plus connect
+ * and read timeout). At most MAX_REQUESTS run at once, and at most MAX_REQUESTS_PER_HOST to one host.
+ * A request is never dropped silently: when the queue is full the lowest-priority request gets its
+ * failure callback, as does a request that waited past its deadline.
+ */
 class ReqExecutor {
 
     private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_REQUESTS = CPU_COUNT * 2 + 1;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+    private static final int MAX_QUEUED = 128;
 
     private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
         private final AtomicInteger mCount = new AtomicInteger(1);
@@ -24,26 +43,126 @@ class ReqExecutor {
         }
     };
 
+    private static final Comparator<AsyncReq> ORDER = new Comparator<AsyncReq>() {
+        @Override
+        public int compare(AsyncReq a, AsyncReq b) {
+            int priority = a.getPriority().compareTo(b.getPriority());
+            if (priority != 0) {
+                return priority;
+            }
+            return a.getDeadline() < b.getDeadline() ? -1 : (a.getDeadline() == b.getDeadline() ? 0 : 1);
+        }
+    };
+
     private static ThreadPoolExecutor mPoolExecutor;
+    private static final PriorityQueue<AsyncReq> READY = new PriorityQueue<>(16, ORDER);
+    private static final Map<String, Integer> RUNNING_PER_HOST = new HashMap<>();
+    private static int sRunning;
 
     static {
+        // never queues: a request is only handed over when a slot is free. The thread bound is left to
+        // the slot count, a finishing thread may still be busy when the next request is handed over
         mPoolExecutor = new ThreadPoolExecutor(
-                Math.max(2, Math.min(CPU_COUNT - 1, 4)),
-                CPU_COUNT * 2 + 1,
+                0,
+                Integer.MAX_VALUE,
                 60L,
                 TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(128),
+                new SynchronousQueue<Runnable>(),
                 THREAD_FACTORY);
-        mPoolExecutor.allowCoreThreadTimeOut(true);
         mPoolExecutor.setRejectedExecutionHandler(new RejectedExecutionHandler() {
             @Override
             public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
                 DeveloperLog.LogD("ReqExecutor", "execute rejected");
+                if (r instanceof AsyncReq) {
+                    ((AsyncReq) r).reject("request rejected");
+                    finished((AsyncReq) r);
+                }
             }
         });
     }
 
-    static void execute(Runnable command) {
-        mPoolExecutor.execute(command);
+    static void execute(AsyncReq call) {
+        AsyncReq rejected = null;
+        synchronized (ReqExecutor.class) {
+            READY.add(call);
+            if (READY.size() > MAX_QUEUED) {
+                rejected = removeLast();
+            }
+        }
+        if (rejected != null) {
+            DeveloperLog.LogD("ReqExecutor", "queue full, rejected: " + rejected.getUrl());
+            rejected.reject("request queue full");
+        }
+        promote();
+    }
+
+    /**
+     * Called by a request when it's done, frees its slot
+     */
+    static void finished(AsyncReq call) {
+        synchronized (ReqExecutor.class) {
+            sRunning--;
+            Integer running = RUNNING_PER_HOST.get(call.getHost());
+            if (running == null || running <= 1) {
+                RUNNING_PER_HOST.remove(call.getHost());
+            } else {
+                RUNNING_PER_HOST.put(call.getHost(), running - 1);
+            }
+        }
+        promote();
+    }
+
+    private static void promote() {
+        List<AsyncReq> toRun = new ArrayList<>();
+        List<AsyncReq> expired = new ArrayList<>();
+        synchronized (ReqExecutor.class) {
+            if (sRunning >= MAX_REQUESTS || READY.isEmpty()) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            List<AsyncReq> hostLimited = null;
+            AsyncReq call;
+            while (sRunning < MAX_REQUESTS && (call = READY.poll()) != null) {
+                if (now > call.getDeadline()) {
+                    expired.add(call);
+                    continue;
+                }
+                Integer running = RUNNING_PER_HOST.get(call.getHost());
+                if (running != null && running >= MAX_REQUESTS_PER_HOST) {
+                    if (hostLimited == null) {
+                        hostLimited = new ArrayList<>();
+                    }
+                    hostLimited.add(call);
+                    continue;
+                }
+                RUNNING_PER_HOST.put(call.getHost(), running == null ? 1 : running + 1);
+                sRunning++;
+                toRun.add(call);
+            }
+            if (hostLimited != null) {
+                READY.addAll(hostLimited);
+            }
+        }
+        for (AsyncReq call : expired) {
+            DeveloperLog.LogD("ReqExecutor", "deadline passed in queue: " + call.getUrl());
+            call.reject("request timed out in queue");
+        }
+        for (AsyncReq call : toRun) {
+            mPoolExecutor.execute(call);
+        }
+    }
+
+    /**
+     * @return the waiting request that would run last
+     */
+    private static AsyncReq removeLast() {
+        AsyncReq last = null;
+        for (AsyncReq call : READY) {
+            if (last == null || ORDER.compare(call, last) > 0) {
+                last = call;
+            }
+        }
+        READY.remove(last);
+        return last;
     }
-}
\ No newline at end of file
+}
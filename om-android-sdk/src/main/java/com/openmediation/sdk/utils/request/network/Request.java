@@ -7,6 +7,7 @@ package com.openmediation.sdk.utils.request.network;
 import android.content.Context;
 import android.text.TextUtils;
 
+import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.error.ErrorCode;
 import com.openmediation.sdk.utils.IOUtil;
 
@@ -25,6 +26,8 @@ public class Request {
     private final boolean isCheckChain;
     private final OnRequestCallback mCallback;
     private final Object mTag;
+    private final Priority mPriority;
+    private final boolean isCoalesce;
     private boolean mShouldCallbackResponse;
 
     private Context mContext;
@@ -56,6 +59,28 @@ public class Request {
     }
 
 
+    /**
+     * Dispatch order of async requests, earlier constants go first
+     */
+    public enum Priority {
+        /**
+         * waterfall, bid and payload requests an ad load waits for
+         */
+        AUCTION,
+        /**
+         * default
+         */
+        NORMAL,
+        /**
+         * events, lr, crash and other reports
+         */
+        REPORT,
+        /**
+         * resource downloads
+         */
+        DOWNLOAD
+    }
+
     /**
      * The interface On request callback.
      */
@@ -95,6 +120,8 @@ public class Request {
         isCheckChain = builder.isCheckChain;
         mCallback = builder.mCallback;
         mTag = builder.mTag;
+        mPriority = builder.mPriority;
+        isCoalesce = builder.isCoalesce;
     }
 
     /**
@@ -196,6 +223,15 @@ public class Request {
         return mTag;
     }
 
+    /**
+     * Gets priority.
+     *
+     * @return the priority
+     */
+    public Priority getPriority() {
+        return mPriority;
+    }
+
     private void performRequest(Context context) {
         if (context == null) {
             callbackError(mCallback, ErrorCode.ERROR_CONTEXT);
@@ -209,8 +245,7 @@ public class Request {
 
         mContext = context;
 
-        AsyncReq asyncReq = new AsyncReq(this);
-        asyncReq.setCallback(new AsyncReq.OnTaskCallback() {
+        AsyncReq.OnTaskCallback callback = new AsyncReq.OnTaskCallback() {
             @Override
             public void onSuccess(Response response) {
                 if (mCallback != null) {
@@ -226,7 +261,17 @@ public class Request {
                     mCallback.onRequestFailed(error);
                 }
             }
-        });
+        };
+        String key = isCoalesce ? RequestCoalescer.key(this) : null;
+        if (key != null) {
+            if (RequestCoalescer.join(key, callback)) {
+                DeveloperLog.LogD("Request", "joined in-flight request: " + mUrl);
+                return;
+            }
+            callback = RequestCoalescer.lead(key, callback);
+        }
+        AsyncReq asyncReq = new AsyncReq(this);
+        asyncReq.setCallback(callback);
         ReqExecutor.execute(asyncReq);
     }
 
@@ -258,6 +303,8 @@ public class Request {
         private boolean isInstanceFollowRedirects;
         private boolean isCheckChain;
         private Object mTag;
+        private Priority mPriority = Priority.NORMAL;
+        private boolean isCoalesce;
 
         /**
          * Method request builder.
@@ -369,6 +416,38 @@ public class Request {
             return this;
         }
 
+        /**
+         * Priority request builder.
+         *
+         * @param priority the priority
+         * @return the request builder
+         */
+        public RequestBuilder priority(Priority priority) {
+            if (priority != null) {
+                mPriority = priority;
+            }
+            return this;
+        }
+
+        /**
+         * Whether an async request may share the network call of an identical one in flight, off by
+         * default. Only for idempotent requests: of identical requests in flight one reaches the server.
+         *
+         * @param coalesce the coalesce
+         * @return the request builder
+         */
+        public RequestBuilder coalesce(boolean coalesce) {
+            isCoalesce = coalesce;
+            return this;
+        }
+
+        /**
+         * For tests, the request without sending it
+         */
+        Request build() {
+            return new Request(this);
+        }
+
         /**
          * Sync request response.
          *
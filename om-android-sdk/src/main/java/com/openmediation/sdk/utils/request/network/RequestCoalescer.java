@@ -0,0 +1,182 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network;
+
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.IOUtil;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Single-flight for async requests: while a request is in flight, an identical one (same method, url
+ * and body) doesn't go to the network, it waits for the first one and gets a copy of its response.
+ * <p>
+ * With no one waiting the response is handed over as it is, still streaming. Otherwise the body is read
+ * once and each callback gets its own Response over the bytes.
+ * <p>
+ * A body is keyed by a CRC of its bytes, so it needs a known length: JsonRequestBody encodes once and
+ * caches its gzip bytes, hashing them costs no second encode. Requests opt in through
+ * {@link Request.RequestBuilder#coalesce}, only idempotent ones such as config and waterfall should.
+ * Reports never coalesce, two identical events are still two events, and neither do requests with no
+ * callback, they have no response to share.
+ */
+final class RequestCoalescer {
+    //bodies larger than this, or of unknown length, aren't hashed and their requests never coalesce
+    private static final long MAX_HASHED_BODY = 64 * 1024;
+
+    //waiting callbacks by request key, a key is present while its request is in flight
+    private static final Map<String, List<AsyncReq.OnTaskCallback>> FLIGHTS = new HashMap<>();
+
+    private RequestCoalescer() {
+    }
+
+    /**
+     * @return the key identical requests share, null if the request can't coalesce
+     */
+    static String key(Request request) {
+        // a request that drops its response can't share it
+        if (request.getPriority() == Request.Priority.REPORT || !request.shouldCallbackResponse()) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(request.getRequestMethod()).append(' ').append(request.getUrl());
+        RequestBody body = request.getRequestBody();
+        if (body != null) {
+            long length = body.length();
+            if (length < 0 || length > MAX_HASHED_BODY) {
+                return null;
+            }
+            final CRC32 crc = new CRC32();
+            try {
+                body.writeTo(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        crc.update(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        crc.update(b, off, len);
+                    }
+                });
+            } catch (Exception e) {
+                return null;
+            }
+            key.append(' ').append(length).append(':').append(crc.getValue());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Joins the flight of an identical request, or opens one if there is none
+     *
+     * @return true if the callback joined a flight and the request mustn't be sent
+     */
+    static boolean join(String key, AsyncReq.OnTaskCallback callback) {
+        synchronized (FLIGHTS) {
+            List<AsyncReq.OnTaskCallback> waiting = FLIGHTS.get(key);
+            if (waiting == null) {
+                FLIGHTS.put(key, new ArrayList<AsyncReq.OnTaskCallback>(0));
+                return false;
+            }
+            waiting.add(callback);
+            return true;
+        }
+    }
+
+    /**
+     * Wraps the callback of the request that opened a flight, so the result is fanned out to
+     * the requests that joined it
+     */
+    static AsyncReq.OnTaskCallback lead(final String key, final AsyncReq.OnTaskCallback callback) {
+        return new AsyncReq.OnTaskCallback() {
+            @Override
+            public void onSuccess(Response response) {
+                List<AsyncReq.OnTaskCallback> waiting = land(key);
+                if (waiting.isEmpty()) {
+                    callback.onSuccess(response);
+                    return;
+                }
+                byte[] data;
+                try {
+                    data = response.body().byteArray();
+                } catch (Exception e) {
+                    DeveloperLog.LogD("RequestCoalescer", e);
+                    IOUtil.closeQuietly(response);
+                    String error = "read response failed: " + e.getMessage();
+                    fail(waiting, error);
+                    callback.onError(error);
+                    return;
+                }
+                int code = response.code();
+                Headers headers = copy(response.headers());
+                IOUtil.closeQuietly(response);
+                DeveloperLog.LogD("RequestCoalescer", "shared response with " + waiting.size() + ": " + key);
+                // a callback that throws mustn't keep the others from their response
+                for (AsyncReq.OnTaskCallback c : waiting) {
+                    try {
+                        c.onSuccess(build(code, headers, data));
+                    } catch (Exception e) {
+                        DeveloperLog.LogD("RequestCoalescer", e);
+                    }
+                }
+                callback.onSuccess(build(code, headers, data));
+            }
+
+            @Override
+            public void onError(String error) {
+                fail(land(key), error);
+                callback.onError(error);
+            }
+        };
+    }
+
+    /**
+     * Closes a flight, a request arriving afterwards opens a new one
+     */
+    private static List<AsyncReq.OnTaskCallback> land(String key) {
+        synchronized (FLIGHTS) {
+            List<AsyncReq.OnTaskCallback> waiting = FLIGHTS.remove(key);
+            return waiting != null ? waiting : new ArrayList<AsyncReq.OnTaskCallback>(0);
+        }
+    }
+
+    private static void fail(List<AsyncReq.OnTaskCallback> callbacks, String error) {
+        for (AsyncReq.OnTaskCallback c : callbacks) {
+            try {
+                c.onError(error);
+            } catch (Exception e) {
+                DeveloperLog.LogD("RequestCoalescer", e);
+            }
+        }
+    }
+
+    private static Headers copy(Headers source) {
+        Headers headers = new Headers();
+        if (source != null) {
+            for (Map.Entry<String, List<String>> entry : source.entrySet()) {
+                headers.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return headers;
+    }
+
+    private static Response build(int code, Headers headers, byte[] data) {
+        // every response gets its own headers, closing a response clears them
+        Headers own = copy(headers);
+        BufferedInputStream stream = new BufferedInputStream(new ByteArrayInputStream(data));
+        return Response.newBuilder()
+                .code(code)
+                .headers(own)
+                .body(new StreamBody(own.getContentType(), stream))
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network.certificate;
+
+import android.os.Build;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * Socket factories shared by all https requests.
+ * <p>
+ * Each factory is created once: the same factory lets the platform pool reuse a kept-alive connection,
+ * and the same SSLContext keeps the TLS session cache, so new connections resume sessions instead of
+ * doing a full handshake.
+ */
+public final class SSLSocketFactories {
+
+    private static volatile SSLSocketFactory sDefault;
+    private static volatile SSLSocketFactory sPinned;
+
+    private SSLSocketFactories() {
+    }
+
+    /**
+     * @param checkChain whether the server's certificate chain must contain a pinned key
+     * @return the factory for a request
+     * @throws GeneralSecurityException if the pinned context can't be created
+     */
+    public static SSLSocketFactory get(boolean checkChain) throws GeneralSecurityException {
+        if (checkChain && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            SSLSocketFactory pinned = sPinned;
+            return pinned != null ? pinned : createPinned();
+        }
+        SSLSocketFactory factory = sDefault;
+        if (factory == null) {
+            synchronized (SSLSocketFactories.class) {
+                if (sDefault == null) {
+                    sDefault = new TrackingSSLSocketFactory(Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP ?
+                            new SSLFactory() : HttpsURLConnection.getDefaultSSLSocketFactory());
+                }
+                factory = sDefault;
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Replaces the factory used by requests without chain check, e.g. to trust a local test server
+     *
+     * @param factory the factory, null restores the platform default
+     */
+    public static synchronized void setDefault(SSLSocketFactory factory) {
+        sDefault = factory != null ? new TrackingSSLSocketFactory(factory) : null;
+    }
+
+    private static synchronized SSLSocketFactory createPinned() throws GeneralSecurityException {
+        if (sPinned == null) {
+            TrustManager[] tm = {new PublicKeyTrustManager()};
+            SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+            sslContext.init(null, tm, new SecureRandom());
+            sPinned = new TrackingSSLSocketFactory(sslContext.getSocketFactory());
+        }
+        return sPinned;
+    }
+}
@@ -0,0 +1,84 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network.certificate;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Delegating factory that counts the sockets it creates on the calling thread, so a request can tell
+ * whether it opened a new connection or got a pooled one.
+ * <p>
+ * The connection pool keys connections by socket factory, one instance must be shared by all requests
+ */
+public final class TrackingSSLSocketFactory extends SSLSocketFactory {
+
+    private static final ThreadLocal<int[]> CREATED = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private final SSLSocketFactory mDelegate;
+
+    TrackingSSLSocketFactory(SSLSocketFactory delegate) {
+        this.mDelegate = delegate;
+    }
+
+    /**
+     * @return sockets created on the calling thread so far
+     */
+    public static int createdOnThread() {
+        return CREATED.get()[0];
+    }
+
+    private static Socket track(Socket socket) {
+        CREATED.get()[0]++;
+        return socket;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return mDelegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return mDelegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return track(mDelegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        return track(mDelegate.createSocket(s, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return track(mDelegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return track(mDelegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return track(mDelegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return track(mDelegate.createSocket(address, port, localAddress, localPort));
+    }
+}
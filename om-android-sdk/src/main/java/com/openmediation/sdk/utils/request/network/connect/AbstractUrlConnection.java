@@ -3,6 +3,7 @@
 
 package com.openmediation.sdk.utils.request.network.connect;
 
+import com.openmediation.sdk.utils.DeveloperLog;
 import com.openmediation.sdk.utils.IOUtil;
 import com.openmediation.sdk.utils.crash.CrashUtil;
 import com.openmediation.sdk.utils.request.network.Headers;
@@ -15,9 +16,15 @@ import com.openmediation.sdk.utils.request.network.exception.ReadException;
 import com.openmediation.sdk.utils.request.network.exception.WriteException;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
+import java.net.URL;
 import java.net.URLConnection;
 import java.util.List;
 import java.util.Map;
@@ -26,8 +33,15 @@ import java.util.Map;
  * The type Abstract url connection.
  */
 public abstract class AbstractUrlConnection {
+    //unread response bytes read off before a connection goes back to the pool
+    private static final int MAX_DRAIN = 64 * 1024;
+    private static final int MAX_REDIRECTS = 5;
+    private static final int HTTP_TEMPORARY_REDIRECT = 307;
+    private static final int HTTP_PERMANENT_REDIRECT = 308;
 
     private URLConnection mConnection;
+    private InputStream mInputStream;
+    private boolean isResponseRead;
 
     /**
      * Cancel.
@@ -42,7 +56,7 @@ public abstract class AbstractUrlConnection {
      * @return response code
      * @throws IOException the io exception
      */
-    abstract int getResponseCode() throws IOException;
+    protected abstract int getResponseCode() throws IOException;
 
     /**
      * Connect url connection.
@@ -51,12 +65,25 @@ public abstract class AbstractUrlConnection {
      * @return url connection
      * @throws Exception the exception
      */
-    public abstract URLConnection connect(Request request) throws Exception;
+    public URLConnection connect(Request request) throws Exception {
+        return connect(request, new URL(request.getUrl()));
+    }
+
+    /**
+     * Opens a connection for the request to a url, its own or the one it was redirected to. A
+     * streamed body's redirects are followed by {@link #intercept}, not the platform
+     *
+     * @param request the request
+     * @param url     the url
+     * @return url connection
+     * @throws Exception the exception
+     */
+    protected abstract URLConnection connect(Request request, URL url) throws Exception;
 
     /**
      * constructor
      */
-    AbstractUrlConnection() {
+    protected AbstractUrlConnection() {
     }
 
     /**
@@ -76,17 +103,130 @@ public abstract class AbstractUrlConnection {
             Headers headers = request.getHeaders();
             RequestBody body = request.getRequestBody();
             if (body != null && headers != null) {
-                headers.set(Headers.KEY_CONTENT_LENGTH, Long.toString(body.length()));
+                if (body.length() >= 0) {
+                    headers.set(Headers.KEY_CONTENT_LENGTH, Long.toString(body.length()));
+                }
                 headers.set(Headers.KEY_CONTENT_TYPE, body.contentType());
             }
             mConnection = connect(request);
-            writeBody(body);
+            if (isStreamedBody(request)) {
+                sendStreamed(request, body);
+            } else {
+                writeBody(body);
+            }
         } else {
             mConnection = connect(request);
         }
         return readResponse(request);
     }
 
+    /**
+     * Streams a body of known length. The platform neither resends a streamed body nor follows a
+     * redirect with one, so both are done here, only where the server can't have the body yet:
+     * <ul>
+     * <li>a pooled socket that fails before it took a byte of the body, the server had closed it, is
+     * retried once on a new connection. Once a byte went out a failure fails the request, events and
+     * reports aren't safe to send twice</li>
+     * <li>a 307 or 308 is followed if the request follows redirects, the status asks for the body to
+     * be sent again. Like the platform, redirects to another protocol aren't followed</li>
+     * </ul>
+     */
+    private void sendStreamed(Request request, RequestBody body) throws Exception {
+        boolean isRetried = false;
+        int redirects = 0;
+        while (true) {
+            CountingOutputStream stream = null;
+            try {
+                stream = new CountingOutputStream(mConnection.getOutputStream());
+                BufferedOutputStream buffered = IOUtil.toBufferedOutputStream(stream);
+                body.writeTo(buffered);
+                buffered.flush();
+                IOUtil.closeQuietly(stream);
+            } catch (IOException e) {
+                if (isRetried || !isReused() || (stream != null && stream.mCount > 0)) {
+                    throw new WriteException(e);
+                }
+                DeveloperLog.LogD("stale pooled connection, retry on a new one: " + request.getUrl(), e);
+                isRetried = true;
+                cancel();
+                mConnection = connect(request);
+                continue;
+            }
+            if (!request.isInstanceFollowRedirects() || redirects >= MAX_REDIRECTS) {
+                return;
+            }
+            URL location = getRedirect(request);
+            if (location == null) {
+                return;
+            }
+            DeveloperLog.LogD("redirect to: " + location);
+            redirects++;
+            // the redirect's own body is read off so the connection can go back to the pool
+            mInputStream = getBodyStream();
+            isResponseRead = true;
+            cancel();
+            mInputStream = null;
+            isResponseRead = false;
+            mConnection = connect(request, location);
+        }
+    }
+
+    /**
+     * @return where a 307 or 308 sends the request, null if it isn't one or can't be followed
+     */
+    private URL getRedirect(Request request) throws ReadException {
+        int code;
+        try {
+            code = getResponseCode();
+        } catch (SocketTimeoutException e) {
+            throw new ReadException(String.format("Read data time out: %1$s.", request.getUrl()), e);
+        } catch (IOException e) {
+            throw new ReadException(e);
+        }
+        if (code != HTTP_TEMPORARY_REDIRECT && code != HTTP_PERMANENT_REDIRECT) {
+            return null;
+        }
+        String location = mConnection.getHeaderField(Headers.KEY_LOCATION);
+        if (location == null) {
+            return null;
+        }
+        try {
+            URL current = mConnection.getURL();
+            URL url = new URL(current, location);
+            return url.getProtocol().equals(current.getProtocol()) ? url : null;
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private InputStream getBodyStream() {
+        try {
+            return mConnection.getInputStream();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the last connection was given a socket of an earlier request
+     */
+    protected boolean isReused() {
+        return false;
+    }
+
+    /**
+     * A POST body of known length is streamed to the socket
+     *
+     * @return true if the body should use fixed length streaming
+     */
+    boolean isStreamedBody(Request request) {
+        if (!isAllowBody(request.getRequestMethod())) {
+            return false;
+        }
+        RequestBody body = request.getRequestBody();
+        return body != null && body.length() >= 0 && body.length() <= Integer.MAX_VALUE;
+    }
+
     private void writeBody(RequestBody body) throws WriteException {
         try {
             if (body == null) {
@@ -103,16 +243,16 @@ public abstract class AbstractUrlConnection {
     private Response readResponse(Request request) throws ReadException {
         try {
             int code = getResponseCode();
+            isResponseRead = true;
             if (code >= 400) {
                 throw new ReadException(String.format("%s RequestCode:%d", mConnection.getURL().toString(), code));
             }
-            BufferedInputStream inputStream = IOUtil.toBufferedInputStream(mConnection.getInputStream());
+            mInputStream = mConnection.getInputStream();
             if (!request.shouldCallbackResponse()) {
-                IOUtil.closeQuietly(inputStream);
-                inputStream.close();
                 cancel();
                 return null;
             }
+            BufferedInputStream inputStream = IOUtil.toBufferedInputStream(mInputStream);
 
             Headers headers = parseResponseHeaders(mConnection.getHeaderFields());
             String contentType = headers.getContentType();
@@ -131,6 +271,51 @@ public abstract class AbstractUrlConnection {
         }
     }
 
+    /**
+     * Hands the connection back to the platform pool: the rest of the body is read and the stream
+     * closed, so the next request to the same host skips connect and handshake. A connection that got
+     * no response, or has more than MAX_DRAIN bytes left, is closed instead.
+     *
+     * @param connection the connection
+     */
+    void release(HttpURLConnection connection) {
+        if (connection == null) {
+            return;
+        }
+        InputStream stream = mInputStream;
+        if (isResponseRead) {
+            if (stream == null) {
+                stream = connection.getErrorStream();
+            }
+            if (stream == null || drain(stream)) {
+                IOUtil.closeQuietly(stream);
+                return;
+            }
+        }
+        IOUtil.closeQuietly(stream);
+        connection.disconnect();
+    }
+
+    /**
+     * @return false if more than MAX_DRAIN bytes were left
+     */
+    private static boolean drain(InputStream stream) {
+        byte[] buffer = new byte[4096];
+        int total = 0;
+        try {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                total += read;
+                if (total > MAX_DRAIN) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            // already closed by the reader, or broken, the platform won't pool it either way
+        }
+        return true;
+    }
+
     private Headers parseResponseHeaders(Map<String, List<String>> headersMap) {
         Headers headers = new Headers();
         for (Map.Entry<String, List<String>> entry : headersMap.entrySet()) {
@@ -139,6 +324,29 @@ public abstract class AbstractUrlConnection {
         return headers;
     }
 
+    /**
+     * Counts the bytes the platform took
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long mCount;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            mCount += len;
+        }
+    }
+
     /**
      * Is allow body boolean.
      *
@@ -0,0 +1,50 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network.connect;
+
+import java.net.URL;
+
+/**
+ * Creates the connection a request is sent on. The default transport is the platform HttpURLConnection,
+ * another one can be set with {@link #setTransport(Transport)}
+ */
+public final class ConnectionFactory {
+
+    public interface Transport {
+        /**
+         * @param url the request url
+         * @return the connection, null if the protocol isn't supported
+         */
+        AbstractUrlConnection create(URL url);
+    }
+
+    private static final Transport DEFAULT = new Transport() {
+        @Override
+        public AbstractUrlConnection create(URL url) {
+            String protocol = url.getProtocol();
+            if ("http".equalsIgnoreCase(protocol)) {
+                return new HttpConnection();
+            } else if ("https".equalsIgnoreCase(protocol)) {
+                return new HttpsConnection();
+            }
+            return null;
+        }
+    };
+
+    private static volatile Transport sTransport = DEFAULT;
+
+    private ConnectionFactory() {
+    }
+
+    /**
+     * @param transport the transport, null restores the default one
+     */
+    public static void setTransport(Transport transport) {
+        sTransport = transport != null ? transport : DEFAULT;
+    }
+
+    public static AbstractUrlConnection create(URL url) {
+        return sTransport.create(url);
+    }
+}
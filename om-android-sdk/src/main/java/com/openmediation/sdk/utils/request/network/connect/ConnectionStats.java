@@ -0,0 +1,44 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network.connect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide connection counters, filled in by every https request
+ */
+public final class ConnectionStats {
+    private static final AtomicLong REQUESTS = new AtomicLong();
+    private static final AtomicLong REUSED = new AtomicLong();
+    private static final AtomicLong CONNECT_TIME = new AtomicLong();
+
+    private ConnectionStats() {
+    }
+
+    static void record(boolean reused, long connectTime) {
+        REQUESTS.incrementAndGet();
+        if (reused) {
+            REUSED.incrementAndGet();
+        }
+        CONNECT_TIME.addAndGet(connectTime);
+    }
+
+    public static long getRequests() {
+        return REQUESTS.get();
+    }
+
+    /**
+     * @return requests sent on a pooled connection, without connect or handshake
+     */
+    public static long getReused() {
+        return REUSED.get();
+    }
+
+    /**
+     * @return total time, in milliseconds, spent in connect, handshakes included
+     */
+    public static long getConnectTime() {
+        return CONNECT_TIME.get();
+    }
+}
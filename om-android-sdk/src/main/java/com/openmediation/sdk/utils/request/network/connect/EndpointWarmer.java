@@ -0,0 +1,190 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network.connect;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.openmediation.sdk.utils.AdtUtil;
+import com.openmediation.sdk.utils.DeveloperLog;
+import com.openmediation.sdk.utils.IOUtil;
+import com.openmediation.sdk.utils.LaneExecutor;
+import com.openmediation.sdk.utils.model.ApiConfigurations;
+import com.openmediation.sdk.utils.request.network.certificate.SSLSocketFactories;
+import com.openmediation.sdk.utils.request.network.util.NetworkChecker;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.net.ssl.HttpsURLConnection;
+
+/**
+ * Warms the config endpoints up ahead of the first ad load.
+ * <p>
+ * Hosts of the wf, lr, ic, hb, cd and cppl urls are resolved, so the lookup on the request path is
+ * answered from the resolver cache. For the waterfall and bid hosts a HEAD request is sent to the
+ * origin, which leaves a handshaken connection in the platform pool for the first real request.
+ * {@link #refresh()} repeats this when the app comes back to the foreground.
+ */
+public final class EndpointWarmer {
+    //a warm-up sooner than this after the last one is skipped, in milliseconds
+    private static final long MIN_INTERVAL = 60 * 1000;
+    private static final int TIMEOUT = 10 * 1000;
+
+    private Set<String> mHosts = new LinkedHashSet<>();
+    private Set<String> mOrigins = new LinkedHashSet<>();
+    private long mLastWarmAt;
+
+    private final Runnable mWarmRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Set<String> hosts;
+            Set<String> origins;
+            synchronized (EndpointWarmer.this) {
+                hosts = mHosts;
+                origins = mOrigins;
+            }
+            long start = SystemClock.elapsedRealtime();
+            // handshakes first: they resolve their own host and matter most to the first ad load
+            for (String origin : origins) {
+                connect(origin);
+            }
+            for (String host : hosts) {
+                resolve(host);
+            }
+            DeveloperLog.LogD("EndpointWarmer warmed " + origins.size() + " connections, " + hosts.size()
+                    + " hosts in " + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
+    };
+
+    private static final class EndpointWarmerHolder {
+        private static final EndpointWarmer INSTANCE = new EndpointWarmer();
+    }
+
+    private EndpointWarmer() {
+    }
+
+    public static EndpointWarmer getInstance() {
+        return EndpointWarmerHolder.INSTANCE;
+    }
+
+    /**
+     * Takes the endpoints of a new config and warms them up
+     *
+     * @param api the api urls of the config
+     */
+    public void setEndpoints(ApiConfigurations api) {
+        if (api == null) {
+            return;
+        }
+        Set<String> hosts = new LinkedHashSet<>();
+        Set<String> origins = new LinkedHashSet<>();
+        String[] urls = new String[]{api.getWf(), api.getHb(), api.getLr(), api.getIc(), api.getCd(), api.getCppl()};
+        for (String url : urls) {
+            String host = getHost(url);
+            if (host != null) {
+                hosts.add(host);
+            }
+        }
+        addOrigin(origins, api.getWf());
+        addOrigin(origins, api.getHb());
+        synchronized (this) {
+            boolean changed = !hosts.equals(mHosts) || !origins.equals(mOrigins);
+            mHosts = hosts;
+            mOrigins = origins;
+            if (changed) {
+                mLastWarmAt = 0;
+            }
+        }
+        refresh();
+    }
+
+    /**
+     * Warms the endpoints up again, unless that was done less than MIN_INTERVAL ago
+     */
+    public void refresh() {
+        synchronized (this) {
+            if (mHosts.isEmpty() && mOrigins.isEmpty()) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (mLastWarmAt != 0 && now - mLastWarmAt < MIN_INTERVAL) {
+                return;
+            }
+            if (!NetworkChecker.isAvailable(AdtUtil.getInstance().getApplicationContext())) {
+                return;
+            }
+            mLastWarmAt = now;
+        }
+        LaneExecutor.execute(LaneExecutor.Lane.AUCTION, mWarmRunnable);
+    }
+
+    private static void resolve(String host) {
+        try {
+            InetAddress.getAllByName(host);
+        } catch (Exception e) {
+            DeveloperLog.LogD("EndpointWarmer resolve " + host + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a HEAD to the origin and leaves the connection in the pool. It's set up like
+     * {@link HttpsConnection} does, or the pool wouldn't hand it to the real requests.
+     */
+    private static void connect(String origin) {
+        HttpsURLConnection connection = null;
+        InputStream stream = null;
+        try {
+            connection = (HttpsURLConnection) new URL(origin).openConnection();
+            connection.setSSLSocketFactory(SSLSocketFactories.get(false));
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setInstanceFollowRedirects(false);
+            connection.setUseCaches(false);
+            connection.setRequestMethod("HEAD");
+            int code = connection.getResponseCode();
+            stream = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            DeveloperLog.LogD("EndpointWarmer connected " + origin + ", code: " + code);
+        } catch (Exception e) {
+            DeveloperLog.LogD("EndpointWarmer connect " + origin + " failed: " + e.getMessage());
+            if (connection != null) {
+                connection.disconnect();
+            }
+        } finally {
+            // closing the body stream, not disconnect(), is what hands the connection back to the pool
+            IOUtil.closeQuietly(stream);
+        }
+    }
+
+    private static void addOrigin(Set<String> origins, String url) {
+        if (TextUtils.isEmpty(url)) {
+            return;
+        }
+        try {
+            URL u = new URL(url);
+            if (!"https".equalsIgnoreCase(u.getProtocol()) || TextUtils.isEmpty(u.getHost())) {
+                return;
+            }
+            origins.add(new URL(u.getProtocol(), u.getHost(), u.getPort(), "/").toString());
+        } catch (Exception e) {
+            DeveloperLog.LogD("EndpointWarmer bad url: " + url);
+        }
+    }
+
+    private static String getHost(String url) {
+        if (TextUtils.isEmpty(url)) {
+            return null;
+        }
+        try {
+            String host = new URL(url).getHost();
+            return TextUtils.isEmpty(host) ? null : host;
+        } catch (Exception e) {
+            DeveloperLog.LogD("EndpointWarmer bad url: " + url);
+            return null;
+        }
+    }
+}
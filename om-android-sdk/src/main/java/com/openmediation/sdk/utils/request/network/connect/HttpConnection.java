@@ -6,7 +6,6 @@ package com.openmediation.sdk.utils.request.network.connect;
 import android.os.Build;
 
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.IOUtil;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Request;
 
@@ -24,32 +23,30 @@ public class HttpConnection extends AbstractUrlConnection {
 
     @Override
     public void cancel() throws Exception {
-        if (mConnection != null) {
-            IOUtil.closeQuietly(mConnection.getInputStream());
-            mConnection.disconnect();
-        }
+        release(mConnection);
     }
 
     @Override
-    int getResponseCode() throws IOException {
+    protected int getResponseCode() throws IOException {
         return mConnection.getResponseCode();
     }
 
     @Override
-    public URLConnection connect(Request request) throws Exception {
-        String u = request.getUrl();
-        DeveloperLog.LogD("HttpConnection", "url is : " + u);
-        URL url = new URL(u);
+    protected URLConnection connect(Request request, URL url) throws Exception {
+        DeveloperLog.LogD("HttpConnection", "url is : " + url);
         mConnection = (HttpURLConnection) url.openConnection();
         mConnection.setConnectTimeout(request.getConnectTimeout());
         mConnection.setReadTimeout(request.getReadTimeout());
-        mConnection.setInstanceFollowRedirects(request.isInstanceFollowRedirects());
+        // the platform can't follow a redirect with a streamed body, intercept does
+        mConnection.setInstanceFollowRedirects(request.isInstanceFollowRedirects() && !isStreamedBody(request));
 
         Request.Method method = request.getRequestMethod();
         mConnection.setRequestMethod(method.toString());
         mConnection.setDoInput(true);
-        boolean isAllowBody = isAllowBody(method);
-        mConnection.setDoOutput(isAllowBody);
+        mConnection.setDoOutput(isAllowBody(method));
+        if (isStreamedBody(request)) {
+            mConnection.setFixedLengthStreamingMode((int) request.getRequestBody().length());
+        }
 
         Headers headers = request.getHeaders();
 
@@ -4,13 +4,13 @@
 package com.openmediation.sdk.utils.request.network.connect;
 
 import android.os.Build;
+import android.os.SystemClock;
 
 import com.openmediation.sdk.utils.DeveloperLog;
-import com.openmediation.sdk.utils.IOUtil;
 import com.openmediation.sdk.utils.request.network.Headers;
 import com.openmediation.sdk.utils.request.network.Request;
-import com.openmediation.sdk.utils.request.network.certificate.PublicKeyTrustManager;
-import com.openmediation.sdk.utils.request.network.certificate.SSLFactory;
+import com.openmediation.sdk.utils.request.network.certificate.SSLSocketFactories;
+import com.openmediation.sdk.utils.request.network.certificate.TrackingSSLSocketFactory;
 
 import java.io.IOException;
 import java.net.URL;
@@ -19,44 +19,45 @@ import java.util.List;
 import java.util.Map;
 
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
 
 import static com.openmediation.sdk.utils.request.network.Headers.KEY_CONNECTION;
 
 public final class HttpsConnection extends AbstractUrlConnection {
 
     private HttpsURLConnection mConnection;
+    private boolean isReused;
 
     @Override
     public void cancel() throws Exception {
-        if (mConnection != null) {
-            IOUtil.closeQuietly(mConnection.getInputStream());
-            mConnection.disconnect();
-        }
+        release(mConnection);
     }
 
     @Override
-    int getResponseCode() throws IOException {
+    protected int getResponseCode() throws IOException {
         return mConnection.getResponseCode();
     }
 
     @Override
-    public URLConnection connect(Request request) throws Exception {
-        String u = request.getUrl();
-        DeveloperLog.LogD("HttpsConnection", "url is : " + u);
-        URL url = new URL(u);
+    protected boolean isReused() {
+        return isReused;
+    }
+
+    @Override
+    protected URLConnection connect(Request request, URL url) throws Exception {
+        DeveloperLog.LogD("HttpsConnection", "url is : " + url);
         mConnection = (HttpsURLConnection) url.openConnection();
         mConnection.setConnectTimeout(request.getConnectTimeout());
         mConnection.setReadTimeout(request.getReadTimeout());
-        mConnection.setInstanceFollowRedirects(request.isInstanceFollowRedirects());
+        // the platform can't follow a redirect with a streamed body, intercept does
+        mConnection.setInstanceFollowRedirects(request.isInstanceFollowRedirects() && !isStreamedBody(request));
 
         Request.Method method = request.getRequestMethod();
         mConnection.setRequestMethod(method.toString());
         mConnection.setDoInput(true);
-        boolean isAllowBody = isAllowBody(method);
-        mConnection.setDoOutput(isAllowBody);
+        mConnection.setDoOutput(isAllowBody(method));
+        if (isStreamedBody(request)) {
+            mConnection.setFixedLengthStreamingMode((int) request.getRequestBody().length());
+        }
         mConnection.setUseCaches(false);
 
         Headers headers = request.getHeaders();
@@ -72,19 +73,14 @@ public final class HttpsConnection extends AbstractUrlConnection {
             }
         }
 
-        if (request.isCheckChain()) {
-            TrustManager[] tm = {new PublicKeyTrustManager()};
-            SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
-            sslContext.init(null, tm, new java.security.SecureRandom());
-            SSLSocketFactory ssf = sslContext.getSocketFactory();
-            mConnection.setSSLSocketFactory(ssf);
-        }
-
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
-            SSLFactory ssf = new SSLFactory();
-            mConnection.setSSLSocketFactory(ssf);
-        }
+        mConnection.setSSLSocketFactory(SSLSocketFactories.get(request.isCheckChain()));
+        int created = TrackingSSLSocketFactory.createdOnThread();
+        long start = SystemClock.elapsedRealtime();
         mConnection.connect();
+        isReused = TrackingSSLSocketFactory.createdOnThread() == created;
+        long connectTime = SystemClock.elapsedRealtime() - start;
+        ConnectionStats.record(isReused, connectTime);
+        DeveloperLog.LogD("HttpsConnection", "reused: " + isReused + ", connect: " + connectTime + "ms");
         return mConnection;
     }
 }
@@ -0,0 +1,131 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.crosspromotion.sdk.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The index keeps the cache under its budget without evicting the entry just put, refuses entries
+ * that can't fit at all, and indexes the files of an older cache when there is no journal
+ */
+public class CacheIndexTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void putEvictsLeastRecentlyUsedButNeverTheNewEntry() throws Exception {
+        File dir = mFolder.getRoot();
+        CacheIndex index = new CacheIndex(dir, 100);
+        assertTrue(put(index, "a", 40));
+        assertTrue(put(index, "b", 40));
+        // a is used, b is the least recently used now
+        assertNotNull(index.get("a"));
+
+        assertTrue(put(index, "c", 40));
+
+        assertNull(index.get("b"));
+        assertFalse(new File(dir, "b").exists());
+        assertNotNull(index.get("a"));
+        assertNotNull(index.get("c"));
+        assertEquals(80, index.size());
+    }
+
+    @Test
+    public void newEntryAsLargeAsTheBudgetEvictsAllOthers() throws Exception {
+        CacheIndex index = new CacheIndex(mFolder.getRoot(), 100);
+        put(index, "a", 30);
+        put(index, "b", 30);
+
+        assertTrue(put(index, "c", 100));
+
+        assertNull(index.get("a"));
+        assertNull(index.get("b"));
+        assertNotNull(index.get("c"));
+        assertTrue(index.getFile("c").exists());
+        assertEquals(100, index.size());
+    }
+
+    @Test
+    public void entryLargerThanTheBudgetIsRefused() throws Exception {
+        CacheIndex index = new CacheIndex(mFolder.getRoot(), 100);
+        put(index, "a", 30);
+
+        assertFalse(index.fits(101));
+        assertFalse(put(index, "big", 101));
+
+        assertNull(index.get("big"));
+        assertNotNull(index.get("a"));
+        assertEquals(30, index.size());
+    }
+
+    @Test
+    public void journalIsReplayedOnOpen() throws Exception {
+        File dir = mFolder.getRoot();
+        CacheIndex index = new CacheIndex(dir, 100);
+        put(index, "a", 10);
+        put(index, "b", 20);
+        index.remove("a");
+
+        CacheIndex reopened = new CacheIndex(dir, 100);
+
+        assertNull(reopened.get("a"));
+        assertEquals(20, reopened.get("b").size);
+        assertEquals(20, reopened.size());
+    }
+
+    @Test
+    public void filesAreIndexedWhenThereIsNoJournal() throws Exception {
+        File dir = mFolder.getRoot();
+        write(new File(dir, "img/a.png"), 10);
+        write(new File(dir, "img/a.png-header"), "{\"ETag\":\"v1\"}".getBytes("UTF-8"));
+        write(new File(dir, "b.mp4"), 20);
+        write(new File(dir, "partial/c.mp4"), 50);
+
+        CacheIndex index = new CacheIndex(dir, 1000, "partial");
+
+        CacheIndex.Entry entry = index.get("img/a.png");
+        assertNotNull(entry);
+        assertEquals(10, entry.size);
+        assertEquals("v1", entry.eTag);
+        // no expiry is known, the entry is revalidated before use
+        assertFalse(entry.isFresh(System.currentTimeMillis()));
+        assertNotNull(index.get("b.mp4"));
+        assertNull(index.get("partial/c.mp4"));
+        assertEquals(30, index.size());
+        assertFalse(new File(dir, "img/a.png-header").exists());
+        assertTrue(new File(dir, "partial/c.mp4").exists());
+    }
+
+    private static boolean put(CacheIndex index, String key, int size) throws IOException {
+        write(index.getFile(key), size);
+        return index.put(new CacheIndex.Entry(key, size, System.currentTimeMillis(), 60000, null, null,
+                null, null));
+    }
+
+    private static void write(File file, int size) throws IOException {
+        write(file, new byte[size]);
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.core;
+
+import com.openmediation.sdk.utils.model.BaseInstance;
+import com.openmediation.sdk.utils.model.BaseInstance.MEDIATION_STATE;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Guarded state moves reject late callbacks, and the buckets follow every accepted change
+ */
+public class InstanceStatesTest {
+
+    @Test
+    public void guardedInstanceRejectsIllegalMove() {
+        BaseInstance instance = guarded(1, MEDIATION_STATE.LOAD_PENDING);
+
+        assertTrue(instance.moveMediationState(MEDIATION_STATE.AVAILABLE));
+        // a late init failure mustn't overwrite the fill
+        assertFalse(instance.moveMediationState(MEDIATION_STATE.INIT_FAILED));
+        assertEquals(MEDIATION_STATE.AVAILABLE, instance.getMediationState());
+    }
+
+    @Test
+    public void unguardedInstanceTakesAnyMove() {
+        BaseInstance instance = new BaseInstance();
+        instance.setMediationState(MEDIATION_STATE.AVAILABLE);
+
+        assertTrue(instance.moveMediationState(MEDIATION_STATE.INIT_FAILED));
+        assertEquals(MEDIATION_STATE.INIT_FAILED, instance.getMediationState());
+    }
+
+    @Test
+    public void bidStateChangesOnlyFromTheExpectedState() {
+        BaseInstance instance = new BaseInstance();
+
+        assertTrue(instance.compareAndSetBidState(BaseInstance.BID_STATE.NOT_BIDDING,
+                BaseInstance.BID_STATE.BID_PENDING));
+        assertFalse(instance.compareAndSetBidState(BaseInstance.BID_STATE.NOT_BIDDING,
+                BaseInstance.BID_STATE.BID_PENDING));
+        assertEquals(BaseInstance.BID_STATE.BID_PENDING, instance.getBidState());
+    }
+
+    @Test
+    public void bucketsFollowStateChanges() {
+        BaseInstance first = guarded(1, MEDIATION_STATE.LOAD_PENDING);
+        BaseInstance second = guarded(2, MEDIATION_STATE.LOAD_PENDING);
+        BaseInstance third = guarded(3, MEDIATION_STATE.NOT_INITIATED);
+        InstanceStates states = new InstanceStates();
+        states.reset(Arrays.asList(first, second, third));
+
+        assertEquals(3, states.size());
+        assertEquals(2, states.count(MEDIATION_STATE.LOAD_PENDING));
+        assertSame(third, states.nextLoadable());
+
+        second.moveMediationState(MEDIATION_STATE.AVAILABLE);
+        first.moveMediationState(MEDIATION_STATE.AVAILABLE);
+        assertEquals(0, states.count(MEDIATION_STATE.LOAD_PENDING));
+        assertEquals(Arrays.asList(first, second), states.get(MEDIATION_STATE.AVAILABLE));
+        assertSame(first, states.first(MEDIATION_STATE.AVAILABLE, MEDIATION_STATE.NOT_INITIATED));
+
+        // rejected moves leave the buckets as they are
+        first.moveMediationState(MEDIATION_STATE.INIT_FAILED);
+        assertEquals(2, states.count(MEDIATION_STATE.AVAILABLE));
+        assertEquals(0, states.count(MEDIATION_STATE.INIT_FAILED));
+    }
+
+    @Test
+    public void resetStopsTrackingOldInstances() {
+        BaseInstance old = guarded(1, MEDIATION_STATE.NOT_INITIATED);
+        InstanceStates states = new InstanceStates();
+        states.reset(Collections.singletonList(old));
+        states.reset(Collections.<BaseInstance>emptyList());
+
+        old.setMediationState(MEDIATION_STATE.AVAILABLE);
+
+        assertNull(old.getOnMediationStateChangedListener());
+        assertEquals(0, states.count(MEDIATION_STATE.AVAILABLE));
+        assertNull(states.first(MEDIATION_STATE.AVAILABLE));
+    }
+
+    private static BaseInstance guarded(int id, MEDIATION_STATE state) {
+        BaseInstance instance = new BaseInstance() {
+            @Override
+            protected boolean isMediationStateGuarded() {
+                return true;
+            }
+        };
+        instance.setId(id);
+        instance.setMediationState(state);
+        return instance;
+    }
+}
@@ -0,0 +1,158 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The wheel on a fake clock, ticked by hand: deadlines fire on their tick and not before, cancelled
+ * and moved ones don't fire, and deadlines past one turn of the wheel wait for their own tick
+ */
+public class TimerWheelTest {
+    private static final long TICK_MS = 50;
+
+    private long mNow;
+    private Runnable mTick;
+    private TimerWheel mWheel;
+    private final AtomicInteger mRuns = new AtomicInteger();
+    private TimerWheel.Timeout mTimeout;
+
+    @Before
+    public void setUp() {
+        mNow = 1000;
+        mWheel = new TimerWheel(new TimerWheel.Clock() {
+            @Override
+            public long uptimeMillis() {
+                return mNow;
+            }
+        }, new TimerWheel.TickPoster() {
+            @Override
+            public void postDelayed(Runnable tick, long delayMillis) {
+                mTick = tick;
+            }
+        });
+        mTimeout = new TimerWheel.Timeout(TimerWheel.Kind.INSTANCE_LOAD, new Runnable() {
+            @Override
+            public void run() {
+                mRuns.incrementAndGet();
+            }
+        });
+    }
+
+    @Test
+    public void firesOnItsTickAndNotBefore() {
+        mWheel.schedule(mTimeout, 120, TimeUnit.MILLISECONDS);
+
+        advance(100);
+        assertEquals(0, mRuns.get());
+        assertTrue(mWheel.isPending(mTimeout));
+
+        advance(50);
+        assertEquals(1, mRuns.get());
+        assertFalse(mWheel.isPending(mTimeout));
+        assertEquals(0, mWheel.getPending());
+        assertEquals(1, mWheel.getStats(TimerWheel.Kind.INSTANCE_LOAD).getFired());
+        // nothing pending, the wheel stops ticking
+        assertNull(mTick);
+    }
+
+    @Test
+    public void cancelledTimeoutDoesNotFire() {
+        mWheel.schedule(mTimeout, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(mWheel.cancel(mTimeout));
+        assertFalse(mWheel.cancel(mTimeout));
+        advance(500);
+
+        assertEquals(0, mRuns.get());
+        assertEquals(0, mWheel.getPending());
+        TimerWheel.Stats stats = mWheel.getStats(TimerWheel.Kind.INSTANCE_LOAD);
+        assertEquals(1, stats.getCancelled());
+        assertEquals(0, stats.getFired());
+    }
+
+    @Test
+    public void rescheduleMovesTheDeadline() {
+        mWheel.schedule(mTimeout, 100, TimeUnit.MILLISECONDS);
+        mWheel.schedule(mTimeout, 300, TimeUnit.MILLISECONDS);
+        assertEquals(1, mWheel.getPending());
+
+        advance(250);
+        assertEquals(0, mRuns.get());
+
+        advance(50);
+        assertEquals(1, mRuns.get());
+        assertEquals(2, mWheel.getStats(TimerWheel.Kind.INSTANCE_LOAD).getScheduled());
+    }
+
+    @Test
+    public void deadlinePastOneTurnWaitsForItsTick() {
+        // 600 ticks, its slot comes round at tick 88 of the first turn
+        mWheel.schedule(mTimeout, 30, TimeUnit.SECONDS);
+
+        advance(30000 - TICK_MS);
+        assertEquals(0, mRuns.get());
+        assertTrue(mWheel.isPending(mTimeout));
+
+        advance(TICK_MS);
+        assertEquals(1, mRuns.get());
+    }
+
+    @Test
+    public void missedTicksCatchUp() {
+        mWheel.schedule(mTimeout, 100, TimeUnit.MILLISECONDS);
+
+        // a busy main thread runs the next tick ten seconds late
+        mNow += 10000;
+        runTick();
+
+        assertEquals(1, mRuns.get());
+    }
+
+    @Test
+    public void taskCanScheduleItsTimeoutAgain() {
+        final TimerWheel.Timeout[] timeout = new TimerWheel.Timeout[1];
+        timeout[0] = new TimerWheel.Timeout(TimerWheel.Kind.BID, new Runnable() {
+            @Override
+            public void run() {
+                if (mRuns.incrementAndGet() < 3) {
+                    mWheel.schedule(timeout[0], 100, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+        mWheel.schedule(timeout[0], 100, TimeUnit.MILLISECONDS);
+
+        advance(1000);
+
+        assertEquals(3, mRuns.get());
+        assertEquals(3, mWheel.getStats(TimerWheel.Kind.BID).getFired());
+    }
+
+    /**
+     * Moves the clock a tick at a time, running the wheel's tick whenever it is posted
+     */
+    private void advance(long millis) {
+        for (long elapsed = 0; elapsed < millis; elapsed += TICK_MS) {
+            mNow += TICK_MS;
+            runTick();
+        }
+    }
+
+    private void runTick() {
+        Runnable tick = mTick;
+        mTick = null;
+        if (tick != null) {
+            tick.run();
+        }
+    }
+}
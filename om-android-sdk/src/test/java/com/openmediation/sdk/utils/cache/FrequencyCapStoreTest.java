@@ -0,0 +1,103 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Caps count impressions in a window of the frequency unit, a new window starts from one, and
+ * impressions on several threads at once are all counted. The store is a singleton, each test uses
+ * its own placement ids.
+ */
+public class FrequencyCapStoreTest {
+    private static final int HOUR = 3600 * 1000;
+    private static final AtomicInteger PLACEMENT_IDS = new AtomicInteger(9000);
+
+    private final FrequencyCapStore mStore = FrequencyCapStore.getInstance();
+
+    @Test
+    public void placementIsCappedAtCapImpressions() {
+        int placementId = PLACEMENT_IDS.incrementAndGet();
+        assertFalse(mStore.isPlacementCapped(placementId, HOUR, 3));
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(mStore.isPlacementCapped(placementId, HOUR, 3));
+            mStore.onPlacementShowed(placementId, HOUR);
+        }
+
+        assertTrue(mStore.isPlacementCapped(placementId, HOUR, 3));
+        assertFalse(mStore.isPlacementCapped(placementId, HOUR, 4));
+        assertFalse(mStore.isPlacementCapped(placementId, HOUR, 0));
+    }
+
+    @Test
+    public void capResetsWhenTheWindowIsOver() throws Exception {
+        int placementId = PLACEMENT_IDS.incrementAndGet();
+        int unit = 100;
+        mStore.onPlacementShowed(placementId, unit);
+        mStore.onPlacementShowed(placementId, unit);
+        assertTrue(mStore.isPlacementCapped(placementId, unit, 2));
+
+        Thread.sleep(unit + 50);
+        assertFalse(mStore.isPlacementCapped(placementId, unit, 2));
+
+        // the impression opens a new window counting from one
+        mStore.onPlacementShowed(placementId, unit);
+        assertFalse(mStore.isPlacementCapped(placementId, unit, 2));
+        assertTrue(mStore.isPlacementCapped(placementId, unit, 1));
+    }
+
+    @Test
+    public void instancesAndScenesAreCountedPerPlacement() {
+        int placementId = PLACEMENT_IDS.incrementAndGet();
+        int otherPlacementId = PLACEMENT_IDS.incrementAndGet();
+        mStore.onInstanceShowed(placementId, 1, HOUR);
+        mStore.onSceneShowed(placementId, 1, HOUR);
+
+        assertTrue(mStore.isInstanceCapped(placementId, 1, HOUR, 1));
+        assertTrue(mStore.isSceneCapped(placementId, 1, HOUR, 1));
+        assertFalse(mStore.isInstanceCapped(otherPlacementId, 1, HOUR, 1));
+        assertFalse(mStore.isSceneCapped(otherPlacementId, 1, HOUR, 1));
+        assertFalse(mStore.isPlacementCapped(placementId, HOUR, 1));
+        assertTrue(mStore.isInstanceInInterval(placementId, 1, HOUR));
+        assertFalse(mStore.isPlacementInInterval(placementId, HOUR));
+    }
+
+    @Test
+    public void concurrentImpressionsAreAllCounted() throws Exception {
+        final int placementId = PLACEMENT_IDS.incrementAndGet();
+        final int threads = 4;
+        final int shows = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < shows; j++) {
+                            mStore.onPlacementShowed(placementId, HOUR);
+                        }
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertTrue(mStore.isPlacementCapped(placementId, HOUR, threads * shows));
+        assertFalse(mStore.isPlacementCapped(placementId, HOUR, threads * shows + 1));
+    }
+}
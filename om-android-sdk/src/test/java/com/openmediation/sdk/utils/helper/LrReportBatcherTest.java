@@ -0,0 +1,32 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A failed batch is retried unless the server refused the records themselves
+ */
+public class LrReportBatcherTest {
+
+    @Test
+    public void serverAndChannelErrorsAreRetried() {
+        // -1: no response at all
+        assertTrue(LrReportBatcher.isRetryable(-1));
+        assertTrue(LrReportBatcher.isRetryable(500));
+        assertTrue(LrReportBatcher.isRetryable(503));
+        assertTrue(LrReportBatcher.isRetryable(408));
+        assertTrue(LrReportBatcher.isRetryable(429));
+    }
+
+    @Test
+    public void clientErrorsAreDropped() {
+        assertFalse(LrReportBatcher.isRetryable(400));
+        assertFalse(LrReportBatcher.isRetryable(404));
+        assertFalse(LrReportBatcher.isRetryable(413));
+    }
+}
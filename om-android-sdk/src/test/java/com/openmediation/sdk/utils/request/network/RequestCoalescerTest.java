@@ -0,0 +1,144 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The first request of a key opens a flight, identical ones join it and each gets its own copy of the
+ * response, or the error. Only requests that get their response have a key
+ */
+public class RequestCoalescerTest {
+
+    @Test
+    public void joinedCallbacksGetACopyOfTheResponse() throws Exception {
+        String key = "GET https://example.com/shared";
+        Recorder leader = new Recorder();
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+
+        assertFalse(RequestCoalescer.join(key, leader));
+        assertTrue(RequestCoalescer.join(key, first));
+        assertTrue(RequestCoalescer.join(key, second));
+        RequestCoalescer.lead(key, leader).onSuccess(response(200, "payload"));
+
+        assertEquals("200 payload", leader.result());
+        assertEquals("200 payload", first.result());
+        assertEquals("200 payload", second.result());
+        // the flight is closed, the next request goes to the network
+        assertFalse(RequestCoalescer.join(key, new Recorder()));
+        RequestCoalescer.lead(key, new Recorder()).onError("done");
+    }
+
+    @Test
+    public void responseIsHandedOverAsItIsWhenNobodyJoined() {
+        String key = "GET https://example.com/alone";
+        Recorder leader = new Recorder();
+        Response response = response(200, "payload");
+
+        assertFalse(RequestCoalescer.join(key, leader));
+        RequestCoalescer.lead(key, leader).onSuccess(response);
+
+        assertEquals(1, leader.mResponses.size());
+        assertTrue(leader.mResponses.get(0) == response);
+    }
+
+    @Test
+    public void errorIsFannedOut() {
+        String key = "GET https://example.com/error";
+        Recorder leader = new Recorder();
+        Recorder joined = new Recorder();
+
+        RequestCoalescer.join(key, leader);
+        RequestCoalescer.join(key, joined);
+        RequestCoalescer.lead(key, leader).onError("timeout");
+
+        assertEquals("timeout", leader.mError);
+        assertEquals("timeout", joined.mError);
+        assertFalse(RequestCoalescer.join(key, new Recorder()));
+        RequestCoalescer.lead(key, new Recorder()).onError("done");
+    }
+
+    @Test
+    public void identicalRequestsShareAKey() {
+        String key = RequestCoalescer.key(post("{\"n\":1}", Request.Priority.AUCTION, new Callback()));
+
+        assertNotNull(key);
+        assertEquals(key, RequestCoalescer.key(post("{\"n\":1}", Request.Priority.AUCTION, new Callback())));
+        assertNotEquals(key, RequestCoalescer.key(post("{\"n\":2}", Request.Priority.AUCTION, new Callback())));
+    }
+
+    @Test
+    public void requestWithoutCallbackNeverCoalesces() {
+        // it gets no response, joiners would only get "response is null"
+        assertNull(RequestCoalescer.key(post("{\"n\":1}", Request.Priority.AUCTION, null)));
+    }
+
+    @Test
+    public void reportsNeverCoalesce() {
+        assertNull(RequestCoalescer.key(post("{\"n\":1}", Request.Priority.REPORT, new Callback())));
+    }
+
+    private static Request post(String body, Request.Priority priority, Request.OnRequestCallback callback) {
+        return AdRequest.post()
+                .url("https://example.com/wf")
+                .body(new ByteRequestBody(body.getBytes()))
+                .priority(priority)
+                .coalesce(true)
+                .callback(callback)
+                .build();
+    }
+
+    private static Response response(int code, String body) {
+        byte[] data = body.getBytes();
+        return Response.newBuilder()
+                .code(code)
+                .headers(new Headers())
+                .body(new StreamBody(null, new BufferedInputStream(new ByteArrayInputStream(data))))
+                .build();
+    }
+
+    private static final class Callback implements Request.OnRequestCallback {
+        @Override
+        public void onRequestSuccess(Response response) {
+        }
+
+        @Override
+        public void onRequestFailed(String error) {
+        }
+    }
+
+    private static final class Recorder implements AsyncReq.OnTaskCallback {
+        private final List<Response> mResponses = new ArrayList<>();
+        private String mError;
+
+        @Override
+        public void onSuccess(Response response) {
+            mResponses.add(response);
+        }
+
+        @Override
+        public void onError(String error) {
+            mError = error;
+        }
+
+        String result() throws Exception {
+            assertEquals(1, mResponses.size());
+            Response response = mResponses.get(0);
+            return response.code() + " " + new String(response.body().byteArray(), "UTF-8");
+        }
+    }
+}
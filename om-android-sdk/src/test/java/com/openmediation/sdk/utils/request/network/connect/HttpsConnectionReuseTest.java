@@ -0,0 +1,168 @@
+// Copyright 2020 ADTIMING TECHNOLOGY COMPANY LIMITED
+// Licensed under the GNU Lesser General Public License Version 3
+
+package com.openmediation.sdk.utils.request.network.connect;
+
+import com.openmediation.sdk.utils.request.network.AdRequest;
+import com.openmediation.sdk.utils.request.network.ByteRequestBody;
+import com.openmediation.sdk.utils.request.network.Response;
+import com.openmediation.sdk.utils.request.network.certificate.SSLSocketFactories;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A released https connection goes back to the platform pool and the next request to the host reuses
+ * its socket, for a GET and for a POST with a fixed length body
+ */
+public class HttpsConnectionReuseTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private MockWebServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        String host = InetAddress.getByName("localhost").getCanonicalHostName();
+        HeldCertificate certificate = new HeldCertificate.Builder().addSubjectAlternativeName(host).build();
+        HandshakeCertificates server = new HandshakeCertificates.Builder().heldCertificate(certificate).build();
+        HandshakeCertificates client = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate()).build();
+        mServer = new MockWebServer();
+        mServer.useHttps(server.sslSocketFactory(), false);
+        mServer.start();
+        SSLSocketFactories.setDefault(client.sslSocketFactory());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SSLSocketFactories.setDefault(null);
+        mServer.shutdown();
+    }
+
+    @Test
+    public void getReusesSocketAfterRelease() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("first"));
+        mServer.enqueue(new MockResponse().setBody("second"));
+        long reused = ConnectionStats.getReused();
+
+        assertEquals("first", get());
+        assertEquals("second", get());
+
+        assertEquals(0, mServer.takeRequest().getSequenceNumber());
+        assertEquals(1, mServer.takeRequest().getSequenceNumber());
+        assertEquals(1, ConnectionStats.getReused() - reused);
+    }
+
+    @Test
+    public void postReusesSocketAfterRelease() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("first"));
+        mServer.enqueue(new MockResponse().setBody("second"));
+        long reused = ConnectionStats.getReused();
+
+        assertEquals("first", post("{\"n\":1}"));
+        assertEquals("second", post("{\"n\":2}"));
+
+        RecordedRequest first = mServer.takeRequest();
+        RecordedRequest second = mServer.takeRequest();
+        assertEquals(0, first.getSequenceNumber());
+        assertEquals(1, second.getSequenceNumber());
+        assertEquals("7", first.getHeader("Content-Length"));
+        assertArrayEquals("{\"n\":2}".getBytes(UTF_8), second.getBody().readByteArray());
+        assertEquals(1, ConnectionStats.getReused() - reused);
+    }
+
+    @Test
+    public void postIsNotSentTwiceWhenPooledSocketWasClosed() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("first").setSocketPolicy(SocketPolicy.DISCONNECT_AT_END));
+        mServer.enqueue(new MockResponse().setBody("second"));
+
+        assertEquals("first", post("{\"n\":1}"));
+        // the pooled socket is dead: resent only if it failed before the body went out, else it fails
+        String second = null;
+        try {
+            second = post("{\"n\":2}");
+        } catch (Throwable e) {
+            // the server may have the body, it isn't sent again
+        }
+
+        mServer.takeRequest();
+        int received = 0;
+        RecordedRequest request;
+        while ((request = mServer.takeRequest(200, TimeUnit.MILLISECONDS)) != null) {
+            assertArrayEquals("{\"n\":2}".getBytes(UTF_8), request.getBody().readByteArray());
+            received++;
+        }
+        assertTrue(received <= 1);
+        if (second != null) {
+            assertEquals("second", second);
+            assertEquals(1, received);
+        }
+    }
+
+    @Test
+    public void postBodyIsResentOnTemporaryRedirect() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(307).setHeader("Location", "/moved"));
+        mServer.enqueue(new MockResponse().setBody("moved"));
+
+        assertEquals("moved", read(AdRequest.post()
+                .url(mServer.url("/post").toString())
+                .body(new ByteRequestBody("{\"n\":1}".getBytes(UTF_8)))
+                .instanceFollowRedirects(true)
+                .connectTimeout(5000)
+                .readTimeout(5000)
+                .syncRequest()));
+
+        assertEquals("/post", mServer.takeRequest().getPath());
+        RecordedRequest moved = mServer.takeRequest();
+        assertEquals("/moved", moved.getPath());
+        assertEquals("7", moved.getHeader("Content-Length"));
+        assertArrayEquals("{\"n\":1}".getBytes(UTF_8), moved.getBody().readByteArray());
+    }
+
+    private String get() throws Exception {
+        return read(AdRequest.get()
+                .url(mServer.url("/get").toString())
+                .connectTimeout(5000)
+                .readTimeout(5000)
+                .syncRequest());
+    }
+
+    private String post(String body) throws Exception {
+        return read(AdRequest.post()
+                .url(mServer.url("/post").toString())
+                .body(new ByteRequestBody(body.getBytes(UTF_8)))
+                .instanceFollowRedirects(false)
+                .connectTimeout(5000)
+                .readTimeout(5000)
+                .syncRequest());
+    }
+
+    /**
+     * Reads the whole body, then closes the response, which releases the connection
+     */
+    private static String read(Response response) throws Exception {
+        assertNotNull(response);
+        try {
+            return new String(response.body().byteArray(), UTF_8);
+        } finally {
+            response.close();
+        }
+    }
+}